@@ -3,6 +3,7 @@ package org.kin.transport.netty;
 import com.google.common.base.Preconditions;
 import io.netty.channel.ChannelHandler;
 import org.kin.transport.netty.handler.ChannelProtocolHandler;
+import org.kin.transport.netty.handler.FlushConsolidationHandler;
 import org.kin.transport.netty.handler.TransportProtocolCodec;
 
 import java.util.ArrayList;
@@ -46,9 +47,15 @@ public abstract class AbstractChannelHandlerInitializer<IN, MSG, OUT, O extends
         Preconditions.checkNotNull(transportProtocolTransfer, "transportProtocolTransfer must not null");
         Preconditions.checkNotNull(protocolHandler, "protocolHandler must not null");
 
-        List<ChannelHandler> channelHandlers = new ArrayList<>(firstHandlers());
+        List<ChannelHandler> channelHandlers = new ArrayList<>();
+        if (transportOption.getFlushConsolidationWrites() > 0) {
+            //最前面, 拦截后面所有handler的flush
+            channelHandlers.add(new FlushConsolidationHandler(transportOption.getFlushConsolidationWrites(),
+                    transportOption.getFlushConsolidationDelayMicros()));
+        }
+        channelHandlers.addAll(firstHandlers());
         channelHandlers.add(new TransportProtocolCodec<>(transportProtocolTransfer));
-        channelHandlers.add(new ChannelProtocolHandler<>(protocolHandler));
+        channelHandlers.add(new ChannelProtocolHandler<>(protocolHandler, transportOption.getProtocolExecutor()));
         channelHandlers.addAll(lastHandlers());
         return channelHandlers.toArray(new ChannelHandler[0]);
     }
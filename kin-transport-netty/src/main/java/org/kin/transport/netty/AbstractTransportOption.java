@@ -1,6 +1,9 @@
 package org.kin.transport.netty;
 
+import com.google.common.base.Preconditions;
 import io.netty.channel.ChannelOption;
+import org.kin.transport.netty.handler.FlushConsolidationHandler;
+import org.kin.transport.netty.handler.OrderedProtocolExecutor;
 
 import java.io.File;
 import java.util.HashMap;
@@ -42,6 +45,33 @@ public abstract class AbstractTransportOption<IN, MSG, OUT, O extends AbstractTr
     protected int writeTimeout;
     /** 连接超时(毫秒) */
     protected long connectTimeout;
+    /** 底层io实现, native实现不可用时回退到nio */
+    protected TransportType transportType = TransportType.NIO;
+    /** 协议逻辑处理线程池的lane数, 0则表示在io线程处理, 见{@link OrderedProtocolExecutor} */
+    protected int protocolExecutorLanes;
+    /** 协议逻辑处理线程池每条lane的队列大小 */
+    protected int protocolExecutorQueueSize;
+    /** 每个channel积压的未处理协议数高水位, 超过则暂停读 */
+    protected int protocolExecutorHighWater;
+    /** 协议逻辑处理线程池, 同一配置的server/client共享, lazy init */
+    private volatile OrderedProtocolExecutor protocolExecutor;
+    /** channel写缓冲低水位(字节), 0则使用netty默认值 */
+    protected int writeBufferLowWaterMark;
+    /** channel写缓冲高水位(字节), 超过则channel不可写, 0则使用netty默认值 */
+    protected int writeBufferHighWaterMark;
+    /** client出站字节预算, null则表示不限制 */
+    protected OutboundBudget outboundBudget;
+    /** client共享event loop group的线程数, 0则使用netty默认值(2倍cpu), 见{@link ClientEventLoopGroups} */
+    protected int clientThreads;
+    /**
+     * server监听socket数量, 大于1时以SO_REUSEPORT绑定同一端口, 每个监听socket独占一个event loop, 由内核分发连接
+     * 仅epoll支持, 否则只绑定一个
+     */
+    protected int acceptorNum = 1;
+    /** 合并flush, 累计多少次write则立即flush, 0则表示不合并, 见{@link FlushConsolidationHandler} */
+    protected int flushConsolidationWrites;
+    /** 合并flush, 第一次flush请求后延迟多少微秒flush */
+    protected long flushConsolidationDelayMicros;
 
     //getter
     public Map<ChannelOption, Object> getServerOptions() {
@@ -116,6 +146,55 @@ public abstract class AbstractTransportOption<IN, MSG, OUT, O extends AbstractTr
         return connectTimeout;
     }
 
+    public TransportType getTransportType() {
+        return transportType;
+    }
+
+    /**
+     * @return 协议逻辑处理线程池, null则表示在io线程处理
+     */
+    public OrderedProtocolExecutor getProtocolExecutor() {
+        if (protocolExecutorLanes <= 0) {
+            return null;
+        }
+        if (protocolExecutor == null) {
+            synchronized (this) {
+                if (protocolExecutor == null) {
+                    protocolExecutor = new OrderedProtocolExecutor(protocolExecutorLanes, protocolExecutorQueueSize, protocolExecutorHighWater);
+                }
+            }
+        }
+        return protocolExecutor;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public OutboundBudget getOutboundBudget() {
+        return outboundBudget;
+    }
+
+    public int getClientThreads() {
+        return clientThreads;
+    }
+
+    public int getAcceptorNum() {
+        return acceptorNum;
+    }
+
+    public int getFlushConsolidationWrites() {
+        return flushConsolidationWrites;
+    }
+
+    public long getFlushConsolidationDelayMicros() {
+        return flushConsolidationDelayMicros;
+    }
+
     void setProtocolHandler(ProtocolHandler<MSG> protocolHandler) {
         this.protocolHandler = protocolHandler;
     }
@@ -220,5 +299,81 @@ public abstract class AbstractTransportOption<IN, MSG, OUT, O extends AbstractTr
             transportOption.connectTimeout = unit.toMillis(connectTimeout);
             return this;
         }
+
+        /**
+         * 底层io实现, 比如linux下使用epoll
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> transportType(TransportType transportType) {
+            Preconditions.checkNotNull(transportType, "transportType must not null");
+            transportOption.transportType = transportType;
+            return this;
+        }
+
+        /**
+         * 协议在线程池处理, 同一session的协议按顺序处理
+         *
+         * @param lanes     lane数, 即线程数
+         * @param queueSize 每条lane的队列大小, 队列满则拒绝, 同流控拒绝处理
+         * @param highWater 每个channel积压的未处理协议数高水位, 超过则暂停读
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> protocolExecutor(int lanes, int queueSize, int highWater) {
+            Preconditions.checkArgument(lanes > 0, "lanes must be greater than 0");
+            Preconditions.checkArgument(queueSize > 0, "queueSize must be greater than 0");
+            Preconditions.checkArgument(highWater > 0, "highWater must be greater than 0");
+            transportOption.protocolExecutorLanes = lanes;
+            transportOption.protocolExecutorQueueSize = queueSize;
+            transportOption.protocolExecutorHighWater = highWater;
+            return this;
+        }
+
+        /**
+         * channel写缓冲水位, outbound buffer超过高水位则channel不可写, 回落至低水位则恢复可写
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> writeBufferWaterMark(int low, int high) {
+            Preconditions.checkArgument(low > 0, "low must be greater than 0");
+            Preconditions.checkArgument(high >= low, "high must be greater than or equal to low");
+            transportOption.writeBufferLowWaterMark = low;
+            transportOption.writeBufferHighWaterMark = high;
+            return this;
+        }
+
+        /**
+         * client出站字节预算, outbound buffer积压超过maxPendingBytes时按策略处理
+         * 同时使用{@link ProtocolSizeEstimator}估算业务线程已提交但未编码的协议, 已配置message size estimator则不覆盖
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> outboundBudget(long maxPendingBytes, OutboundBudgetPolicy policy, long blockTimeout, TimeUnit unit) {
+            transportOption.outboundBudget = new OutboundBudget(maxPendingBytes, policy, unit.toMillis(blockTimeout));
+            transportOption.channelOptions.putIfAbsent(ChannelOption.MESSAGE_SIZE_ESTIMATOR, ProtocolSizeEstimator.INSTANCE);
+            return this;
+        }
+
+        /**
+         * client共享event loop group的线程数, 相同底层io实现和线程数的client共享同一event loop group
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> clientThreads(int clientThreads) {
+            Preconditions.checkArgument(clientThreads >= 0, "clientThreads must be greater than or equal to 0");
+            transportOption.clientThreads = clientThreads;
+            return this;
+        }
+
+        /**
+         * server以SO_REUSEPORT绑定acceptorNum个监听socket, 仅epoll支持
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> reusePortAcceptors(int acceptorNum) {
+            Preconditions.checkArgument(acceptorNum > 0, "acceptorNum must be greater than 0");
+            transportOption.acceptorNum = acceptorNum;
+            return this;
+        }
+
+        /**
+         * 合并flush, 累计maxPendingWrites次write或者第一次flush请求后delay才真正flush, read结束时立即flush
+         */
+        public TransportOptionBuilder<IN, MSG, OUT, O> flushConsolidation(int maxPendingWrites, long delay, TimeUnit unit) {
+            Preconditions.checkArgument(maxPendingWrites > 0, "maxPendingWrites must be greater than 0");
+            Preconditions.checkArgument(delay >= 0, "delay must be greater than or equal to 0");
+            transportOption.flushConsolidationWrites = maxPendingWrites;
+            transportOption.flushConsolidationDelayMicros = unit.toMicros(delay);
+            return this;
+        }
     }
 }
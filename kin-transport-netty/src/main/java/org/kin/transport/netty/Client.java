@@ -3,12 +3,13 @@ package org.kin.transport.netty;
 import com.google.common.base.Preconditions;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import org.kin.framework.utils.CollectionUtils;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
+import org.kin.transport.netty.socket.protocol.SocketProtocol;
+import org.kin.transport.netty.utils.ChannelUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,11 +53,15 @@ public class Client<MSG> extends ClientConnection {
         Preconditions.checkArgument(channelOptions != null);
         Preconditions.checkArgument(channelHandlerInitializer != null);
 
-        group = new NioEventLoopGroup();
+        TransportType transportType = transportOption.getTransportType().orFallback();
+        if (Objects.isNull(group)) {
+            //共享event loop group, close时release
+            group = ClientEventLoopGroups.acquire(transportType, transportOption.getClientThreads());
+        }
 
         CountDownLatch latch = new CountDownLatch(1);
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(group).channel(NioSocketChannel.class);
+        bootstrap.group(group).channel(transportType.socketChannelClass());
 
         for (Map.Entry<ChannelOption, Object> entry : channelOptions.entrySet()) {
             bootstrap.option(entry.getKey(), entry.getValue());
@@ -76,6 +81,7 @@ public class Client<MSG> extends ClientConnection {
         bootstrap.handler(new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel socketChannel) {
+                ChannelUtils.setWriteBufferWaterMark(socketChannel, transportOption);
                 ChannelPipeline pipeline = socketChannel.pipeline();
                 if (Objects.nonNull(sslCtx)) {
                     pipeline.addLast(sslCtx.newHandler(socketChannel.alloc(), address.getHostString(), address.getPort()));
@@ -126,7 +132,9 @@ public class Client<MSG> extends ClientConnection {
         if (channel != null) {
             channel.close();
         }
-        group.shutdownGracefully();
+        if (Objects.nonNull(group)) {
+            ClientEventLoopGroups.release(group);
+        }
         group = null;
         channel = null;
         log.info("client({}) closed", addressStr);
@@ -164,7 +172,16 @@ public class Client<MSG> extends ClientConnection {
      * 请求消息
      */
     public boolean request(MSG msg, ChannelFutureListener... listeners) {
-        if (isActive() && Objects.nonNull(msg)) {
+        if (Objects.isNull(msg)) {
+            return false;
+        }
+        //交给transport发送, bytebuf成员域由transport release
+        ProtocolFactory.handOffPayload(msg);
+        if (isActive()) {
+            if (!tryAcquireOutboundBudget(msg)) {
+                ProtocolFactory.releaseOutboundPayload(msg);
+                return false;
+            }
             ChannelFuture channelFuture = channel.writeAndFlush(msg);
             if (CollectionUtils.isNonEmpty(listeners)) {
                 channelFuture.addListeners(listeners);
@@ -172,9 +189,30 @@ public class Client<MSG> extends ClientConnection {
             return true;
         }
 
+        ProtocolFactory.releaseOutboundPayload(msg);
         return false;
     }
 
+    /**
+     * 检查出站字节预算
+     *
+     * @return 是否可以发送
+     */
+    protected boolean tryAcquireOutboundBudget(Object msg) {
+        OutboundBudget outboundBudget = transportOption.getOutboundBudget();
+        if (Objects.isNull(outboundBudget)) {
+            return true;
+        }
+        int priority = 0;
+        if (msg instanceof SocketProtocol) {
+            ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(((SocketProtocol) msg).getProtocolId());
+            if (Objects.nonNull(protocolInfo)) {
+                priority = protocolInfo.getPriority();
+            }
+        }
+        return outboundBudget.tryAcquire(channel, priority);
+    }
+
     /**
      * @return channel local address
      */
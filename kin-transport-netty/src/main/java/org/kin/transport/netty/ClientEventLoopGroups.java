@@ -0,0 +1,86 @@
+package org.kin.transport.netty;
+
+import io.netty.channel.EventLoopGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * client共享的event loop group, 按(底层io实现, 线程数)共享, 引用计数
+ * <p>
+ * 每个client独占一个event loop group, 连接上百个服务时会产生上千个空闲selector线程
+ * client连接时{@link #acquire}, 关闭时{@link #release}, 最后一个使用者release时shutdown
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public final class ClientEventLoopGroups {
+    private static final Logger log = LoggerFactory.getLogger(ClientEventLoopGroups.class);
+
+    /** key -> 底层io实现 + 线程数, value -> 共享的event loop group */
+    private static final Map<String, SharedGroup> GROUPS = new HashMap<>();
+    /** key -> event loop group, value -> 共享的event loop group, 用于release */
+    private static final Map<EventLoopGroup, SharedGroup> GROUP_INDEX = new IdentityHashMap<>();
+
+    private ClientEventLoopGroups() {
+    }
+
+    /**
+     * 获取共享的event loop group, 引用计数+1
+     *
+     * @param transportType 底层io实现, 需已回退到可用的实现
+     * @param nThreads      线程数, 0则使用netty默认值(2倍cpu)
+     */
+    public static synchronized EventLoopGroup acquire(TransportType transportType, int nThreads) {
+        String key = transportType.name() + "-" + nThreads;
+        SharedGroup sharedGroup = GROUPS.get(key);
+        if (Objects.isNull(sharedGroup)) {
+            sharedGroup = new SharedGroup(key, transportType.eventLoopGroup(nThreads));
+            GROUPS.put(key, sharedGroup);
+            GROUP_INDEX.put(sharedGroup.group, sharedGroup);
+            log.info("client event loop group({}) created", key);
+        }
+        sharedGroup.refCnt++;
+        return sharedGroup.group;
+    }
+
+    /**
+     * 释放共享的event loop group, 引用计数-1, 为0则shutdown
+     */
+    public static synchronized void release(EventLoopGroup group) {
+        SharedGroup sharedGroup = GROUP_INDEX.get(group);
+        if (Objects.isNull(sharedGroup)) {
+            //非共享的event loop group
+            group.shutdownGracefully();
+            return;
+        }
+        if (--sharedGroup.refCnt > 0) {
+            return;
+        }
+        GROUPS.remove(sharedGroup.key);
+        GROUP_INDEX.remove(group);
+        group.shutdownGracefully();
+        log.info("client event loop group({}) shutdown", sharedGroup.key);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 共享的event loop group
+     */
+    private static class SharedGroup {
+        private final String key;
+        private final EventLoopGroup group;
+        /** 引用计数 */
+        private int refCnt;
+
+        SharedGroup(String key, EventLoopGroup group) {
+            this.key = key;
+            this.group = group;
+        }
+    }
+}
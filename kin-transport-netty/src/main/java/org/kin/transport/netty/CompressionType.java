@@ -5,13 +5,15 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.handler.codec.compression.*;
 import org.kin.transport.netty.compression.*;
+import org.kin.transport.netty.socket.handler.SocketFrameCodec;
 
 import java.util.HashSet;
 
 /**
  * 压缩方式
  * <p>
- * BZIP2和LZ4的netty实现基于buffer, buffer未满, 消息不可以flush出去, 不符合现在的协议设计, 暂不支持
+ * BZIP2和LZ4的netty实现基于buffer, buffer未满, 消息不可以flush出去, 不符合现在的协议设计,
+ * 故使用{@link org.kin.transport.netty.compression}下基于commons-compress的逐帧实现
  *
  * @author huangjianqin
  * @date 2020/9/28
@@ -129,15 +131,44 @@ public enum CompressionType {
             return new FramedLZ4Encoder();
         }
     },
+    /**
+     * 带预置字典的deflate, 字典由服务按协议预置(see {@link CompressionDictionaries}), 适合小协议
+     */
+    DEFLATE_DICTIONARY(8) {
+        @Override
+        public ByteToMessageDecoder decoder() {
+            return decoder(SocketFrameCodec.DEFAULT_MAX_BODY_SIZE);
+        }
+
+        @Override
+        public ByteToMessageDecoder decoder(int maxBodySize) {
+            return new DictionaryDeflateDecoder(maxBodySize);
+        }
+
+        @Override
+        public MessageToByteEncoder<ByteBuf> encoder() {
+            return new DictionaryDeflateEncoder();
+        }
+    },
     ;
 
+    /** 下标即压缩类型id, 逐帧O(1)查找 */
+    private static final CompressionType[] BY_ID;
+
     static {
         //加载时检查id是否存在重复
         HashSet<Integer> set = new HashSet<>();
+        int maxId = 0;
         for (CompressionType type : values()) {
             if (!set.add(type.getId())) {
                 throw new CompressionTypeIdConflictException(type);
             }
+            maxId = Math.max(maxId, type.getId());
+        }
+
+        BY_ID = new CompressionType[maxId + 1];
+        for (CompressionType type : values()) {
+            BY_ID[type.getId()] = type;
         }
     }
 
@@ -156,6 +187,14 @@ public enum CompressionType {
      */
     public abstract ByteToMessageDecoder decoder();
 
+    /**
+     * @param maxBodySize 协议体最大大小, 用于限制对端声明的解压后大小
+     * @return compressor
+     */
+    public ByteToMessageDecoder decoder(int maxBodySize) {
+        return decoder();
+    }
+
     /**
      * @return decompressor
      */
@@ -180,12 +219,16 @@ public enum CompressionType {
      * @return 根据id获取压缩类型
      */
     public static CompressionType getById(int id) {
-        for (CompressionType type : values()) {
-            if (type.getId() == id) {
-                return type;
-            }
+        if (id < 0 || id >= BY_ID.length) {
+            return null;
         }
+        return BY_ID[id];
+    }
 
-        return null;
+    /**
+     * @return 压缩类型id上界(不包含), 用于按id建数组
+     */
+    public static int idBound() {
+        return BY_ID.length;
     }
 }
@@ -0,0 +1,144 @@
+package org.kin.transport.netty;
+
+import com.google.common.base.Preconditions;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 出站字节预算, 限制channel outbound buffer积压的字节数, 避免慢消费者导致堆外内存OOM
+ * <p>
+ * 积压字节数即netty outbound buffer中未写出的字节数, 超出预算时按{@link OutboundBudgetPolicy}处理, 并记录次数
+ * 业务线程write的协议先作为task提交到channel event loop, 由netty按channel的message size estimator计入积压字节数,
+ * 故配置预算的channel使用{@link ProtocolSizeEstimator}按编码后的字节数估算, 否则已提交但未编码的协议几乎不计入预算
+ * {@link OutboundBudgetPolicy#DROP_LOW_PRIORITY}下高优先级消息可以超出预算, 但不能超出硬上限(预算的{@link #HARD_LIMIT_MULTIPLE}倍)
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public final class OutboundBudget {
+    private static final Logger log = LoggerFactory.getLogger(OutboundBudget.class);
+    /** 阻塞时, 检查积压字节数的间隔 */
+    private static final long BLOCK_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** 硬上限为预算的倍数 */
+    public static final int HARD_LIMIT_MULTIPLE = 4;
+    /** key -> 处理策略, value -> 超出预算次数 */
+    private static final Map<OutboundBudgetPolicy, LongAdder> HITS = new EnumMap<>(OutboundBudgetPolicy.class);
+
+    static {
+        for (OutboundBudgetPolicy policy : OutboundBudgetPolicy.values()) {
+            HITS.put(policy, new LongAdder());
+        }
+    }
+
+    /** 最大积压字节数 */
+    private final long maxPendingBytes;
+    /** 积压字节数硬上限, 高优先级消息也不能超出 */
+    private final long hardMaxPendingBytes;
+    /** 处理策略 */
+    private final OutboundBudgetPolicy policy;
+    /** 阻塞超时(毫秒), 仅{@link OutboundBudgetPolicy#BLOCK}有效 */
+    private final long blockTimeoutMillis;
+
+    public OutboundBudget(long maxPendingBytes, OutboundBudgetPolicy policy, long blockTimeoutMillis) {
+        Preconditions.checkArgument(maxPendingBytes > 0, "maxPendingBytes must be greater than 0");
+        Preconditions.checkNotNull(policy, "policy must not null");
+        Preconditions.checkArgument(blockTimeoutMillis >= 0, "blockTimeoutMillis must be greater than or equal to 0");
+        this.maxPendingBytes = maxPendingBytes;
+        this.hardMaxPendingBytes = maxPendingBytes > Long.MAX_VALUE / HARD_LIMIT_MULTIPLE ? Long.MAX_VALUE : maxPendingBytes * HARD_LIMIT_MULTIPLE;
+        this.policy = policy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * 发送前检查预算
+     *
+     * @param channel  channel
+     * @param priority 消息优先级, 仅{@link OutboundBudgetPolicy#DROP_LOW_PRIORITY}有效
+     * @return 是否可以发送
+     */
+    public boolean tryAcquire(Channel channel, int priority) {
+        long pendingBytes = pendingBytes(channel);
+        if (pendingBytes <= maxPendingBytes) {
+            return true;
+        }
+
+        HITS.get(policy).increment();
+        log.debug("channel({}) outbound budget exceed {} bytes, policy: {}", channel.remoteAddress(), maxPendingBytes, policy);
+        switch (policy) {
+            case BLOCK:
+                return block(channel);
+            case DROP_LOW_PRIORITY:
+                if (pendingBytes > hardMaxPendingBytes) {
+                    //高优先级消息也不能无限积压
+                    log.debug("channel({}) outbound exceed hard limit {} bytes, drop message", channel.remoteAddress(), hardMaxPendingBytes);
+                    return false;
+                }
+                return priority > 0;
+            case CLOSE:
+                log.warn("channel({}) outbound budget exceed {} bytes, close slow consumer", channel.remoteAddress(), maxPendingBytes);
+                channel.close();
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 阻塞直到低于预算或超时
+     */
+    private boolean block(Channel channel) {
+        if (channel.eventLoop().inEventLoop()) {
+            //channel线程阻塞, 积压的字节永远写不出去
+            return false;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        while (channel.isActive() && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BLOCK_CHECK_INTERVAL_NANOS);
+            if (pendingBytes(channel) <= maxPendingBytes) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return channel outbound buffer积压的字节数
+     */
+    public static long pendingBytes(Channel channel) {
+        ChannelOutboundBuffer outboundBuffer = channel.unsafe().outboundBuffer();
+        return Objects.nonNull(outboundBuffer) ? outboundBuffer.totalPendingWriteBytes() : 0;
+    }
+
+    /**
+     * @return 指定策略下, 超出预算的次数
+     */
+    public static long getHitCount(OutboundBudgetPolicy policy) {
+        return HITS.get(policy).sum();
+    }
+
+    //getter
+    public long getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    public long getHardMaxPendingBytes() {
+        return hardMaxPendingBytes;
+    }
+
+    public OutboundBudgetPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getBlockTimeoutMillis() {
+        return blockTimeoutMillis;
+    }
+}
@@ -0,0 +1,30 @@
+package org.kin.transport.netty;
+
+/**
+ * 出站字节预算超出时的处理策略, 见{@link OutboundBudget}
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public enum OutboundBudgetPolicy {
+    /**
+     * 阻塞调用线程, 直到低于预算或超时, 超时则丢弃
+     * 在channel event loop中调用(比如在io线程处理协议时回复, 或者session组广播)时, 阻塞会导致积压的字节永远写不出去,
+     * 故超出预算直接拒绝, 同{@link #FAIL_FAST}, 需要等待的发送方应在业务线程发送
+     */
+    BLOCK,
+    /**
+     * 直接丢弃, 返回发送失败
+     */
+    FAIL_FAST,
+    /**
+     * 丢弃低优先级(协议优先级不大于0)的消息, 高优先级消息照常发送
+     * 但积压超出硬上限(预算的{@link OutboundBudget#HARD_LIMIT_MULTIPLE}倍)时, 高优先级消息同样丢弃
+     */
+    DROP_LOW_PRIORITY,
+    /**
+     * 关闭慢消费者的channel
+     */
+    CLOSE,
+    ;
+}
@@ -2,6 +2,8 @@ package org.kin.transport.netty;
 
 import io.netty.channel.ChannelHandlerContext;
 
+import java.util.List;
+
 /**
  * 协议层逻辑实现抽象
  *
@@ -25,6 +27,28 @@ public abstract class ProtocolHandler<MSG> {
      */
     public abstract void handle(ChannelHandlerContext ctx, MSG protocol);
 
+    /**
+     * 是否批量处理协议, 是则一次read过程中解析到的所有协议, 在read结束时一次性交给{@link #handleBatch}
+     * 适合合并锁, 数据库写和回包
+     */
+    public boolean isBatch() {
+        return false;
+    }
+
+    /**
+     * 批量处理一次read过程中解析到的协议, 需{@link #isBatch()}返回true
+     * 在channel线程调用, 配置了协议处理线程池则在其中调用
+     * 在channel线程调用时, protocols在channel内复用, 方法返回后不能再持有
+     *
+     * @param ctx       channel上下文
+     * @param protocols 协议, 按接收顺序
+     */
+    public void handleBatch(ChannelHandlerContext ctx, List<MSG> protocols) {
+        for (MSG protocol : protocols) {
+            handle(ctx, protocol);
+        }
+    }
+
     /**
      * channel有效
      * 在channel线程调用
@@ -43,6 +67,15 @@ public abstract class ProtocolHandler<MSG> {
     public void channelInactive(ChannelHandlerContext ctx) {
     }
 
+    /**
+     * channel可写状态变化, 即outbound buffer超过高水位或回落至低水位
+     * 在channel线程调用
+     *
+     * @param ctx channel上下文
+     */
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+    }
+
     /**
      * 异常处理
      * 在channel线程调用
@@ -0,0 +1,62 @@
+package org.kin.transport.netty;
+
+import io.netty.channel.DefaultMessageSizeEstimator;
+import io.netty.channel.MessageSizeEstimator;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
+import org.kin.transport.netty.socket.protocol.SocketProtocol;
+import org.kin.transport.netty.udp.UdpProtocolDetails;
+
+import java.util.Objects;
+
+/**
+ * 估算未编码协议的字节数
+ * <p>
+ * 非channel event loop线程write时, netty将write封装成task提交到event loop, 并按估算的字节数计入outbound buffer积压字节数,
+ * 默认估算器只能计算bytebuf, 协议实例只计8字节, 导致{@link OutboundBudget}看不到业务线程已提交但未编码的协议
+ * 故按协议codec计算编码后的字节数, 无法计算(比如增量编码协议)时仍使用默认估算
+ * <p>
+ * 仅在非channel event loop线程write协议时估算, event loop线程write时协议已在pipeline中编码, outbound buffer直接计算bytebuf
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public final class ProtocolSizeEstimator implements MessageSizeEstimator {
+    public static final ProtocolSizeEstimator INSTANCE = new ProtocolSizeEstimator();
+
+    /** 无状态, 共享handle */
+    private final Handle handle = new ProtocolSizeHandle();
+
+    private ProtocolSizeEstimator() {
+    }
+
+    @Override
+    public Handle newHandle() {
+        return handle;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    private static final class ProtocolSizeHandle implements Handle {
+        /** 非协议消息或者无法计算时使用 */
+        private final Handle defaultHandle = DefaultMessageSizeEstimator.DEFAULT.newHandle();
+
+        @Override
+        public int size(Object msg) {
+            SocketProtocol protocol = null;
+            if (msg instanceof SocketProtocol) {
+                protocol = (SocketProtocol) msg;
+            } else if (msg instanceof UdpProtocolDetails) {
+                protocol = ((UdpProtocolDetails) msg).getProtocol();
+            }
+            if (Objects.nonNull(protocol)) {
+                ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(protocol.getProtocolId());
+                if (Objects.nonNull(protocolInfo) && Objects.nonNull(protocolInfo.getCodec()) && !protocolInfo.isDelta()) {
+                    int size = protocolInfo.getCodec().sizeOf(protocol);
+                    if (size >= 0) {
+                        return size;
+                    }
+                }
+            }
+            return defaultHandle.size(msg);
+        }
+    }
+}
@@ -6,9 +6,11 @@ import io.netty.channel.ChannelHandlerContext;
 import org.kin.framework.JvmCloseCleaner;
 import org.kin.framework.concurrent.ExecutionContext;
 import org.kin.framework.log.LoggerOprs;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
 
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Future;
@@ -123,6 +125,16 @@ public final class ReconnectClient<MSG> extends Client<MSG> implements LoggerOpr
                 protocolHandler.handle(ctx, protocol);
             }
 
+            @Override
+            public boolean isBatch() {
+                return protocolHandler.isBatch();
+            }
+
+            @Override
+            public void handleBatch(ChannelHandlerContext ctx, List protocols) {
+                protocolHandler.handleBatch(ctx, protocols);
+            }
+
             @Override
             public void channelActive(ChannelHandlerContext ctx) {
                 protocolHandler.channelActive(ctx);
@@ -146,6 +158,11 @@ public final class ReconnectClient<MSG> extends Client<MSG> implements LoggerOpr
                 protocolHandler.channelInactive(ctx);
             }
 
+            @Override
+            public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+                protocolHandler.channelWritabilityChanged(ctx);
+            }
+
             @Override
             public void handleException(ChannelHandlerContext ctx, Throwable cause) {
                 protocolHandler.handleException(ctx, cause);
@@ -204,32 +221,68 @@ public final class ReconnectClient<MSG> extends Client<MSG> implements LoggerOpr
 
     @Override
     public boolean request(MSG msg) {
-        return request(msg, (ChannelFuture channelFuture) -> {
-            if (!channelFuture.isSuccess() && Objects.nonNull(queue)) {
-                //发送失败, 则缓存消息
-                queue.add(msg);
-            }
-        });
+        return request(msg, true);
     }
 
     @Override
     public boolean request(MSG msg, ChannelFutureListener... listeners) {
+        return request(msg, false, listeners);
+    }
+
+    /**
+     * 请求消息
+     * 缓存消息时, 发送期间额外retain一次bytebuf成员域, 发送失败仍可缓存补发, 发送成功才release
+     *
+     * @param cacheOnFailure 发送失败是否缓存消息
+     */
+    private boolean request(MSG msg, boolean cacheOnFailure, ChannelFutureListener... listeners) {
+        ProtocolFactory.handOffPayload(msg);
         if (Objects.nonNull(client)) {
-            if (!client.request(msg, listeners) && Objects.nonNull(queue)) {
+            if (Objects.isNull(queue)) {
+                client.request(msg, listeners);
+                return true;
+            }
+
+            ProtocolFactory.retainPayload(msg, 1);
+            ChannelFutureListener[] requestListeners = Arrays.copyOf(listeners, listeners.length + 1);
+            requestListeners[listeners.length] = (ChannelFuture channelFuture) -> {
+                if (!channelFuture.isSuccess() && cacheOnFailure) {
+                    //发送失败, 则缓存消息
+                    cache(msg);
+                } else {
+                    ProtocolFactory.releaseOutboundPayload(msg);
+                }
+            };
+            if (!client.request(msg, requestListeners)) {
                 //发送失败, 则缓存消息
-                queue.add(msg);
+                cache(msg);
             }
             return true;
         } else {
             if (Objects.nonNull(queue)) {
                 //链接还未建立, 则缓存消息
-                queue.add(msg);
+                cache(msg);
+            } else {
+                ProtocolFactory.releaseOutboundPayload(msg);
             }
         }
 
         return false;
     }
 
+    /**
+     * 缓存消息, 重连成功后补发, 缓存的消息持有bytebuf成员域
+     */
+    private void cache(MSG msg) {
+        try {
+            queue.add(msg);
+        } catch (IllegalStateException e) {
+            //缓存已满
+            ProtocolFactory.releaseOutboundPayload(msg);
+            throw e;
+        }
+    }
+
     @Override
     public String getLocalAddress() {
         if (Objects.nonNull(client)) {
@@ -3,17 +3,19 @@ package org.kin.transport.netty;
 import com.google.common.base.Preconditions;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
-import org.kin.framework.utils.SysUtils;
+import org.kin.transport.netty.utils.ChannelUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLException;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CountDownLatch;
@@ -22,6 +24,8 @@ import java.util.concurrent.TimeUnit;
 /**
  * server
  * 阻塞绑定端口
+ * <p>
+ * epoll下可以SO_REUSEPORT绑定多个监听socket, 每个独占一个boss event loop, 由内核把连接分散到各个监听socket
  *
  * @author huangjianqin
  * @date 2019/5/30
@@ -29,12 +33,12 @@ import java.util.concurrent.TimeUnit;
 public class Server extends ServerConnection {
     private static final Logger log = LoggerFactory.getLogger(Server.class);
 
-    /** selector线程池 */
-    private NioEventLoopGroup bossGroup;
+    /** selector线程池, 每个监听socket一个线程 */
+    private EventLoopGroup bossGroup;
     /** worker线程池 */
-    private NioEventLoopGroup workerGroup;
-    /** selector */
-    private volatile Channel selector;
+    private EventLoopGroup workerGroup;
+    /** 监听socket, SO_REUSEPORT下有多个 */
+    private volatile List<Channel> selectors = Collections.emptyList();
 
     public Server(AbstractTransportOption transportOption, ChannelHandlerInitializer channelHandlerInitializer) {
         super(transportOption, channelHandlerInitializer);
@@ -56,20 +60,29 @@ public class Server extends ServerConnection {
         Preconditions.checkArgument(channelOptions != null);
         Preconditions.checkArgument(channelHandlerInitializer != null);
 
-        //一半的CPU用于selector
-        this.bossGroup = new NioEventLoopGroup(SysUtils.CPU_NUM / 2 + 1);
+        TransportType transportType = transportOption.getTransportType().orFallback();
+        int acceptorNum = transportOption.getAcceptorNum();
+        if (acceptorNum > 1 && !TransportType.EPOLL.equals(transportType)) {
+            log.warn("SO_REUSEPORT acceptors require epoll, only bind one acceptor");
+            acceptorNum = 1;
+        }
+        //一个监听socket只会使用一个selector线程, 多出的线程永远空闲
+        this.bossGroup = transportType.eventLoopGroup(acceptorNum);
         //默认2倍cpu
-        this.workerGroup = new NioEventLoopGroup();
+        this.workerGroup = transportType.eventLoopGroup(0);
 
-        CountDownLatch latch = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(acceptorNum);
 
         //配置bootstrap
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.group(this.bossGroup, this.workerGroup).channel(NioServerSocketChannel.class);
+        bootstrap.group(this.bossGroup, this.workerGroup).channel(transportType.serverChannelClass());
 
         for (Map.Entry<ChannelOption, Object> entry : serverOptions.entrySet()) {
             bootstrap.option(entry.getKey(), entry.getValue());
         }
+        if (acceptorNum > 1) {
+            bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
 
         for (Map.Entry<ChannelOption, Object> entry : channelOptions.entrySet()) {
             bootstrap.childOption(entry.getKey(), entry.getValue());
@@ -89,6 +102,7 @@ public class Server extends ServerConnection {
         bootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel socketChannel) {
+                ChannelUtils.setWriteBufferWaterMark(socketChannel, transportOption);
                 ChannelPipeline pipeline = socketChannel.pipeline();
                 if (Objects.nonNull(sslCtx)) {
                     pipeline.addLast(sslCtx.newHandler(socketChannel.alloc()));
@@ -100,48 +114,75 @@ public class Server extends ServerConnection {
             }
         });
 
-        //绑定
-        ChannelFuture cf = bootstrap.bind(address);
-        cf.addListener((ChannelFuture channelFuture) -> {
-            if (channelFuture.isSuccess()) {
-                log.info("server connection binded: {}", address);
-                selector = channelFuture.channel();
-            }
-            latch.countDown();
-        });
+        //绑定, 每次bind都注册到boss group的下一个event loop
+        List<Channel> bound = new ArrayList<>(acceptorNum);
+        //绑定失败或超时后, 迟到的绑定结果直接关闭, 同步bound访问
+        boolean[] abandoned = {false};
+        for (int i = 0; i < acceptorNum; i++) {
+            ChannelFuture cf = bootstrap.bind(address);
+            cf.addListener((ChannelFuture channelFuture) -> {
+                if (channelFuture.isSuccess()) {
+                    synchronized (bound) {
+                        if (abandoned[0]) {
+                            log.warn("server connection binded after bind fail, close it: {}", address);
+                            channelFuture.channel().close();
+                        } else {
+                            log.info("server connection binded: {}", address);
+                            bound.add(channelFuture.channel());
+                        }
+                    }
+                }
+                latch.countDown();
+            });
+        }
 
         long connectTimeout = transportOption.getConnectTimeout();
+        boolean timeout = false;
         try {
             if (connectTimeout > 0) {
-                boolean success = latch.await(connectTimeout, TimeUnit.MILLISECONDS);
-                if (!success) {
-                    throw new ServerBindTimeoutException(address.toString());
-                }
+                timeout = !latch.await(connectTimeout, TimeUnit.MILLISECONDS);
             } else {
                 latch.await();
             }
         } catch (InterruptedException e) {
-
+            Thread.currentThread().interrupt();
         }
-        if (selector == null) {
-            throw new RuntimeException("server connection bind fail: " + address);
+        synchronized (bound) {
+            if (bound.size() < acceptorNum) {
+                //部分绑定失败或超时, 关闭已绑定的监听socket, 并释放线程池
+                abandoned[0] = true;
+                for (Channel channel : bound) {
+                    channel.close();
+                }
+                this.workerGroup.shutdownGracefully();
+                this.bossGroup.shutdownGracefully();
+                this.workerGroup = null;
+                this.bossGroup = null;
+                if (timeout) {
+                    throw new ServerBindTimeoutException(address.toString());
+                }
+                throw new RuntimeException("server connection bind fail: " + address);
+            }
+            selectors = new ArrayList<>(bound);
         }
     }
 
     @Override
     public void close() {
-        if (this.selector == null || this.workerGroup == null || this.bossGroup == null) {
+        if (this.selectors.isEmpty() || this.workerGroup == null || this.bossGroup == null) {
             return;
         }
 
         String addressStr = getAddress();
 
-        this.selector.close();
+        for (Channel selector : this.selectors) {
+            selector.close();
+        }
         this.workerGroup.shutdownGracefully();
         this.bossGroup.shutdownGracefully();
 
         //help gc
-        this.selector = null;
+        this.selectors = Collections.emptyList();
         this.workerGroup = null;
         this.bossGroup = null;
 
@@ -150,13 +191,30 @@ public class Server extends ServerConnection {
 
     @Override
     public String getAddress() {
-        InetSocketAddress address = (InetSocketAddress) selector.localAddress();
+        List<Channel> selectors = this.selectors;
+        if (selectors.isEmpty()) {
+            return "unknown";
+        }
+        //所有监听socket绑定同一地址
+        InetSocketAddress address = (InetSocketAddress) selectors.get(0).localAddress();
+        if (Objects.isNull(address)) {
+            return "unknown";
+        }
         return address.getHostName() + ":" + address.getPort();
     }
 
     @Override
     public boolean isActive() {
-        return Objects.nonNull(selector) && selector.isActive();
+        List<Channel> selectors = this.selectors;
+        if (selectors.isEmpty()) {
+            return false;
+        }
+        for (Channel selector : selectors) {
+            if (!selector.isActive()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -170,11 +228,11 @@ public class Server extends ServerConnection {
 
         Server that = (Server) o;
 
-        return Objects.equals(selector, that.selector);
+        return Objects.equals(selectors, that.selectors);
     }
 
     @Override
     public int hashCode() {
-        return selector != null ? selector.hashCode() : 0;
+        return selectors.hashCode();
     }
 }
@@ -22,6 +22,20 @@ public interface TransportProtocolTransfer<IN, MSG, OUT> {
      */
     Collection<OUT> encode(ChannelHandlerContext ctx, MSG msg) throws Exception;
 
+    /**
+     * 协议层数据write失败时回调, 用于回滚编码时更新的channel状态
+     * 默认不回调, 返回true才会监听write结果
+     */
+    default boolean isWriteFailureAware(MSG msg) {
+        return false;
+    }
+
+    /**
+     * 协议层数据write失败, 在channel event loop中调用
+     */
+    default void writeFailed(ChannelHandlerContext ctx, MSG msg, Throwable cause) {
+    }
+
     /**
      * @return IN 具体的Class
      */
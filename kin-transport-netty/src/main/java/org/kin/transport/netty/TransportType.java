@@ -0,0 +1,126 @@
+package org.kin.transport.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 底层io实现, 决定event loop group和channel类型
+ * <p>
+ * native实现不可用(非linux或者缺少native库)时, 回退到nio
+ * native实现特有的channel option(比如EpollChannelOption.SO_REUSEPORT, TCP_QUICKACK)通过transport option的channel option配置
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public enum TransportType {
+    /**
+     * jdk nio
+     */
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public EventLoopGroup eventLoopGroup(int nThreads) {
+            return new NioEventLoopGroup(nThreads);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> socketChannelClass() {
+            return NioSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> datagramChannelClass() {
+            return NioDatagramChannel.class;
+        }
+    },
+    /**
+     * linux epoll, 边缘触发, 减少selector唤醒产生的垃圾
+     */
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        public EventLoopGroup eventLoopGroup(int nThreads) {
+            return new EpollEventLoopGroup(nThreads);
+        }
+
+        @Override
+        public Class<? extends ServerChannel> serverChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> socketChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends Channel> datagramChannelClass() {
+            return EpollDatagramChannel.class;
+        }
+    },
+    ;
+
+    private static final Logger log = LoggerFactory.getLogger(TransportType.class);
+
+    /**
+     * @return 当前环境是否可用
+     */
+    public abstract boolean isAvailable();
+
+    /**
+     * @param nThreads 线程数, 0则使用netty默认值(2倍cpu)
+     * @return event loop group
+     */
+    public abstract EventLoopGroup eventLoopGroup(int nThreads);
+
+    /**
+     * @return tcp server channel类型
+     */
+    public abstract Class<? extends ServerChannel> serverChannelClass();
+
+    /**
+     * @return tcp client channel类型
+     */
+    public abstract Class<? extends Channel> socketChannelClass();
+
+    /**
+     * @return udp channel类型
+     */
+    public abstract Class<? extends Channel> datagramChannelClass();
+
+    /**
+     * @return 当前环境可用则返回自身, 否则回退到nio
+     */
+    public TransportType orFallback() {
+        if (isAvailable()) {
+            return this;
+        }
+        log.warn("transport type '{}' is unavailable, fallback to nio", name());
+        return NIO;
+    }
+}
@@ -1,11 +1,11 @@
 package org.kin.transport.netty.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 
-import java.io.ByteArrayInputStream;
 import java.util.List;
 
 /**
@@ -18,22 +18,16 @@ public class BZip2Decoder extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        byte[] bytes = new byte[in.readableBytes()];
-        in.readBytes(bytes);
-        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-        BZip2CompressorInputStream bzip2InputStream = new BZip2CompressorInputStream(bais);
+        //直接从in解压, 不经过byte[]中转
+        BZip2CompressorInputStream bzip2InputStream = new BZip2CompressorInputStream(new ByteBufInputStream(in));
         try {
             ByteBuf outByteBuf = ctx.alloc().buffer();
-            byte[] readBuf = new byte[1024];
-            //read bytes length
-            int readNum;
-            while ((readNum = bzip2InputStream.read(readBuf)) > 0) {
-                outByteBuf.writeBytes(readBuf, 0, readNum);
-            }
+            do {
+                outByteBuf.ensureWritable(1024);
+            } while (outByteBuf.writeBytes(bzip2InputStream, outByteBuf.writableBytes()) > 0);
             out.add(outByteBuf);
         } finally {
             bzip2InputStream.close();
-            bais.close();
         }
     }
 }
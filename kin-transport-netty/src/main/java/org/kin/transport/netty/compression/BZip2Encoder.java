@@ -1,11 +1,11 @@
 package org.kin.transport.netty.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 
-import java.io.ByteArrayOutputStream;
 
 /**
  * bzip2 compressor
@@ -16,16 +16,14 @@ import java.io.ByteArrayOutputStream;
 public class BZip2Encoder extends MessageToByteEncoder<ByteBuf> {
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
-        ByteArrayOutputStream baso = new ByteArrayOutputStream();
-        BZip2CompressorOutputStream bzip2Outputstream = new BZip2CompressorOutputStream(baso);
+        //直接压缩进out, 不经过byte[]中转
+        BZip2CompressorOutputStream bzip2Outputstream = new BZip2CompressorOutputStream(new ByteBufOutputStream(out));
         try {
             msg.readBytes(bzip2Outputstream, msg.readableBytes());
             bzip2Outputstream.finish();
             bzip2Outputstream.flush();
         } finally {
             bzip2Outputstream.close();
-            baso.close();
         }
-        out.writeBytes(baso.toByteArray());
     }
 }
@@ -0,0 +1,141 @@
+package org.kin.transport.netty.compression;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Adler32;
+
+/**
+ * 压缩字典, 按协议id注册, 由服务预置, 通信双方必须注册相同的字典
+ * <p>
+ * 小协议几乎压缩不了, 因为压缩算法没有足够的历史数据匹配, 预置字典提供了这部分历史数据
+ * 字典只能来源于服务预置的字典文件或者服务主动提供的非敏感样本({@link #train(int, List)}), 不会从连接的实际流量采样,
+ * 以免某个连接的数据经字典泄露给其他连接
+ * <p>
+ * 字典id为字典内容的adler32, 与zlib预置字典id一致, 字典内容不会随协议帧发送, 对端以字典id在本地注册的字典中定位
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public final class CompressionDictionaries {
+    /** 字典最大字节数, 不超过deflate窗口(32K) */
+    public static final int MAX_DICTIONARY_SIZE = 8 * 1024;
+
+    /** key -> 协议id, value -> 字典 */
+    private static final Map<Integer, Dictionary> PROTOCOL_DICTIONARIES = new ConcurrentHashMap<>();
+    /** key -> 字典id, value -> 字典 */
+    private static final Map<Integer, Dictionary> DICTIONARIES = new ConcurrentHashMap<>();
+
+    private CompressionDictionaries() {
+    }
+
+    /**
+     * @return 协议的字典, null则表示该协议没有预置字典
+     */
+    public static Dictionary get(int protocolId) {
+        return PROTOCOL_DICTIONARIES.get(protocolId);
+    }
+
+    /**
+     * @return 字典id对应的字典, null则表示本地没有注册该字典
+     */
+    public static Dictionary getById(int dictionaryId) {
+        return DICTIONARIES.get(dictionaryId);
+    }
+
+    /**
+     * 注册协议的预置字典
+     */
+    public static Dictionary register(int protocolId, byte[] bytes) {
+        Preconditions.checkArgument(Objects.nonNull(bytes) && bytes.length > 0, "dictionary must not be empty");
+        Preconditions.checkArgument(bytes.length <= MAX_DICTIONARY_SIZE,
+                "dictionary size must be less than or equal to " + MAX_DICTIONARY_SIZE);
+        Dictionary dictionary = new Dictionary(bytes.clone());
+        DICTIONARIES.put(dictionary.getId(), dictionary);
+        PROTOCOL_DICTIONARIES.put(protocolId, dictionary);
+        return dictionary;
+    }
+
+    /**
+     * 使用服务提供的非敏感样本训练协议的字典并注册
+     * 从最新的样本开始往前取, 去重, 直到字典满, 越靠近字典末尾匹配距离越短, 所以最新的样本放在最后
+     * 通信双方需使用相同的样本训练, 才能得到相同的字典
+     *
+     * @param samples 样本, 顺序由旧到新
+     */
+    public static Dictionary train(int protocolId, List<byte[]> samples) {
+        Preconditions.checkArgument(Objects.nonNull(samples) && !samples.isEmpty(), "samples must not be empty");
+
+        List<byte[]> picked = new ArrayList<>();
+        int size = 0;
+        for (int i = samples.size() - 1; i >= 0 && size < MAX_DICTIONARY_SIZE; i--) {
+            byte[] sample = samples.get(i);
+            boolean duplicate = false;
+            for (byte[] exist : picked) {
+                if (Arrays.equals(exist, sample)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (duplicate) {
+                continue;
+            }
+            picked.add(sample);
+            size += sample.length;
+        }
+
+        size = Math.min(size, MAX_DICTIONARY_SIZE);
+        byte[] bytes = new byte[size];
+        //最新的样本放在字典末尾
+        int offset = size;
+        for (byte[] sample : picked) {
+            int len = Math.min(sample.length, offset);
+            offset -= len;
+            System.arraycopy(sample, sample.length - len, bytes, offset, len);
+            if (offset == 0) {
+                break;
+            }
+        }
+        return register(protocolId, bytes);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 字典
+     */
+    public static final class Dictionary {
+        /** 字典id, 字典内容的adler32 */
+        private final int id;
+        /** 字典内容 */
+        private final byte[] bytes;
+
+        private Dictionary(byte[] bytes) {
+            this.id = id(bytes);
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return 字典id
+         */
+        public static int id(byte[] bytes) {
+            Adler32 adler32 = new Adler32();
+            adler32.update(bytes, 0, bytes.length);
+            return (int) adler32.getValue();
+        }
+
+        //getter
+        public int getId() {
+            return id;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.kin.transport.netty.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.ReferenceCountUtil;
+import org.kin.transport.netty.utils.VarIntUtils;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Inflater;
+
+/**
+ * 带预置字典的deflate decompressor, 格式见{@link DictionaryDeflateEncoder}
+ * <p>
+ * 每帧独立解压, 解压结果直接写入heap ByteBuf的backing array
+ * 原大小由对端声明, 不能超过协议体最大大小, 且解压结果必须与之一致
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class DictionaryDeflateDecoder extends ByteToMessageDecoder {
+    /** scratch数组常驻的最大字节数, 超过则用完即弃 */
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+    /** 解压后最大字节数 */
+    private final int maxSize;
+    private final Inflater inflater = new Inflater();
+    /** 数据源不是heap buffer时的拷贝数组, 复用 */
+    private byte[] scratch = new byte[0];
+    /** 校验数据流结尾用, 只写不读 */
+    private final byte[] probe = new byte[1];
+
+    /**
+     * @param maxSize 解压后最大字节数, 一般为协议体最大大小
+     */
+    public DictionaryDeflateDecoder(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int srcSize = VarIntUtils.readRawVarInt32(in);
+        if (srcSize < 0 || srcSize > maxSize) {
+            in.skipBytes(in.readableBytes());
+            throw new DecoderException(String.format("decompressed size[%s] exceed max size[%s]", srcSize, maxSize));
+        }
+
+        int compressedSize = in.readableBytes();
+        inflater.reset();
+        if (in.hasArray()) {
+            inflater.setInput(in.array(), in.arrayOffset() + in.readerIndex(), compressedSize);
+        } else {
+            byte[] input = scratch(compressedSize);
+            in.getBytes(in.readerIndex(), input, 0, compressedSize);
+            inflater.setInput(input, 0, compressedSize);
+        }
+        in.skipBytes(compressedSize);
+
+        ByteBuf outByteBuf = ctx.alloc().heapBuffer(srcSize, srcSize);
+        try {
+            while (outByteBuf.isWritable()) {
+                int read = inflater.inflate(outByteBuf.array(), outByteBuf.arrayOffset() + outByteBuf.writerIndex(), outByteBuf.writableBytes());
+                if (read > 0) {
+                    outByteBuf.writerIndex(outByteBuf.writerIndex() + read);
+                    continue;
+                }
+                if (inflater.needsDictionary()) {
+                    CompressionDictionaries.Dictionary dictionary = CompressionDictionaries.getById(inflater.getAdler());
+                    if (Objects.isNull(dictionary)) {
+                        throw new DecoderException("unknown compression dictionary id: " + inflater.getAdler());
+                    }
+                    inflater.setDictionary(dictionary.getBytes());
+                    continue;
+                }
+                if (inflater.finished() || inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (outByteBuf.readableBytes() == srcSize && !inflater.finished() && !inflater.needsDictionary()) {
+                //输出刚好写满时, inflater可能还没处理到数据流结尾, 多解压一次确认没有多余数据
+                if (inflater.inflate(probe) > 0) {
+                    throw new DecoderException(String.format("decompressed size exceed declared size[%s]", srcSize));
+                }
+            }
+            if (outByteBuf.readableBytes() != srcSize || !inflater.finished()) {
+                throw new DecoderException(String.format("decompressed size mismatch, expect %s, but %s, finished=%s",
+                        srcSize, outByteBuf.readableBytes(), inflater.finished()));
+            }
+        } catch (Exception e) {
+            ReferenceCountUtil.release(outByteBuf);
+            throw e;
+        }
+        out.add(outByteBuf);
+    }
+
+    /**
+     * @return 至少size大小的拷贝数组
+     */
+    private byte[] scratch(int size) {
+        if (scratch.length >= size) {
+            return scratch;
+        }
+        byte[] bytes = new byte[size];
+        if (size <= MAX_SCRATCH_SIZE) {
+            scratch = bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) throws Exception {
+        inflater.end();
+    }
+}
@@ -0,0 +1,90 @@
+package org.kin.transport.netty.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.kin.transport.netty.utils.VarIntUtils;
+
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * 带预置字典的deflate compressor, 字典见{@link CompressionDictionaries}
+ * <p>
+ * 每帧独立压缩, 直接在ByteBuf的backing array上读写, 不经过stream中转
+ * 格式: 原大小(varint) + zlib数据
+ * 字典内容不会发送给对端, 对端以zlib头部的字典id在本地注册的字典中定位
+ * <p>
+ * jdk8的deflater只支持byte[]输入, 数据源是direct buffer时只能拷贝到复用的scratch数组
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class DictionaryDeflateEncoder extends MessageToByteEncoder<ByteBuf> {
+    /** 压缩输出每次扩容的最小字节数 */
+    private static final int MIN_GROWTH = 256;
+    /** scratch数组常驻的最大字节数, 超过则用完即弃, 避免偶发的大帧长期占用内存 */
+    private static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+    private final Deflater deflater = new Deflater();
+    /** 数据源不是heap buffer时的拷贝数组, 复用 */
+    private byte[] scratch = new byte[0];
+
+    public DictionaryDeflateEncoder() {
+        //heap buffer, deflater直接读写backing array
+        super(false);
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) throws Exception {
+        return ctx.alloc().heapBuffer(msg.readableBytes() + MIN_GROWTH);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
+        int srcSize = msg.readableBytes();
+        //协议id
+        int protocolId = msg.getUnsignedShort(msg.readerIndex());
+        CompressionDictionaries.Dictionary dictionary = CompressionDictionaries.get(protocolId);
+
+        VarIntUtils.writeRawVarInt32(out, srcSize);
+        deflater.reset();
+        if (Objects.nonNull(dictionary)) {
+            deflater.setDictionary(dictionary.getBytes());
+        }
+
+        if (msg.hasArray()) {
+            deflater.setInput(msg.array(), msg.arrayOffset() + msg.readerIndex(), srcSize);
+        } else {
+            byte[] input = scratch(srcSize);
+            msg.getBytes(msg.readerIndex(), input, 0, srcSize);
+            deflater.setInput(input, 0, srcSize);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.ensureWritable(MIN_GROWTH);
+            int written = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(), out.writableBytes());
+            out.writerIndex(out.writerIndex() + written);
+        }
+        msg.skipBytes(srcSize);
+    }
+
+    /**
+     * @return 至少size大小的拷贝数组
+     */
+    private byte[] scratch(int size) {
+        if (scratch.length >= size) {
+            return scratch;
+        }
+        byte[] bytes = new byte[size];
+        if (size <= MAX_SCRATCH_SIZE) {
+            scratch = bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        deflater.end();
+    }
+}
@@ -1,11 +1,11 @@
 package org.kin.transport.netty.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
 
-import java.io.ByteArrayInputStream;
 import java.util.List;
 
 /**
@@ -18,22 +18,16 @@ public class FramedLZ4Decoder extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        byte[] bytes = new byte[in.readableBytes()];
-        in.readBytes(bytes);
-        ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-        FramedLZ4CompressorInputStream framedLZ4InputStream = new FramedLZ4CompressorInputStream(bais);
+        //直接从in解压, 不经过byte[]中转
+        FramedLZ4CompressorInputStream framedLZ4InputStream = new FramedLZ4CompressorInputStream(new ByteBufInputStream(in));
         try {
             ByteBuf outByteBuf = ctx.alloc().buffer();
-            byte[] readBuf = new byte[1024];
-            //read bytes length
-            int readNum;
-            while ((readNum = framedLZ4InputStream.read(readBuf)) > 0) {
-                outByteBuf.writeBytes(readBuf, 0, readNum);
-            }
+            do {
+                outByteBuf.ensureWritable(1024);
+            } while (outByteBuf.writeBytes(framedLZ4InputStream, outByteBuf.writableBytes()) > 0);
             out.add(outByteBuf);
         } finally {
             framedLZ4InputStream.close();
-            bais.close();
         }
     }
 }
@@ -1,11 +1,11 @@
 package org.kin.transport.netty.compression;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
 import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
 
-import java.io.ByteArrayOutputStream;
 
 /**
  * FramedLZ4 compressor
@@ -16,16 +16,14 @@ import java.io.ByteArrayOutputStream;
 public class FramedLZ4Encoder extends MessageToByteEncoder<ByteBuf> {
     @Override
     protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
-        ByteArrayOutputStream baso = new ByteArrayOutputStream();
-        FramedLZ4CompressorOutputStream framedLZ4Outputstream = new FramedLZ4CompressorOutputStream(baso);
+        //直接压缩进out, 不经过byte[]中转
+        FramedLZ4CompressorOutputStream framedLZ4Outputstream = new FramedLZ4CompressorOutputStream(new ByteBufOutputStream(out));
         try {
             msg.readBytes(framedLZ4Outputstream, msg.readableBytes());
             framedLZ4Outputstream.finish();
             framedLZ4Outputstream.flush();
         } finally {
             framedLZ4Outputstream.close();
-            baso.close();
         }
-        out.writeBytes(baso.toByteArray());
     }
 }
\ No newline at end of file
@@ -5,16 +5,22 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import org.kin.transport.netty.ProtocolHandler;
 import org.kin.transport.netty.socket.ProtocolRateLimiter;
+import org.kin.transport.netty.socket.protocol.LazyProtocol;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
 import org.kin.transport.netty.utils.ChannelUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * 协议层逻辑处理
+ * <p>
+ * 配置了{@link OrderedProtocolExecutor}, 则协议和channel active/inactive事件在其中按session顺序处理, 否则在io线程处理
+ * {@link ProtocolHandler#isBatch()}为true, 则一次read过程中的协议先收集起来, 在channelReadComplete时批量处理
+ * channel active事件被拒绝后, channel关闭前读到的协议, 以及已提交到lane的协议, 都直接丢弃, 不会交给{@link ProtocolHandler}
  *
  * @author huangjianqin
  * @date 2019/6/3
@@ -22,44 +28,203 @@ import java.util.List;
 public class ChannelProtocolHandler<MSG> extends ChannelInboundHandlerAdapter {
     private static final Logger log = LoggerFactory.getLogger(ChannelProtocolHandler.class);
     private final ProtocolHandler<MSG> protocolHandler;
+    /** 协议逻辑处理线程池, null则表示在io线程处理 */
+    private final OrderedProtocolExecutor executor;
+    /** 批量处理时, 本次read收集到的协议, channel内复用, null则表示不批量处理 */
+    private final List<MSG> batch;
+    /**
+     * channel active事件是否因协议处理线程池队列满被拒绝, 被拒绝则关闭channel, 丢弃协议, 且不再通知channel inactive事件
+     * 在io线程设置, lane中的协议处理task也会访问
+     */
+    private volatile boolean activeRejected;
 
     public ChannelProtocolHandler(ProtocolHandler<MSG> protocolHandler) {
+        this(protocolHandler, null);
+    }
+
+    public ChannelProtocolHandler(ProtocolHandler<MSG> protocolHandler, OrderedProtocolExecutor executor) {
         this.protocolHandler = protocolHandler;
+        this.executor = executor;
+        this.batch = protocolHandler.isBatch() ? new ArrayList<>() : null;
     }
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) {
-        //合并解包
-        List<MSG> protocols = new ArrayList<>();
+        boolean debug = log.isDebugEnabled();
         if (msg instanceof List) {
-            protocols.addAll((Collection<? extends MSG>) msg);
+            //合并解包
+            for (MSG protocol : (List<MSG>) msg) {
+                channelRead(ctx, protocol, debug);
+            }
+        } else {
+            channelRead(ctx, (MSG) msg, debug);
         }
-        protocols.add((MSG) msg);
+    }
 
-        for (MSG protocol : protocols) {
+    /**
+     * 处理单个协议
+     */
+    private void channelRead(ChannelHandlerContext ctx, MSG protocol, boolean debug) {
+        if (debug) {
             log.debug("Recv {} {}", protocol, ctx.channel().remoteAddress());
+        }
 
+        if (activeRejected) {
+            discard(protocol);
+            return;
+        }
+
+        if (Objects.nonNull(batch)) {
             //流控
             if (ProtocolRateLimiter.valid(protocol)) {
-                protocolHandler.handle(ctx, protocol);
+                batch.add(protocol);
             } else {
-                protocolHandler.rateLimitReject(ctx, protocol);
+                reject(ctx, protocol);
             }
+            return;
+        }
+
+        if (Objects.nonNull(executor)) {
+            executor.execute(ctx, protocol, () -> {
+                if (activeRejected) {
+                    discard(protocol);
+                    return;
+                }
+                handle(ctx, protocol);
+            }, () -> reject(ctx, protocol));
+        } else {
+            handle(ctx, protocol);
         }
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+        handleBatch(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    /**
+     * 批量处理本次read收集到的协议
+     */
+    private void handleBatch(ChannelHandlerContext ctx) {
+        if (Objects.isNull(batch) || batch.isEmpty()) {
+            return;
+        }
+
+        if (Objects.nonNull(executor)) {
+            //异步处理, 不能复用
+            List<MSG> protocols = new ArrayList<>(batch);
+            batch.clear();
+            executor.execute(ctx, null, () -> {
+                if (activeRejected) {
+                    for (MSG protocol : protocols) {
+                        discard(protocol);
+                    }
+                    return;
+                }
+                handleBatch(ctx, protocols);
+            }, () -> {
+                for (MSG protocol : protocols) {
+                    reject(ctx, protocol);
+                }
+            });
+        } else {
+            try {
+                handleBatch(ctx, batch);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 批量处理协议, 处理完release bytebuf成员域, 已转发的协议除外
+     */
+    private void handleBatch(ChannelHandlerContext ctx, List<MSG> protocols) {
+        try {
+            protocolHandler.handleBatch(ctx, protocols);
+        } finally {
+            for (MSG protocol : protocols) {
+                ProtocolFactory.releasePayload(protocol);
+            }
+        }
+    }
+
+    /**
+     * 处理协议
+     */
+    private void handle(ChannelHandlerContext ctx, MSG protocol) {
+        //流控
+        if (ProtocolRateLimiter.valid(protocol)) {
+            try {
+                protocolHandler.handle(ctx, protocol);
+            } finally {
+                //协议处理完, release bytebuf成员域, 处理时已转发(交给transport发送)的协议由transport release
+                ProtocolFactory.releasePayload(protocol);
+            }
+        } else {
+            reject(ctx, protocol);
+        }
+    }
+
+    /**
+     * 拒绝处理协议, 流控或者协议处理线程池队列满
+     */
+    private void reject(ChannelHandlerContext ctx, MSG protocol) {
+        protocolHandler.rateLimitReject(ctx, protocol);
+        discard(protocol);
+    }
+
+    /**
+     * 丢弃协议, release bytebuf成员域
+     */
+    private void discard(MSG protocol) {
+        if (protocol instanceof LazyProtocol) {
+            //被抛弃的延迟解析协议, 直接release
+            ((LazyProtocol) protocol).release();
+        }
+        ProtocolFactory.releasePayload(protocol);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
         log.info("channel active: {}", channel.remoteAddress());
-        protocolHandler.channelActive(ctx);
+        if (Objects.nonNull(executor)) {
+            //与协议同一lane, 保证先于该channel的协议处理
+            executor.execute(ctx, null, () -> protocolHandler.channelActive(ctx), () -> {
+                //不能在io线程直接执行, 否则会与lane中的事件乱序
+                log.warn("channel({}) active event rejected, protocol executor is busy, close it", channel.remoteAddress());
+                activeRejected = true;
+                ctx.close();
+            });
+        } else {
+            protocolHandler.channelActive(ctx);
+        }
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
         log.info("channel inactive: {}", channel.remoteAddress());
-        protocolHandler.channelInactive(ctx);
+        //处理还没处理的协议
+        handleBatch(ctx);
+        if (activeRejected) {
+            //没有通知channel active事件
+            return;
+        }
+        if (Objects.nonNull(executor)) {
+            //与协议同一lane, 保证在该channel的协议处理完后处理
+            executor.executeInactive(ctx, () -> protocolHandler.channelInactive(ctx));
+        } else {
+            protocolHandler.channelInactive(ctx);
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        protocolHandler.channelWritabilityChanged(ctx);
+        ctx.fireChannelWritabilityChanged();
     }
 
     @Override
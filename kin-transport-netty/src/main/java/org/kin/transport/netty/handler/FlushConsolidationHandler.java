@@ -0,0 +1,171 @@
+package org.kin.transport.netty.handler;
+
+import com.google.common.base.Preconditions;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并flush, 减少系统调用
+ * <p>
+ * 累计maxPendingWrites次write, 或者第一次flush请求后delayMicros微秒, 才真正flush
+ * read过程中的flush请求延迟至read结束时立即flush, 即请求-响应场景不会增加延迟
+ * channel不可写, 异常, 断开或关闭前也会立即flush
+ * <p>
+ * 需放在pipeline最前面, 以拦截后面所有handler的flush
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class FlushConsolidationHandler extends ChannelDuplexHandler {
+    /** 全局write次数 */
+    private static final LongAdder WRITES = new LongAdder();
+    /** 全局真正flush次数 */
+    private static final LongAdder FLUSHES = new LongAdder();
+
+    /** 累计多少次write则立即flush */
+    private final int maxPendingWrites;
+    /** 第一次flush请求后延迟多少微秒flush, 0则表示只按write次数和read结束flush */
+    private final long delayMicros;
+    /** 上次flush后的write次数 */
+    private int pendingWrites;
+    /** 是否有未执行的flush请求 */
+    private boolean flushPending;
+    /** 是否正在read */
+    private boolean readInProgress;
+    /** 延迟flush future */
+    private ScheduledFuture<?> flushFuture;
+
+    public FlushConsolidationHandler(int maxPendingWrites, long delayMicros) {
+        Preconditions.checkArgument(maxPendingWrites > 0, "maxPendingWrites must be greater than 0");
+        Preconditions.checkArgument(delayMicros >= 0, "delayMicros must be greater than or equal to 0");
+        this.maxPendingWrites = maxPendingWrites;
+        this.delayMicros = delayMicros;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        WRITES.increment();
+        pendingWrites++;
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingWrites >= maxPendingWrites) {
+            flushNow(ctx);
+            return;
+        }
+        flushPending = true;
+        if (readInProgress) {
+            //read结束时flush
+            return;
+        }
+        if (delayMicros > 0) {
+            if (flushFuture == null) {
+                flushFuture = ctx.executor().schedule(() -> {
+                    flushFuture = null;
+                    flushIfPending(ctx);
+                }, delayMicros, TimeUnit.MICROSECONDS);
+            }
+        } else {
+            flushNow(ctx);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        readInProgress = false;
+        flushIfPending(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            //尽快写出, 让channel恢复可写
+            flushIfPending(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        flushIfPending(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushIfPending(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfPending(ctx);
+    }
+
+    /**
+     * 有未执行的flush请求则立即flush
+     */
+    private void flushIfPending(ChannelHandlerContext ctx) {
+        if (flushPending) {
+            flushNow(ctx);
+        }
+    }
+
+    /**
+     * 立即flush
+     */
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        flushPending = false;
+        pendingWrites = 0;
+        FLUSHES.increment();
+        ctx.flush();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return 全局write次数
+     */
+    public static long getWriteCount() {
+        return WRITES.sum();
+    }
+
+    /**
+     * @return 全局真正flush次数
+     */
+    public static long getFlushCount() {
+        return FLUSHES.sum();
+    }
+
+    /**
+     * @return 全局平均每次write的flush次数, 越小合并效果越好
+     */
+    public static double getFlushesPerWrite() {
+        long writes = WRITES.sum();
+        return writes == 0 ? 0 : (double) FLUSHES.sum() / writes;
+    }
+}
@@ -0,0 +1,214 @@
+package org.kin.transport.netty.handler;
+
+import com.google.common.base.Preconditions;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import org.kin.transport.netty.udp.UdpProtocolDetails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 协议逻辑处理线程池, 不在io线程处理协议, 避免慢逻辑阻塞同一event loop上的所有channel
+ * <p>
+ * 按session分条带(lane), 每条lane单线程执行, 即同一session的协议按接收顺序处理
+ * tcp/websocket的session为channel, udp所有对端共用一个channel, session为对端地址
+ * <p>
+ * 每条lane的队列有界, 队列满则拒绝; 每个channel积压的协议数超过高水位则暂停读(autoRead=false),
+ * 降到低水位(高水位一半)以下再恢复读
+ * udp所有对端共用一个channel, 暂停读会影响所有对端, 故udp按对端地址统计积压, 超过高水位则拒绝该对端的协议, 不暂停读
+ * <p>
+ * channel inactive事件不能因lane队列满而在io线程直接执行(会先于队列中该channel的协议处理), 见{@link #executeInactive}
+ * lane线程空闲60s后回收, 不需要显式shutdown
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class OrderedProtocolExecutor {
+    private static final Logger log = LoggerFactory.getLogger(OrderedProtocolExecutor.class);
+    /** channel积压的未处理协议数 */
+    private static final AttributeKey<AtomicInteger> BACKLOG_KEY = AttributeKey.valueOf("OrderedProtocolExecutor.backlog");
+    /** udp channel各对端积压的未处理协议数 */
+    private static final AttributeKey<ConcurrentHashMap<InetSocketAddress, Integer>> SENDER_BACKLOG_KEY =
+            AttributeKey.valueOf("OrderedProtocolExecutor.senderBacklog");
+    /** channel inactive事件入队被拒绝后, 重试入队间隔(毫秒) */
+    private static final long INACTIVE_RETRY_MILLIS = 10;
+    private static final AtomicInteger EXECUTOR_COUNTER = new AtomicInteger();
+
+    /** lanes */
+    private final ThreadPoolExecutor[] lanes;
+    /** channel积压高水位 */
+    private final int highWater;
+    /** channel积压低水位 */
+    private final int lowWater;
+
+    public OrderedProtocolExecutor(int laneNum, int laneQueueSize, int highWater) {
+        Preconditions.checkArgument(laneNum > 0, "laneNum must be greater than 0");
+        Preconditions.checkArgument(laneQueueSize > 0, "laneQueueSize must be greater than 0");
+        Preconditions.checkArgument(highWater > 0, "highWater must be greater than 0");
+        this.highWater = highWater;
+        this.lowWater = highWater / 2;
+        this.lanes = new ThreadPoolExecutor[laneNum];
+        int executorId = EXECUTOR_COUNTER.incrementAndGet();
+        for (int i = 0; i < laneNum; i++) {
+            String threadName = "kin-protocol-executor-" + executorId + "-" + i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(laneQueueSize), r -> {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            lane.allowCoreThreadTimeOut(true);
+            lanes[i] = lane;
+        }
+    }
+
+    /**
+     * 在session所属的lane执行
+     *
+     * @param msg      协议, 用于定位session, 可以为null(即channel事件)
+     * @param task     逻辑
+     * @param rejected lane队列满或者udp对端积压过多时, 在io线程执行
+     */
+    public void execute(ChannelHandlerContext ctx, Object msg, Runnable task, Runnable rejected) {
+        Channel channel = ctx.channel();
+        ThreadPoolExecutor lane = lane(channel, msg);
+        if (msg instanceof UdpProtocolDetails) {
+            execute(channel, ((UdpProtocolDetails) msg).getSenderAddress(), lane, task, rejected);
+            return;
+        }
+
+        AtomicInteger backlog = backlog(channel);
+        //udp channel(比如批量处理或者channel事件)不暂停读
+        boolean pausable = !(channel instanceof DatagramChannel);
+        if (backlog.incrementAndGet() > highWater && pausable && channel.config().isAutoRead()) {
+            //暂停读, 让对端感知背压
+            channel.config().setAutoRead(false);
+            log.debug("channel({}) backlog exceed {}, pause reading", channel.remoteAddress(), highWater);
+            if (backlog.get() <= lowWater) {
+                //暂停读期间, lane已处理完积压协议, 但没有看到autoRead=false
+                channel.config().setAutoRead(true);
+            }
+        }
+        try {
+            lane.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    if (backlog.decrementAndGet() <= lowWater && pausable && !channel.config().isAutoRead()) {
+                        channel.config().setAutoRead(true);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backlog.decrementAndGet();
+            rejected.run();
+        }
+    }
+
+    /**
+     * udp协议按对端地址统计积压, 超过高水位则拒绝
+     */
+    private void execute(Channel channel, InetSocketAddress sender, ThreadPoolExecutor lane, Runnable task, Runnable rejected) {
+        ConcurrentHashMap<InetSocketAddress, Integer> senderBacklogs = senderBacklogs(channel);
+        if (senderBacklogs.merge(sender, 1, Integer::sum) > highWater) {
+            decrement(senderBacklogs, sender);
+            log.debug("udp sender({}) backlog exceed {}, reject", sender, highWater);
+            rejected.run();
+            return;
+        }
+        try {
+            lane.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    decrement(senderBacklogs, sender);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            decrement(senderBacklogs, sender);
+            rejected.run();
+        }
+    }
+
+    /**
+     * 对端积压数-1, 为0则移除该对端
+     */
+    private static void decrement(ConcurrentHashMap<InetSocketAddress, Integer> senderBacklogs, InetSocketAddress sender) {
+        senderBacklogs.computeIfPresent(sender, (k, v) -> v > 1 ? v - 1 : null);
+    }
+
+    /**
+     * 在channel所属的lane执行channel inactive事件
+     * channel已关闭, 不会再有该channel的协议入队, lane队列满时, 在event loop中定时重试入队, 保证在该channel已入队的协议处理完后执行
+     * event loop已关闭, 则只能在当前线程执行
+     */
+    public void executeInactive(ChannelHandlerContext ctx, Runnable task) {
+        execute(ctx, null, task, () -> {
+            try {
+                ctx.executor().schedule(() -> executeInactive(ctx, task), INACTIVE_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * @return session所属的lane
+     */
+    private ThreadPoolExecutor lane(Channel channel, Object msg) {
+        return lanes[(stripe(channel, msg) & Integer.MAX_VALUE) % lanes.length];
+    }
+
+    /**
+     * @return session条带key
+     */
+    private int stripe(Channel channel, Object msg) {
+        if (msg instanceof UdpProtocolDetails) {
+            return ((UdpProtocolDetails) msg).getSenderAddress().hashCode();
+        }
+        return channel.hashCode();
+    }
+
+    /**
+     * @return udp channel各对端积压的未处理协议数
+     */
+    private ConcurrentHashMap<InetSocketAddress, Integer> senderBacklogs(Channel channel) {
+        Attribute<ConcurrentHashMap<InetSocketAddress, Integer>> attr = channel.attr(SENDER_BACKLOG_KEY);
+        ConcurrentHashMap<InetSocketAddress, Integer> senderBacklogs = attr.get();
+        if (senderBacklogs == null) {
+            ConcurrentHashMap<InetSocketAddress, Integer> newSenderBacklogs = new ConcurrentHashMap<>();
+            senderBacklogs = attr.setIfAbsent(newSenderBacklogs);
+            if (senderBacklogs == null) {
+                senderBacklogs = newSenderBacklogs;
+            }
+        }
+        return senderBacklogs;
+    }
+
+    /**
+     * @return channel积压的未处理协议数
+     */
+    private AtomicInteger backlog(Channel channel) {
+        Attribute<AtomicInteger> attr = channel.attr(BACKLOG_KEY);
+        AtomicInteger backlog = attr.get();
+        if (backlog == null) {
+            AtomicInteger newBacklog = new AtomicInteger();
+            backlog = attr.setIfAbsent(newBacklog);
+            if (backlog == null) {
+                backlog = newBacklog;
+            }
+        }
+        return backlog;
+    }
+}
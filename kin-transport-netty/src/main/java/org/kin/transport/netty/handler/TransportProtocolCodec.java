@@ -1,6 +1,7 @@
 package org.kin.transport.netty.handler;
 
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToMessageCodec;
 import org.kin.transport.netty.TransportProtocolTransfer;
 
@@ -8,6 +9,8 @@ import java.util.List;
 
 /**
  * 传输层 <-> 协议层 数据转换
+ * <p>
+ * {@link TransportProtocolTransfer#isWriteFailureAware}的协议层数据, 监听write结果, 失败则回调{@link TransportProtocolTransfer#writeFailed}
  *
  * @author huangjianqin
  * @date 2019/5/29
@@ -21,6 +24,21 @@ public class TransportProtocolCodec<IN, MSG, OUT> extends MessageToMessageCodec<
         this.transfer = transfer;
     }
 
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!promise.isVoid() && acceptOutboundMessage(msg)) {
+            MSG protocol = (MSG) msg;
+            if (transfer.isWriteFailureAware(protocol)) {
+                promise.addListener(future -> {
+                    if (!future.isSuccess()) {
+                        transfer.writeFailed(ctx, protocol, future.cause());
+                    }
+                });
+            }
+        }
+        super.write(ctx, msg, promise);
+    }
+
     @Override
     protected void encode(ChannelHandlerContext ctx, MSG in, List<Object> out) throws Exception {
         out.addAll(transfer.encode(ctx, in));
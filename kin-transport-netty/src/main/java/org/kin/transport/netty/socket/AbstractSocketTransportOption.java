@@ -0,0 +1,104 @@
+package org.kin.transport.netty.socket;
+
+import io.netty.buffer.ByteBuf;
+import com.google.common.base.Preconditions;
+import org.kin.transport.netty.AbstractTransportOption;
+import org.kin.transport.netty.socket.handler.SocketFeature;
+import org.kin.transport.netty.socket.handler.SocketFrameCodec;
+import org.kin.transport.netty.socket.protocol.SocketProtocol;
+
+/**
+ * socket transport配置
+ *
+ * @author huangjianqin
+ * @date 2020/11/2
+ */
+public abstract class AbstractSocketTransportOption<O extends AbstractSocketTransportOption<O>>
+        extends AbstractTransportOption<ByteBuf, SocketProtocol, ByteBuf, O> {
+    /** 是否使用composite cumulator累积数据流, 适用于MB级别大包 */
+    protected boolean compositeCumulation;
+    /** 协议体最大大小 */
+    protected int maxBodySize = SocketFrameCodec.DEFAULT_MAX_BODY_SIZE;
+    /**
+     * 是否握手, 仅对client有效, server总是支持握手
+     * 握手成功后, 协议帧不再带魔数, 协议帧长度使用varint编码
+     */
+    protected boolean handshake;
+    /** 握手时声明的特性位掩码, client为期望的特性, server为支持的特性 */
+    protected int features;
+    /** 压缩阈值(字节), 小于该值的协议帧不压缩 */
+    protected int compressionThreshold = 128;
+    /** 协议压缩率(压缩后/压缩前)大于该值则不再压缩该协议, 定期重新试压 */
+    protected double compressionMaxRatio = 0.9;
+
+    //getter
+    public boolean isCompositeCumulation() {
+        return compositeCumulation;
+    }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public boolean isHandshake() {
+        return handshake;
+    }
+
+    public int getFeatures() {
+        return features;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public double getCompressionMaxRatio() {
+        return compressionMaxRatio;
+    }
+
+    //------------------------------------------------------builder------------------------------------------------------
+    public static class SocketTransportOptionBuilder<O extends AbstractSocketTransportOption<O>>
+            extends TransportOptionBuilder<ByteBuf, SocketProtocol, ByteBuf, O> {
+        public SocketTransportOptionBuilder(O transportOption) {
+            super(transportOption);
+        }
+
+        public SocketTransportOptionBuilder<O> compositeCumulation() {
+            transportOption.compositeCumulation = true;
+            return this;
+        }
+
+        public SocketTransportOptionBuilder<O> maxBodySize(int maxBodySize) {
+            Preconditions.checkArgument(maxBodySize > 0, "maxBodySize must be greater than 0");
+            transportOption.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        /**
+         * 压缩阈值(字节), 小于该值的协议帧不压缩
+         */
+        public SocketTransportOptionBuilder<O> compressionThreshold(int compressionThreshold) {
+            Preconditions.checkArgument(compressionThreshold >= 0, "compressionThreshold must be greater than or equal to 0");
+            transportOption.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * 协议压缩率(压缩后/压缩前)大于该值则不再压缩该协议
+         */
+        public SocketTransportOptionBuilder<O> compressionMaxRatio(double compressionMaxRatio) {
+            Preconditions.checkArgument(compressionMaxRatio > 0, "compressionMaxRatio must be greater than 0");
+            transportOption.compressionMaxRatio = compressionMaxRatio;
+            return this;
+        }
+
+        /**
+         * 开启握手, 并声明特性
+         */
+        public SocketTransportOptionBuilder<O> handshake(SocketFeature... features) {
+            transportOption.handshake = true;
+            transportOption.features = SocketFeature.mask(features);
+            return this;
+        }
+    }
+}
@@ -4,18 +4,14 @@ import com.google.common.util.concurrent.RateLimiter;
 import org.kin.transport.netty.socket.protocol.ProtocolFactory;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
- * 协议流控缓存
+ * 协议流控
+ * 限流器与协议信息一同初始化, 见{@link ProtocolFactory}
  *
  * @author huangjianqin
  * @date 2019-09-17
  */
 public class ProtocolRateLimiter {
-    private static final Map<Integer, RateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
-
     private ProtocolRateLimiter() {
     }
 
@@ -25,13 +21,9 @@ public class ProtocolRateLimiter {
     public static boolean valid(Object protocol) {
         if (protocol instanceof SocketProtocol) {
             int protocolId = ((SocketProtocol) protocol).getProtocolId();
-            long rate = ProtocolFactory.getProtocolRate(protocolId);
-            if (rate > 0) {
-                RateLimiter rateLimiter = RATE_LIMITERS.computeIfAbsent(protocolId, k -> RateLimiter.create(rate));
-
-                if (!rateLimiter.tryAcquire()) {
-                    return false;
-                }
+            RateLimiter rateLimiter = ProtocolFactory.getProtocolRateLimiter(protocolId);
+            if (rateLimiter != null && !rateLimiter.tryAcquire()) {
+                return false;
             }
         }
         return true;
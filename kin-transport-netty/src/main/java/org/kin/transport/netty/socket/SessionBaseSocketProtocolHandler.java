@@ -48,11 +48,31 @@ public abstract class SessionBaseSocketProtocolHandler<S extends AbstractSession
         }
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        Channel channel = ctx.channel();
+        S session = session(channel);
+        if (Objects.isNull(session)) {
+            return;
+        }
+        boolean writable = channel.isWritable();
+        if (writable) {
+            //发送积压的合并发送协议
+            session.drainConflations();
+        }
+        session.onWritabilityChanged(writable);
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         Channel channel = ctx.channel();
         Attribute<S> attr = channel.attr(SESSION_KEY);
         if (Objects.nonNull(attr)) {
+            S session = attr.get();
+            if (Objects.nonNull(session) && session.getChannel() == channel) {
+                //合并发送队列不会再发送
+                session.discardConflations();
+            }
             attr.remove();
         }
     }
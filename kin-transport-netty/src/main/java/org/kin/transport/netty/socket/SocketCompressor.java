@@ -1,36 +1,227 @@
 package org.kin.transport.netty.socket;
 
+import io.netty.buffer.AbstractByteBufAllocator;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.MessageToByteEncoder;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
 import org.kin.transport.netty.CompressionType;
+import org.kin.transport.netty.socket.handler.SocketFrameCodec;
+
+import java.util.Objects;
 
 /**
- * out -> 根据指定类型对数据源进行压缩
+ * out -> 逐帧决定是否压缩, 并写入该帧实际的压缩类型
+ * <p>
+ * 小于阈值的帧不压缩; 大于阈值的帧, 仅当该协议的压缩率(压缩后/压缩前)不大于配置值时才压缩,
+ * 压缩率不理想的协议每隔{@link #PROBE_INTERVAL}帧重新试压一次, 以适应协议内容的变化
+ * <p>
+ * 压缩encoder是有状态的流式encoder, 压缩后的帧必须按顺序发送, 对端逐帧按压缩类型解压, 未压缩的帧不影响压缩流
+ * <p>
+ * 若数据源readerIndex前预留了空间(see {@link SocketTransfer#encode}), 则直接回填压缩类型, 不需要拷贝
+ * 压缩后的帧同样预留了空间(see {@link HeadroomAllocator}), 即压缩本身是唯一一次拷贝
  *
  * @author huangjianqin
  * @date 2020/9/29
  */
 class SocketCompressor extends ChannelOutboundHandlerAdapter {
+    /** 压缩率不理想的协议, 每隔多少帧重新试压一次 */
+    private static final int PROBE_INTERVAL = 64;
+    /** 压缩率平滑系数 */
+    private static final double RATIO_ALPHA = 0.2;
+
     /** 压缩类型 */
     private final CompressionType compressionType;
+    /** 压缩阈值(字节), 小于该值的帧不压缩 */
+    private final int threshold;
+    /** 压缩率(压缩后/压缩前)大于该值则认为不值得压缩 */
+    private final double maxRatio;
+    /** 包装压缩encoder, 同步获取压缩结果, lazy init */
+    private EmbeddedChannel compressionChannel;
+    /** key -> 协议id, value -> 该协议的压缩率统计, 仅在channel event loop中访问 */
+    private final IntObjectHashMap<CompressionRatio> ratios = new IntObjectHashMap<>();
 
-    public SocketCompressor(CompressionType compressionType) {
+    public SocketCompressor(CompressionType compressionType, int threshold, double maxRatio) {
         this.compressionType = compressionType;
+        this.threshold = threshold;
+        this.maxRatio = maxRatio;
     }
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
         if (!(msg instanceof ByteBuf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf in = (ByteBuf) msg;
+        CompressionRatio ratio = null;
+        if (!CompressionType.NONE.equals(compressionType) && in.isReadable() && in.readableBytes() >= threshold) {
+            //协议id
+            int protocolId = in.getUnsignedShort(in.readerIndex());
+            ratio = ratios.get(protocolId);
+            if (Objects.isNull(ratio)) {
+                ratio = new CompressionRatio();
+                ratios.put(protocolId, ratio);
+            }
+            if (!ratio.tryCompress(maxRatio)) {
+                ratio = null;
+            }
+        }
+
+        if (Objects.nonNull(ratio)) {
+            int srcReaderIndex = in.readerIndex();
+            int srcSize = in.readableBytes();
+            //压缩会release数据源, 保留一份引用, 以便压缩encoder输出为空时按不压缩发送
+            in.retain();
+            ByteBuf compressed;
+            try {
+                compressed = compress(ctx, in);
+            } catch (Exception e) {
+                ReferenceCountUtil.release(in);
+                throw e;
+            }
+            int compressedSize = compressed.readableBytes();
+            if (compressedSize > 0) {
+                ReferenceCountUtil.release(in);
+                ratio.update((double) compressedSize / srcSize);
+                write(ctx, compressed, compressionType, promise);
+            } else {
+                //压缩encoder输出为空(Unpooled.EMPTY_BUFFER), 不能标记为压缩帧, 按不压缩发送数据源
+                ReferenceCountUtil.release(compressed);
+                //压缩encoder已读取数据源, 恢复readerIndex
+                in.readerIndex(srcReaderIndex);
+                write(ctx, in, CompressionType.NONE, promise);
+            }
+        } else {
+            write(ctx, in, CompressionType.NONE, promise);
+        }
+    }
+
+    /**
+     * 写入压缩类型, 并往下传递
+     */
+    private void write(ChannelHandlerContext ctx, ByteBuf in, CompressionType frameCompressionType, ChannelPromise promise) {
+        int readerIndex = in.readerIndex();
+        if (readerIndex > 0) {
+            //回填压缩类型
+            in.setByte(readerIndex - 1, frameCompressionType.getId());
+            in.readerIndex(readerIndex - 1);
+            ctx.write(in, promise);
             return;
         }
-        ByteBuf out = ctx.alloc().buffer();
-        out.writeByte(compressionType.getId());
-        out.writeBytes((ByteBuf) msg);
 
-        ReferenceCountUtil.retain(out);
+        //没有预留空间(比如上层未预留), 则拷贝一次, 并为协议帧头部预留空间
+        ByteBuf out;
+        try {
+            out = ctx.alloc().directBuffer(SocketFrameCodec.FRAME_HEADROOM + in.readableBytes());
+            out.setIndex(SocketFrameCodec.FRAME_HEADROOM - 1, SocketFrameCodec.FRAME_HEADROOM - 1);
+            out.writeByte(frameCompressionType.getId());
+            out.writeBytes(in);
+        } finally {
+            ReferenceCountUtil.release(in);
+        }
         ctx.write(out, promise);
     }
+
+    /**
+     * 同步压缩, 会release数据源
+     * 压缩encoder使用{@link HeadroomAllocator}分配输出buffer, 输出前预留了协议帧头部空间, 不需要再拷贝
+     */
+    private ByteBuf compress(ChannelHandlerContext ctx, ByteBuf in) {
+        if (Objects.isNull(compressionChannel)) {
+            MessageToByteEncoder<ByteBuf> encoder = compressionType.encoder();
+            compressionChannel = new EmbeddedChannel(encoder);
+            compressionChannel.config().setAllocator(new HeadroomAllocator(ctx.alloc()));
+        }
+        compressionChannel.writeOutbound(in);
+        //MessageToByteEncoder一个输入对应一个输出
+        return compressionChannel.readOutbound();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (Objects.nonNull(compressionChannel)) {
+            compressionChannel.finish();
+            Object remain;
+            while (Objects.nonNull(remain = compressionChannel.readOutbound())) {
+                ReferenceCountUtil.release(remain);
+            }
+            compressionChannel = null;
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 分配的buffer在readerIndex前预留协议帧头部空间, 压缩encoder从writerIndex开始写入, 输出可直接回填压缩类型和协议帧头部
+     */
+    private static class HeadroomAllocator extends AbstractByteBufAllocator {
+        /** 实际分配buffer的allocator, 即channel的allocator */
+        private final ByteBufAllocator delegate;
+
+        HeadroomAllocator(ByteBufAllocator delegate) {
+            super(true);
+            this.delegate = delegate;
+        }
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            return reserve(delegate.heapBuffer(SocketFrameCodec.FRAME_HEADROOM + initialCapacity, withHeadroom(maxCapacity)));
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+            return reserve(delegate.directBuffer(SocketFrameCodec.FRAME_HEADROOM + initialCapacity, withHeadroom(maxCapacity)));
+        }
+
+        @Override
+        public boolean isDirectBufferPooled() {
+            return delegate.isDirectBufferPooled();
+        }
+
+        private static int withHeadroom(int maxCapacity) {
+            return maxCapacity > Integer.MAX_VALUE - SocketFrameCodec.FRAME_HEADROOM ? Integer.MAX_VALUE : maxCapacity + SocketFrameCodec.FRAME_HEADROOM;
+        }
+
+        private static ByteBuf reserve(ByteBuf byteBuf) {
+            return byteBuf.setIndex(SocketFrameCodec.FRAME_HEADROOM, SocketFrameCodec.FRAME_HEADROOM);
+        }
+    }
+
+    /**
+     * 协议压缩率统计
+     */
+    private static class CompressionRatio {
+        /** 平滑后的压缩率, 初始为0, 即先试压 */
+        private double ratio;
+        /** 跳过压缩的帧数 */
+        private int skipped;
+
+        /**
+         * @return 本帧是否压缩
+         */
+        boolean tryCompress(double maxRatio) {
+            if (ratio <= maxRatio) {
+                return true;
+            }
+            if (++skipped >= PROBE_INTERVAL) {
+                //试压
+                skipped = 0;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 更新压缩率
+         */
+        void update(double frameRatio) {
+            ratio = ratio == 0 ? frameRatio : ratio + RATIO_ALPHA * (frameRatio - ratio);
+        }
+    }
 }
@@ -1,30 +1,36 @@
 package org.kin.transport.netty.socket;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
-import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
 import io.netty.util.ReferenceCountUtil;
 import org.kin.transport.netty.CompressionType;
+import org.kin.transport.netty.socket.handler.SocketHandshake;
 
 import java.util.Objects;
-import java.util.concurrent.TimeUnit;
 
 /**
  * in -> 根据请求的压缩类型对数据进行解压缩
+ * <p>
+ * 每个channel一个{@link EmbeddedChannel}数组, 下标为压缩类型id, 首次遇到该压缩类型时才创建
+ * 解压decoder是有状态的流式decoder, 运行在独立的EmbeddedChannel中, 与channel同生命周期, 使用channel的allocator分配输出buffer,
+ * channel移除本handler时, 同时关闭EmbeddedChannel, 释放decoder累积的数据
+ * 未知的压缩类型直接抛异常
  *
  * @author huangjianqin
  * @date 2020/9/29
  */
 class SocketDecompressor extends SimpleChannelInboundHandler<ByteBuf> {
-    /** decoder缓存, 软引用, 30min空闲移除 */
-    private Cache<CompressionType, ByteToMessageDecoder> decoderCache =
-            CacheBuilder.newBuilder()
-                    .softValues()
-                    .expireAfterAccess(30, TimeUnit.MINUTES)
-                    .build();
+    /** 下标为压缩类型id, 包装解压decoder, lazy init */
+    private final EmbeddedChannel[] decompressionChannels = new EmbeddedChannel[CompressionType.idBound()];
+    /** 本端协议体最大大小, 限制解压后大小 */
+    private final int maxBodySize;
+
+    SocketDecompressor(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
 
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, ByteBuf in) throws Exception {
@@ -32,16 +38,48 @@ class SocketDecompressor extends SimpleChannelInboundHandler<ByteBuf> {
         int compressionId = in.readByte();
         CompressionType compressionType = CompressionType.getById(compressionId);
         if (Objects.isNull(compressionType)) {
+            throw new DecoderException("unknown compression type id: " + compressionId);
+        }
+
+        if (CompressionType.NONE.equals(compressionType)) {
+            ctx.fireChannelRead(in.retain());
             return;
         }
 
-        ReferenceCountUtil.retain(in);
+        EmbeddedChannel decompressionChannel = decompressionChannels[compressionId];
+        if (Objects.isNull(decompressionChannel)) {
+            decompressionChannel = new EmbeddedChannel(compressionType.decoder(maxBodySize(ctx)));
+            decompressionChannel.config().setAllocator(ctx.alloc());
+            decompressionChannels[compressionId] = decompressionChannel;
+        }
+        //由EmbeddedChannel中的decoder release
+        decompressionChannel.writeInbound(in.retain());
+        Object decompressed;
+        while (Objects.nonNull(decompressed = decompressionChannel.readInbound())) {
+            ctx.fireChannelRead(decompressed);
+        }
+    }
+
+    /**
+     * @return 协议体最大大小, 握手成功则为协商结果
+     */
+    private int maxBodySize(ChannelHandlerContext ctx) {
+        SocketHandshake handshake = ctx.channel().attr(SocketHandshake.HANDSHAKE_KEY).get();
+        return Objects.nonNull(handshake) ? handshake.getMaxBodySize() : maxBodySize;
+    }
 
-        if (!CompressionType.NONE.equals(compressionType)) {
-            ByteToMessageDecoder decoder = decoderCache.get(compressionType, compressionType::decoder);
-            decoder.channelRead(ctx, in);
-        } else {
-            ctx.fireChannelRead(in);
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        for (int i = 0; i < decompressionChannels.length; i++) {
+            EmbeddedChannel decompressionChannel = decompressionChannels[i];
+            if (Objects.nonNull(decompressionChannel)) {
+                decompressionChannels[i] = null;
+                decompressionChannel.finish();
+                Object remain;
+                while (Objects.nonNull(remain = decompressionChannel.readInbound())) {
+                    ReferenceCountUtil.release(remain);
+                }
+            }
         }
     }
 }
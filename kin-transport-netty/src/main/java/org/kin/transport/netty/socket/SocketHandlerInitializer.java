@@ -2,16 +2,14 @@ package org.kin.transport.netty.socket;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandler;
-import io.netty.handler.codec.MessageToByteEncoder;
 import org.kin.transport.netty.AbstractChannelHandlerInitializer;
-import org.kin.transport.netty.AbstractTransportOption;
 import org.kin.transport.netty.socket.handler.SocketFrameCodec;
+import org.kin.transport.netty.socket.handler.SocketHandshake;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * socket channel handler初始化
@@ -19,7 +17,7 @@ import java.util.Objects;
  * @author huangjianqin
  * @date 2019-09-12
  */
-public class SocketHandlerInitializer<O extends AbstractTransportOption<ByteBuf, SocketProtocol, ByteBuf, O>>
+public class SocketHandlerInitializer<O extends AbstractSocketTransportOption<O>>
         extends AbstractChannelHandlerInitializer<ByteBuf, SocketProtocol, ByteBuf, O> {
     private final boolean serverElseClient;
 
@@ -31,18 +29,18 @@ public class SocketHandlerInitializer<O extends AbstractTransportOption<ByteBuf,
     @Override
     protected Collection<ChannelHandler> firstHandlers() {
         List<ChannelHandler> channelHandlers = new ArrayList<>(super.firstHandlers());
-        if (serverElseClient) {
-            channelHandlers.add(SocketFrameCodec.serverFrameCodec());
-        } else {
-            channelHandlers.add(SocketFrameCodec.clientFrameCodec());
-        }
-        //处理压缩
-        channelHandlers.add(new SocketDecompressor());
-        channelHandlers.add(new SocketCompressor(transportOption.getCompressionType()));
-        MessageToByteEncoder<ByteBuf> compressionEncoder = transportOption.getCompressionType().encoder();
-        if (Objects.nonNull(compressionEncoder)) {
-            channelHandlers.add(compressionEncoder);
+        //server总是支持握手, client按配置
+        SocketHandshake localHandshake = null;
+        if (serverElseClient || transportOption.isHandshake()) {
+            localHandshake = new SocketHandshake(SocketHandshake.VERSION, transportOption.getMaxBodySize(),
+                    transportOption.getFeatures());
         }
+        channelHandlers.add(new SocketFrameCodec(transportOption.getMaxBodySize(), serverElseClient,
+                transportOption.isCompositeCumulation(), localHandshake));
+        //处理压缩, 逐帧决定是否压缩
+        channelHandlers.add(new SocketDecompressor(transportOption.getMaxBodySize()));
+        channelHandlers.add(new SocketCompressor(transportOption.getCompressionType(),
+                transportOption.getCompressionThreshold(), transportOption.getCompressionMaxRatio()));
 
         return channelHandlers;
     }
@@ -1,22 +1,30 @@
 package org.kin.transport.netty.socket;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
 import io.netty.util.ReferenceCountUtil;
 import org.kin.framework.log.LoggerOprs;
 import org.kin.transport.netty.TransportProtocolTransfer;
+import org.kin.transport.netty.socket.handler.SocketFeature;
+import org.kin.transport.netty.socket.handler.SocketFrameCodec;
+import org.kin.transport.netty.socket.handler.SocketHandshake;
 import org.kin.transport.netty.socket.protocol.*;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 
 /**
  * socket协议转换
  * bytebuf <-> 协议类
  * <p>
  * 基于{@link ProtocolFactory}
+ * <p>
+ * encode时直接写入预留了协议帧头部空间的池化direct bytebuf, 由{@link SocketFrameCodec}等下游handler回填头部
+ * 握手协商了{@link SocketFeature#STRING_DICTIONARY}, 编解码时使用channel绑定的字符串字典
+ * 增量编码协议({@link Protocol#delta()})使用channel绑定的快照{@link DeltaSnapshots}编解码, write失败则resync
+ * 广播时, 协议只编码一次({@link #encodeShared}), 不依赖channel状态
  *
  * @author huangjianqin
  * @date 2019/7/4
@@ -31,42 +39,196 @@ public class SocketTransfer implements TransportProtocolTransfer<ByteBuf, Socket
 
     @Override
     public Collection<SocketProtocol> decode(ChannelHandlerContext ctx, ByteBuf in) {
-        SocketRequestOprs byteBufRequest = new SocketProtocolByteBuf(in);
+        //一次数组访问获取协议信息
+        ProtocolFactory.ProtocolInfo protocolInfo = getProtocolInfo(in.getUnsignedShort(in.readerIndex()));
+        if (protocolInfo.isLazy()) {
+            //延迟解析, 持有协议帧bytebuf, 由使用者release
+            int contentSize = in.readableBytes() - 2;
+            SocketProtocol protocol = protocolInfo.createLazyProtocol(in.retainedSlice());
+            statisticReceive(protocolInfo.getStatisticKey(), contentSize);
+            return Collections.singleton(protocol);
+        }
+
+        SocketProtocolByteBuf byteBufRequest = new SocketProtocolByteBuf(in);
+        if (protocolInfo.isDelta()) {
+            //增量编码, 合并至channel绑定的快照
+            SocketProtocol protocol = deltaSnapshots(ctx).read(protocolInfo, byteBufRequest);
+            statisticReceive(protocolInfo.getStatisticKey(), byteBufRequest.getContentSize());
+            return Collections.singleton(protocol);
+        }
+        if (isDictionaryNegotiated(ctx)) {
+            byteBufRequest.dictionary(dictionary(ctx));
+        }
         //将ProtocolByteBuf解析为AbstractProtocol
-        SocketProtocol protocol = ProtocolFactory.createProtocol(byteBufRequest.getProtocolId());
-        ProtocolCodecs.codec(protocol.getClass()).read(byteBufRequest, protocol);
+        SocketProtocol protocol = protocolInfo.createProtocol();
+        protocolInfo.getCodec().read(byteBufRequest, protocol);
+        statisticReceive(protocolInfo.getStatisticKey(), byteBufRequest.getContentSize());
+
+        return Collections.singleton(protocol);
+    }
+
+    /**
+     * 接收协议统计
+     */
+    private void statisticReceive(String statisticKey, int contentSize) {
         if (serverElseClient) {
             //server receive request
-            ProtocolStatisicService.instance()
-                    .statisticReq(byteBufRequest.getProtocolId() + "", byteBufRequest.getContentSize());
+            ProtocolStatisicService.instance().statisticReq(statisticKey, contentSize);
         } else {
             //client receive response
-            ProtocolStatisicService.instance()
-                    .statisticResp(byteBufRequest.getProtocolId() + "", byteBufRequest.getContentSize());
+            ProtocolStatisicService.instance().statisticResp(statisticKey, contentSize);
         }
-
-        return Collections.singleton(protocol);
     }
 
     @Override
     public Collection<ByteBuf> encode(ChannelHandlerContext ctx, SocketProtocol msg) {
-        List<ByteBuf> out = new ArrayList<>();
-
-        SocketProtocolByteBuf protocolByteBuf = (SocketProtocolByteBuf) ProtocolCodecs.codec(msg.getClass()).write(msg);
-        ByteBuf outByteBuf = protocolByteBuf.getByteBuf();
-        out.add(outByteBuf);
+        int protocolId = msg.getProtocolId();
+        ProtocolFactory.ProtocolInfo protocolInfo = getProtocolInfo(protocolId);
+        ProtocolCodec<?> codec = protocolInfo.getCodec();
+        //预留协议帧头部空间, 下游handler直接回填, 不用再拷贝
+        int size = protocolInfo.isDelta() ? -1 : codec.sizeOf(msg);
+        ByteBuf outByteBuf = size > 0 ?
+                ctx.alloc().directBuffer(SocketFrameCodec.FRAME_HEADROOM + size) :
+                ctx.alloc().directBuffer();
+        outByteBuf.setIndex(SocketFrameCodec.FRAME_HEADROOM, SocketFrameCodec.FRAME_HEADROOM);
 
-        ReferenceCountUtil.retain(outByteBuf);
+        SocketProtocolByteBuf protocolByteBuf = new SocketProtocolByteBuf(outByteBuf, protocolId);
+        StringDictionary dictionary = null;
+        int dictionaryMark = 0;
+        //延迟解析协议不按协议帧顺序解析, 增量编码协议的快照不能依赖字典, 都不能使用字典
+        if (!protocolInfo.isLazy() && !protocolInfo.isDelta() && isDictionaryNegotiated(ctx)) {
+            dictionary = dictionary(ctx);
+            dictionaryMark = dictionary.mark();
+            protocolByteBuf.dictionary(dictionary);
+        }
+        try {
+            if (protocolInfo.isDelta()) {
+                //增量编码, 编码成功即更新快照, write失败则resync, see writeFailed
+                deltaSnapshots(ctx).write(protocolInfo, msg, protocolByteBuf);
+            } else {
+                codec.write(msg, protocolByteBuf);
+            }
+        } catch (Exception e) {
+            ReferenceCountUtil.release(protocolByteBuf.getByteBuf());
+            if (dictionary != null) {
+                //协议帧没有发送, 回滚本次新增的字典条目, 保证与对端一致
+                dictionary.reset(dictionaryMark);
+            }
+            throw e;
+        } finally {
+            //协议交给transport发送, 编码完由transport release bytebuf成员域, 协议帧持有其retained slice
+            ProtocolFactory.handOffPayload(msg);
+            ProtocolFactory.releaseOutboundPayload(msg);
+        }
 
+        String statisticKey = protocolInfo.getStatisticKey();
         if (serverElseClient) {
             //server send response
-            ProtocolStatisicService.instance().statisticResp(protocolByteBuf.getProtocolId() + "", protocolByteBuf.getSize());
+            ProtocolStatisicService.instance().statisticResp(statisticKey, protocolByteBuf.getSize());
         } else {
             //client send request
-            ProtocolStatisicService.instance().statisticReq(protocolByteBuf.getProtocolId() + "", protocolByteBuf.getSize());
+            ProtocolStatisicService.instance().statisticReq(statisticKey, protocolByteBuf.getSize());
+        }
+
+        //写bytebuf成员域时, 可能已转换成composite bytebuf
+        return Collections.singleton(protocolByteBuf.getByteBuf());
+    }
+
+    @Override
+    public boolean isWriteFailureAware(SocketProtocol protocol) {
+        ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(protocol.getProtocolId());
+        return protocolInfo != null && protocolInfo.isDelta();
+    }
+
+    /**
+     * 增量编码协议write失败, 编码时已更新快照, 与对端快照不一致, 故丢弃快照, 之后全量发送, 并通知对端丢弃快照
+     */
+    @Override
+    public void writeFailed(ChannelHandlerContext ctx, SocketProtocol protocol, Throwable cause) {
+        DeltaSnapshots snapshots = ctx.channel().attr(DeltaSnapshots.DELTA_KEY).get();
+        if (snapshots != null) {
+            log().warn("delta protocol '{}' write fail, resync snapshots of channel {}", protocol.getProtocolId(), ctx.channel());
+            snapshots.resync();
+        }
+    }
+
+    /**
+     * 编码一次, 供多个channel共享, 用于广播
+     * 不使用字符串字典和增量编码快照等channel状态, 对端按普通协议帧解析
+     * readerIndex前不预留空间, 下游handler不会原地回填头部, 共享的内容不会被修改
+     * 与encode一样, 编码完release协议的bytebuf成员域
+     *
+     * @return 协议bytebuf(包含协议id), 由调用者release
+     */
+    public static ByteBuf encodeShared(ByteBufAllocator allocator, SocketProtocol protocol) {
+        int protocolId = protocol.getProtocolId();
+        ProtocolFactory.ProtocolInfo protocolInfo = getProtocolInfo(protocolId);
+        if (protocolInfo.isDelta()) {
+            throw new ProtocolException("delta protocol '" + protocolId + "' can't be encoded for broadcast");
+        }
+        ProtocolCodec<?> codec = protocolInfo.getCodec();
+        int size = codec.sizeOf(protocol);
+        ByteBuf outByteBuf = size > 0 ? allocator.directBuffer(size) : allocator.directBuffer();
+        SocketProtocolByteBuf protocolByteBuf = new SocketProtocolByteBuf(outByteBuf, protocolId);
+        try {
+            codec.write(protocol, protocolByteBuf);
+        } catch (Exception e) {
+            ReferenceCountUtil.release(protocolByteBuf.getByteBuf());
+            throw e;
+        } finally {
+            //同encode, 编码完release bytebuf成员域
+            ProtocolFactory.handOffPayload(protocol);
+            ProtocolFactory.releaseOutboundPayload(protocol);
+        }
+        //写bytebuf成员域时, 可能已转换成composite bytebuf
+        return protocolByteBuf.getByteBuf();
+    }
+
+    /**
+     * @return channel绑定的字符串字典, 没有则创建
+     */
+    private StringDictionary dictionary(ChannelHandlerContext ctx) {
+        Attribute<StringDictionary> attr = ctx.channel().attr(StringDictionary.DICTIONARY_KEY);
+        StringDictionary dictionary = attr.get();
+        if (dictionary == null) {
+            //channel的编解码都在其event loop中执行
+            dictionary = new StringDictionary();
+            attr.set(dictionary);
         }
+        return dictionary;
+    }
 
-        return out;
+    /**
+     * @return channel绑定的增量编码快照, 没有则创建
+     */
+    private DeltaSnapshots deltaSnapshots(ChannelHandlerContext ctx) {
+        Attribute<DeltaSnapshots> attr = ctx.channel().attr(DeltaSnapshots.DELTA_KEY);
+        DeltaSnapshots snapshots = attr.get();
+        if (snapshots == null) {
+            //channel的编解码都在其event loop中执行
+            snapshots = new DeltaSnapshots();
+            attr.set(snapshots);
+        }
+        return snapshots;
+    }
+
+    /**
+     * @return 握手是否协商了字符串字典
+     */
+    private boolean isDictionaryNegotiated(ChannelHandlerContext ctx) {
+        SocketHandshake handshake = ctx.channel().attr(SocketHandshake.HANDSHAKE_KEY).get();
+        return handshake != null && handshake.hasFeature(SocketFeature.STRING_DICTIONARY);
+    }
+
+    /**
+     * @return 协议信息, 没有该协议则抛异常
+     */
+    private static ProtocolFactory.ProtocolInfo getProtocolInfo(int protocolId) {
+        ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(protocolId);
+        if (protocolInfo == null) {
+            throw new ProtocolException("unknow protocol '" + protocolId + "'");
+        }
+        return protocolInfo;
     }
 
     @Override
@@ -2,6 +2,7 @@ package org.kin.transport.netty.socket.client;
 
 import io.netty.buffer.ByteBuf;
 import org.kin.transport.netty.*;
+import org.kin.transport.netty.socket.AbstractSocketTransportOption;
 import org.kin.transport.netty.socket.SocketHandlerInitializer;
 import org.kin.transport.netty.socket.SocketTransfer;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
@@ -15,7 +16,7 @@ import java.util.Objects;
  * @author huangjianqin
  * @date 2019-09-13
  */
-public class SocketClientTransportOption extends AbstractTransportOption<ByteBuf, SocketProtocol, ByteBuf, SocketClientTransportOption> {
+public class SocketClientTransportOption extends AbstractSocketTransportOption<SocketClientTransportOption> {
     /**
      * 构建tcp client实例
      */
@@ -69,7 +70,7 @@ public class SocketClientTransportOption extends AbstractTransportOption<ByteBuf
         return new SocketClientTransportOptionBuilder();
     }
 
-    public static class SocketClientTransportOptionBuilder extends TransportOptionBuilder<ByteBuf, SocketProtocol, ByteBuf, SocketClientTransportOption> {
+    public static class SocketClientTransportOptionBuilder extends SocketTransportOptionBuilder<SocketClientTransportOption> {
         public SocketClientTransportOptionBuilder() {
             super(new SocketClientTransportOption());
         }
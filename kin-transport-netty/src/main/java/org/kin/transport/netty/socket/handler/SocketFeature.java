@@ -0,0 +1,37 @@
+package org.kin.transport.netty.socket.handler;
+
+/**
+ * socket连接握手时协商的可选特性
+ *
+ * @author huangjianqin
+ * @date 2020/11/3
+ */
+public enum SocketFeature {
+    /**
+     * 连接级别的字符串字典, 重复的短字符串只传输字典下标
+     */
+    STRING_DICTIONARY(1),
+    ;
+
+    /** 特性位掩码 */
+    private final int mask;
+
+    SocketFeature(int mask) {
+        this.mask = mask;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * @return 特性位掩码
+     */
+    public static int mask(SocketFeature... features) {
+        int mask = 0;
+        for (SocketFeature feature : features) {
+            mask |= feature.mask;
+        }
+        return mask;
+    }
+}
@@ -1,36 +1,30 @@
 package org.kin.transport.netty.socket.handler;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufUtil;
-import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.ByteToMessageCodec;
-import io.netty.handler.codec.CorruptedFrameException;
-import io.netty.util.ReferenceCountUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.Arrays;
-import java.util.List;
+import io.netty.channel.CombinedChannelDuplexHandler;
 
 /**
  * socket数据流解析
  * 主要是校验协议头, 并取出对应协议数据, 交给协议层去解析
+ * <p>
+ * 协议帧解析见{@link SocketFrameDecoder}, 协议帧编码见{@link SocketFrameEncoder}
  *
  * @author huangjianqin
  * @date 2019/5/29
  */
-public class SocketFrameCodec extends ByteToMessageCodec<ByteBuf> {
-    private static final Logger log = LoggerFactory.getLogger(SocketFrameCodec.class);
+public class SocketFrameCodec extends CombinedChannelDuplexHandler<SocketFrameDecoder, SocketFrameEncoder> {
     /** 魔数 */
-    private static final byte[] FRAME_MAGIC = "kin-transport".getBytes();
+    static final byte[] FRAME_MAGIC = "kin-transport".getBytes();
     /** 协议帧长度字段占位大小 */
-    private static final int FRAME_BODY_SIZE = 4;
-    /** 协议体最大大小 */
-    private final int maxBodySize;
-    /** true = server, false = client */
-    private final boolean serverElseClient;
-    /** 协议头+协议体大小字段的字节长度 */
-    private final int frameBaseLength;
+    static final int FRAME_BODY_SIZE = 4;
+    /** 压缩类型字段占位大小 */
+    private static final int FRAME_COMPRESSION_SIZE = 1;
+    /**
+     * outbound bytebuf需预留的协议帧头部空间, 魔数+协议帧长度+压缩类型
+     * outbound bytebuf readerIndex前的空间视为预留空间, 直接回填协议帧头部, 避免拷贝
+     */
+    public static final int FRAME_HEADROOM = FRAME_MAGIC.length + FRAME_BODY_SIZE + FRAME_COMPRESSION_SIZE;
+    /** 默认协议体最大大小, 18M */
+    public static final int DEFAULT_MAX_BODY_SIZE = 18 * 1024 * 1024;
 
     //---------------------------------------------------------------------------------------------------------------
 
@@ -38,15 +32,32 @@ public class SocketFrameCodec extends ByteToMessageCodec<ByteBuf> {
      * client端的数据流解析
      */
     public static SocketFrameCodec clientFrameCodec() {
-        //默认包体最大18M
-        return new SocketFrameCodec(18 * 1024 * 1024, false);
+        return clientFrameCodec(false);
+    }
+
+    /**
+     * client端的数据流解析
+     *
+     * @param compositeCumulation 是否使用composite cumulator累积数据流, 适用于MB级别大包, 避免累积时内存拷贝
+     */
+    public static SocketFrameCodec clientFrameCodec(boolean compositeCumulation) {
+        return new SocketFrameCodec(DEFAULT_MAX_BODY_SIZE, false, compositeCumulation);
     }
 
     /**
      * server端的数据流解析
      */
     public static SocketFrameCodec serverFrameCodec() {
-        return new SocketFrameCodec(18 * 1024 * 1024, true);
+        return serverFrameCodec(false);
+    }
+
+    /**
+     * server端的数据流解析
+     *
+     * @param compositeCumulation 是否使用composite cumulator累积数据流, 适用于MB级别大包, 避免累积时内存拷贝
+     */
+    public static SocketFrameCodec serverFrameCodec(boolean compositeCumulation) {
+        return new SocketFrameCodec(DEFAULT_MAX_BODY_SIZE, true, compositeCumulation);
     }
 
     //---------------------------------------------------------------------------------------------------------------
@@ -56,82 +67,30 @@ public class SocketFrameCodec extends ByteToMessageCodec<ByteBuf> {
      * @param serverElseClient true = server, false = client
      */
     public SocketFrameCodec(int maxBodySize, boolean serverElseClient) {
-        this.maxBodySize = maxBodySize;
-        this.serverElseClient = serverElseClient;
-        this.frameBaseLength = FRAME_MAGIC.length + FRAME_BODY_SIZE;
+        this(maxBodySize, serverElseClient, false);
     }
 
     /**
-     * 判断魔数是否一致
+     * @param maxBodySize         传输层帧大小
+     * @param serverElseClient    true = server, false = client
+     * @param compositeCumulation 是否使用composite cumulator累积数据流
      */
-    private boolean isMagicRight(byte[] magic) {
-        return Arrays.equals(magic, FRAME_MAGIC);
+    public SocketFrameCodec(int maxBodySize, boolean serverElseClient, boolean compositeCumulation) {
+        this(maxBodySize, serverElseClient, compositeCumulation, null);
     }
 
-    @Override
-    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) {
-        try {
-            if (!serverElseClient) {
-                out.writeBytes(FRAME_MAGIC);
-            }
-            int bodySize = in.readableBytes();
-            out.writeInt(bodySize);
-            out.writeBytes(in, bodySize);
-        } finally {
-            ReferenceCountUtil.release(in);
-        }
+    /**
+     * @param maxBodySize         传输层帧大小
+     * @param serverElseClient    true = server, false = client
+     * @param compositeCumulation 是否使用composite cumulator累积数据流
+     * @param localHandshake      本端握手信息, client端为null则表示不握手, server端为null则使用默认握手信息
+     */
+    public SocketFrameCodec(int maxBodySize, boolean serverElseClient, boolean compositeCumulation, SocketHandshake localHandshake) {
+        this(maxBodySize, serverElseClient, compositeCumulation, localHandshake, new SocketFrameEncoder(serverElseClient));
     }
 
-    @Override
-    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-        try {
-            //解决拆包问题
-            in.markReaderIndex();
-            //合并解包
-            int bodySize;
-            if (serverElseClient) {
-                if (in.readableBytes() < frameBaseLength) {
-                    return;
-                }
-
-                byte[] magic = new byte[FRAME_MAGIC.length];
-                in.readBytes(magic);
-
-                //校验魔数
-                if (!isMagicRight(magic)) {
-                    String hexDump = ByteBufUtil.hexDump(in);
-                    //校验不通过, 直接清空inbound, 存在丢包的可能, 保证client存在重试机制
-                    in.skipBytes(in.readableBytes());
-                    throw new CorruptedFrameException(String.format("FrameHeaderError: magic=%s, HexDump=%s", Arrays.toString(magic), hexDump));
-                }
-
-                bodySize = in.readInt();
-
-                if (bodySize > maxBodySize) {
-                    //校验不通过, 直接清空inbound, 存在丢包的可能, 保证client存在重试机制
-                    in.skipBytes(in.readableBytes());
-                    throw new IllegalStateException(String.format("BodySize[%s] too large!", bodySize));
-                }
-            } else {
-                if (in.readableBytes() < FRAME_BODY_SIZE) {
-                    return;
-                }
-
-                bodySize = in.readInt();
-            }
-
-            int bodyReadableSize = in.readableBytes();
-            if (bodyReadableSize < bodySize) {
-                //解决拆包, 等待下次数据帧补满
-                in.resetReaderIndex();
-                return;
-            }
-
-            ByteBuf frameBuf = ctx.alloc().buffer(bodySize);
-            frameBuf.writeBytes(in, bodySize);
-            out.add(frameBuf);
-        } catch (Exception e) {
-            log.warn("", e);
-        }
+    private SocketFrameCodec(int maxBodySize, boolean serverElseClient, boolean compositeCumulation,
+                             SocketHandshake localHandshake, SocketFrameEncoder encoder) {
+        super(new SocketFrameDecoder(maxBodySize, serverElseClient, compositeCumulation, localHandshake, encoder), encoder);
     }
 }
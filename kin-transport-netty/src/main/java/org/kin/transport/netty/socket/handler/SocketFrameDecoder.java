@@ -0,0 +1,297 @@
+package org.kin.transport.netty.socket.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import org.kin.transport.netty.utils.VarIntUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static org.kin.transport.netty.socket.handler.SocketFrameCodec.FRAME_BODY_SIZE;
+import static org.kin.transport.netty.socket.handler.SocketFrameCodec.FRAME_MAGIC;
+
+/**
+ * socket协议帧解析
+ * <p>
+ * 有状态, 记录已解析的协议帧头部, 协议体未完整到达时, 不会重复解析头部
+ * 直接返回累积buffer的retained slice, 不拷贝协议体
+ * <p>
+ * server端总是支持握手({@link SocketHandshake}), 故新旧client可以连接同一端口
+ * client端开启握手时, channel active即发送握手帧, 收到server握手响应后才切换成varint长度协议帧,
+ * 超时没有收到握手响应(旧server), 则先使用旧协议帧, 超时后才到达的握手响应仍会识别并完成切换,
+ * 否则server已切换成varint长度协议帧, 而client仍按旧协议帧解析
+ * server响应握手后马上切换成varint长度协议帧, 但client收到握手响应前发送的仍是旧协议帧, 故server逐帧按魔数区分,
+ * 直到收到第一个varint长度协议帧
+ *
+ * @author huangjianqin
+ * @date 2019/5/29
+ */
+public class SocketFrameDecoder extends ByteToMessageDecoder {
+    private static final Logger log = LoggerFactory.getLogger(SocketFrameDecoder.class);
+    /** 未解析到协议帧头部 */
+    private static final int NO_FRAME_HEADER = -1;
+
+    /** 旧协议帧, 带魔数(client -> server)和int长度 */
+    private static final int LEGACY_STATE = 0;
+    /** client已发送握手帧, 等待server握手响应 */
+    private static final int AWAIT_HANDSHAKE_STATE = 1;
+    /** 握手成功, 协议帧只有varint长度 */
+    private static final int COMPACT_STATE = 2;
+    /** server已响应握手, 但client可能还在发送旧协议帧 */
+    private static final int SWITCHING_STATE = 3;
+
+    /** 协议体最大大小 */
+    private int maxBodySize;
+    /** true = server, false = client */
+    private final boolean serverElseClient;
+    /** 协议头+协议体大小字段的字节长度 */
+    private final int frameBaseLength;
+    /** 当前协议帧的协议体大小, {@link #NO_FRAME_HEADER}表示还未解析到协议帧头部 */
+    private int bodySize = NO_FRAME_HEADER;
+    /** 本端握手信息, client端为null则表示不握手 */
+    private final SocketHandshake localHandshake;
+    /** 同一channel的协议帧编码, 握手成功后需切换 */
+    private final SocketFrameEncoder encoder;
+    /** 协议帧解析状态 */
+    private int state = LEGACY_STATE;
+    /** 读varint临时变量 */
+    private final int[] varIntHolder = new int[2];
+
+    /**
+     * @param maxBodySize         传输层帧大小
+     * @param serverElseClient    true = server, false = client
+     * @param compositeCumulation 是否使用composite cumulator累积数据流
+     */
+    public SocketFrameDecoder(int maxBodySize, boolean serverElseClient, boolean compositeCumulation) {
+        this(maxBodySize, serverElseClient, compositeCumulation, null, null);
+    }
+
+    /**
+     * @param maxBodySize         传输层帧大小
+     * @param serverElseClient    true = server, false = client
+     * @param compositeCumulation 是否使用composite cumulator累积数据流
+     * @param localHandshake      本端握手信息, client端为null则表示不握手
+     * @param encoder             同一channel的协议帧编码
+     */
+    public SocketFrameDecoder(int maxBodySize, boolean serverElseClient, boolean compositeCumulation,
+                              SocketHandshake localHandshake, SocketFrameEncoder encoder) {
+        this.maxBodySize = maxBodySize;
+        this.serverElseClient = serverElseClient;
+        this.frameBaseLength = FRAME_MAGIC.length + FRAME_BODY_SIZE;
+        this.localHandshake = localHandshake;
+        this.encoder = encoder;
+        if (compositeCumulation) {
+            setCumulator(COMPOSITE_CUMULATOR);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        if (!serverElseClient && Objects.nonNull(localHandshake)) {
+            //client 发送握手帧, 直接写到下一个outbound handler
+            ByteBuf handshakeBuf = ctx.alloc().buffer(FRAME_MAGIC.length + SocketHandshake.HANDSHAKE_BODY_SIZE);
+            localHandshake.write(handshakeBuf);
+            ctx.writeAndFlush(handshakeBuf).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+            //收到握手响应前仍发送旧协议帧
+            state = AWAIT_HANDSHAKE_STATE;
+            ctx.executor().schedule(() -> {
+                if (state == AWAIT_HANDSHAKE_STATE) {
+                    state = LEGACY_STATE;
+                    log.warn("socket handshake ack timeout, fall back to legacy frame {}", ctx.channel().remoteAddress());
+                }
+            }, SocketHandshake.ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        super.channelActive(ctx);
+    }
+
+    /**
+     * 判断魔数是否一致, 直接比较, 不需要拷贝
+     */
+    private boolean isMagicRight(ByteBuf in, int index) {
+        for (int i = 0; i < FRAME_MAGIC.length; i++) {
+            if (in.getByte(index + i) != FRAME_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return server端是否是旧协议帧, 即以魔数开头
+     * varint长度协议帧以协议帧长度开头, 若其首字节与魔数首字节一致, 则第二字节为协议帧的压缩类型, 不可能与魔数第二字节一致
+     */
+    private boolean isLegacyFrame(ByteBuf in) {
+        int readerIndex = in.readerIndex();
+        return in.getByte(readerIndex) == FRAME_MAGIC[0] && in.getByte(readerIndex + 1) == FRAME_MAGIC[1];
+    }
+
+    /**
+     * 校验魔数, 不通过直接清空inbound, 存在丢包的可能, 保证client存在重试机制
+     */
+    private void checkMagic(ByteBuf in) {
+        if (!isMagicRight(in, in.readerIndex())) {
+            String hexDump = ByteBufUtil.hexDump(in);
+            in.skipBytes(in.readableBytes());
+            throw new CorruptedFrameException(String.format("FrameHeaderError: HexDump=%s", hexDump));
+        }
+    }
+
+    /**
+     * 校验协议体大小
+     */
+    private void checkBodySize(ByteBuf in, int frameBodySize) {
+        if (frameBodySize < 0 || frameBodySize > maxBodySize) {
+            //校验不通过, 直接清空inbound, 存在丢包的可能, 保证client存在重试机制
+            in.skipBytes(in.readableBytes());
+            throw new IllegalStateException(String.format("BodySize[%s] too large!", frameBodySize));
+        }
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        try {
+            if (bodySize == NO_FRAME_HEADER) {
+                //解析协议帧头部
+                if (state == SWITCHING_STATE) {
+                    if (in.readableBytes() < 2) {
+                        return;
+                    }
+                    if (!isLegacyFrame(in)) {
+                        //client已收到握手响应
+                        state = COMPACT_STATE;
+                    }
+                }
+
+                int frameBodySize;
+                if (state == COMPACT_STATE) {
+                    if (!VarIntUtils.peekRawVarInt32(in, varIntHolder)) {
+                        return;
+                    }
+                    frameBodySize = varIntHolder[0];
+                    in.skipBytes(varIntHolder[1]);
+                } else if (serverElseClient) {
+                    //魔数 + 握手标识 or 协议帧长度最高字节
+                    if (in.readableBytes() < FRAME_MAGIC.length + 1) {
+                        return;
+                    }
+                    checkMagic(in);
+
+                    if (state == LEGACY_STATE &&
+                            in.getByte(in.readerIndex() + FRAME_MAGIC.length) == SocketHandshake.HANDSHAKE_FLAG) {
+                        //握手帧
+                        if (in.readableBytes() < FRAME_MAGIC.length + SocketHandshake.HANDSHAKE_BODY_SIZE) {
+                            return;
+                        }
+                        in.skipBytes(FRAME_MAGIC.length);
+                        handshake(ctx, SocketHandshake.read(in));
+                        return;
+                    }
+
+                    if (in.readableBytes() < frameBaseLength) {
+                        return;
+                    }
+                    in.skipBytes(FRAME_MAGIC.length);
+                    frameBodySize = in.readInt();
+                } else {
+                    if (isAwaitingAck() && in.isReadable() && in.getByte(in.readerIndex()) == FRAME_MAGIC[0]) {
+                        //server握手响应, 旧协议帧长度最高字节不可能与魔数首字节一致
+                        if (in.readableBytes() < FRAME_MAGIC.length + SocketHandshake.HANDSHAKE_BODY_SIZE) {
+                            return;
+                        }
+                        checkMagic(in);
+                        in.skipBytes(FRAME_MAGIC.length);
+                        handshakeAck(ctx, SocketHandshake.read(in));
+                        return;
+                    }
+
+                    if (in.readableBytes() < FRAME_BODY_SIZE) {
+                        return;
+                    }
+                    frameBodySize = in.readInt();
+                }
+
+                checkBodySize(in, frameBodySize);
+                bodySize = frameBodySize;
+            }
+
+            if (in.readableBytes() < bodySize) {
+                //解决拆包, 等待下次数据帧补满, 头部已解析, 下次不用再解析
+                return;
+            }
+
+            //直接slice, 由下游handler release
+            out.add(in.retainedSlice(in.readerIndex(), bodySize));
+            in.skipBytes(bodySize);
+            bodySize = NO_FRAME_HEADER;
+        } catch (Exception e) {
+            bodySize = NO_FRAME_HEADER;
+            log.warn("", e);
+        }
+    }
+
+    /**
+     * @return client是否可能收到server握手响应, 包括等待超时后才到达的握手响应
+     */
+    private boolean isAwaitingAck() {
+        return state == AWAIT_HANDSHAKE_STATE || (state == LEGACY_STATE && Objects.nonNull(localHandshake));
+    }
+
+    /**
+     * server处理client握手
+     */
+    private void handshake(ChannelHandlerContext ctx, SocketHandshake remote) {
+        if (remote.getVersion() < 1) {
+            log.warn("unsupported handshake version '{}', close channel {}", remote.getVersion(), ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
+
+        SocketHandshake local = Objects.nonNull(localHandshake) ?
+                localHandshake :
+                new SocketHandshake(SocketHandshake.VERSION, maxBodySize, 0);
+        SocketHandshake negotiated = local.negotiate(remote);
+
+        //响应握手, 直接写到下一个outbound handler
+        ByteBuf ackBuf = ctx.alloc().buffer(FRAME_MAGIC.length + SocketHandshake.HANDSHAKE_BODY_SIZE);
+        negotiated.write(ackBuf);
+        ctx.writeAndFlush(ackBuf).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        if (Objects.nonNull(encoder)) {
+            encoder.compact();
+        }
+
+        //client收到握手响应前发送的仍是旧协议帧
+        handshakeDone(ctx, negotiated, SWITCHING_STATE);
+    }
+
+    /**
+     * client处理server握手响应, 与本端握手信息再协商一次, 不直接信任server的协商结果
+     */
+    private void handshakeAck(ChannelHandlerContext ctx, SocketHandshake ack) {
+        if (state == LEGACY_STATE) {
+            log.info("socket handshake ack arrives after timeout, switch to compact frame {}", ctx.channel().remoteAddress());
+        }
+        SocketHandshake negotiated = localHandshake.negotiate(ack);
+        //后续协议帧都不带魔数
+        if (Objects.nonNull(encoder)) {
+            encoder.compact();
+        }
+        handshakeDone(ctx, negotiated, COMPACT_STATE);
+    }
+
+    /**
+     * 握手完成
+     */
+    private void handshakeDone(ChannelHandlerContext ctx, SocketHandshake negotiated, int nextState) {
+        maxBodySize = negotiated.getMaxBodySize();
+        state = nextState;
+        ctx.channel().attr(SocketHandshake.HANDSHAKE_KEY).set(negotiated);
+        log.debug("socket handshake success {}, {}", ctx.channel().remoteAddress(), negotiated);
+    }
+}
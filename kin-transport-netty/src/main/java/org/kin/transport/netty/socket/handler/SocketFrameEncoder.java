@@ -0,0 +1,90 @@
+package org.kin.transport.netty.socket.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.kin.transport.netty.utils.VarIntUtils;
+
+import static org.kin.transport.netty.socket.handler.SocketFrameCodec.FRAME_BODY_SIZE;
+import static org.kin.transport.netty.socket.handler.SocketFrameCodec.FRAME_MAGIC;
+
+/**
+ * socket协议帧编码
+ * <p>
+ * 若bytebuf readerIndex前预留了足够空间, 则直接回填协议帧头部, 否则拷贝
+ * 握手成功后({@link SocketHandshake}), 协议帧头部只有varint编码的协议帧长度
+ *
+ * @author huangjianqin
+ * @date 2019/5/29
+ */
+public class SocketFrameEncoder extends MessageToByteEncoder<ByteBuf> {
+    /** true = server, false = client */
+    private final boolean serverElseClient;
+    /** 协议帧头部大小 */
+    private final int headerSize;
+    /** 是否已握手, 握手后协议帧不带魔数, 且协议帧长度使用varint编码 */
+    private volatile boolean compact;
+
+    public SocketFrameEncoder(boolean serverElseClient) {
+        this.serverElseClient = serverElseClient;
+        this.headerSize = serverElseClient ? FRAME_BODY_SIZE : FRAME_MAGIC.length + FRAME_BODY_SIZE;
+    }
+
+    /**
+     * 握手成功, 切换成varint长度协议帧
+     */
+    void compact() {
+        compact = true;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof ByteBuf) {
+            ByteBuf in = (ByteBuf) msg;
+            int readerIndex = in.readerIndex();
+            if (compact) {
+                int bodySize = in.readableBytes();
+                int varIntSize = VarIntUtils.computeRawVarInt32Size(bodySize);
+                if (readerIndex >= varIntSize) {
+                    //回填varint协议帧长度
+                    int headerIndex = readerIndex - varIntSize;
+                    VarIntUtils.setRawVarInt32(in, headerIndex, bodySize);
+                    in.readerIndex(headerIndex);
+                    ctx.write(in, promise);
+                    return;
+                }
+            } else if (readerIndex >= headerSize) {
+                //预留了足够的空间, 直接回填协议帧头部
+                int bodySize = in.readableBytes();
+                int headerIndex = readerIndex - headerSize;
+                if (!serverElseClient) {
+                    in.setBytes(headerIndex, FRAME_MAGIC);
+                }
+                in.setInt(readerIndex - FRAME_BODY_SIZE, bodySize);
+                in.readerIndex(headerIndex);
+                ctx.write(in, promise);
+                return;
+            }
+        }
+
+        super.write(ctx, msg, promise);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf in, ByteBuf out) {
+        //没有预留空间, 只能拷贝, in由父类负责release
+        if (compact) {
+            int bodySize = in.readableBytes();
+            VarIntUtils.writeRawVarInt32(out, bodySize);
+            out.writeBytes(in, bodySize);
+            return;
+        }
+        if (!serverElseClient) {
+            out.writeBytes(FRAME_MAGIC);
+        }
+        int bodySize = in.readableBytes();
+        out.writeInt(bodySize);
+        out.writeBytes(in, bodySize);
+    }
+}
@@ -0,0 +1,109 @@
+package org.kin.transport.netty.socket.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AttributeKey;
+
+import static org.kin.transport.netty.socket.handler.SocketFrameCodec.FRAME_MAGIC;
+
+/**
+ * socket连接握手信息
+ * <p>
+ * 握手帧: 魔数 + 握手标识(0xFF) + 版本 + 协议体最大大小 + 特性位掩码
+ * 旧协议魔数后紧跟协议帧长度(int), 其最高字节不可能为0xFF, 以此区分, 故新旧client可以连接同一server端口
+ * <p>
+ * 握手成功后, 协议帧不再带魔数, 协议帧长度使用varint编码
+ * 压缩类型不参与握手, 各端按每个协议帧的压缩类型标识解压
+ * client收到握手响应前仍发送旧协议帧, 超时({@link #ACK_TIMEOUT_MILLIS})没有收到握手响应则一直使用旧协议帧
+ *
+ * @author huangjianqin
+ * @date 2020/11/3
+ */
+public final class SocketHandshake {
+    /** 协商结果, 绑定在channel上 */
+    public static final AttributeKey<SocketHandshake> HANDSHAKE_KEY = AttributeKey.valueOf("socketHandshake");
+    /** 握手标识 */
+    static final byte HANDSHAKE_FLAG = (byte) 0xFF;
+    /** 当前握手版本 */
+    public static final int VERSION = 1;
+    /** 握手帧除魔数外的大小, 握手标识 + 版本 + 协议体最大大小 + 特性位掩码 */
+    static final int HANDSHAKE_BODY_SIZE = 1 + 1 + 4 + 4;
+    /** client等待握手响应的超时时间 */
+    static final long ACK_TIMEOUT_MILLIS = 3000;
+
+    /** 版本 */
+    private final int version;
+    /** 协议体最大大小 */
+    private final int maxBodySize;
+    /** 特性位掩码 */
+    private final int features;
+
+    public SocketHandshake(int version, int maxBodySize, int features) {
+        this.version = version;
+        this.maxBodySize = maxBodySize;
+        this.features = features;
+    }
+
+    /**
+     * 写握手帧
+     */
+    void write(ByteBuf out) {
+        out.writeBytes(FRAME_MAGIC);
+        out.writeByte(HANDSHAKE_FLAG);
+        out.writeByte(version);
+        out.writeInt(maxBodySize);
+        out.writeInt(features);
+    }
+
+    /**
+     * 读握手帧, 魔数已跳过
+     */
+    static SocketHandshake read(ByteBuf in) {
+        //握手标识
+        in.skipBytes(1);
+        int version = in.readUnsignedByte();
+        int maxBodySize = in.readInt();
+        int features = in.readInt();
+        return new SocketHandshake(version, maxBodySize, features);
+    }
+
+    /**
+     * 与对端握手信息协商, server处理client握手和client处理server握手响应都需要协商
+     * 版本, 协议体最大大小取最小值(对端非法值则忽略), 特性取交集
+     */
+    SocketHandshake negotiate(SocketHandshake remote) {
+        int negotiatedMaxBodySize = remote.maxBodySize > 0 ? Math.min(maxBodySize, remote.maxBodySize) : maxBodySize;
+        return new SocketHandshake(
+                Math.min(version, remote.version),
+                negotiatedMaxBodySize,
+                features & remote.features);
+    }
+
+    /**
+     * @return 是否支持该特性
+     */
+    public boolean hasFeature(SocketFeature feature) {
+        return (features & feature.getMask()) != 0;
+    }
+
+    //getter
+    public int getVersion() {
+        return version;
+    }
+
+    public int getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public int getFeatures() {
+        return features;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketHandshake{" +
+                "version=" + version +
+                ", maxBodySize=" + maxBodySize +
+                ", features=" + features +
+                '}';
+    }
+}
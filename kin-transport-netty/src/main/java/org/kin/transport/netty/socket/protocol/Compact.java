@@ -0,0 +1,18 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.lang.annotation.*;
+
+/**
+ * 成员域使用紧凑编码
+ * int, long成员域(包括数组, 集合和map的item)使用zigzag + varint编码, 数组, 集合和map的大小使用varint编码
+ * <p>
+ * 整个协议或vo使用紧凑编码, 见{@link Protocol#compact()}和{@link ProtocolVO#compact()}
+ *
+ * @author huangjianqin
+ * @date 2020/11/4
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+@Documented
+public @interface Compact {
+}
@@ -0,0 +1,16 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.lang.annotation.*;
+
+/**
+ * 合并发送协议({@link Protocol#conflate()})的合并key成员域, 需实现equals和hashCode
+ * 每个协议最多一个, 没有则同一协议只保留最新的一个
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+@Documented
+public @interface ConflationKey {
+}
@@ -0,0 +1,17 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.lang.annotation.*;
+
+/**
+ * 增量编码协议({@link Protocol#delta()})的实体key成员域, 同一协议不同key的实例各自缓存快照
+ * 每个协议最多一个, 不能是数组, 集合和map
+ * 没有则同一协议只缓存一个快照
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+@Documented
+public @interface DeltaKey {
+}
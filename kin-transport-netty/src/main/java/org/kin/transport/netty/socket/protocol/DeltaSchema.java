@@ -0,0 +1,76 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 增量编码协议的成员域信息, 成员域顺序与codec一致
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+final class DeltaSchema {
+    /** 成员域 */
+    private final Field[] fields;
+    /** {@link DeltaKey}成员域下标, -1则表示没有 */
+    private final int keyIndex;
+    /** 成员域是否使用紧凑编码, 决定map大小的编码类型 */
+    private final boolean[] compacts;
+    /** 成员域是否是map, map按entry增量编码 */
+    private final boolean[] maps;
+
+    DeltaSchema(List<Field> validField, int keyIndex, boolean[] compacts) {
+        this.fields = validField.toArray(new Field[0]);
+        this.keyIndex = keyIndex;
+        this.compacts = compacts;
+        this.maps = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            if (Map.class.isAssignableFrom(field.getType())) {
+                maps[i] = true;
+                //增量编码时直接获取map, 不经过codec
+                field.setAccessible(true);
+            }
+        }
+    }
+
+    /**
+     * @return map成员域值, null则返回null
+     */
+    Map<?, ?> getMap(int index, SocketProtocol protocol) {
+        try {
+            return (Map<?, ?>) fields[index].get(protocol);
+        } catch (IllegalAccessException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+    }
+
+    /**
+     * @return 成员域存在位图字节数
+     */
+    int presenceBytes() {
+        return (fields.length + 7) / 8;
+    }
+
+    //getter
+    int getFieldSize() {
+        return fields.length;
+    }
+
+    int getKeyIndex() {
+        return keyIndex;
+    }
+
+    boolean hasKey() {
+        return keyIndex >= 0;
+    }
+
+    boolean isCompact(int index) {
+        return compacts[index];
+    }
+
+    boolean isMap(int index) {
+        return maps[index];
+    }
+}
@@ -0,0 +1,393 @@
+package org.kin.transport.netty.socket.protocol;
+
+import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AttributeKey;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 连接级别的增量编码协议({@link Protocol#delta()})快照, 绑定在channel上, 编码和解码各自一份
+ * <p>
+ * 快照按(协议id, {@link DeltaKey}成员域编码后的字节)缓存每个成员域编码后的字节, map成员域则缓存每个entry编码后的字节
+ * 编码时逐个成员域与快照对比, 只发送变化的成员域, map成员域只发送变化和删除的entry
+ * <p>
+ * 协议id之后的内容为:
+ * 模式(byte), {@link #FULL}, {@link #DELTA}或{@link #RESET}
+ * key(varint长度 + 字节), 没有{@link DeltaKey}则不写
+ * 成员域存在位图(每8个成员域1个字节)
+ * 变化的成员域, 普通成员域为varint长度 + 字节, map成员域为变化的entry数(varint) + (key, value) + 删除的entry数(varint) + key, key和value均为varint长度 + 字节
+ * <p>
+ * 快照与字符串字典无关, 故增量编码协议不使用字典
+ * 编解码都在channel的event loop中执行
+ * <p>
+ * 每个协议最多缓存{@link #maxEntities}个key的快照, 超过则淘汰最久没有更新的快照
+ * 编码端编码成功时更新快照, 解码端解码成功时更新快照, 两端更新顺序一致, 故淘汰的快照也一致, 淘汰后的key下次全量发送
+ * 编码成功但写失败, 两端快照不一致, 需{@link #resync()}
+ * <p>
+ * 依赖协议帧有序可靠到达, 故不支持udp
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public final class DeltaSnapshots {
+    /** 绑定在channel上 */
+    public static final AttributeKey<DeltaSnapshots> DELTA_KEY = AttributeKey.valueOf("deltaSnapshots");
+    /** 全量, 接收端以空快照为基准 */
+    private static final byte FULL = 0;
+    /** 增量, 接收端以该key的快照为基准 */
+    private static final byte DELTA = 1;
+    /** 全量, 接收端先丢弃所有快照 */
+    private static final byte RESET = 2;
+    /** 没有{@link DeltaKey}时的key */
+    private static final byte[] EMPTY_KEY = new byte[0];
+
+    /** 默认每个协议最多缓存的快照数 */
+    public static final int DEFAULT_MAX_ENTITIES = 1024;
+
+    /** 每个协议最多缓存的快照数, 两端需一致 */
+    private final int maxEntities;
+    /** 编码快照, 协议id -> key -> 快照, 按更新顺序排序 */
+    private final IntObjectMap<Map<ByteBuffer, Snapshot>> encodeSnapshots = new IntObjectHashMap<>();
+    /** 解码快照, 协议id -> key -> 快照, 按更新顺序排序 */
+    private final IntObjectMap<Map<ByteBuffer, Snapshot>> decodeSnapshots = new IntObjectHashMap<>();
+    /** 下一次编码是否通知对端丢弃所有快照 */
+    private boolean resetPending;
+
+    public DeltaSnapshots() {
+        this(DEFAULT_MAX_ENTITIES);
+    }
+
+    public DeltaSnapshots(int maxEntities) {
+        Preconditions.checkArgument(maxEntities > 0, "maxEntities must be greater than 0");
+        this.maxEntities = maxEntities;
+    }
+
+    /**
+     * @return 按更新顺序排序, 超过{@link #maxEntities}则淘汰最久没有更新的快照
+     */
+    private Map<ByteBuffer, Snapshot> newSnapshots() {
+        return new LinkedHashMap<ByteBuffer, Snapshot>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Snapshot> eldest) {
+                return size() > maxEntities;
+            }
+        };
+    }
+
+    /**
+     * 丢弃所有编码快照, 之后每个协议都全量发送一次, 同时通知对端丢弃所有解码快照
+     * 需在channel的event loop中执行
+     */
+    public void resync() {
+        encodeSnapshots.clear();
+        resetPending = true;
+    }
+
+    /**
+     * 对比快照, 编码变化的成员域, 编码成功即更新快照
+     *
+     * @param protocolInfo 增量编码协议信息
+     * @param protocol     协议实例
+     * @param response     response bytes(已写入协议id)
+     */
+    public void write(ProtocolFactory.ProtocolInfo protocolInfo, SocketProtocol protocol, SocketResponseOprs response) {
+        DeltaSchema schema = protocolInfo.getDeltaSchema();
+        ProtocolCodec<?> codec = protocolInfo.getCodec();
+        int fieldSize = schema.getFieldSize();
+
+        ByteBuf scratch = Unpooled.buffer();
+        try {
+            SocketProtocolByteBuf fragment = new SocketProtocolByteBuf(scratch, protocolInfo.getId(), false);
+            byte[] key = schema.hasKey() ? fieldBytes(codec, schema.getKeyIndex(), protocol, fragment) : EMPTY_KEY;
+            ByteBuffer snapshotKey = ByteBuffer.wrap(key);
+
+            Map<ByteBuffer, Snapshot> snapshots = encodeSnapshots.get(protocolInfo.getId());
+            Snapshot base = Objects.isNull(snapshots) ? null : snapshots.get(snapshotKey);
+            byte mode = resetPending ? RESET : (Objects.isNull(base) ? FULL : DELTA);
+            if (Objects.isNull(base)) {
+                base = new Snapshot(fieldSize);
+            }
+
+            //对比快照
+            Snapshot next = new Snapshot(fieldSize);
+            boolean[] changed = new boolean[fieldSize];
+            MapDelta[] mapDeltas = new MapDelta[fieldSize];
+            for (int i = 0; i < fieldSize; i++) {
+                if (schema.isMap(i)) {
+                    MapDelta mapDelta = diffMap(schema, codec, i, protocol, fragment, base.entries[i]);
+                    next.entries[i] = mapDelta.entries;
+                    mapDeltas[i] = mapDelta;
+                    changed[i] = mapDelta.isChanged();
+                } else {
+                    byte[] bytes = fieldBytes(codec, i, protocol, fragment);
+                    next.fields[i] = bytes;
+                    changed[i] = !Arrays.equals(bytes, base.fields[i]);
+                }
+            }
+
+            //写入
+            response.writeByte(mode);
+            if (schema.hasKey()) {
+                writeLengthBytes(response, key);
+            }
+            for (int i = 0; i < schema.presenceBytes(); i++) {
+                int presence = 0;
+                for (int j = 0; j < 8 && i * 8 + j < fieldSize; j++) {
+                    if (changed[i * 8 + j]) {
+                        presence |= 1 << j;
+                    }
+                }
+                response.writeUnsignedByte((short) presence);
+            }
+            for (int i = 0; i < fieldSize; i++) {
+                if (!changed[i]) {
+                    continue;
+                }
+                if (schema.isMap(i)) {
+                    MapDelta mapDelta = mapDeltas[i];
+                    response.writeVarInt32(mapDelta.upserts.size());
+                    for (ByteBuffer entryKey : mapDelta.upserts) {
+                        writeLengthBytes(response, entryKey.array());
+                        writeLengthBytes(response, mapDelta.entries.get(entryKey));
+                    }
+                    response.writeVarInt32(mapDelta.removes.size());
+                    for (ByteBuffer entryKey : mapDelta.removes) {
+                        writeLengthBytes(response, entryKey.array());
+                    }
+                } else {
+                    writeLengthBytes(response, next.fields[i]);
+                }
+            }
+
+            //编码成功, 更新快照, 与解码端一致, 移至末尾
+            resetPending = false;
+            if (Objects.isNull(snapshots)) {
+                snapshots = newSnapshots();
+                encodeSnapshots.put(protocolInfo.getId(), snapshots);
+            }
+            snapshots.remove(snapshotKey);
+            snapshots.put(snapshotKey, next);
+        } finally {
+            scratch.release();
+        }
+    }
+
+    /**
+     * 对比map成员域的entry
+     *
+     * @param baseEntries 快照中的entry, null则表示空
+     */
+    private MapDelta diffMap(DeltaSchema schema, ProtocolCodec<?> codec, int index, SocketProtocol protocol,
+                             SocketProtocolByteBuf fragment, Map<ByteBuffer, byte[]> baseEntries) {
+        Map<?, ?> map = schema.getMap(index, protocol);
+        MapDelta mapDelta = new MapDelta(Objects.isNull(map) ? 0 : map.size());
+        if (Objects.nonNull(map)) {
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                fragment.getByteBuf().clear();
+                codec.writeMapKey(index, entry.getKey(), fragment);
+                ByteBuffer entryKey = ByteBuffer.wrap(ByteBufUtil.getBytes(fragment.getByteBuf()));
+
+                fragment.getByteBuf().clear();
+                codec.writeMapValue(index, entry.getValue(), fragment);
+                byte[] value = ByteBufUtil.getBytes(fragment.getByteBuf());
+
+                mapDelta.entries.put(entryKey, value);
+                if (Objects.isNull(baseEntries) || !Arrays.equals(value, baseEntries.get(entryKey))) {
+                    mapDelta.upserts.add(entryKey);
+                }
+            }
+        }
+        if (Objects.nonNull(baseEntries)) {
+            for (ByteBuffer entryKey : baseEntries.keySet()) {
+                if (!mapDelta.entries.containsKey(entryKey)) {
+                    mapDelta.removes.add(entryKey);
+                }
+            }
+        }
+        return mapDelta;
+    }
+
+    /**
+     * @return 成员域编码后的字节
+     */
+    private byte[] fieldBytes(ProtocolCodec<?> codec, int index, SocketProtocol protocol, SocketProtocolByteBuf fragment) {
+        fragment.getByteBuf().clear();
+        codec.writeField(index, protocol, fragment);
+        return ByteBufUtil.getBytes(fragment.getByteBuf());
+    }
+
+    /**
+     * 写入varint长度 + 字节
+     */
+    private void writeLengthBytes(SocketResponseOprs response, byte[] bytes) {
+        response.writeVarInt32(bytes.length);
+        response.writeBytes(bytes);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 将增量合并至快照, 并以快照创建协议实例
+     *
+     * @param protocolInfo 增量编码协议信息
+     * @param request      request bytes(已读取协议id)
+     * @return 新的协议实例
+     */
+    public SocketProtocol read(ProtocolFactory.ProtocolInfo protocolInfo, SocketRequestOprs request) {
+        DeltaSchema schema = protocolInfo.getDeltaSchema();
+        int fieldSize = schema.getFieldSize();
+
+        byte mode = request.readByte();
+        if (mode == RESET) {
+            decodeSnapshots.clear();
+        } else if (mode != FULL && mode != DELTA) {
+            throw new ProtocolException(String.format("protocol(id=%s) unknown delta mode '%s'", protocolInfo.getId(), mode));
+        }
+        byte[] key = schema.hasKey() ? readLengthBytes(request) : EMPTY_KEY;
+        ByteBuffer snapshotKey = ByteBuffer.wrap(key);
+
+        Map<ByteBuffer, Snapshot> snapshots = decodeSnapshots.get(protocolInfo.getId());
+        if (Objects.isNull(snapshots)) {
+            snapshots = newSnapshots();
+            decodeSnapshots.put(protocolInfo.getId(), snapshots);
+        }
+        Snapshot snapshot;
+        if (mode == DELTA) {
+            //解析失败则丢弃该快照, 之后的增量直接报错, 需对端resync
+            snapshot = snapshots.remove(snapshotKey);
+            if (Objects.isNull(snapshot)) {
+                throw new ProtocolException(String.format("protocol(id=%s) receive delta without snapshot", protocolInfo.getId()));
+            }
+        } else {
+            snapshots.remove(snapshotKey);
+            snapshot = new Snapshot(fieldSize);
+        }
+
+        short[] presences = new short[schema.presenceBytes()];
+        for (int i = 0; i < presences.length; i++) {
+            presences[i] = request.readUnsignedByte();
+        }
+        for (int i = 0; i < fieldSize; i++) {
+            if ((presences[i / 8] & (1 << (i % 8))) == 0) {
+                continue;
+            }
+            if (schema.isMap(i)) {
+                Map<ByteBuffer, byte[]> entries = snapshot.entries[i];
+                if (Objects.isNull(entries)) {
+                    entries = new LinkedHashMap<>();
+                    snapshot.entries[i] = entries;
+                }
+                int upsertSize = request.readVarInt32();
+                for (int j = 0; j < upsertSize; j++) {
+                    ByteBuffer entryKey = ByteBuffer.wrap(readLengthBytes(request));
+                    entries.put(entryKey, readLengthBytes(request));
+                }
+                int removeSize = request.readVarInt32();
+                for (int j = 0; j < removeSize; j++) {
+                    entries.remove(ByteBuffer.wrap(readLengthBytes(request)));
+                }
+            } else {
+                snapshot.fields[i] = readLengthBytes(request);
+            }
+        }
+        //与编码端一致, 移至末尾
+        snapshots.put(snapshotKey, snapshot);
+
+        return newProtocol(protocolInfo, snapshot);
+    }
+
+    /**
+     * 以快照创建协议实例, 快照中没有的成员域不调用setter
+     */
+    private SocketProtocol newProtocol(ProtocolFactory.ProtocolInfo protocolInfo, Snapshot snapshot) {
+        DeltaSchema schema = protocolInfo.getDeltaSchema();
+        int fieldSize = schema.getFieldSize();
+        ByteBuf byteBuf = Unpooled.buffer();
+        try {
+            SocketProtocolByteBuf writer = new SocketProtocolByteBuf(byteBuf, protocolInfo.getId(), false);
+            for (int i = 0; i < fieldSize; i++) {
+                if (schema.isMap(i)) {
+                    //还原map成员域编码
+                    Map<ByteBuffer, byte[]> entries = snapshot.entries[i];
+                    int size = Objects.isNull(entries) ? 0 : entries.size();
+                    if (schema.isCompact(i)) {
+                        writer.writeVarInt32(size);
+                    } else {
+                        writer.writeShort(size);
+                    }
+                    if (size > 0) {
+                        for (Map.Entry<ByteBuffer, byte[]> entry : entries.entrySet()) {
+                            writer.writeBytes(entry.getKey().array());
+                            writer.writeBytes(entry.getValue());
+                        }
+                    }
+                } else if (Objects.nonNull(snapshot.fields[i])) {
+                    writer.writeBytes(snapshot.fields[i]);
+                }
+            }
+
+            SocketProtocolByteBuf reader = new SocketProtocolByteBuf(byteBuf, protocolInfo.getId(), true);
+            ProtocolCodec<?> codec = protocolInfo.getCodec();
+            SocketProtocol protocol = protocolInfo.createProtocol();
+            for (int i = 0; i < fieldSize; i++) {
+                if (schema.isMap(i) || Objects.nonNull(snapshot.fields[i])) {
+                    codec.readField(i, reader, protocol);
+                }
+            }
+            return protocol;
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    /**
+     * 读取varint长度 + 字节
+     */
+    private byte[] readLengthBytes(SocketRequestOprs request) {
+        return request.readBytes(request.readVarInt32());
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 协议快照
+     */
+    private static final class Snapshot {
+        /** 非map成员域编码后的字节, null则表示没有 */
+        private final byte[][] fields;
+        /** map成员域的entry, key编码后的字节 -> value编码后的字节, null则表示空 */
+        private final Map<ByteBuffer, byte[]>[] entries;
+
+        @SuppressWarnings("unchecked")
+        private Snapshot(int fieldSize) {
+            this.fields = new byte[fieldSize][];
+            this.entries = new Map[fieldSize];
+        }
+    }
+
+    /**
+     * map成员域的增量
+     */
+    private static final class MapDelta {
+        /** 最新的entry */
+        private final Map<ByteBuffer, byte[]> entries;
+        /** 新增或变化的entry key */
+        private final List<ByteBuffer> upserts = new ArrayList<>();
+        /** 删除的entry key */
+        private final List<ByteBuffer> removes = new ArrayList<>();
+
+        private MapDelta(int size) {
+            this.entries = new LinkedHashMap<>(size * 4 / 3 + 1);
+        }
+
+        private boolean isChanged() {
+            return !upserts.isEmpty() || !removes.isEmpty();
+        }
+    }
+}
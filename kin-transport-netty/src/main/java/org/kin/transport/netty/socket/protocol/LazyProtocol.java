@@ -0,0 +1,37 @@
+package org.kin.transport.netty.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 延迟解析的协议, 由{@link ProtocolCodecs}生成协议子类实现, 见{@link Protocol#lazy()}
+ * <p>
+ * 协议帧bytebuf头部定长成员域(非紧凑编码的基础类型)的getter直接从bytebuf预计算的偏移量读取,
+ * 其余成员域的getter和所有setter会先完整解析协议
+ * <p>
+ * important 持有协议帧bytebuf的引用, 使用完需手动{@link #release()}
+ *
+ * @author huangjianqin
+ * @date 2020/11/5
+ */
+public interface LazyProtocol {
+    /**
+     * 绑定协议帧bytebuf(包含协议id), 由transport层调用
+     *
+     * @param byteBuf 已retain的协议帧bytebuf
+     */
+    void wrap(ByteBuf byteBuf);
+
+    /**
+     * 完整解析, 并返回普通的协议实例, 不会release bytebuf
+     * bytebuf成员域转交给普通的协议实例(延迟解析的协议不再持有), 即普通的协议实例成为其owner,
+     * 使用完需调用{@link ProtocolFactory#releasePayload(Object)}, 或者直接发送(交给transport release)
+     *
+     * @return 普通的协议实例
+     */
+    SocketProtocol materialize();
+
+    /**
+     * release 协议帧bytebuf, 之后未解析的成员域不可再访问
+     */
+    void release();
+}
@@ -22,4 +22,47 @@ public @interface Protocol {
      * 默认不抛弃
      */
     int rate() default -1;
+
+    /**
+     * 是否使用紧凑编码, 所有int, long成员域(包括数组, 集合和map的item)使用zigzag + varint编码, 数组, 集合和map的大小使用varint编码
+     * 也可以通过{@link Compact}指定某个成员域
+     */
+    boolean compact() default false;
+
+    /**
+     * 是否延迟解析, 适用于只读取少数成员域就转发的路由, 网关节点
+     * 解析出来的协议实例实现了{@link LazyProtocol}, 使用完需手动release
+     */
+    boolean lazy() default false;
+
+    /**
+     * 是否使用稀疏编码, 协议开头为成员域存在位图(每8个成员域1个字节), 默认值的成员域不编码, 适用于只更新少数成员域的协议
+     * 默认值即基础类型的0, false和对象类型的null, 空字符串, 空数组, 空集合和map不是默认值, 仍会编码
+     * 解析时, 不存在的成员域不会调用setter, 保持实例初始值, 故成员域不能初始化为非默认值, 否则生成codec时抛异常
+     * 不支持延迟解析
+     */
+    boolean sparse() default false;
+
+    /**
+     * 是否使用增量编码, 适用于定时同步的状态协议
+     * 连接两端按(协议id, {@link DeltaKey}成员域)缓存最后一次编码的快照, 之后只发送变化的成员域, map成员域只发送变化和删除的entry
+     * 接收端将增量合并至快照, 每次解析出新的协议实例
+     * 快照绑定在channel上, 重连后自动全量发送, 也可以通过{@link org.kin.transport.netty.socket.session.AbstractSession#resync()}强制全量发送
+     * 每个协议最多缓存{@link DeltaSnapshots#DEFAULT_MAX_ENTITIES}个key的快照, 两端按相同顺序淘汰, 淘汰后的key下次全量发送
+     * 不支持延迟解析和bytebuf成员域, 不支持udp
+     */
+    boolean delta() default false;
+
+    /**
+     * 是否合并发送, 适用于只关心最新值的高频更新协议, 比如位置, 价格
+     * 通过{@link org.kin.transport.netty.socket.session.AbstractSession}发送时, 进入session的合并发送队列
+     * 队列中未发送的同一(协议id, {@link ConflationKey}成员域)协议会被新协议替换, channel可写时才发送, 慢消费者只会收到最新值
+     */
+    boolean conflate() default false;
+
+    /**
+     * 协议优先级, 出站字节预算超出且策略为{@link org.kin.transport.netty.OutboundBudgetPolicy#DROP_LOW_PRIORITY}时,
+     * 不大于0的协议被丢弃, 大于0的协议照常发送
+     */
+    int priority() default 0;
 }
@@ -1,5 +1,8 @@
 package org.kin.transport.netty.socket.protocol;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+
 /**
  * 协议encoder decoder
  * <p>
@@ -30,8 +33,115 @@ public interface ProtocolCodec<P> {
      */
     SocketResponseOprs write(SocketProtocol protocol);
 
+    /**
+     * 协议 -> bytes, 直接写入指定的response(已写入协议id)
+     * 默认实现兼容手写的codec, 需要额外拷贝一次
+     *
+     * @param protocol 协议实例
+     * @param response response bytes
+     */
+    default void write(SocketProtocol protocol, SocketResponseOprs response) {
+        ByteBuf byteBuf = write(protocol).getByteBuf();
+        try {
+            //跳过协议id
+            response.getByteBuf().writeBytes(byteBuf, byteBuf.readerIndex() + 2, byteBuf.readableBytes() - 2);
+        } finally {
+            ReferenceCountUtil.release(byteBuf);
+        }
+    }
+
     /**
      * vo -> bytes
      */
     void writeVO(P vo, SocketResponseOprs response);
+
+    /**
+     * 计算协议编码后的字节数(包含协议id), 用于预分配bytebuf
+     *
+     * @param protocol 协议实例
+     * @return 协议编码后的字节数, 小于0则表示无法计算
+     */
+    default int sizeOf(SocketProtocol protocol) {
+        return -1;
+    }
+
+    /**
+     * 计算vo编码后的字节数
+     *
+     * @return vo编码后的字节数, 小于0则表示无法计算
+     */
+    default int sizeOfVO(P vo) {
+        return -1;
+    }
+
+    /**
+     * 创建协议或vo实例, 由生成的codec直接new, 不需要反射
+     *
+     * @return 实例, null则表示不支持, 由调用方自行创建
+     */
+    default P newInstance() {
+        return null;
+    }
+
+    /**
+     * 创建延迟解析的协议实例, 见{@link LazyProtocol}
+     *
+     * @return 延迟解析的协议实例, null则表示不支持
+     */
+    default SocketProtocol newLazyInstance() {
+        return null;
+    }
+
+    /**
+     * release 协议中的bytebuf成员域, 由transport在协议处理完或者编码完后调用, 见{@link ProtocolFactory#releasePayload(Object)}
+     *
+     * @param protocol 协议实例
+     */
+    default void releasePayload(SocketProtocol protocol) {
+        //默认没有bytebuf成员域
+    }
+
+    /**
+     * 编码单个成员域, 仅增量编码协议({@link Protocol#delta()})支持
+     *
+     * @param index    成员域下标, 与codec的成员域顺序一致
+     * @param protocol 协议实例
+     * @param response response bytes
+     */
+    default void writeField(int index, SocketProtocol protocol, SocketResponseOprs response) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 解析单个成员域并set, 仅增量编码协议({@link Protocol#delta()})支持
+     *
+     * @param index    成员域下标, 与codec的成员域顺序一致
+     * @param request  request bytes
+     * @param protocol 协议实例
+     */
+    default void readField(int index, SocketRequestOprs request, SocketProtocol protocol) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 编码map成员域的key, 仅增量编码协议({@link Protocol#delta()})支持
+     *
+     * @param index    map成员域下标
+     * @param key      map key
+     * @param response response bytes
+     */
+    default void writeMapKey(int index, Object key, SocketResponseOprs response) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * 编码map成员域的value, 仅增量编码协议({@link Protocol#delta()})支持
+     *
+     * @param index    map成员域下标
+     * @param value    map value
+     * @param response response bytes
+     */
+    default void writeMapValue(int index, Object value, SocketResponseOprs response) {
+        throw new UnsupportedOperationException();
+    }
 }
@@ -2,20 +2,32 @@ package org.kin.transport.netty.socket.protocol;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
 import javassist.CannotCompileException;
 import javassist.ClassPool;
 import javassist.CtClass;
+import javassist.CtField;
 import javassist.CtMethod;
+import javassist.CtNewConstructor;
 import org.kin.framework.collection.Tuple;
 import org.kin.framework.utils.ClassUtils;
 import org.kin.framework.utils.StringUtils;
+import org.kin.transport.netty.utils.VarIntUtils;
 import org.reflections.Reflections;
 import org.reflections.scanners.SubTypesScanner;
 import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.*;
+import java.net.URL;
 import java.util.*;
 
 /**
@@ -23,6 +35,10 @@ import java.util.*;
  * <p>
  * 集合数组和map在暂不支持嵌套(可以通过vo类型实现)
  * 不支持null 实例, 请开发者自己生成empty 实例
+ * 基础类型数组批量读写, 集合和map按编码的大小预设容量
+ * 稀疏编码({@link Protocol#sparse()})不编码默认值的成员域, 支持null
+ * 增量编码({@link Protocol#delta()})协议额外生成按成员域读写的方法, 由{@link DeltaSnapshots}对比快照
+ * 支持netty {@link IntObjectMap}, {@link LongObjectMap}基础类型key map, 避免key装箱
  *
  * @author huangjianqin
  * @date 2020/10/4
@@ -31,6 +47,11 @@ public class ProtocolCodecs {
     private static final Logger log = LoggerFactory.getLogger(ProtocolCodecs.class);
     /** javassist class pool */
     private static final ClassPool POOL = ClassPool.getDefault();
+    /**
+     * 连续定长基础类型成员域是否直接读写bytebuf, 编码结果与逐个成员域读写一致
+     * 未经基准测试(see ProtocolCodecBenchmark)验证收益前默认关闭, 通过-Dkin.transport.protocol.blockAccess=true开启
+     */
+    private static final boolean BLOCK_ACCESS = Boolean.getBoolean("kin.transport.protocol.blockAccess");
 
     static {
         POOL.importPackage("org.kin");
@@ -38,6 +59,8 @@ public class ProtocolCodecs {
 
     /** {@link ProtocolCodec} 缓存 */
     private static Cache<Class<?>, ProtocolCodec<?>> protocolCodecs = CacheBuilder.newBuilder().build();
+    /** 增量编码协议成员域信息缓存 */
+    private static Cache<Class<?>, DeltaSchema> deltaSchemas = CacheBuilder.newBuilder().build();
 
     private ProtocolCodecs() {
     }
@@ -55,14 +78,69 @@ public class ProtocolCodecs {
         return (ProtocolCodec<P>) protocolCodecs.getIfPresent(target);
     }
 
+    /**
+     * @return 增量编码协议成员域信息, 非增量编码协议或手写的codec则返回null
+     */
+    static DeltaSchema deltaSchema(Class<?> target) {
+        return deltaSchemas.getIfPresent(target);
+    }
+
     //----------------------------------------------------------------------------------------------------------------------------------------
 
+    /**
+     * 根据编译期生成的协议索引初始化codec, 只有编译期没有生成codec的类才使用javassist运行时生成
+     */
+    static void init(ProtocolIndex index) {
+        synchronized (ProtocolCodecs.class) {
+            //init implemented protocol codecs
+            for (Map.Entry<Class<?>, Class<?>> entry : index.getImplementedCodecs().entrySet()) {
+                protocolCodecs.put(entry.getKey(), (ProtocolCodec) ClassUtils.instance(entry.getValue()));
+            }
+
+            //init generated protocol codecs, 手写的codec优先
+            for (Map.Entry<Class<?>, Class<?>> entry : index.getGeneratedCodecs().entrySet()) {
+                if (!isInited(entry.getKey())) {
+                    protocolCodecs.put(entry.getKey(), (ProtocolCodec) ClassUtils.instance(entry.getValue()));
+                }
+            }
+
+            //编译期没有覆盖的, 运行时生成
+            for (Class<?> target : index.getProtocolClasses()) {
+                init(target, true);
+            }
+            for (Class<?> target : index.getVoClasses()) {
+                init(target, false);
+            }
+        }
+    }
+
     /**
      * 初始化某classpath下的协议codec
      */
     static void init(String scanPath) {
+        init(new Reflections(scanPath, new SubTypesScanner(), new TypeAnnotationsScanner()));
+    }
+
+    /**
+     * 初始化某classpath下, 协议索引没有覆盖的classpath根中的协议codec
+     *
+     * @param urls 协议索引没有覆盖的classpath根
+     * @return 扫描到的协议类
+     */
+    static Set<Class<?>> init(String scanPath, Collection<URL> urls) {
+        Reflections reflections = new Reflections(new ConfigurationBuilder()
+                .setUrls(urls)
+                .filterInputsBy(new FilterBuilder().includePackage(scanPath))
+                .setScanners(new SubTypesScanner(), new TypeAnnotationsScanner()));
+        init(reflections);
+        return reflections.getTypesAnnotatedWith(Protocol.class);
+    }
+
+    /**
+     * 初始化扫描到的协议codec
+     */
+    private static void init(Reflections reflections) {
         synchronized (ProtocolCodecs.class) {
-            Reflections reflections = new Reflections(scanPath, new SubTypesScanner(), new TypeAnnotationsScanner());
             //init implemented protocol codecs
             for (Class<?> target : reflections.getSubTypesOf(ProtocolCodec.class)) {
                 Type genericSuperclass = target.getGenericSuperclass();
@@ -95,6 +173,28 @@ public class ProtocolCodecs {
         if (isInited(target)) {
             return;
         }
+        List<Field> validField = getValidFields(target, isProtocol);
+        if (isSparse(target)) {
+            checkSparseInitialValues(target, validField);
+        }
+
+        //codec类生成
+        try {
+            String codecCtClassName = target.getName().concat("Codec");
+            ProtocolCodec<?> codec = makeCodec(codecCtClassName, target, validField, isProtocol, BLOCK_ACCESS);
+            protocolCodecs.put(target, codec);
+            if (isProtocol && isDelta(target)) {
+                deltaSchemas.put(target, newDeltaSchema(target, validField));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 获取有效的成员域, 并初始化成员域中的vo
+     */
+    private static List<Field> getValidFields(Class<?> target, boolean isProtocol) {
         List<Field> fields = ClassUtils.getAllFields(target);
         List<Field> validField = new ArrayList<>(fields.size());
         for (Field field : fields) {
@@ -119,6 +219,9 @@ public class ProtocolCodecs {
 
             //检查是否是protocol vo
             Class<?> fieldType = field.getType();
+            if (!isProtocol && ByteBuf.class.equals(fieldType)) {
+                throw new ProtocolException(String.format("%s class field '%s', bytebuf field is only supported in protocol", target.getName(), field.getName()));
+            }
             ProtocolVO protocolVO = fieldType.getAnnotation(ProtocolVO.class);
             if (Objects.nonNull(protocolVO)) {
                 //先初始化
@@ -128,40 +231,136 @@ public class ProtocolCodecs {
             validField.add(field);
         }
 
-        //codec类生成
+        return validField;
+    }
+
+    /**
+     * 稀疏编码解析时不存在的成员域保持实例初始值, 故成员域初始值必须为默认值, 即基础类型的0, false和对象类型的null
+     * 否则编码方写入默认值(不编码)后, 解析方得到的是非默认的初始值
+     */
+    private static void checkSparseInitialValues(Class<?> target, List<Field> validField) {
+        Object instance = ClassUtils.instance(target);
+        if (Objects.isNull(instance)) {
+            throw new ProtocolException(String.format("sparse class '%s' can't be instantiated", target.getName()));
+        }
+        for (Field field : validField) {
+            Object value;
+            try {
+                value = ClassUtils.getterMethod(target, field).invoke(instance);
+            } catch (Exception e) {
+                throw new ProtocolException(String.format("sparse class '%s' field '%s' getter error: %s", target.getName(), field.getName(), e.getMessage()));
+            }
+            if (!isDefaultValue(value)) {
+                throw new ProtocolException(String.format("sparse class '%s' field '%s' must not be initialized to non-default value '%s'",
+                        target.getName(), field.getName(), value));
+            }
+        }
+    }
+
+    /**
+     * @return 是否是默认值, 与{@link #presenceCondition(String, Class, Field)}一致
+     */
+    private static boolean isDefaultValue(Object value) {
+        if (Objects.isNull(value)) {
+            return true;
+        }
+        if (value instanceof Boolean) {
+            return !(Boolean) value;
+        }
+        if (value instanceof Character) {
+            return (Character) value == 0;
+        }
+        if (value instanceof Float) {
+            //区分-0.0
+            return Float.floatToRawIntBits((Float) value) == 0;
+        }
+        if (value instanceof Double) {
+            return Double.doubleToRawLongBits((Double) value) == 0L;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue() == 0L;
+        }
+        return false;
+    }
+
+    /**
+     * 仅用于对比测试, 生成指定方式的codec, 不会缓存
+     *
+     * @param blockAccess true = 连续定长基础类型成员域直接读写bytebuf, false = 逐个成员域通过{@link SocketRequestOprs}和{@link SocketResponseOprs}读写
+     */
+    static <P> ProtocolCodec<P> makeCodec(Class<P> target, boolean blockAccess) {
+        if (isLazy(target)) {
+            throw new UnsupportedOperationException("lazy protocol is not supported");
+        }
+        boolean isProtocol = SocketProtocol.class.isAssignableFrom(target);
+        String codecCtClassName = target.getName().concat(blockAccess ? "BlockAccessCodec" : "FieldAccessCodec");
         try {
-            String codecCtClassName = target.getName().concat("Codec");
-            CtClass codecCtClass = POOL.makeClass(codecCtClassName);
-            codecCtClass.addInterface(POOL.getCtClass(ProtocolCodec.class.getName()));
+            return (ProtocolCodec<P>) makeCodec(codecCtClassName, target, getValidFields(target, isProtocol), isProtocol, blockAccess);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            log.debug(System.lineSeparator());
-            log.debug("#############".concat(codecCtClassName).concat("#############").concat(System.lineSeparator()));
+    /**
+     * 生成codec类, 并实例化
+     *
+     * @param blockAccess 连续定长基础类型成员域是否直接读写bytebuf
+     */
+    private static ProtocolCodec<?> makeCodec(String codecCtClassName, Class<?> target, List<Field> validField,
+                                              boolean isProtocol, boolean blockAccess) throws Exception {
+        CtClass codecCtClass = POOL.makeClass(codecCtClassName);
+        codecCtClass.addInterface(POOL.getCtClass(ProtocolCodec.class.getName()));
 
-            //生成read方法
-            addReadMethod(codecCtClass, target, validField, isProtocol);
+        log.debug(System.lineSeparator());
+        log.debug("#############".concat(codecCtClassName).concat("#############").concat(System.lineSeparator()));
 
-            //生成readVO方法
-            addReadVOMethod(codecCtClass, target, validField, isProtocol);
+        //生成read方法
+        addReadMethod(codecCtClass, target, validField, isProtocol, blockAccess);
 
-            //生成write方法
-            addWriteMethod(codecCtClass, target, validField, isProtocol);
+        //生成readVO方法
+        addReadVOMethod(codecCtClass, target, validField, isProtocol, blockAccess);
 
-            //生成writeVO方法
-            addWriteVOMethod(codecCtClass, target, validField, isProtocol);
+        //生成write方法
+        addWriteMethod(codecCtClass, target, validField, isProtocol, blockAccess);
 
-            Object instance = codecCtClass.toClass().getConstructor().newInstance();
-            protocolCodecs.put(target, (ProtocolCodec<?>) instance);
+        //生成writeVO方法
+        addWriteVOMethod(codecCtClass, target, validField, isProtocol, blockAccess);
 
-            log.debug("##########################".concat(System.lineSeparator()));
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        //生成sizeOf方法
+        addSizeOfMethod(codecCtClass, target, validField, isProtocol);
+
+        //生成sizeOfVO方法
+        addSizeOfVOMethod(codecCtClass, target, validField, isProtocol);
+
+        //生成newInstance方法
+        addNewInstanceMethod(codecCtClass, target);
+
+        //生成releasePayload方法
+        if (isProtocol) {
+            addReleasePayloadMethod(codecCtClass, target, validField);
+        }
+
+        //生成增量编码协议按成员域读写方法
+        if (isProtocol && isDelta(target)) {
+            addDeltaMethods(codecCtClass, target, validField);
+        }
+
+        //生成延迟解析协议类和newLazyInstance方法
+        if (isProtocol && isLazy(target)) {
+            String lazyClassName = makeLazyProtocolClass(target, validField);
+            addNewLazyInstanceMethod(codecCtClass, lazyClassName);
         }
+
+        Object instance = codecCtClass.toClass().getConstructor().newInstance();
+
+        log.debug("##########################".concat(System.lineSeparator()));
+        return (ProtocolCodec<?>) instance;
     }
 
     /**
      * 添加解析协议方法
      */
-    private static void addReadMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol) throws NoSuchMethodException, CannotCompileException {
+    private static void addReadMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol, boolean blockAccess) throws NoSuchMethodException, CannotCompileException {
         Method readMethod = ProtocolCodec.class.getMethod("read", SocketRequestOprs.class, SocketProtocol.class);
         StringBuilder readMethodBody = new StringBuilder();
         prettyMethodHead(readMethodBody, ClassUtils.generateMethodDeclaration(readMethod));
@@ -176,9 +375,7 @@ public class ProtocolCodecs {
                             .concat(")")
                             .concat("$2;"));
 
-            for (Field field : validField) {
-                addFieldRead(readMethodBody, sinkName, "$1", target, field);
-            }
+            addFieldsRead(readMethodBody, sinkName, "$1", target, validField, blockAccess);
         } else {
             prettyMethodStatement(readMethodBody, "throw new UnsupportedOperationException();");
         }
@@ -193,7 +390,7 @@ public class ProtocolCodecs {
     /**
      * 添加解析VO方法
      */
-    private static void addReadVOMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol) throws NoSuchMethodException, CannotCompileException {
+    private static void addReadVOMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol, boolean blockAccess) throws NoSuchMethodException, CannotCompileException {
         Method readVOMethod = ProtocolCodec.class.getMethod("readVO", SocketRequestOprs.class);
         StringBuilder readVOMethodBody = new StringBuilder();
         prettyMethodHead(readVOMethodBody, ClassUtils.generateMethodDeclaration(readVOMethod));
@@ -207,9 +404,7 @@ public class ProtocolCodecs {
                             .concat(target.getName())
                             .concat("();"));
 
-            for (Field field : validField) {
-                addFieldRead(readVOMethodBody, sinkName, "$1", target, field);
-            }
+            addFieldsRead(readVOMethodBody, sinkName, "$1", target, validField, blockAccess);
             prettyMethodStatement(readVOMethodBody, "return msg;");
         } else {
             prettyMethodStatement(readVOMethodBody, "throw new UnsupportedOperationException();");
@@ -222,6 +417,120 @@ public class ProtocolCodecs {
         codecCtClass.addMethod(readCtMethod);
     }
 
+    /**
+     * 所有成员域解析代码
+     * 连续的定长基础类型成员域, 只校验一次可读字节数, 然后根据绝对下标直接从bytebuf读取, 不经过{@link SocketRequestOprs}
+     *
+     * @param sinkName    协议
+     * @param sourceName  request bytes
+     * @param blockAccess 连续定长基础类型成员域是否直接读取bytebuf
+     */
+    private static void addFieldsRead(StringBuilder sb, String sinkName, String sourceName, Class<?> target, List<Field> validField, boolean blockAccess) {
+        if (isSparse(target)) {
+            addSparseFieldsRead(sb, sinkName, sourceName, target, validField);
+            return;
+        }
+
+        int blockNo = 0;
+        for (int i = 0; i < validField.size(); ) {
+            int end = blockAccess ? blockEnd(target, validField, i) : i + 1;
+            if (end - i < 2) {
+                addFieldRead(sb, sinkName, sourceName, target, validField.get(i));
+                i++;
+                continue;
+            }
+
+            String bufVar = "block".concat(Integer.toString(blockNo)).concat("Buf");
+            String indexVar = "block".concat(Integer.toString(blockNo)).concat("Index");
+            int blockSize = blockSize(validField, i, end);
+            prettyMethodStatement(sb,
+                    ByteBuf.class.getName()
+                            .concat(" ")
+                            .concat(bufVar)
+                            .concat(" = ")
+                            .concat(sourceName)
+                            .concat(".getByteBuf();"));
+            prettyMethodStatement(sb, "int ".concat(indexVar).concat(" = ").concat(bufVar).concat(".readerIndex();"));
+            //只校验一次
+            prettyMethodStatement(sb,
+                    "if(".concat(bufVar)
+                            .concat(".readableBytes() < ")
+                            .concat(Integer.toString(blockSize))
+                            .concat("){ throw new IndexOutOfBoundsException(); }"));
+            int offset = 0;
+            for (int j = i; j < end; j++) {
+                Field field = validField.get(j);
+                Class<?> fieldType = field.getType();
+                prettyMethodStatement(sb,
+                        setFieldStatement(sinkName, ClassUtils.setterMethod(target, field).getName(),
+                                bufVar.concat(".get")
+                                        .concat(StringUtils.firstUpperCase(fieldType.getSimpleName()))
+                                        .concat("(")
+                                        .concat(indexVar)
+                                        .concat(" + ")
+                                        .concat(Integer.toString(offset))
+                                        .concat(")")));
+                offset += fixedSizeOf(fieldType);
+            }
+            prettyMethodStatement(sb, bufVar.concat(".readerIndex(").concat(indexVar).concat(" + ").concat(Integer.toString(blockSize)).concat(");"));
+
+            blockNo++;
+            i = end;
+        }
+    }
+
+    /**
+     * 稀疏编码, 先读取成员域存在位图, 只解析存在的成员域
+     *
+     * @param sinkName   协议
+     * @param sourceName request bytes
+     */
+    private static void addSparseFieldsRead(StringBuilder sb, String sinkName, String sourceName, Class<?> target, List<Field> validField) {
+        int presenceBytes = presenceBytes(validField);
+        for (int i = 0; i < presenceBytes; i++) {
+            prettyMethodStatement(sb,
+                    "int ".concat(presenceVar(i * 8))
+                            .concat(" = ")
+                            .concat(readCommon("UnsignedByte", sourceName))
+                            .concat(";"));
+        }
+        for (int i = 0; i < validField.size(); i++) {
+            prettyMethodStatement(sb, "if(".concat(presenceTest(i)).concat("){"));
+            addFieldRead(sb, sinkName, sourceName, target, validField.get(i));
+            prettyMethodStatement(sb, "}");
+        }
+    }
+
+    /**
+     * @return 从start开始, 连续的定长基础类型成员域的结束下标(不包含)
+     */
+    private static int blockEnd(Class<?> target, List<Field> validField, int start) {
+        int end = start;
+        while (end < validField.size() && isBlockField(target, validField.get(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return 是否是定长基础类型成员域, 不需要拆装箱
+     */
+    private static boolean isBlockField(Class<?> target, Field field) {
+        Class<?> fieldType = field.getType();
+        return fieldType.isPrimitive() && fixedSizeOf(fieldType, isCompact(target, field)) > 0;
+    }
+
+    /**
+     * @return [start, end)成员域编码后总字节数
+     */
+    private static int blockSize(List<Field> validField, int start, int end) {
+        int size = 0;
+        for (int i = start; i < end; i++) {
+            size += fixedSizeOf(validField.get(i).getType());
+        }
+        return size;
+    }
+
     /**
      * 所有成员域set方法
      *
@@ -231,20 +540,24 @@ public class ProtocolCodecs {
     private static void addFieldRead(StringBuilder sb, String sinkName, String sourceName, Class<?> target, Field field) {
         //setter
         Method setterMethod = ClassUtils.setterMethod(target, field);
+        boolean compact = isCompact(target, field);
 
         Class<?> fieldType = field.getType();
         if (fieldType.isArray()) {
             //数组类型
-            readArrayFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName());
+            readArrayFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName(), compact);
         } else if (Collection.class.isAssignableFrom(fieldType)) {
             //集合类型
-            readCollectionFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName());
+            readCollectionFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName(), compact);
+        } else if (Objects.nonNull(primitiveKeyType(fieldType))) {
+            //基础类型key map
+            readPrimitiveKeyMapFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName(), compact);
         } else if (Map.class.isAssignableFrom(fieldType)) {
             //map类型
-            readMapFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName());
+            readMapFieldStatement(sb, field, sinkName, sourceName, setterMethod.getName(), compact);
         } else {
             //其他类型
-            prettyMethodStatement(sb, setFieldStatement(sinkName, setterMethod.getName(), readStatement(sourceName, fieldType)));
+            prettyMethodStatement(sb, setFieldStatement(sinkName, setterMethod.getName(), readStatement(sourceName, fieldType, compact)));
         }
     }
 
@@ -263,15 +576,11 @@ public class ProtocolCodecs {
     /**
      * 根据类型生成 sourceName.readXX() | ProtocolCodecs.codec(XXX.class).readVO(sourceName) 代码, 这里的类型不包括数组, 集合和map
      */
-    private static String readStatement(String sourceName, Class<?> type) {
+    private static String readStatement(String sourceName, Class<?> type, boolean compact) {
         ProtocolVO protocolVO = type.getAnnotation(ProtocolVO.class);
         if (Objects.isNull(protocolVO)) {
             //基础类型
-            if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
-                return readCommon("int", sourceName);
-            } else {
-                return readCommon(type.getSimpleName(), sourceName);
-            }
+            return readCommon(typeName(type, compact), sourceName);
         } else {
             //vo
             return readVO(type, sourceName);
@@ -281,18 +590,18 @@ public class ProtocolCodecs {
     /**
      * 根据类型生成 (Cast)(sourceName.readXX() | ProtocolCodecs.codec(XXX.class).readVO(sourceName)) 代码, 这里的类型不包括数组, 集合和map
      */
-    private static String readStatementWithCast(String sourceName, Class<?> type) {
+    private static String readStatementWithCast(String sourceName, Class<?> type, boolean compact) {
         ProtocolVO protocolVO = type.getAnnotation(ProtocolVO.class);
         if (Objects.isNull(protocolVO)) {
             //基础类型
             if (Integer.class.equals(type)) {
-                return ClassUtils.primitivePackage(Integer.TYPE, readCommon("int", sourceName));
+                return ClassUtils.primitivePackage(Integer.TYPE, readCommon(typeName(type, compact), sourceName));
             } else if (Short.class.equals(type)) {
                 return ClassUtils.primitivePackage(Short.TYPE, readCommon(type.getSimpleName(), sourceName));
             } else if (Byte.class.equals(type)) {
                 return ClassUtils.primitivePackage(Byte.TYPE, readCommon(type.getSimpleName(), sourceName));
             } else if (Long.class.equals(type)) {
-                return ClassUtils.primitivePackage(Long.TYPE, readCommon(type.getSimpleName(), sourceName));
+                return ClassUtils.primitivePackage(Long.TYPE, readCommon(typeName(type, compact), sourceName));
             } else if (Float.class.equals(type)) {
                 return ClassUtils.primitivePackage(Float.TYPE, readCommon(type.getSimpleName(), sourceName));
             } else if (Double.class.equals(type)) {
@@ -335,7 +644,7 @@ public class ProtocolCodecs {
     /**
      * read array
      */
-    private static void readArrayFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod) {
+    private static void readArrayFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod, boolean compact) {
         //数组item类型
         Class<?> itemType = ClassUtils.getItemType(field);
         if (isInited(itemType)) {
@@ -343,14 +652,25 @@ public class ProtocolCodecs {
             init(itemType, false);
         }
 
-        //大小为short
+        //大小为short, 紧凑编码则为varint
         //size变量名
         String sizeVar = field.getName().concat("Size");
         prettyMethodStatement(sb,
                 "int ".concat(sizeVar)
                         .concat(" = ")
-                        .concat(readStatement(sourceName, Short.class))
+                        .concat(readCommon(sizeTypeName(compact), sourceName))
                         .concat(";"));
+        String bulkTypeName = bulkTypeName(itemType, compact);
+        if (Objects.nonNull(bulkTypeName)) {
+            //基础类型数组, 批量读取
+            prettyMethodStatement(sb, setFieldStatement(sinkName, sourceSetterMethod,
+                    sourceName.concat(".read")
+                            .concat(bulkTypeName)
+                            .concat("(")
+                            .concat(sizeVar)
+                            .concat(")")));
+            return;
+        }
         //数组变量名
         String arrVar = field.getName();
         prettyMethodStatement(sb,
@@ -368,12 +688,12 @@ public class ProtocolCodecs {
         if (itemType.isPrimitive()) {
             prettyForStatement(forSb,
                     arrVar.concat("[i] = ")
-                            .concat(readStatement(sourceName, itemType))
+                            .concat(readStatement(sourceName, itemType, compact))
                             .concat(";"));
         } else {
             prettyForStatement(forSb,
                     arrVar.concat("[i] = ")
-                            .concat(readStatementWithCast(sourceName, itemType))
+                            .concat(readStatementWithCast(sourceName, itemType, compact))
                             .concat(";"));
         }
 
@@ -387,7 +707,7 @@ public class ProtocolCodecs {
     /**
      * read collection
      */
-    private static void readCollectionFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod) {
+    private static void readCollectionFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod, boolean compact) {
         //集合类型
         Class<?> fieldType = field.getType();
         //集合item类型
@@ -397,63 +717,35 @@ public class ProtocolCodecs {
             init(itemType, false);
         }
 
-        //大小为short
+        //大小为short, 紧凑编码则为varint
         //size变量名
         String sizeVar = field.getName().concat("Size");
         prettyMethodStatement(sb,
                 "int ".concat(sizeVar)
                         .concat(" = ")
-                        .concat(readStatement(sourceName, Short.class))
+                        .concat(readCommon(sizeTypeName(compact), sourceName))
                         .concat(";"));
 
         //集合变量名
         String collectionVar = field.getName();
-        if (!Modifier.isAbstract(fieldType.getModifiers())) {
-            prettyMethodStatement(sb,
-                    fieldType.getName()
-                            .concat(" ")
-                            .concat(collectionVar)
-                            .concat(" = new ")
-                            .concat(fieldType.getName())
-                            .concat(";"));
-        } else if (List.class.isAssignableFrom(fieldType)) {
-            prettyMethodStatement(sb,
-                    fieldType.getName()
-                            .concat(" ")
-                            .concat(collectionVar)
-                            .concat(" = new ")
-                            .concat(ArrayList.class.getName())
-                            .concat("(")
-                            .concat(sizeVar)
-                            .concat(");"));
+        Class<?> defaultType;
+        if (List.class.isAssignableFrom(fieldType)) {
+            defaultType = ArrayList.class;
         } else if (Set.class.isAssignableFrom(fieldType)) {
-            prettyMethodStatement(sb,
-                    fieldType.getName()
-                            .concat(" ")
-                            .concat(collectionVar)
-                            .concat(" = new ")
-                            .concat(HashSet.class.getName())
-                            .concat("(")
-                            .concat(sizeVar)
-                            .concat(");"));
+            defaultType = HashSet.class;
         } else if (Queue.class.isAssignableFrom(fieldType)) {
-            prettyMethodStatement(sb,
-                    fieldType.getName()
-                            .concat(" ")
-                            .concat(collectionVar)
-                            .concat(" = new ")
-                            .concat(LinkedList.class.getName())
-                            .concat("();"));
+            defaultType = ArrayDeque.class;
         } else {
-            throw new UnsupportedOperationException();
+            defaultType = null;
         }
+        prettyMethodStatement(sb, newContainerStatement(fieldType, defaultType, collectionVar, sizeVar));
 
         //for循环设置变量值
         StringBuilder forSb = new StringBuilder();
         prettyForHead(forSb, "for(int i = 0; i < ".concat(sizeVar).concat("; i++)"));
         prettyForStatement(forSb,
                 collectionVar.concat(".add(")
-                        .concat(readStatementWithCast(sourceName, itemType))
+                        .concat(readStatementWithCast(sourceName, itemType, compact))
                         .concat(");"));
         prettyForTail(forSb);
         //for循环代码
@@ -465,7 +757,7 @@ public class ProtocolCodecs {
     /**
      * read map
      */
-    private static void readMapFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod) {
+    private static void readMapFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod, boolean compact) {
         //map类型
         Class<?> fieldType = field.getType();
         //map entry类型
@@ -482,44 +774,68 @@ public class ProtocolCodecs {
             init(valueType, false);
         }
 
-        //大小为short
+        //大小为short, 紧凑编码则为varint
         //size变量名
         String sizeVar = field.getName().concat("Size");
         prettyMethodStatement(sb,
                 "int ".concat(sizeVar)
                         .concat(" = ")
-                        .concat(readStatement(sourceName, Short.class))
+                        .concat(readCommon(sizeTypeName(compact), sourceName))
                         .concat(";"));
         //集合变量名
         String mapVar = field.getName();
-        if (!Modifier.isAbstract(fieldType.getModifiers())) {
-            prettyMethodStatement(sb,
-                    fieldType.getName()
-                            .concat(" ")
-                            .concat(mapVar)
-                            .concat(" = new ")
-                            .concat(fieldType.getName())
-                            .concat(";"));
-        } else {
-            prettyMethodStatement(sb,
-                    fieldType.getName()
-                            .concat(" ")
-                            .concat(mapVar)
-                            .concat(" = new ")
-                            .concat(HashMap.class.getName())
-                            .concat("(")
-                            .concat(sizeVar)
-                            .concat(");"));
-        }
+        prettyMethodStatement(sb, newContainerStatement(fieldType, HashMap.class, mapVar, sizeVar));
 
         //for循环设置变量值
         StringBuilder forSb = new StringBuilder();
         prettyForHead(forSb, "for(int i = 0; i < ".concat(sizeVar).concat("; i++)"));
         prettyForStatement(forSb,
                 mapVar.concat(".put(")
-                        .concat(readStatementWithCast(sourceName, keyType))
+                        .concat(readStatementWithCast(sourceName, keyType, compact))
+                        .concat(",")
+                        .concat(readStatementWithCast(sourceName, valueType, compact))
+                        .concat(");"));
+        prettyForTail(forSb);
+        //for循环代码
+        sb.append(forSb.toString());
+        //set
+        prettyMethodStatement(sb, setFieldStatement(sinkName, sourceSetterMethod, mapVar));
+    }
+
+    /**
+     * read 基础类型key map
+     */
+    private static void readPrimitiveKeyMapFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceSetterMethod, boolean compact) {
+        //map类型
+        Class<?> fieldType = field.getType();
+        Class<?> keyType = primitiveKeyType(fieldType);
+        Class<?> valueType = primitiveKeyMapValueType(field);
+        if (isInited(valueType)) {
+            //初始化数组类型codec
+            init(valueType, false);
+        }
+
+        //大小为short, 紧凑编码则为varint
+        //size变量名
+        String sizeVar = field.getName().concat("Size");
+        prettyMethodStatement(sb,
+                "int ".concat(sizeVar)
+                        .concat(" = ")
+                        .concat(readCommon(sizeTypeName(compact), sourceName))
+                        .concat(";"));
+        //集合变量名
+        String mapVar = field.getName();
+        Class<?> defaultType = Integer.TYPE.equals(keyType) ? IntObjectHashMap.class : LongObjectHashMap.class;
+        prettyMethodStatement(sb, newContainerStatement(fieldType, defaultType, mapVar, sizeVar));
+
+        //for循环设置变量值, key不装箱
+        StringBuilder forSb = new StringBuilder();
+        prettyForHead(forSb, "for(int i = 0; i < ".concat(sizeVar).concat("; i++)"));
+        prettyForStatement(forSb,
+                mapVar.concat(".put(")
+                        .concat(readStatement(sourceName, keyType, compact))
                         .concat(",")
-                        .concat(readStatementWithCast(sourceName, valueType))
+                        .concat(readStatementWithCast(sourceName, valueType, compact))
                         .concat(");"));
         prettyForTail(forSb);
         //for循环代码
@@ -528,36 +844,126 @@ public class ProtocolCodecs {
         prettyMethodStatement(sb, setFieldStatement(sinkName, sourceSetterMethod, mapVar));
     }
 
+    /**
+     * 生成按编码的大小预设容量的集合或map实例化代码
+     * 成员域类型为接口或抽象类时, 实例化defaultType
+     */
+    private static String newContainerStatement(Class<?> fieldType, Class<?> defaultType, String var, String sizeVar) {
+        Class<?> instanceType = fieldType;
+        if (Modifier.isAbstract(fieldType.getModifiers())) {
+            if (Objects.isNull(defaultType)) {
+                throw new UnsupportedOperationException(fieldType.getName());
+            }
+            instanceType = defaultType;
+        }
+
+        String args = "";
+        if (hasPublicIntConstructor(instanceType)) {
+            args = initialCapacity(instanceType, sizeVar);
+        }
+        return fieldType.getName()
+                .concat(" ")
+                .concat(var)
+                .concat(" = new ")
+                .concat(instanceType.getName())
+                .concat("(")
+                .concat(args)
+                .concat(");");
+    }
+
+    /**
+     * 生成集合或map初始容量代码, 保证读取sizeVar个元素过程中不会扩容
+     */
+    private static String initialCapacity(Class<?> type, String sizeVar) {
+        if (HashMap.class.isAssignableFrom(type) || HashSet.class.isAssignableFrom(type)) {
+            //默认负载因子0.75
+            return sizeVar.concat(" * 4 / 3 + 1");
+        } else if (IntObjectHashMap.class.isAssignableFrom(type) || LongObjectHashMap.class.isAssignableFrom(type)) {
+            //默认负载因子0.5, 且初始容量必须大于0
+            return sizeVar.concat(" * 2 + 1");
+        }
+        return sizeVar;
+    }
+
+    /**
+     * @return 是否有public的(int initialCapacity)构造器
+     */
+    private static boolean hasPublicIntConstructor(Class<?> target) {
+        try {
+            return Modifier.isPublic(target.getConstructor(Integer.TYPE).getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 基础类型key map的key类型, 即int | long, 非基础类型key map则返回null
+     */
+    private static Class<?> primitiveKeyType(Class<?> fieldType) {
+        if (IntObjectMap.class.isAssignableFrom(fieldType)) {
+            return Integer.TYPE;
+        } else if (LongObjectMap.class.isAssignableFrom(fieldType)) {
+            return Long.TYPE;
+        }
+        return null;
+    }
+
+    /**
+     * @return 基础类型key map的value类型, 必须声明泛型, 如IntObjectMap<VO1>
+     */
+    private static Class<?> primitiveKeyMapValueType(Field field) {
+        Type genericType = field.getGenericType();
+        if (genericType instanceof ParameterizedType) {
+            Type valueType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+            if (valueType instanceof Class) {
+                return (Class<?>) valueType;
+            }
+        }
+        throw new ProtocolException(String.format("field '%s' must declare value type of primitive key map", field.getName()));
+    }
+
+    /**
+     * @return 支持批量读写的基础类型数组, SocketRequestOprs readXXXs 和 SocketResponseOprs writeXXXs 方法中的XXXs, 不支持则返回null
+     * 紧凑编码下int, long数组逐个读写
+     */
+    private static String bulkTypeName(Class<?> itemType, boolean compact) {
+        if (Byte.TYPE.equals(itemType)) {
+            return "Bytes";
+        } else if (Short.TYPE.equals(itemType)) {
+            return "Shorts";
+        } else if (Float.TYPE.equals(itemType)) {
+            return "Floats";
+        } else if (Double.TYPE.equals(itemType)) {
+            return "Doubles";
+        } else if (!compact && Integer.TYPE.equals(itemType)) {
+            return "Ints";
+        } else if (!compact && Long.TYPE.equals(itemType)) {
+            return "Longs";
+        }
+        return null;
+    }
+
     /**
      * 添加协议编码方法
      */
-    private static void addWriteMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol) throws NoSuchMethodException, CannotCompileException {
+    private static void addWriteMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol, boolean blockAccess) throws NoSuchMethodException, CannotCompileException {
+        //先生成直接写入指定response的write方法
+        addWriteToResponseMethod(codecCtClass, target, validField, isProtocol, blockAccess);
+
         Method writeMethod = ProtocolCodec.class.getMethod("write", SocketProtocol.class);
         StringBuilder writeMethodBody = new StringBuilder();
         prettyMethodHead(writeMethodBody, ClassUtils.generateMethodDeclaration(writeMethod));
         if (isProtocol) {
             String sinkName = "response";
-            String sourceName = "protocol";
-            prettyMethodStatement(writeMethodBody,
-                    target.getName()
-                            .concat(" ")
-                            .concat(sourceName)
-                            .concat(" = (")
-                            .concat(target.getName())
-                            .concat(")$1;"));
             prettyMethodStatement(writeMethodBody,
                     SocketResponseOprs.class.getName()
                             .concat(" ")
                             .concat(sinkName)
                             .concat(" = new ")
                             .concat(SocketProtocolByteBuf.class.getName())
-                            .concat("(protocol.getProtocolId());"));
-
-            for (Field field : validField) {
-                addFieldWrite(writeMethodBody, sinkName, sourceName, target, field);
-            }
-
-            prettyMethodStatement(writeMethodBody, "return response;");
+                            .concat("($1.getProtocolId());"));
+            prettyMethodStatement(writeMethodBody, "write($1, ".concat(sinkName).concat(");"));
+            prettyMethodStatement(writeMethodBody, "return ".concat(sinkName).concat(";"));
         } else {
             prettyMethodStatement(writeMethodBody, "throw new UnsupportedOperationException();");
         }
@@ -570,9 +976,39 @@ public class ProtocolCodecs {
     }
 
     /**
-     * 添加VO编码方法
+     * 添加协议编码方法, 直接写入指定的response
      */
-    private static void addWriteVOMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol) throws NoSuchMethodException, CannotCompileException {
+    private static void addWriteToResponseMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol, boolean blockAccess) throws NoSuchMethodException, CannotCompileException {
+        Method writeMethod = ProtocolCodec.class.getMethod("write", SocketProtocol.class, SocketResponseOprs.class);
+        StringBuilder writeMethodBody = new StringBuilder();
+        prettyMethodHead(writeMethodBody, ClassUtils.generateMethodDeclaration(writeMethod));
+        if (isProtocol) {
+            String sinkName = "$2";
+            String sourceName = "protocol";
+            prettyMethodStatement(writeMethodBody,
+                    target.getName()
+                            .concat(" ")
+                            .concat(sourceName)
+                            .concat(" = (")
+                            .concat(target.getName())
+                            .concat(")$1;"));
+
+            addFieldsWrite(writeMethodBody, sinkName, sourceName, target, validField, blockAccess);
+        } else {
+            prettyMethodStatement(writeMethodBody, "throw new UnsupportedOperationException();");
+        }
+        prettyMethodTail(writeMethodBody);
+
+        log.debug(writeMethodBody.toString());
+
+        CtMethod writeCtMethod = CtMethod.make(writeMethodBody.toString(), codecCtClass);
+        codecCtClass.addMethod(writeCtMethod);
+    }
+
+    /**
+     * 添加VO编码方法
+     */
+    private static void addWriteVOMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol, boolean blockAccess) throws NoSuchMethodException, CannotCompileException {
         Method writeVOMethod = ProtocolCodec.class.getMethod("writeVO", Object.class, SocketResponseOprs.class);
         StringBuilder writeVOMethodBody = new StringBuilder();
         prettyMethodHead(writeVOMethodBody, ClassUtils.generateMethodDeclaration(writeVOMethod));
@@ -587,9 +1023,7 @@ public class ProtocolCodecs {
                             .concat(target.getName())
                             .concat(")$1;"));
 
-            for (Field field : validField) {
-                addFieldWrite(writeVOMethodBody, sinkName, sourceName, target, field);
-            }
+            addFieldsWrite(writeVOMethodBody, sinkName, sourceName, target, validField, blockAccess);
         } else {
             prettyMethodStatement(writeVOMethodBody, "throw new UnsupportedOperationException();");
         }
@@ -601,6 +1035,99 @@ public class ProtocolCodecs {
         codecCtClass.addMethod(writeCtMethod);
     }
 
+    /**
+     * 所有成员域编码代码
+     * 连续的定长基础类型成员域, 只扩容一次, 然后根据绝对下标直接写入bytebuf, 不经过{@link SocketResponseOprs}
+     *
+     * @param sinkName    response bytes
+     * @param sourceName  协议
+     * @param blockAccess 连续定长基础类型成员域是否直接写入bytebuf
+     */
+    private static void addFieldsWrite(StringBuilder sb, String sinkName, String sourceName, Class<?> target, List<Field> validField, boolean blockAccess) {
+        if (isSparse(target)) {
+            addSparseFieldsWrite(sb, sinkName, sourceName, target, validField);
+            return;
+        }
+
+        int blockNo = 0;
+        for (int i = 0; i < validField.size(); ) {
+            int end = blockAccess ? blockEnd(target, validField, i) : i + 1;
+            if (end - i < 2) {
+                addFieldWrite(sb, sinkName, sourceName, target, validField.get(i));
+                i++;
+                continue;
+            }
+
+            String bufVar = "block".concat(Integer.toString(blockNo)).concat("Buf");
+            String indexVar = "block".concat(Integer.toString(blockNo)).concat("Index");
+            int blockSize = blockSize(validField, i, end);
+            //写bytebuf成员域后可能切换成composite bytebuf, 每次都要重新获取
+            prettyMethodStatement(sb,
+                    ByteBuf.class.getName()
+                            .concat(" ")
+                            .concat(bufVar)
+                            .concat(" = ")
+                            .concat(sinkName)
+                            .concat(".getByteBuf();"));
+            //只扩容一次
+            prettyMethodStatement(sb, bufVar.concat(".ensureWritable(").concat(Integer.toString(blockSize)).concat(");"));
+            prettyMethodStatement(sb, "int ".concat(indexVar).concat(" = ").concat(bufVar).concat(".writerIndex();"));
+            int offset = 0;
+            for (int j = i; j < end; j++) {
+                Field field = validField.get(j);
+                Class<?> fieldType = field.getType();
+                prettyMethodStatement(sb,
+                        bufVar.concat(".set")
+                                .concat(StringUtils.firstUpperCase(fieldType.getSimpleName()))
+                                .concat("(")
+                                .concat(indexVar)
+                                .concat(" + ")
+                                .concat(Integer.toString(offset))
+                                .concat(", ")
+                                .concat(sourceName)
+                                .concat(".")
+                                .concat(ClassUtils.getterMethod(target, field).getName())
+                                .concat("());"));
+                offset += fixedSizeOf(fieldType);
+            }
+            prettyMethodStatement(sb, bufVar.concat(".writerIndex(").concat(indexVar).concat(" + ").concat(Integer.toString(blockSize)).concat(");"));
+
+            blockNo++;
+            i = end;
+        }
+    }
+
+    /**
+     * 稀疏编码, 先写成员域存在位图, 只编码非默认值的成员域
+     *
+     * @param sinkName   response bytes
+     * @param sourceName 协议
+     */
+    private static void addSparseFieldsWrite(StringBuilder sb, String sinkName, String sourceName, Class<?> target, List<Field> validField) {
+        int presenceBytes = presenceBytes(validField);
+        for (int i = 0; i < presenceBytes; i++) {
+            prettyMethodStatement(sb, "int ".concat(presenceVar(i * 8)).concat(" = 0;"));
+        }
+        for (int i = 0; i < validField.size(); i++) {
+            Field field = validField.get(i);
+            prettyMethodStatement(sb,
+                    "if(".concat(presenceCondition(sourceName, target, field))
+                            .concat("){ ")
+                            .concat(presenceVar(i))
+                            .concat(" |= ")
+                            .concat(Integer.toString(presenceBit(i)))
+                            .concat("; }"));
+        }
+        for (int i = 0; i < presenceBytes; i++) {
+            prettyMethodStatement(sb, writeCommon(sinkName, "UnsignedByte", "(short) ".concat(presenceVar(i * 8))));
+        }
+        for (int i = 0; i < validField.size(); i++) {
+            prettyMethodStatement(sb, "if(".concat(presenceTest(i)).concat("){"));
+            addFieldWrite(sb, sinkName, sourceName, target, validField.get(i));
+            prettyMethodStatement(sb, "}");
+        }
+    }
+
     /**
      * 每个成员域的编码方法
      *
@@ -610,27 +1137,31 @@ public class ProtocolCodecs {
     private static void addFieldWrite(StringBuilder sb, String sinkName, String sourceName, Class<?> target, Field field) {
         //getter
         Method getterMethod = ClassUtils.getterMethod(target, field);
+        boolean compact = isCompact(target, field);
 
         Class<?> fieldType = field.getType();
         if (fieldType.isArray()) {
             //数组类型
-            writeArrayFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName());
+            writeArrayFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName(), compact);
         } else if (Collection.class.isAssignableFrom(fieldType)) {
             //集合类型
-            writeCollectionFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName());
+            writeCollectionFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName(), compact);
+        } else if (Objects.nonNull(primitiveKeyType(fieldType))) {
+            //基础类型key map
+            writePrimitiveKeyMapFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName(), compact);
         } else if (Map.class.isAssignableFrom(fieldType)) {
             //map类型
-            writeMapFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName());
+            writeMapFieldStatement(sb, field, sinkName, sourceName, getterMethod.getName(), compact);
         } else {
             //其他类型
-            prettyMethodStatement(sb, writeFieldStatement(sinkName, sourceName, getterMethod.getName(), fieldType));
+            prettyMethodStatement(sb, writeFieldStatement(sinkName, sourceName, getterMethod.getName(), fieldType, compact));
         }
     }
 
     /**
      * 生成 sinkName.writeXXX(sourceName.getXXX()) | ProtocolCodecs.codec(XXX.class).writeVO(source, sinkName) 代码, 这里的类型不包括数组, 集合和map
      */
-    private static String writeFieldStatement(String sinkName, String sourceName, String sourceGetterMethod, Class<?> fieldType) {
+    private static String writeFieldStatement(String sinkName, String sourceName, String sourceGetterMethod, Class<?> fieldType, boolean compact) {
         String source = sourceName
                 .concat(".")
                 .concat(sourceGetterMethod)
@@ -639,11 +1170,7 @@ public class ProtocolCodecs {
         ProtocolVO protocolVO = fieldType.getAnnotation(ProtocolVO.class);
         if (Objects.isNull(protocolVO)) {
             //基础类型
-            if (Integer.class.equals(fieldType) || Integer.TYPE.equals(fieldType)) {
-                return writeCommon(sinkName, "int", source);
-            } else {
-                return writeCommon(sinkName, fieldType.getSimpleName(), source);
-            }
+            return writeCommon(sinkName, typeName(fieldType, compact), source);
         } else {
             //vo
             return writeVO(sinkName, source, fieldType);
@@ -664,16 +1191,45 @@ public class ProtocolCodecs {
     /**
      * 生成 sinkName.writeXXX(source) 代码
      */
-    private static String writeCommon(String sinkName, Class<?> type, String source) {
-        String typeName = type.getSimpleName();
-        if (Integer.class.equals(type)) {
-            typeName = "int";
+    private static String writeCommon(String sinkName, Class<?> type, String source, boolean compact) {
+        return writeCommon(sinkName, typeName(type, compact), source);
+    }
+
+    /**
+     * @return 是否使用紧凑编码, 成员域带{@link Compact}或者协议, vo声明了compact
+     */
+    private static boolean isCompact(Class<?> target, Field field) {
+        if (Objects.nonNull(field.getAnnotation(Compact.class))) {
+            return true;
         }
-        return sinkName.concat(".write")
-                .concat(StringUtils.firstUpperCase(typeName))
-                .concat("(")
-                .concat(source)
-                .concat(");");
+        Protocol protocol = target.getAnnotation(Protocol.class);
+        if (Objects.nonNull(protocol)) {
+            return protocol.compact();
+        }
+        ProtocolVO protocolVO = target.getAnnotation(ProtocolVO.class);
+        if (Objects.nonNull(protocolVO)) {
+            return protocolVO.compact();
+        }
+        return false;
+    }
+
+    /**
+     * @return SocketRequestOprs readXXX 和 SocketResponseOprs writeXXX 方法中的XXX, 这里的类型不包括数组, 集合, map和vo
+     */
+    private static String typeName(Class<?> type, boolean compact) {
+        if (Integer.class.equals(type) || Integer.TYPE.equals(type)) {
+            return compact ? "SInt32" : "int";
+        } else if (compact && (Long.class.equals(type) || Long.TYPE.equals(type))) {
+            return "SInt64";
+        }
+        return type.getSimpleName();
+    }
+
+    /**
+     * @return 数组, 集合和map大小的编码类型, short, 紧凑编码则为varint
+     */
+    private static String sizeTypeName(boolean compact) {
+        return compact ? "VarInt32" : "Short";
     }
 
     /**
@@ -725,7 +1281,7 @@ public class ProtocolCodecs {
     /**
      * write array
      */
-    private static void writeArrayFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod) {
+    private static void writeArrayFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod, boolean compact) {
         Class<?> fieldType = field.getType();
         //数组item类型
         Class<?> itemType = ClassUtils.getItemType(field);
@@ -734,7 +1290,7 @@ public class ProtocolCodecs {
             init(itemType, false);
         }
 
-        //大小为short
+        //大小为short, 紧凑编码则为varint
         //size变量名
         String sizeVar = field.getName().concat("Size");
         prettyMethodStatement(sb,
@@ -744,7 +1300,14 @@ public class ProtocolCodecs {
                         .concat(".")
                         .concat(sourceGetterMethod)
                         .concat("().length;"));
-        prettyMethodStatement(sb, writeCommon(sinkName, Short.class.getSimpleName(), sizeVar));
+        prettyMethodStatement(sb, writeCommon(sinkName, sizeTypeName(compact), sizeVar));
+        String bulkTypeName = bulkTypeName(itemType, compact);
+        if (Objects.nonNull(bulkTypeName)) {
+            //基础类型数组, 批量写入
+            prettyMethodStatement(sb, writeCommon(sinkName, bulkTypeName,
+                    sourceName.concat(".").concat(sourceGetterMethod).concat("()")));
+            return;
+        }
 
         //for循环设置变量值
         StringBuilder forSb = new StringBuilder();
@@ -764,7 +1327,8 @@ public class ProtocolCodecs {
             prettyForStatement(forSb,
                     writeCommon(sinkName,
                             itemType,
-                            source));
+                            source,
+                            compact));
         }
         prettyForTail(forSb);
         //for循环代码
@@ -774,7 +1338,7 @@ public class ProtocolCodecs {
     /**
      * write collection
      */
-    private static void writeCollectionFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod) {
+    private static void writeCollectionFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod, boolean compact) {
         //集合item类型
         Class<?> itemType = ClassUtils.getItemType(field);
         if (isInited(itemType)) {
@@ -782,7 +1346,7 @@ public class ProtocolCodecs {
             init(itemType, false);
         }
 
-        //大小为short
+        //大小为short, 紧凑编码则为varint
         //size变量名
         String sizeVar = field.getName().concat("Size");
         prettyMethodStatement(sb,
@@ -792,7 +1356,7 @@ public class ProtocolCodecs {
                         .concat(".")
                         .concat(sourceGetterMethod)
                         .concat("().size();"));
-        prettyMethodStatement(sb, writeCommon(sinkName, Short.class.getSimpleName(), sizeVar));
+        prettyMethodStatement(sb, writeCommon(sinkName, sizeTypeName(compact), sizeVar));
 
         //iterator
         String iteratorVar = field.getName().concat("Iterator");
@@ -819,7 +1383,8 @@ public class ProtocolCodecs {
             prettyForStatement(forSb,
                     writeCommon(sinkName,
                             itemType,
-                            source));
+                            source,
+                            compact));
         }
         prettyForTail(forSb);
         //for循环代码
@@ -829,7 +1394,7 @@ public class ProtocolCodecs {
     /**
      * write map
      */
-    private static void writeMapFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod) {
+    private static void writeMapFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod, boolean compact) {
         //map entry类型
         Tuple<Class<?>, Class<?>> kvType = ClassUtils.getKVType(field);
         Class<?> keyType = kvType.first();
@@ -844,7 +1409,7 @@ public class ProtocolCodecs {
             init(valueType, false);
         }
 
-        //大小为short
+        //大小为short, 紧凑编码则为varint
         //size变量名
         String sizeVar = field.getName().concat("Size");
         prettyMethodStatement(sb,
@@ -854,7 +1419,7 @@ public class ProtocolCodecs {
                         .concat(".")
                         .concat(sourceGetterMethod)
                         .concat("().size();"));
-        prettyMethodStatement(sb, writeCommon(sinkName, Short.class.getSimpleName(), sizeVar));
+        prettyMethodStatement(sb, writeCommon(sinkName, sizeTypeName(compact), sizeVar));
 
         //iterator
         String iteratorVar = field.getName().concat("Iterator");
@@ -891,7 +1456,8 @@ public class ProtocolCodecs {
             prettyForStatement(forSb,
                     writeCommon(sinkName,
                             keyType,
-                            keySource));
+                            keySource,
+                            compact));
         }
 
         String valueSource = unpackageGetStatement(entryName.concat(".getValue()"), valueType);
@@ -903,12 +1469,761 @@ public class ProtocolCodecs {
             prettyForStatement(forSb,
                     writeCommon(sinkName,
                             valueType,
-                            valueSource));
+                            valueSource,
+                            compact));
         }
         prettyForTail(forSb);
         //for循环代码
         sb.append(forSb.toString());
     }
+
+    /**
+     * write 基础类型key map
+     */
+    private static void writePrimitiveKeyMapFieldStatement(StringBuilder sb, Field field, String sinkName, String sourceName, String sourceGetterMethod, boolean compact) {
+        Class<?> keyType = primitiveKeyType(field.getType());
+        Class<?> valueType = primitiveKeyMapValueType(field);
+        if (isInited(valueType)) {
+            //初始化数组类型codec
+            init(valueType, false);
+        }
+
+        //大小为short, 紧凑编码则为varint
+        //size变量名
+        String sizeVar = field.getName().concat("Size");
+        prettyMethodStatement(sb,
+                "int ".concat(sizeVar)
+                        .concat(" = ")
+                        .concat(sourceName)
+                        .concat(".")
+                        .concat(sourceGetterMethod)
+                        .concat("().size();"));
+        prettyMethodStatement(sb, writeCommon(sinkName, sizeTypeName(compact), sizeVar));
+
+        //iterator, 遍历primitive entry, key不拆箱
+        String iteratorVar = field.getName().concat("Iterator");
+        prettyMethodStatement(sb,
+                Iterator.class.getName()
+                        .concat(" ")
+                        .concat(iteratorVar)
+                        .concat(" = ")
+                        .concat(sourceName)
+                        .concat(".")
+                        .concat(sourceGetterMethod)
+                        .concat("().entries().iterator();"));
+
+        StringBuilder forSb = new StringBuilder();
+        prettyForHead(forSb, "while(".concat(iteratorVar).concat(".hasNext())"));
+        String entryClassName = primitiveEntryClassName(keyType);
+        String entryName = field.getName().concat("Entry");
+        prettyForStatement(forSb,
+                entryClassName
+                        .concat(" ")
+                        .concat(entryName)
+                        .concat(" = (")
+                        .concat(entryClassName)
+                        .concat(")")
+                        .concat(iteratorVar)
+                        .concat(".next();"));
+        prettyForStatement(forSb, writeCommon(sinkName, keyType, entryName.concat(".key()"), compact));
+
+        String valueSource = unpackageGetStatement(entryName.concat(".value()"), valueType);
+        if (valueType.getAnnotation(ProtocolVO.class) != null) {
+            prettyForStatement(forSb,
+                    writeVO(sinkName,
+                            valueSource, valueType));
+        } else {
+            prettyForStatement(forSb,
+                    writeCommon(sinkName,
+                            valueType,
+                            valueSource,
+                            compact));
+        }
+        prettyForTail(forSb);
+        //for循环代码
+        sb.append(forSb.toString());
+    }
+
+    /**
+     * @return 基础类型key map的primitive entry类名
+     */
+    private static String primitiveEntryClassName(Class<?> keyType) {
+        return Integer.TYPE.equals(keyType) ? IntObjectMap.PrimitiveEntry.class.getName() : LongObjectMap.PrimitiveEntry.class.getName();
+    }
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 添加计算协议编码后字节数方法
+     */
+    private static void addSizeOfMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol) throws NoSuchMethodException, CannotCompileException {
+        Method sizeOfMethod = ProtocolCodec.class.getMethod("sizeOf", SocketProtocol.class);
+        StringBuilder sizeOfMethodBody = new StringBuilder();
+        prettyMethodHead(sizeOfMethodBody, ClassUtils.generateMethodDeclaration(sizeOfMethod));
+        if (isProtocol && isSizeOfSupported(validField)) {
+            String sourceName = "protocol";
+            prettyMethodStatement(sizeOfMethodBody,
+                    target.getName()
+                            .concat(" ")
+                            .concat(sourceName)
+                            .concat(" = (")
+                            .concat(target.getName())
+                            .concat(")$1;"));
+            //协议id, short
+            prettyMethodStatement(sizeOfMethodBody, "int size = 2;");
+            addFieldsSize(sizeOfMethodBody, sourceName, target, validField);
+            prettyMethodStatement(sizeOfMethodBody, "return size;");
+        } else {
+            prettyMethodStatement(sizeOfMethodBody, "return -1;");
+        }
+        prettyMethodTail(sizeOfMethodBody);
+
+        log.debug(sizeOfMethodBody.toString());
+
+        CtMethod sizeOfCtMethod = CtMethod.make(sizeOfMethodBody.toString(), codecCtClass);
+        codecCtClass.addMethod(sizeOfCtMethod);
+    }
+
+    /**
+     * 添加计算VO编码后字节数方法
+     */
+    private static void addSizeOfVOMethod(CtClass codecCtClass, Class<?> target, List<Field> validField, boolean isProtocol) throws NoSuchMethodException, CannotCompileException {
+        Method sizeOfVOMethod = ProtocolCodec.class.getMethod("sizeOfVO", Object.class);
+        StringBuilder sizeOfVOMethodBody = new StringBuilder();
+        prettyMethodHead(sizeOfVOMethodBody, ClassUtils.generateMethodDeclaration(sizeOfVOMethod));
+        if (!isProtocol && isSizeOfSupported(validField)) {
+            String sourceName = "msg";
+            prettyMethodStatement(sizeOfVOMethodBody,
+                    target.getName()
+                            .concat(" ")
+                            .concat(sourceName)
+                            .concat(" = (")
+                            .concat(target.getName())
+                            .concat(")$1;"));
+            prettyMethodStatement(sizeOfVOMethodBody, "int size = 0;");
+            addFieldsSize(sizeOfVOMethodBody, sourceName, target, validField);
+            prettyMethodStatement(sizeOfVOMethodBody, "return size;");
+        } else {
+            prettyMethodStatement(sizeOfVOMethodBody, "return -1;");
+        }
+        prettyMethodTail(sizeOfVOMethodBody);
+
+        log.debug(sizeOfVOMethodBody.toString());
+
+        CtMethod sizeOfVOCtMethod = CtMethod.make(sizeOfVOMethodBody.toString(), codecCtClass);
+        codecCtClass.addMethod(sizeOfVOCtMethod);
+    }
+
+    /**
+     * 添加创建实例方法, 直接new, 不需要反射
+     */
+    private static void addNewInstanceMethod(CtClass codecCtClass, Class<?> target) throws NoSuchMethodException, CannotCompileException {
+        Method newInstanceMethod = ProtocolCodec.class.getMethod("newInstance");
+        StringBuilder newInstanceMethodBody = new StringBuilder();
+        prettyMethodHead(newInstanceMethodBody, ClassUtils.generateMethodDeclaration(newInstanceMethod));
+        if (hasPublicNoArgsConstructor(target)) {
+            prettyMethodStatement(newInstanceMethodBody, "return new ".concat(target.getName()).concat("();"));
+        } else {
+            //没有public无参构造器, 只能反射
+            prettyMethodStatement(newInstanceMethodBody,
+                    "return ".concat(ClassUtils.class.getName())
+                            .concat(".instance(")
+                            .concat(target.getName())
+                            .concat(".class);"));
+        }
+        prettyMethodTail(newInstanceMethodBody);
+
+        log.debug(newInstanceMethodBody.toString());
+
+        CtMethod newInstanceCtMethod = CtMethod.make(newInstanceMethodBody.toString(), codecCtClass);
+        codecCtClass.addMethod(newInstanceCtMethod);
+    }
+
+    /**
+     * 添加release bytebuf成员域方法, 没有bytebuf成员域则不生成
+     */
+    private static void addReleasePayloadMethod(CtClass codecCtClass, Class<?> target, List<Field> validField) throws NoSuchMethodException, CannotCompileException {
+        List<Field> payloadFields = new ArrayList<>();
+        for (Field field : validField) {
+            if (ByteBuf.class.equals(field.getType())) {
+                payloadFields.add(field);
+            }
+        }
+        if (payloadFields.isEmpty()) {
+            return;
+        }
+
+        Method releasePayloadMethod = ProtocolCodec.class.getMethod("releasePayload", SocketProtocol.class);
+        StringBuilder releasePayloadMethodBody = new StringBuilder();
+        prettyMethodHead(releasePayloadMethodBody, ClassUtils.generateMethodDeclaration(releasePayloadMethod));
+        String sourceName = "protocol";
+        prettyMethodStatement(releasePayloadMethodBody,
+                target.getName()
+                        .concat(" ")
+                        .concat(sourceName)
+                        .concat(" = (")
+                        .concat(target.getName())
+                        .concat(")$1;"));
+        for (Field field : payloadFields) {
+            prettyMethodStatement(releasePayloadMethodBody,
+                    ReferenceCountUtil.class.getName()
+                            .concat(".release(")
+                            .concat(sourceName)
+                            .concat(".")
+                            .concat(ClassUtils.getterMethod(target, field).getName())
+                            .concat("());"));
+        }
+        prettyMethodTail(releasePayloadMethodBody);
+
+        log.debug(releasePayloadMethodBody.toString());
+
+        CtMethod releasePayloadCtMethod = CtMethod.make(releasePayloadMethodBody.toString(), codecCtClass);
+        codecCtClass.addMethod(releasePayloadCtMethod);
+    }
+
+    /**
+     * @return 是否使用稀疏编码, 见{@link Protocol#sparse()}
+     */
+    private static boolean isSparse(Class<?> target) {
+        Protocol protocol = target.getAnnotation(Protocol.class);
+        if (Objects.nonNull(protocol)) {
+            return protocol.sparse();
+        }
+        ProtocolVO protocolVO = target.getAnnotation(ProtocolVO.class);
+        return Objects.nonNull(protocolVO) && protocolVO.sparse();
+    }
+
+    /**
+     * @return 成员域存在位图字节数
+     */
+    private static int presenceBytes(List<Field> validField) {
+        return (validField.size() + 7) / 8;
+    }
+
+    /**
+     * @return 成员域所在的存在位图变量名, 每8个成员域1个字节
+     */
+    private static String presenceVar(int fieldIndex) {
+        return "presence".concat(Integer.toString(fieldIndex / 8));
+    }
+
+    /**
+     * @return 成员域在存在位图字节中的位
+     */
+    private static int presenceBit(int fieldIndex) {
+        return 1 << (fieldIndex % 8);
+    }
+
+    /**
+     * 生成 (presenceX & bit) != 0 代码
+     */
+    private static String presenceTest(int fieldIndex) {
+        return "(".concat(presenceVar(fieldIndex))
+                .concat(" & ")
+                .concat(Integer.toString(presenceBit(fieldIndex)))
+                .concat(") != 0");
+    }
+
+    /**
+     * 生成成员域非默认值判断代码
+     * 基础类型不为0或false, 对象类型不为null
+     * 空字符串, 空数组, 空集合和map, 不可读的bytebuf都不是默认值, 需编码, 否则解析方得到的是null
+     *
+     * @param sourceName 协议
+     */
+    private static String presenceCondition(String sourceName, Class<?> target, Field field) {
+        String source = sourceName
+                .concat(".")
+                .concat(ClassUtils.getterMethod(target, field).getName())
+                .concat("()");
+        Class<?> fieldType = field.getType();
+        if (Boolean.TYPE.equals(fieldType)) {
+            return source;
+        } else if (Float.TYPE.equals(fieldType)) {
+            //区分-0.0
+            return "Float.floatToRawIntBits(".concat(source).concat(") != 0");
+        } else if (Double.TYPE.equals(fieldType)) {
+            return "Double.doubleToRawLongBits(".concat(source).concat(") != 0L");
+        } else if (fieldType.isPrimitive()) {
+            return source.concat(" != 0");
+        }
+        return source.concat(" != null");
+    }
+
+    /**
+     * 生成延迟解析协议类, 继承协议类, 并实现{@link LazyProtocol}
+     * 协议头部定长成员域的getter直接从bytebuf读取, 其余getter和所有setter先完整解析
+     *
+     * @return 延迟解析协议类名
+     */
+    private static String makeLazyProtocolClass(Class<?> target, List<Field> validField) throws Exception {
+        if (Modifier.isFinal(target.getModifiers())) {
+            throw new ProtocolException(String.format("lazy protocol class '%s' must not be final", target.getName()));
+        }
+        if (isSparse(target)) {
+            //成员域偏移量不固定
+            throw new ProtocolException(String.format("lazy protocol class '%s' doesn't support sparse encoding", target.getName()));
+        }
+
+        String lazyClassName = target.getName().concat("Lazy");
+        CtClass lazyCtClass = POOL.makeClass(lazyClassName, POOL.getCtClass(target.getName()));
+        lazyCtClass.addInterface(POOL.getCtClass(LazyProtocol.class.getName()));
+
+        log.debug(System.lineSeparator());
+        log.debug("#############".concat(lazyClassName).concat("#############").concat(System.lineSeparator()));
+
+        lazyCtClass.addField(CtField.make("private " + ByteBuf.class.getName() + " lazyByteBuf;", lazyCtClass));
+        lazyCtClass.addField(CtField.make("private boolean lazyDecoded;", lazyCtClass));
+        lazyCtClass.addConstructor(CtNewConstructor.defaultConstructor(lazyCtClass));
+
+        //内部方法
+        addLazyMethod(lazyCtClass, "private void lazyCheck()",
+                "if(lazyByteBuf == null){ throw new IllegalStateException(\"lazy protocol has been released\"); }");
+        addLazyMethod(lazyCtClass, "private void lazyDecode()",
+                "if(lazyDecoded){ return; }",
+                "lazyCheck();",
+                "lazyDecoded = true;",
+                ProtocolCodecs.class.getName()
+                        .concat(".codec(")
+                        .concat(target.getName())
+                        .concat(".class).read(new ")
+                        .concat(SocketProtocolByteBuf.class.getName())
+                        .concat("(lazyByteBuf.duplicate()), this);"));
+
+        //LazyProtocol实现
+        addLazyMethod(lazyCtClass, ClassUtils.generateMethodDeclaration(LazyProtocol.class.getMethod("wrap", ByteBuf.class)),
+                "lazyByteBuf = $1;",
+                "lazyDecoded = false;");
+        addLazyMethod(lazyCtClass, ClassUtils.generateMethodDeclaration(LazyProtocol.class.getMethod("release")),
+                "if(lazyDecoded){ "
+                        .concat(ProtocolCodecs.class.getName())
+                        .concat(".codec(")
+                        .concat(target.getName())
+                        .concat(".class).releasePayload(this); }"),
+                "if(lazyByteBuf != null){ lazyByteBuf.release(); lazyByteBuf = null; }");
+        List<String> materializeStatements = new ArrayList<>(validField.size() + 3);
+        materializeStatements.add("lazyDecode();");
+        materializeStatements.add(target.getName()
+                .concat(" protocol = (")
+                .concat(target.getName())
+                .concat(")")
+                .concat(ProtocolFactory.class.getName())
+                .concat(".getProtocolInfo(getProtocolId()).createProtocol();"));
+        for (Field field : validField) {
+            materializeStatements.add("protocol."
+                    .concat(ClassUtils.setterMethod(target, field).getName())
+                    .concat("(super.")
+                    .concat(ClassUtils.getterMethod(target, field).getName())
+                    .concat("());"));
+            if (ByteBuf.class.equals(field.getType())) {
+                //bytebuf成员域转交给普通的协议实例, 延迟解析的协议release时不再release
+                materializeStatements.add("super."
+                        .concat(ClassUtils.setterMethod(target, field).getName())
+                        .concat("(null);"));
+            }
+        }
+        materializeStatements.add("return protocol;");
+        addLazyMethod(lazyCtClass, ClassUtils.generateMethodDeclaration(LazyProtocol.class.getMethod("materialize")),
+                materializeStatements.toArray(new String[0]));
+
+        //getter, setter
+        //协议id
+        int offset = 2;
+        boolean fixedOffset = true;
+        for (Field field : validField) {
+            Method getterMethod = ClassUtils.getterMethod(target, field);
+            Method setterMethod = ClassUtils.setterMethod(target, field);
+            if (Modifier.isFinal(getterMethod.getModifiers()) || Modifier.isFinal(setterMethod.getModifiers())) {
+                throw new ProtocolException(String.format("lazy protocol class '%s' field '%s' getter and setter must not be final", target.getName(), field.getName()));
+            }
+
+            Class<?> fieldType = field.getType();
+            int fixedSize = fieldType.isPrimitive() ? fixedSizeOf(fieldType, isCompact(target, field)) : -1;
+            fixedOffset = fixedOffset && fixedSize > 0;
+            if (fixedOffset) {
+                //定长, 直接根据偏移量读取
+                addLazyMethod(lazyCtClass, ClassUtils.generateMethodDeclaration(getterMethod),
+                        "if(lazyDecoded){ return super.".concat(getterMethod.getName()).concat("(); }"),
+                        "lazyCheck();",
+                        "return lazyByteBuf.get"
+                                .concat(StringUtils.firstUpperCase(fieldType.getSimpleName()))
+                                .concat("(")
+                                .concat(Integer.toString(offset))
+                                .concat(");"));
+                offset += fixedSize;
+            } else {
+                addLazyMethod(lazyCtClass, ClassUtils.generateMethodDeclaration(getterMethod),
+                        "lazyDecode();",
+                        "return super.".concat(getterMethod.getName()).concat("();"));
+            }
+
+            addLazyMethod(lazyCtClass, ClassUtils.generateMethodDeclaration(setterMethod),
+                    "lazyDecode();",
+                    "super.".concat(setterMethod.getName()).concat("($1);"));
+        }
+
+        addLazyMethod(lazyCtClass, "public String toString()",
+                "if(lazyByteBuf != null){ lazyDecode(); }",
+                "return super.toString();");
+
+        lazyCtClass.toClass();
+
+        log.debug("##########################".concat(System.lineSeparator()));
+        return lazyClassName;
+    }
+
+    /**
+     * 添加延迟解析协议类方法
+     */
+    private static void addLazyMethod(CtClass lazyCtClass, String declaration, String... statements) throws CannotCompileException {
+        StringBuilder methodBody = new StringBuilder();
+        prettyMethodHead(methodBody, declaration);
+        for (String statement : statements) {
+            prettyMethodStatement(methodBody, statement);
+        }
+        prettyMethodTail(methodBody);
+
+        log.debug(methodBody.toString());
+
+        lazyCtClass.addMethod(CtMethod.make(methodBody.toString(), lazyCtClass));
+    }
+
+    /**
+     * @return 是否有public无参构造器
+     */
+    private static boolean hasPublicNoArgsConstructor(Class<?> target) {
+        if (!Modifier.isPublic(target.getModifiers())) {
+            return false;
+        }
+        try {
+            Constructor<?> constructor = target.getConstructor();
+            return Modifier.isPublic(constructor.getModifiers());
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 所有成员域是否都支持计算编码后字节数
+     */
+    private static boolean isSizeOfSupported(List<Field> validField) {
+        for (Field field : validField) {
+            Class<?> fieldType = field.getType();
+            if (fieldType.isArray() || Collection.class.isAssignableFrom(fieldType)) {
+                if (!isSizeOfSupported(ClassUtils.getItemType(field))) {
+                    return false;
+                }
+            } else if (Objects.nonNull(primitiveKeyType(fieldType))) {
+                if (!isSizeOfSupported(primitiveKeyMapValueType(field))) {
+                    return false;
+                }
+            } else if (Map.class.isAssignableFrom(fieldType)) {
+                Tuple<Class<?>, Class<?>> kvType = ClassUtils.getKVType(field);
+                if (!isSizeOfSupported(kvType.first()) || !isSizeOfSupported(kvType.second())) {
+                    return false;
+                }
+            } else if (!isSizeOfSupported(fieldType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 该类型是否支持计算编码后字节数, 这里的类型不包括数组, 集合和map
+     */
+    private static boolean isSizeOfSupported(Class<?> type) {
+        return fixedSizeOf(type) > 0 || String.class.equals(type) || ByteBuf.class.equals(type) ||
+                Objects.nonNull(type.getAnnotation(ProtocolVO.class));
+    }
+
+    /**
+     * @return 定长类型编码后的字节数, 非定长类型返回-1
+     */
+    private static int fixedSizeOf(Class<?> type) {
+        if (Boolean.TYPE.equals(type) || Boolean.class.equals(type) ||
+                Byte.TYPE.equals(type) || Byte.class.equals(type)) {
+            return 1;
+        } else if (Short.TYPE.equals(type) || Short.class.equals(type)) {
+            return 2;
+        } else if (Integer.TYPE.equals(type) || Integer.class.equals(type) ||
+                Float.TYPE.equals(type) || Float.class.equals(type)) {
+            return 4;
+        } else if (Long.TYPE.equals(type) || Long.class.equals(type) ||
+                Double.TYPE.equals(type) || Double.class.equals(type)) {
+            return 8;
+        }
+        return -1;
+    }
+
+    /**
+     * 所有成员域编码后字节数的累加代码, 稀疏编码则只累加非默认值的成员域
+     *
+     * @param sourceName 协议
+     */
+    private static void addFieldsSize(StringBuilder sb, String sourceName, Class<?> target, List<Field> validField) {
+        if (!isSparse(target)) {
+            for (Field field : validField) {
+                addFieldSize(sb, sourceName, target, field);
+            }
+            return;
+        }
+
+        prettyMethodStatement(sb, "size += ".concat(Integer.toString(presenceBytes(validField))).concat(";"));
+        for (Field field : validField) {
+            prettyMethodStatement(sb, "if(".concat(presenceCondition(sourceName, target, field)).concat("){"));
+            addFieldSize(sb, sourceName, target, field);
+            prettyMethodStatement(sb, "}");
+        }
+    }
+
+    /**
+     * 每个成员域编码后字节数的累加代码
+     *
+     * @param sourceName 协议
+     */
+    private static void addFieldSize(StringBuilder sb, String sourceName, Class<?> target, Field field) {
+        //getter
+        Method getterMethod = ClassUtils.getterMethod(target, field);
+        String source = sourceName
+                .concat(".")
+                .concat(getterMethod.getName())
+                .concat("()");
+        boolean compact = isCompact(target, field);
+
+        Class<?> fieldType = field.getType();
+        //大小为short, 紧凑编码则为varint
+        if (fieldType.isArray()) {
+            //数组类型
+            Class<?> itemType = ClassUtils.getItemType(field);
+            String sizeVar = field.getName().concat("Size");
+            prettyMethodStatement(sb, "int ".concat(sizeVar).concat(" = ").concat(source).concat(".length;"));
+            int itemFixedSize = fixedSizeOf(itemType, compact);
+            if (itemFixedSize > 0) {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(itemFixedSize)).concat(";"));
+            } else {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                StringBuilder forSb = new StringBuilder();
+                prettyForHead(forSb, "for(int i = 0; i < ".concat(sizeVar).concat("; i++)"));
+                addItemSize(forSb, field.getName().concat("Item"), source.concat("[i]"), itemType, compact);
+                prettyForTail(forSb);
+                sb.append(forSb.toString());
+            }
+        } else if (Collection.class.isAssignableFrom(fieldType)) {
+            //集合类型
+            Class<?> itemType = ClassUtils.getItemType(field);
+            String sizeVar = field.getName().concat("Size");
+            prettyMethodStatement(sb, "int ".concat(sizeVar).concat(" = ").concat(source).concat(".size();"));
+            int itemFixedSize = fixedSizeOf(itemType, compact);
+            if (itemFixedSize > 0) {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(itemFixedSize)).concat(";"));
+            } else {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                String iteratorVar = field.getName().concat("Iterator");
+                prettyMethodStatement(sb,
+                        Iterator.class.getName()
+                                .concat(" ")
+                                .concat(iteratorVar)
+                                .concat(" = ")
+                                .concat(source)
+                                .concat(".iterator();"));
+                StringBuilder forSb = new StringBuilder();
+                prettyForHead(forSb, "while(".concat(iteratorVar).concat(".hasNext())"));
+                addItemSize(forSb, field.getName().concat("Item"), iteratorVar.concat(".next()"), itemType, compact);
+                prettyForTail(forSb);
+                sb.append(forSb.toString());
+            }
+        } else if (Objects.nonNull(primitiveKeyType(fieldType))) {
+            //基础类型key map
+            Class<?> keyType = primitiveKeyType(fieldType);
+            Class<?> valueType = primitiveKeyMapValueType(field);
+            String sizeVar = field.getName().concat("Size");
+            prettyMethodStatement(sb, "int ".concat(sizeVar).concat(" = ").concat(source).concat(".size();"));
+            int keyFixedSize = fixedSizeOf(keyType, compact);
+            int valueFixedSize = fixedSizeOf(valueType, compact);
+            if (keyFixedSize > 0 && valueFixedSize > 0) {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(keyFixedSize + valueFixedSize)).concat(";"));
+            } else {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                String iteratorVar = field.getName().concat("Iterator");
+                prettyMethodStatement(sb,
+                        Iterator.class.getName()
+                                .concat(" ")
+                                .concat(iteratorVar)
+                                .concat(" = ")
+                                .concat(source)
+                                .concat(".entries().iterator();"));
+                StringBuilder forSb = new StringBuilder();
+                prettyForHead(forSb, "while(".concat(iteratorVar).concat(".hasNext())"));
+                String entryClassName = primitiveEntryClassName(keyType);
+                String entryName = field.getName().concat("Entry");
+                prettyForStatement(forSb,
+                        entryClassName
+                                .concat(" ")
+                                .concat(entryName)
+                                .concat(" = (")
+                                .concat(entryClassName)
+                                .concat(")")
+                                .concat(iteratorVar)
+                                .concat(".next();"));
+                addItemSize(forSb, field.getName().concat("Key"), entryName.concat(".key()"), keyType, compact);
+                addItemSize(forSb, field.getName().concat("Value"), entryName.concat(".value()"), valueType, compact);
+                prettyForTail(forSb);
+                sb.append(forSb.toString());
+            }
+        } else if (Map.class.isAssignableFrom(fieldType)) {
+            //map类型
+            Tuple<Class<?>, Class<?>> kvType = ClassUtils.getKVType(field);
+            Class<?> keyType = kvType.first();
+            Class<?> valueType = kvType.second();
+            String sizeVar = field.getName().concat("Size");
+            prettyMethodStatement(sb, "int ".concat(sizeVar).concat(" = ").concat(source).concat(".size();"));
+            int keyFixedSize = fixedSizeOf(keyType, compact);
+            int valueFixedSize = fixedSizeOf(valueType, compact);
+            if (keyFixedSize > 0 && valueFixedSize > 0) {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(keyFixedSize + valueFixedSize)).concat(";"));
+            } else {
+                prettyMethodStatement(sb, "size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                String iteratorVar = field.getName().concat("Iterator");
+                prettyMethodStatement(sb,
+                        Iterator.class.getName()
+                                .concat(" ")
+                                .concat(iteratorVar)
+                                .concat(" = ")
+                                .concat(source)
+                                .concat(".entrySet().iterator();"));
+                StringBuilder forSb = new StringBuilder();
+                prettyForHead(forSb, "while(".concat(iteratorVar).concat(".hasNext())"));
+                String entryName = field.getName().concat("Entry");
+                prettyForStatement(forSb,
+                        Map.Entry.class.getName()
+                                .concat(" ")
+                                .concat(entryName)
+                                .concat(" = (")
+                                .concat(Map.Entry.class.getName())
+                                .concat(")")
+                                .concat(iteratorVar)
+                                .concat(".next();"));
+                addItemSize(forSb, field.getName().concat("Key"), entryName.concat(".getKey()"), keyType, compact);
+                addItemSize(forSb, field.getName().concat("Value"), entryName.concat(".getValue()"), valueType, compact);
+                prettyForTail(forSb);
+                sb.append(forSb.toString());
+            }
+        } else {
+            //其他类型
+            int fixedSize = fixedSizeOf(fieldType, compact);
+            if (fixedSize > 0) {
+                prettyMethodStatement(sb, "size += ".concat(Integer.toString(fixedSize)).concat(";"));
+            } else if (String.class.equals(fieldType)) {
+                prettyMethodStatement(sb, "size += ".concat(stringSizeOf(source)).concat(";"));
+            } else if (isVarIntType(fieldType)) {
+                prettyMethodStatement(sb, "size += ".concat(varIntSizeOf(unpackageGetStatement(source, fieldType), fieldType)).concat(";"));
+            } else if (ByteBuf.class.equals(fieldType)) {
+                prettyMethodStatement(sb, "size += "
+                        .concat(SocketProtocolByteBuf.class.getName())
+                        .concat(".byteBufSizeOf(")
+                        .concat(source)
+                        .concat(");"));
+            } else {
+                //vo
+                String voSizeVar = field.getName().concat("VOSize");
+                prettyMethodStatement(sb, "int ".concat(voSizeVar).concat(" = ").concat(voSizeOf(source, fieldType)).concat(";"));
+                prettyMethodStatement(sb, "if(".concat(voSizeVar).concat(" < 0){ return -1; }"));
+                prettyMethodStatement(sb, "size += ".concat(voSizeVar).concat(";"));
+            }
+        }
+    }
+
+    /**
+     * 数组, 集合和map的item编码后字节数的累加代码, 在循环体内
+     */
+    private static void addItemSize(StringBuilder forSb, String varPrefix, String source, Class<?> itemType, boolean compact) {
+        int fixedSize = fixedSizeOf(itemType, compact);
+        if (fixedSize > 0) {
+            prettyForStatement(forSb, "size += ".concat(Integer.toString(fixedSize)).concat(";"));
+        } else if (String.class.equals(itemType)) {
+            prettyForStatement(forSb, "size += ".concat(stringSizeOf("(".concat(String.class.getName()).concat(")").concat(source))).concat(";"));
+        } else if (isVarIntType(itemType)) {
+            prettyForStatement(forSb, "size += ".concat(varIntSizeOf(unpackageGetStatement(source, itemType), itemType)).concat(";"));
+        } else {
+            //vo
+            String voSizeVar = varPrefix.concat("VOSize");
+            prettyForStatement(forSb, "int ".concat(voSizeVar).concat(" = ").concat(voSizeOf(source, itemType)).concat(";"));
+            prettyForStatement(forSb, "if(".concat(voSizeVar).concat(" < 0){ return -1; }"));
+            prettyForStatement(forSb, "size += ".concat(voSizeVar).concat(";"));
+        }
+    }
+
+    /**
+     * @return 定长类型编码后的字节数, 非定长类型返回-1, 紧凑编码下int, long为非定长
+     */
+    private static int fixedSizeOf(Class<?> type, boolean compact) {
+        if (compact && isVarIntType(type)) {
+            return -1;
+        }
+        return fixedSizeOf(type);
+    }
+
+    /**
+     * @return 是否是紧凑编码下使用zigzag + varint编码的类型
+     */
+    private static boolean isVarIntType(Class<?> type) {
+        return Integer.TYPE.equals(type) || Integer.class.equals(type) ||
+                Long.TYPE.equals(type) || Long.class.equals(type);
+    }
+
+    /**
+     * 生成数组, 集合和map大小编码后字节数代码, 2 | VarIntUtils.computeRawVarInt32Size(sizeVar)
+     */
+    private static String sizeOfSize(String sizeVar, boolean compact) {
+        if (compact) {
+            return VarIntUtils.class.getName()
+                    .concat(".computeRawVarInt32Size(")
+                    .concat(sizeVar)
+                    .concat(")");
+        }
+        return "2";
+    }
+
+    /**
+     * 生成 VarIntUtils.computeRawVarInt32Size(VarIntUtils.encodeZigZag32(source)) 代码, long同理
+     */
+    private static String varIntSizeOf(String source, Class<?> type) {
+        String bits = Integer.TYPE.equals(type) || Integer.class.equals(type) ? "32" : "64";
+        return VarIntUtils.class.getName()
+                .concat(".computeRawVarInt")
+                .concat(bits)
+                .concat("Size(")
+                .concat(VarIntUtils.class.getName())
+                .concat(".encodeZigZag")
+                .concat(bits)
+                .concat("(")
+                .concat(source)
+                .concat("))");
+    }
+
+    /**
+     * 生成 2 + SocketProtocolByteBuf.utf8Length(source) 代码, 字符串长度为short
+     */
+    private static String stringSizeOf(String source) {
+        return "2 + "
+                .concat(SocketProtocolByteBuf.class.getName())
+                .concat(".utf8Length(")
+                .concat(source)
+                .concat(")");
+    }
+
+    /**
+     * 生成 ProtocolCodecs.codec(XXX.class).sizeOfVO(source) 代码
+     */
+    private static String voSizeOf(String source, Class<?> type) {
+        return ProtocolCodecs.class.getName()
+                .concat(".codec(")
+                .concat(type.getName())
+                .concat(".class).sizeOfVO(")
+                .concat(source)
+                .concat(")");
+    }
+
     //------------------------------------------------------------------------------------------------------------------------------------
 
     /**
@@ -1,73 +1,122 @@
 package org.kin.transport.netty.socket.protocol;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
 import org.kin.framework.utils.ClassUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
+import java.net.URL;
+import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * 协议生成工厂
+ * <p>
+ * 协议信息以协议id为下标存储在数组中, 解析协议只需一次数组访问
+ * 协议实例由生成的codec直接new({@link ProtocolCodec#newInstance()}), 不需要反射
  *
  * @author huangjianqin
  * @date 2019/7/4
  */
 public class ProtocolFactory {
     private static final Logger log = LoggerFactory.getLogger(ProtocolFactory.class);
-    /** 协议类信息缓存 */
-    private static final Cache<Integer, ProtocolInfo> PROTOCOL_CACHE = CacheBuilder.newBuilder().build();
+    /** 协议id最大值, 协议id以short编码 */
+    private static final int MAX_PROTOCOL_ID = Short.MAX_VALUE;
+    /** 协议类信息缓存, 下标为协议id, copy-on-write */
+    private static volatile ProtocolInfo[] PROTOCOL_CACHE = new ProtocolInfo[0];
 
     private ProtocolFactory() {
     }
 
     /**
      * 仅仅append
+     * classpath存在编译期生成的协议索引({@link ProtocolIndex}), 则只扫描scanPath下没有索引覆盖的classpath根
      *
      * @param scanPath 扫描package
      */
     public static void init(String scanPath) {
         synchronized (ProtocolFactory.class) {
-            Set<Class<? extends SocketProtocol>> protocolClasses = ClassUtils.getSubClass(scanPath, SocketProtocol.class, true);
+            Collection<Class<? extends SocketProtocol>> protocolClasses;
+            ProtocolIndex index = ProtocolIndex.load(scanPath);
+            if (index.isEmpty()) {
+                protocolClasses = ClassUtils.getSubClass(scanPath, SocketProtocol.class, true);
+                //先初始化codec
+                ProtocolCodecs.init(scanPath);
+            } else {
+                protocolClasses = new ArrayList<>(index.getProtocolClasses().size());
+                for (Class<?> protocolClass : index.getProtocolClasses()) {
+                    if (SocketProtocol.class.isAssignableFrom(protocolClass)) {
+                        protocolClasses.add((Class<? extends SocketProtocol>) protocolClass);
+                    }
+                }
+                //先初始化codec
+                ProtocolCodecs.init(index);
+                List<URL> uncoveredUrls = index.getUncoveredUrls();
+                if (uncoveredUrls.isEmpty()) {
+                    log.info("init protocols from index, skip scanning '{}'", scanPath);
+                } else {
+                    //索引没有覆盖的classpath根, 仍需扫描
+                    for (URL uncoveredUrl : uncoveredUrls) {
+                        log.warn("'{}' under '{}' is not covered by protocol index, scan it", uncoveredUrl, scanPath);
+                    }
+                    for (Class<?> protocolClass : ProtocolCodecs.init(scanPath, uncoveredUrls)) {
+                        if (SocketProtocol.class.isAssignableFrom(protocolClass)) {
+                            protocolClasses.add((Class<? extends SocketProtocol>) protocolClass);
+                        }
+                    }
+                }
+            }
+
+            ProtocolInfo[] protocolInfos = PROTOCOL_CACHE;
             for (Class<? extends SocketProtocol> protocolClass : protocolClasses) {
                 Protocol protocolAnnotation = protocolClass.getAnnotation(Protocol.class);
                 if (protocolAnnotation != null) {
+                    int id = protocolAnnotation.id();
+                    if (id < 0 || id > MAX_PROTOCOL_ID) {
+                        throw new ProtocolException(String.format("protocol id '%s' must be in [0, %s]", id, MAX_PROTOCOL_ID));
+                    }
                     int rate = protocolAnnotation.rate();
-                    PROTOCOL_CACHE.put(protocolAnnotation.id(), new ProtocolInfo(protocolClass, rate));
-                    log.info("find protocol(id={}) >>> {}, rate={}", protocolAnnotation.id(), protocolClass, rate);
+                    if (id >= protocolInfos.length) {
+                        protocolInfos = Arrays.copyOf(protocolInfos, id + 1);
+                    } else if (protocolInfos == PROTOCOL_CACHE) {
+                        protocolInfos = protocolInfos.clone();
+                    }
+                    protocolInfos[id] = new ProtocolInfo(id, protocolClass, rate, protocolAnnotation.lazy(), protocolAnnotation.delta(), protocolAnnotation.conflate(),
+                            protocolAnnotation.priority());
+                    log.info("find protocol(id={}) >>> {}, rate={}", id, protocolClass, rate);
                 }
             }
-            ProtocolCodecs.init(scanPath);
+            PROTOCOL_CACHE = protocolInfos;
+        }
+    }
+
+    /**
+     * @return 协议信息, 没有该协议则返回null
+     */
+    public static ProtocolInfo getProtocolInfo(int id) {
+        ProtocolInfo[] protocolInfos = PROTOCOL_CACHE;
+        if (id >= 0 && id < protocolInfos.length) {
+            return protocolInfos[id];
         }
+        return null;
     }
 
     /**
      * 根据id创建protocol, 并依照field定义(父类->子类)顺序设置field value, 从子类开始算
      */
     public static <T extends SocketProtocol> T createProtocol(int id, Object... fieldValues) {
-        ProtocolInfo protocolInfo = PROTOCOL_CACHE.getIfPresent(id);
+        ProtocolInfo protocolInfo = getProtocolInfo(id);
         if (protocolInfo != null) {
-            Class<? extends SocketProtocol> claxx = protocolInfo.getProtocolClass();
-            SocketProtocol protocol = ClassUtils.instance(claxx);
+            SocketProtocol protocol = protocolInfo.createProtocol();
             if (protocol != null) {
-                //设置成员域
-                Field[] fields = ClassUtils.getAllFields(claxx).toArray(new Field[0]);
-                List<Field> validFields = Stream.of(fields).filter(ProtocolUtils::isFieldValid).collect(Collectors.toList());
-                Collections.reverse(validFields);
-
-                //设置协议id
-                ClassUtils.setFieldValue(protocol, validFields.get(0), id);
-
                 if (fieldValues.length > 0) {
+                    //设置成员域
+                    List<Field> validFields = protocolInfo.getValidFields();
                     for (int i = 0; i < fieldValues.length; i++) {
-                        Field field = validFields.get(i + 1);
-                        ClassUtils.setFieldValue(protocol, field, fieldValues[i]);
+                        ClassUtils.setFieldValue(protocol, validFields.get(i), fieldValues[i]);
                     }
                 }
 
@@ -78,13 +127,68 @@ public class ProtocolFactory {
         throw new ProtocolException("unknow protocol '" + id + "'");
     }
 
+    /**
+     * release 接收到的协议中的bytebuf成员域, 延迟解析的协议由{@link LazyProtocol#release()}负责
+     * <p>
+     * bytebuf成员域同一时刻只有一个owner:
+     * 1. 接收到的协议, 处理完后由transport调用本方法release, 如需在处理完后继续使用bytebuf成员域, 需自行retain
+     * 2. 协议交给transport发送(session sendProtocol, client request, 广播等), 则由transport负责release,
+     * 编码完或者发送被拒绝(channel inactive, 超出出站字节预算等)时release, 调用者不能再使用bytebuf成员域
+     * 3. 接收到的协议在处理过程中被转发, 即已交给transport发送, 处理完后本方法不再release
+     * <p>
+     * 同一协议多次发送, 每多发送一次需先{@link #retainPayload(Object, int)}一次
+     * 直接调用channel write发送协议, 需先调用{@link #handOffPayload(Object)}
+     */
+    public static void releasePayload(Object protocol) {
+        if (protocol instanceof SocketProtocol && ((SocketProtocol) protocol).isPayloadHandedOff()) {
+            //已交给transport发送
+            return;
+        }
+        releaseOutboundPayload(protocol);
+    }
+
+    /**
+     * 标识协议的bytebuf成员域已交给transport发送, 之后由transport负责release
+     */
+    public static void handOffPayload(Object protocol) {
+        if (protocol instanceof SocketProtocol) {
+            ((SocketProtocol) protocol).handOffPayload();
+        }
+    }
+
+    /**
+     * release 发送的协议中的bytebuf成员域, 由transport在编码完或者拒绝发送时调用
+     */
+    public static void releaseOutboundPayload(Object protocol) {
+        if (protocol instanceof SocketProtocol && !(protocol instanceof LazyProtocol)) {
+            ProtocolInfo protocolInfo = getProtocolInfo(((SocketProtocol) protocol).getProtocolId());
+            if (protocolInfo != null && protocolInfo.getCodec() != null) {
+                protocolInfo.getCodec().releasePayload((SocketProtocol) protocol);
+            }
+        }
+    }
+
+    /**
+     * retain 协议中的bytebuf成员域, 用于同一协议多次发送
+     *
+     * @param increment retain次数
+     */
+    public static void retainPayload(Object protocol, int increment) {
+        if (increment > 0 && protocol instanceof SocketProtocol && !(protocol instanceof LazyProtocol)) {
+            ProtocolInfo protocolInfo = getProtocolInfo(((SocketProtocol) protocol).getProtocolId());
+            if (protocolInfo != null) {
+                protocolInfo.retainPayload((SocketProtocol) protocol, increment);
+            }
+        }
+    }
+
     /**
      * 获取协议限流流量
      *
      * @param id 协议id
      */
     public static int getProtocolRate(int id) {
-        ProtocolInfo protocolInfo = PROTOCOL_CACHE.getIfPresent(id);
+        ProtocolInfo protocolInfo = getProtocolInfo(id);
         if (protocolInfo != null) {
             return protocolInfo.getRate();
         }
@@ -92,19 +196,176 @@ public class ProtocolFactory {
         return Integer.MAX_VALUE;
     }
 
+    /**
+     * 获取协议限流器
+     *
+     * @param id 协议id
+     * @return 协议限流器, null则表示不限流
+     */
+    public static RateLimiter getProtocolRateLimiter(int id) {
+        ProtocolInfo protocolInfo = getProtocolInfo(id);
+        if (protocolInfo != null) {
+            return protocolInfo.getRateLimiter();
+        }
+        return null;
+    }
+
     //------------------------------------------------------------------------------------------------------
-    private static class ProtocolInfo {
+    public static final class ProtocolInfo {
+        /** 协议id */
+        private final int id;
         /** 协议类 */
         private final Class<? extends SocketProtocol> protocolClass;
         /** 协议限流流量 */
         private final int rate;
+        /** 协议codec, 同时也是协议实例工厂 */
+        private final ProtocolCodec<?> codec;
+        /** 协议限流器, null则表示不限流 */
+        private final RateLimiter rateLimiter;
+        /** 协议统计key, 避免每次统计都拼接字符串 */
+        private final String statisticKey;
+        /** 是否延迟解析 */
+        private final boolean lazy;
+        /** 增量编码协议成员域信息, null则表示非增量编码协议 */
+        private final DeltaSchema deltaSchema;
+        /** 是否合并发送 */
+        private final boolean conflate;
+        /** 合并key成员域, null则表示同一协议只保留最新的一个 */
+        private final Field conflationKeyField;
+        /** 协议优先级 */
+        private final int priority;
+        /** 协议成员域(父类->子类), 不包含协议id, 仅用于{@link ProtocolFactory#createProtocol(int, Object...)}设置field value */
+        private final List<Field> validFields;
+        /** bytebuf成员域 */
+        private final List<Field> payloadFields;
 
-        public ProtocolInfo(Class<? extends SocketProtocol> protocolClass, int rate) {
+        ProtocolInfo(int id, Class<? extends SocketProtocol> protocolClass, int rate, boolean lazy, boolean delta, boolean conflate, int priority) {
+            this.id = id;
+            this.priority = priority;
             this.protocolClass = protocolClass;
             this.rate = rate;
+            this.codec = ProtocolCodecs.codec(protocolClass);
+            this.rateLimiter = rate > 0 ? RateLimiter.create(rate) : null;
+            this.statisticKey = String.valueOf(id);
+            if (lazy && (codec == null || codec.newLazyInstance() == null)) {
+                //手写的codec, 不支持延迟解析
+                log.warn("protocol(id={}) codec doesn't support lazy decode, ignore", id);
+                lazy = false;
+            }
+            this.lazy = lazy;
+            DeltaSchema deltaSchema = null;
+            if (delta) {
+                deltaSchema = ProtocolCodecs.deltaSchema(protocolClass);
+                if (deltaSchema == null) {
+                    //手写的codec, 不支持增量编码
+                    log.warn("protocol(id={}) codec doesn't support delta encode, ignore", id);
+                }
+            }
+            this.deltaSchema = deltaSchema;
+
+            List<Field> validFields = ClassUtils.getAllFields(protocolClass).stream()
+                    .filter(ProtocolUtils::isFieldValid)
+                    .collect(Collectors.toList());
+            Collections.reverse(validFields);
+            //移除协议id
+            validFields.remove(0);
+            this.validFields = Collections.unmodifiableList(validFields);
+            List<Field> payloadFields = new ArrayList<>();
+            for (Field field : validFields) {
+                if (ByteBuf.class.equals(field.getType())) {
+                    field.setAccessible(true);
+                    payloadFields.add(field);
+                }
+            }
+            this.payloadFields = payloadFields;
+
+            this.conflate = conflate;
+            Field conflationKeyField = null;
+            if (conflate) {
+                for (Field field : validFields) {
+                    if (field.getAnnotation(ConflationKey.class) == null) {
+                        continue;
+                    }
+                    if (conflationKeyField != null) {
+                        throw new ProtocolException(String.format("conflate protocol class '%s' has more than one conflation key", protocolClass.getName()));
+                    }
+                    field.setAccessible(true);
+                    conflationKeyField = field;
+                }
+            }
+            this.conflationKeyField = conflationKeyField;
+        }
+
+        /**
+         * retain bytebuf成员域
+         */
+        void retainPayload(SocketProtocol protocol, int increment) {
+            for (Field field : payloadFields) {
+                try {
+                    ReferenceCountUtil.retain(field.get(protocol), increment);
+                } catch (IllegalAccessException e) {
+                    throw new ProtocolException(e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * @return 协议的合并key, 没有{@link ConflationKey}成员域则返回null
+         */
+        public Object getConflationKey(SocketProtocol protocol) {
+            if (conflationKeyField == null) {
+                return null;
+            }
+            try {
+                return conflationKeyField.get(protocol);
+            } catch (IllegalAccessException e) {
+                throw new ProtocolException(e.getMessage());
+            }
+        }
+
+        /**
+         * 创建协议实例
+         */
+        private SocketProtocol newInstance() {
+            SocketProtocol protocol = null;
+            if (codec != null) {
+                protocol = (SocketProtocol) codec.newInstance();
+            }
+            if (protocol == null) {
+                //手写的codec, 只能反射
+                protocol = ClassUtils.instance(protocolClass);
+            }
+            return protocol;
+        }
+
+        /**
+         * 创建协议实例, 并设置协议id
+         */
+        public <T extends SocketProtocol> T createProtocol() {
+            SocketProtocol protocol = newInstance();
+            if (protocol != null) {
+                protocol.setProtocolId(id);
+            }
+            return (T) protocol;
+        }
+
+        /**
+         * 创建延迟解析的协议实例, 并设置协议id
+         *
+         * @param byteBuf 已retain的协议帧bytebuf(包含协议id)
+         */
+        public <T extends SocketProtocol> T createLazyProtocol(ByteBuf byteBuf) {
+            SocketProtocol protocol = codec.newLazyInstance();
+            protocol.setProtocolId(id);
+            ((LazyProtocol) protocol).wrap(byteBuf);
+            return (T) protocol;
         }
 
         //getter
+        public int getId() {
+            return id;
+        }
+
         public Class<? extends SocketProtocol> getProtocolClass() {
             return protocolClass;
         }
@@ -112,5 +373,41 @@ public class ProtocolFactory {
         public int getRate() {
             return rate;
         }
+
+        public ProtocolCodec<?> getCodec() {
+            return codec;
+        }
+
+        public RateLimiter getRateLimiter() {
+            return rateLimiter;
+        }
+
+        public String getStatisticKey() {
+            return statisticKey;
+        }
+
+        public boolean isLazy() {
+            return lazy;
+        }
+
+        public boolean isDelta() {
+            return deltaSchema != null;
+        }
+
+        public boolean isConflate() {
+            return conflate;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        DeltaSchema getDeltaSchema() {
+            return deltaSchema;
+        }
+
+        List<Field> getValidFields() {
+            return validFields;
+        }
     }
 }
@@ -0,0 +1,197 @@
+package org.kin.transport.netty.socket.protocol;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 编译期由kin-transport-processor生成的协议索引, 存在索引则不需要扫描classpath
+ * <p>
+ * 索引只覆盖其所在classpath根(jar或classes目录)中的类, scanPath下没有索引文件的classpath根(比如没有启用processor编译的模块),
+ * 记录在{@link #getUncoveredUrls()}, 仍需扫描
+ * <p>
+ * 索引文件每行格式: 类型 目标类 codec类
+ * 类型为{@link #PROTOCOL}, {@link #VO}, {@link #CODEC}, codec类为{@link #NONE}则表示编译期没有生成codec, 需运行时生成
+ *
+ * @author huangjianqin
+ * @date 2020/11/9
+ */
+public final class ProtocolIndex {
+    private static final Logger log = LoggerFactory.getLogger(ProtocolIndex.class);
+    /** 索引文件位置 */
+    public static final String LOCATION = "META-INF/kin-transport/protocol.index";
+    /** 协议 */
+    public static final String PROTOCOL = "protocol";
+    /** 协议vo */
+    public static final String VO = "vo";
+    /** 手写的codec */
+    public static final String CODEC = "codec";
+    /** 编译期没有生成codec */
+    public static final String NONE = "-";
+
+    /** 协议类 */
+    private final List<Class<?>> protocolClasses = new ArrayList<>();
+    /** 协议vo类 */
+    private final List<Class<?>> voClasses = new ArrayList<>();
+    /** 手写codec, 目标类 -> codec类 */
+    private final Map<Class<?>, Class<?>> implementedCodecs = new LinkedHashMap<>();
+    /** 编译期生成的codec, 目标类 -> codec类 */
+    private final Map<Class<?>, Class<?>> generatedCodecs = new LinkedHashMap<>();
+    /** scanPath下没有索引文件的classpath根 */
+    private final List<URL> uncoveredUrls = new ArrayList<>();
+
+    private ProtocolIndex() {
+    }
+
+    /**
+     * 加载classpath下所有索引文件中, 以scanPath开头的类
+     *
+     * @param scanPath 扫描package
+     */
+    public static ProtocolIndex load(String scanPath) {
+        ProtocolIndex index = new ProtocolIndex();
+        ClassLoader classLoader = classLoader();
+        try {
+            //有索引文件的classpath根
+            Set<String> indexedRoots = new HashSet<>();
+            Enumeration<URL> urls = classLoader.getResources(LOCATION);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                indexedRoots.add(root(url, LOCATION));
+                index.load(url, scanPath, classLoader);
+            }
+
+            if (!index.isEmpty()) {
+                String packagePath = scanPath.replace('.', '/');
+                Enumeration<URL> packageUrls = classLoader.getResources(packagePath);
+                while (packageUrls.hasMoreElements()) {
+                    String root = root(packageUrls.nextElement(), packagePath);
+                    if (!indexedRoots.contains(root)) {
+                        index.uncoveredUrls.add(new URL(root));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("load protocol index error, fallback to scan classpath", e);
+            return new ProtocolIndex();
+        }
+        return index;
+    }
+
+    private static ClassLoader classLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (classLoader == null) {
+            classLoader = ProtocolIndex.class.getClassLoader();
+        }
+        return classLoader;
+    }
+
+    /**
+     * @param path classpath根下的资源路径
+     * @return 资源所在的classpath根
+     */
+    private static String root(URL url, String path) {
+        String external = url.toExternalForm();
+        if (external.endsWith("/")) {
+            external = external.substring(0, external.length() - 1);
+        }
+        if (external.endsWith(path)) {
+            external = external.substring(0, external.length() - path.length());
+        }
+        return external;
+    }
+
+    /**
+     * 加载一个索引文件
+     */
+    private void load(URL url, String scanPath, ClassLoader classLoader) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] items = line.split("\\s+");
+                if (items.length != 3) {
+                    log.warn("invalid protocol index line '{}' in {}", line, url);
+                    continue;
+                }
+                String kind = items[0];
+                String targetClassName = items[1];
+                String codecClassName = items[2];
+                if (!targetClassName.startsWith(scanPath)) {
+                    continue;
+                }
+
+                Class<?> target = loadClass(targetClassName, classLoader);
+                if (target == null) {
+                    continue;
+                }
+                Class<?> codecClass = NONE.equals(codecClassName) ? null : loadClass(codecClassName, classLoader);
+                if (PROTOCOL.equals(kind)) {
+                    protocolClasses.add(target);
+                } else if (VO.equals(kind)) {
+                    voClasses.add(target);
+                } else if (CODEC.equals(kind)) {
+                    if (codecClass != null) {
+                        implementedCodecs.put(target, codecClass);
+                    }
+                    continue;
+                } else {
+                    log.warn("unknown protocol index kind '{}' in {}", kind, url);
+                    continue;
+                }
+                if (codecClass != null) {
+                    generatedCodecs.put(target, codecClass);
+                }
+            }
+        }
+    }
+
+    /**
+     * 索引文件与实际classpath不一致(比如类已删除), 忽略该类
+     */
+    private static Class<?> loadClass(String className, ClassLoader classLoader) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            log.warn("protocol index class '{}' not found, ignore", className);
+            return null;
+        }
+    }
+
+    /**
+     * @return 是否没有索引, 没有则需扫描classpath
+     */
+    public boolean isEmpty() {
+        return protocolClasses.isEmpty() && voClasses.isEmpty() && implementedCodecs.isEmpty();
+    }
+
+    //getter
+    public List<Class<?>> getProtocolClasses() {
+        return protocolClasses;
+    }
+
+    public List<Class<?>> getVoClasses() {
+        return voClasses;
+    }
+
+    public Map<Class<?>, Class<?>> getImplementedCodecs() {
+        return implementedCodecs;
+    }
+
+    public Map<Class<?>, Class<?>> getGeneratedCodecs() {
+        return generatedCodecs;
+    }
+
+    public List<URL> getUncoveredUrls() {
+        return uncoveredUrls;
+    }
+}
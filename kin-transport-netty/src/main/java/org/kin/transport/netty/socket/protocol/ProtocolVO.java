@@ -13,4 +13,13 @@ import java.lang.annotation.*;
 @Inherited
 @Documented
 public @interface ProtocolVO {
+    /**
+     * 是否使用紧凑编码, 同{@link Protocol#compact()}
+     */
+    boolean compact() default false;
+
+    /**
+     * 是否使用稀疏编码, 同{@link Protocol#sparse()}
+     */
+    boolean sparse() default false;
 }
@@ -12,6 +12,8 @@ public abstract class SocketProtocol {
     private int protocolId;
     /** 创建时间 */
     private final long createTime = System.currentTimeMillis();
+    /** bytebuf成员域是否已交给transport发送, 见{@link ProtocolFactory#releasePayload(Object)} */
+    private transient volatile boolean payloadHandedOff;
 
     @Override
     public String toString() {
@@ -21,6 +23,27 @@ public abstract class SocketProtocol {
                 '}';
     }
 
+    /**
+     * 仅供{@link ProtocolFactory}使用
+     */
+    void setProtocolId(int protocolId) {
+        this.protocolId = protocolId;
+    }
+
+    /**
+     * 仅供{@link ProtocolFactory}使用
+     */
+    void handOffPayload() {
+        this.payloadHandedOff = true;
+    }
+
+    /**
+     * 仅供{@link ProtocolFactory}使用
+     */
+    boolean isPayloadHandedOff() {
+        return payloadHandedOff;
+    }
+
     //getter
     public int getProtocolId() {
         return protocolId;
@@ -2,9 +2,13 @@ package org.kin.transport.netty.socket.protocol;
 
 import com.google.common.base.Preconditions;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCounted;
+import org.kin.transport.netty.utils.VarIntUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -20,30 +24,112 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     private static final int WRITE_MODE = 1;
     /** 读写模式 */
     private static final int READ_WRITE_MODE = 2;
+    /** 写bytebuf时, 小于该字节数直接拷贝, 否则以composite component的方式写入 */
+    private static final int ZERO_COPY_THRESHOLD = 1024;
 
     /** 字节buffer */
     private ByteBuf byteBuf;
+    /** 协议内容在字节buffer中的起始位置, 写模式下{@link #setProtocolId(int)}和setXXX(index, value)均以此为基准 */
+    private final int startIndex;
     /** 协议id */
     private int protocolId;
     /** 协议成都 */
     private int contentSize;
     /** 模式 */
     private final int mode;
+    /** 连接级别的字符串字典, null则不使用字典 */
+    private StringDictionary dictionary;
 
     public SocketProtocolByteBuf(ByteBuf byteBuf) {
         this.byteBuf = byteBuf;
+        this.startIndex = byteBuf.readerIndex();
         this.protocolId = byteBuf.readUnsignedShort();
         this.contentSize = byteBuf.readableBytes();
         this.mode = READ_MODE;
     }
 
     public SocketProtocolByteBuf(int protocolId) {
-        byteBuf = Unpooled.buffer();
+        this(Unpooled.buffer(), protocolId);
+    }
+
+    /**
+     * 直接往指定的bytebuf写协议内容, 从其writerIndex开始写
+     * 一般是预留了协议帧头部空间的池化direct bytebuf, 避免多次拷贝
+     */
+    public SocketProtocolByteBuf(ByteBuf byteBuf, int protocolId) {
+        this.byteBuf = byteBuf;
+        this.startIndex = byteBuf.writerIndex();
         byteBuf.writeShort(protocolId);
         this.protocolId = protocolId;
         this.mode = WRITE_MODE;
     }
 
+    /**
+     * 读写不包含协议id的协议内容片段, 仅供{@link DeltaSnapshots}编解码单个成员域
+     *
+     * @param readElseWrite true = 读模式, false = 写模式
+     */
+    SocketProtocolByteBuf(ByteBuf byteBuf, int protocolId, boolean readElseWrite) {
+        this.byteBuf = byteBuf;
+        this.protocolId = protocolId;
+        if (readElseWrite) {
+            this.startIndex = byteBuf.readerIndex();
+            this.contentSize = byteBuf.readableBytes();
+            this.mode = READ_MODE;
+        } else {
+            this.startIndex = byteBuf.writerIndex();
+            this.mode = WRITE_MODE;
+        }
+    }
+
+    /**
+     * @return 字符串utf8编码后的字节数, 与{@link String#getBytes(java.nio.charset.Charset)}结果长度一致
+     */
+    public static int utf8Length(CharSequence seq) {
+        int length = seq.length();
+        int bytes = 0;
+        for (int i = 0; i < length; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    //合法代理对, 4字节
+                    bytes += 4;
+                    i++;
+                } else {
+                    //非法代理字符, 编码为'?'
+                    bytes += 1;
+                }
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 绑定连接级别的字符串字典, 读模式下解析字典条目, 写模式下重复的短字符串只写字典下标
+     */
+    public SocketProtocolByteBuf dictionary(StringDictionary dictionary) {
+        this.dictionary = dictionary;
+        return this;
+    }
+
+    /**
+     * @return bytebuf成员域写入该bytebuf后增加的字节数, 以composite component方式写入的不计算内容
+     */
+    public static int byteBufSizeOf(ByteBuf value) {
+        int length = value == null ? 0 : value.readableBytes();
+        int size = VarIntUtils.computeRawVarInt32Size(length);
+        if (length < ZERO_COPY_THRESHOLD) {
+            size += length;
+        }
+        return size;
+    }
+
     //--------------------------------------------request----------------------------------------------------
 
     @Override
@@ -73,7 +159,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     @Override
     public byte[] readBytes(int length) {
         Preconditions.checkArgument(mode == READ_MODE);
-        Preconditions.checkArgument(length > 0);
+        Preconditions.checkArgument(length >= 0);
         Preconditions.checkArgument(length <= byteBuf.readableBytes());
         byte[] result = new byte[length];
         byteBuf.readBytes(result);
@@ -134,20 +220,136 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     public String readString() {
         Preconditions.checkArgument(mode == READ_MODE);
         int length = byteBuf.readShort();
-        byte[] content = new byte[length];
-        byteBuf.readBytes(content);
-        return new String(content, StandardCharsets.UTF_8);
+        if (length >= 0) {
+            return readUtf8(length);
+        }
+
+        //字典
+        if (dictionary == null) {
+            throw new ProtocolException("string dictionary is not supported");
+        }
+        if (length == StringDictionary.DEFINE_MARK) {
+            int entryLength = byteBuf.readShort();
+            if (entryLength < 0 || entryLength > StringDictionary.MAX_ENTRY_BYTES) {
+                throw new ProtocolException("invalid string dictionary entry length '" + entryLength + "'");
+            }
+            String value = readUtf8(entryLength);
+            dictionary.add(value);
+            return value;
+        }
+        return dictionary.get(-length - 1);
     }
 
     @Override
     public String readBigString() {
         Preconditions.checkArgument(mode == READ_MODE);
-        int length = byteBuf.readUnsignedShort();
-        byte[] content = new byte[length];
-        byteBuf.readBytes(content);
-        return new String(content, StandardCharsets.UTF_8);
+        return readUtf8(byteBuf.readUnsignedShort());
+    }
+
+    /**
+     * 直接从bytebuf解码, 不额外拷贝到临时byte[]
+     */
+    private String readUtf8(int length) {
+        Preconditions.checkArgument(length <= byteBuf.readableBytes());
+        int readerIndex = byteBuf.readerIndex();
+        String value;
+        if (length == 0) {
+            value = "";
+        } else if (byteBuf.hasArray()) {
+            value = new String(byteBuf.array(), byteBuf.arrayOffset() + readerIndex, length, StandardCharsets.UTF_8);
+        } else {
+            value = byteBuf.toString(readerIndex, length, StandardCharsets.UTF_8);
+        }
+        byteBuf.skipBytes(length);
+        return value;
+    }
+
+    /**
+     * 批量读取前校验一次可读字节数, 并返回该段内容的nio视图
+     *
+     * @param length   数组长度
+     * @param itemSize 数组item字节数
+     */
+    private ByteBuffer readNioBuffer(int length, int itemSize) {
+        Preconditions.checkArgument(mode == READ_MODE);
+        Preconditions.checkArgument(length >= 0);
+        int bytes = length * itemSize;
+        Preconditions.checkArgument(bytes <= byteBuf.readableBytes());
+        ByteBuffer nioBuffer = byteBuf.nioBuffer(byteBuf.readerIndex(), bytes).order(ByteOrder.BIG_ENDIAN);
+        byteBuf.skipBytes(bytes);
+        return nioBuffer;
     }
 
+    @Override
+    public short[] readShorts(int length) {
+        ByteBuffer nioBuffer = readNioBuffer(length, 2);
+        short[] result = new short[length];
+        nioBuffer.asShortBuffer().get(result);
+        return result;
+    }
+
+    @Override
+    public int[] readInts(int length) {
+        ByteBuffer nioBuffer = readNioBuffer(length, 4);
+        int[] result = new int[length];
+        nioBuffer.asIntBuffer().get(result);
+        return result;
+    }
+
+    @Override
+    public long[] readLongs(int length) {
+        ByteBuffer nioBuffer = readNioBuffer(length, 8);
+        long[] result = new long[length];
+        nioBuffer.asLongBuffer().get(result);
+        return result;
+    }
+
+    @Override
+    public float[] readFloats(int length) {
+        ByteBuffer nioBuffer = readNioBuffer(length, 4);
+        float[] result = new float[length];
+        nioBuffer.asFloatBuffer().get(result);
+        return result;
+    }
+
+    @Override
+    public double[] readDoubles(int length) {
+        ByteBuffer nioBuffer = readNioBuffer(length, 8);
+        double[] result = new double[length];
+        nioBuffer.asDoubleBuffer().get(result);
+        return result;
+    }
+
+    @Override
+    public ByteBuf readByteBuf() {
+        Preconditions.checkArgument(mode == READ_MODE);
+        int length = VarIntUtils.readRawVarInt32(byteBuf);
+        return byteBuf.readRetainedSlice(length);
+    }
+
+    @Override
+    public int readVarInt32() {
+        Preconditions.checkArgument(mode == READ_MODE);
+        return VarIntUtils.readRawVarInt32(byteBuf);
+    }
+
+    @Override
+    public int readSInt32() {
+        Preconditions.checkArgument(mode == READ_MODE);
+        return VarIntUtils.decodeZigZag32(VarIntUtils.readRawVarInt32(byteBuf));
+    }
+
+    @Override
+    public long readVarInt64() {
+        Preconditions.checkArgument(mode == READ_MODE);
+        return VarIntUtils.readRawVarInt64(byteBuf);
+    }
+
+    @Override
+    public long readSInt64() {
+        Preconditions.checkArgument(mode == READ_MODE);
+        return VarIntUtils.decodeZigZag64(VarIntUtils.readRawVarInt64(byteBuf));
+    }
 
     @Override
     public int refCnt() {
@@ -200,7 +402,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     @Override
     public SocketResponseOprs setProtocolId(int protocolId) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        byteBuf.setShort(0, protocolId);
+        byteBuf.setShort(startIndex, protocolId);
         return this;
     }
 
@@ -212,7 +414,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     @Override
     public int getSize() {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        return byteBuf.readableBytes();
+        return byteBuf.writerIndex() - startIndex;
     }
 
     @Override
@@ -279,7 +481,6 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     @Override
     public SocketResponseOprs writeFloat(float value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        Preconditions.checkArgument(value >= Float.MIN_VALUE && value <= Float.MAX_VALUE, "value: %s", value);
         byteBuf.writeFloat(value);
         return this;
     }
@@ -294,37 +495,274 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     @Override
     public SocketResponseOprs writeDouble(double value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        Preconditions.checkArgument(value >= Double.MIN_VALUE && value <= Double.MAX_VALUE, "value: %s", value);
         byteBuf.writeDouble(value);
         return this;
     }
 
-    private void writeString0(String value) {
+    @Override
+    public SocketResponseOprs writeString(String value) {
+        Preconditions.checkArgument(mode == WRITE_MODE);
+        Preconditions.checkArgument(value != null);
+        boolean dictionaryEntry = false;
+        if (dictionary != null && value.length() <= StringDictionary.MAX_ENTRY_BYTES) {
+            int index = dictionary.indexOf(value);
+            if (index >= 0) {
+                //只写字典下标
+                byteBuf.writeShort(-index - 1);
+                return this;
+            }
+            dictionaryEntry = true;
+        }
+
+        int length = utf8Length(value);
+        Preconditions.checkArgument(length <= Short.MAX_VALUE, "string is too long, utf8 length: %s", length);
+        if (dictionaryEntry && length <= StringDictionary.MAX_ENTRY_BYTES && dictionary.define(value)) {
+            byteBuf.writeShort(StringDictionary.DEFINE_MARK);
+        }
+        byteBuf.writeShort(length);
+        writeUtf8(value, length);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeBigString(String value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
         Preconditions.checkArgument(value != null);
-        byte[] content = value.getBytes(StandardCharsets.UTF_8);
-        byteBuf.writeShort(content.length);
-        byteBuf.writeBytes(content);
+        int length = utf8Length(value);
+        Preconditions.checkArgument(length <= Short.MAX_VALUE - Short.MIN_VALUE, "string is too long, utf8 length: %s", length);
+        byteBuf.writeShort(length);
+        writeUtf8(value, length);
+        return this;
+    }
+
+    /**
+     * 直接将字符串utf8编码写入bytebuf, 不额外生成临时byte[], 编码规则与{@link #utf8Length(CharSequence)}一致
+     *
+     * @param length 预先计算好的utf8字节数
+     */
+    private void writeUtf8(CharSequence seq, int length) {
+        byteBuf.ensureWritable(length);
+        int writerIndex = byteBuf.writerIndex();
+        int charLength = seq.length();
+        //ascii前缀直接按字节写入, 遇到非ascii字符(包括utf8长度为1的非法代理字符)再逐字符编码
+        int i = 0;
+        if (byteBuf.hasArray()) {
+            byte[] array = byteBuf.array();
+            int offset = byteBuf.arrayOffset() + writerIndex;
+            for (; i < charLength; i++) {
+                char c = seq.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                array[offset + i] = (byte) c;
+            }
+        } else {
+            for (; i < charLength; i++) {
+                char c = seq.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                byteBuf.setByte(writerIndex + i, c);
+            }
+        }
+
+        int index = writerIndex + i;
+        for (; i < charLength; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                byteBuf.setByte(index++, c);
+            } else if (c < 0x800) {
+                byteBuf.setByte(index++, 0xC0 | (c >> 6));
+                byteBuf.setByte(index++, 0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < charLength && Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    //合法代理对, 4字节
+                    int codePoint = Character.toCodePoint(c, seq.charAt(++i));
+                    byteBuf.setByte(index++, 0xF0 | (codePoint >> 18));
+                    byteBuf.setByte(index++, 0x80 | ((codePoint >> 12) & 0x3F));
+                    byteBuf.setByte(index++, 0x80 | ((codePoint >> 6) & 0x3F));
+                    byteBuf.setByte(index++, 0x80 | (codePoint & 0x3F));
+                } else {
+                    //非法代理字符, 编码为'?'
+                    byteBuf.setByte(index++, '?');
+                }
+            } else {
+                byteBuf.setByte(index++, 0xE0 | (c >> 12));
+                byteBuf.setByte(index++, 0x80 | ((c >> 6) & 0x3F));
+                byteBuf.setByte(index++, 0x80 | (c & 0x3F));
+            }
+        }
+        byteBuf.writerIndex(index);
+    }
+
+    /**
+     * 批量写入前只扩容一次
+     *
+     * @param bytes 写入字节数
+     * @return 写入的起始下标
+     */
+    private int ensureBulkWritable(int bytes) {
+        Preconditions.checkArgument(mode == WRITE_MODE);
+        byteBuf.ensureWritable(bytes);
+        return byteBuf.writerIndex();
+    }
+
+    /**
+     * @return 堆内存bytebuf返回底层数组[index, index + bytes)的nio视图, 否则返回null
+     */
+    private ByteBuffer heapNioBuffer(int index, int bytes) {
+        if (byteBuf.hasArray()) {
+            return ByteBuffer.wrap(byteBuf.array(), byteBuf.arrayOffset() + index, bytes);
+        }
+        return null;
     }
 
     @Override
-    public SocketResponseOprs writeString(String value) {
+    public SocketResponseOprs writeShorts(short[] value) {
+        Preconditions.checkArgument(value != null);
+        int bytes = value.length << 1;
+        int writerIndex = ensureBulkWritable(bytes);
+        ByteBuffer heapBuffer = heapNioBuffer(writerIndex, bytes);
+        if (heapBuffer != null) {
+            heapBuffer.asShortBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                byteBuf.setShort(writerIndex + (i << 1), value[i]);
+            }
+        }
+        byteBuf.writerIndex(writerIndex + bytes);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeInts(int[] value) {
+        Preconditions.checkArgument(value != null);
+        int bytes = value.length << 2;
+        int writerIndex = ensureBulkWritable(bytes);
+        ByteBuffer heapBuffer = heapNioBuffer(writerIndex, bytes);
+        if (heapBuffer != null) {
+            heapBuffer.asIntBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                byteBuf.setInt(writerIndex + (i << 2), value[i]);
+            }
+        }
+        byteBuf.writerIndex(writerIndex + bytes);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeLongs(long[] value) {
+        Preconditions.checkArgument(value != null);
+        int bytes = value.length << 3;
+        int writerIndex = ensureBulkWritable(bytes);
+        ByteBuffer heapBuffer = heapNioBuffer(writerIndex, bytes);
+        if (heapBuffer != null) {
+            heapBuffer.asLongBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                byteBuf.setLong(writerIndex + (i << 3), value[i]);
+            }
+        }
+        byteBuf.writerIndex(writerIndex + bytes);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeFloats(float[] value) {
+        Preconditions.checkArgument(value != null);
+        int bytes = value.length << 2;
+        int writerIndex = ensureBulkWritable(bytes);
+        ByteBuffer heapBuffer = heapNioBuffer(writerIndex, bytes);
+        if (heapBuffer != null) {
+            heapBuffer.asFloatBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                byteBuf.setFloat(writerIndex + (i << 2), value[i]);
+            }
+        }
+        byteBuf.writerIndex(writerIndex + bytes);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeDoubles(double[] value) {
+        Preconditions.checkArgument(value != null);
+        int bytes = value.length << 3;
+        int writerIndex = ensureBulkWritable(bytes);
+        ByteBuffer heapBuffer = heapNioBuffer(writerIndex, bytes);
+        if (heapBuffer != null) {
+            heapBuffer.asDoubleBuffer().put(value);
+        } else {
+            for (int i = 0; i < value.length; i++) {
+                byteBuf.setDouble(writerIndex + (i << 3), value[i]);
+            }
+        }
+        byteBuf.writerIndex(writerIndex + bytes);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeByteBuf(ByteBuf value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        writeString0(value);
+        int length = value == null ? 0 : value.readableBytes();
+        VarIntUtils.writeRawVarInt32(byteBuf, length);
+        if (length == 0) {
+            return this;
+        }
+        if (length < ZERO_COPY_THRESHOLD) {
+            byteBuf.writeBytes(value, value.readerIndex(), length);
+            return this;
+        }
+
+        //转换成composite bytebuf, 包含readerIndex前预留的协议帧头部空间
+        CompositeByteBuf compositeByteBuf;
+        if (byteBuf instanceof CompositeByteBuf) {
+            compositeByteBuf = (CompositeByteBuf) byteBuf;
+        } else {
+            compositeByteBuf = byteBuf.alloc().compositeDirectBuffer(Integer.MAX_VALUE);
+            int readerIndex = byteBuf.readerIndex();
+            byteBuf.readerIndex(0);
+            compositeByteBuf.addComponent(true, byteBuf);
+            compositeByteBuf.readerIndex(readerIndex);
+            byteBuf = compositeByteBuf;
+        }
+        compositeByteBuf.addComponent(true, value.retainedSlice());
         return this;
     }
 
     @Override
-    public SocketResponseOprs writeBigString(String value) {
+    public SocketResponseOprs writeVarInt32(int value) {
+        Preconditions.checkArgument(mode == WRITE_MODE);
+        VarIntUtils.writeRawVarInt32(byteBuf, value);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeSInt32(int value) {
+        Preconditions.checkArgument(mode == WRITE_MODE);
+        VarIntUtils.writeRawVarInt32(byteBuf, VarIntUtils.encodeZigZag32(value));
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeVarInt64(long value) {
+        Preconditions.checkArgument(mode == WRITE_MODE);
+        VarIntUtils.writeRawVarInt64(byteBuf, value);
+        return this;
+    }
+
+    @Override
+    public SocketResponseOprs writeSInt64(long value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        writeString0(value);
+        VarIntUtils.writeRawVarInt64(byteBuf, VarIntUtils.encodeZigZag64(value));
         return this;
     }
 
     @Override
     public SocketResponseOprs setBoolean(int index, boolean value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        byteBuf.setBoolean(index, value);
+        byteBuf.setBoolean(startIndex + index, value);
         return this;
     }
 
@@ -332,7 +770,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     public SocketResponseOprs setByte(int index, int value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
         Preconditions.checkArgument(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE, "value: %s", value);
-        byteBuf.setByte(index, value);
+        byteBuf.setByte(startIndex + index, value);
         return this;
     }
 
@@ -340,7 +778,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     public SocketResponseOprs setUnsignedByte(int index, int value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
         Preconditions.checkArgument(value >= 0 && value <= Byte.MAX_VALUE - Byte.MIN_VALUE, "value: %s", value);
-        byteBuf.setByte(index, value);
+        byteBuf.setByte(startIndex + index, value);
         return this;
     }
 
@@ -348,7 +786,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     public SocketResponseOprs setShort(int index, int value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
         Preconditions.checkArgument(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE, "value: %s", value);
-        byteBuf.setShort(index, value);
+        byteBuf.setShort(startIndex + index, value);
         return this;
     }
 
@@ -356,44 +794,42 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     public SocketResponseOprs setUnsignedShort(int index, int value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
         Preconditions.checkArgument(value >= 0 && value <= Short.MAX_VALUE - Short.MIN_VALUE, "value: %s", value);
-        byteBuf.setShort(index, value);
+        byteBuf.setShort(startIndex + index, value);
         return this;
     }
 
     @Override
     public SocketResponseOprs setInt(int index, int value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        byteBuf.setInt(index, value);
+        byteBuf.setInt(startIndex + index, value);
         return this;
     }
 
     @Override
     public SocketResponseOprs setUnsignedInt(int index, long value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        byteBuf.setInt(index, (int) value);
+        byteBuf.setInt(startIndex + index, (int) value);
         return this;
     }
 
     @Override
     public SocketResponseOprs setLong(int index, long value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        byteBuf.setLong(index, value);
+        byteBuf.setLong(startIndex + index, value);
         return this;
     }
 
     @Override
     public SocketResponseOprs setFloat(int index, float value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        Preconditions.checkArgument(value >= Float.MIN_VALUE && value <= Float.MAX_VALUE, "value: %s", value);
-        byteBuf.setFloat(index, value);
+        byteBuf.setFloat(startIndex + index, value);
         return this;
     }
 
     @Override
     public SocketResponseOprs setDouble(int index, double value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
-        Preconditions.checkArgument(value >= Double.MIN_VALUE && value <= Double.MAX_VALUE, "value: %s", value);
-        byteBuf.setDouble(index, value);
+        byteBuf.setDouble(startIndex + index, value);
         return this;
     }
 
@@ -401,7 +837,7 @@ public class SocketProtocolByteBuf implements SocketRequestOprs, SocketResponseO
     public SocketResponseOprs setBytes(int index, byte[] value) {
         Preconditions.checkArgument(mode == WRITE_MODE);
         Preconditions.checkArgument(value != null);
-        byteBuf.setBytes(index, value);
+        byteBuf.setBytes(startIndex + index, value);
         return this;
     }
 }
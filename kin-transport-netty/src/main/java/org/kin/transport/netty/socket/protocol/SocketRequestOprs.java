@@ -1,5 +1,7 @@
 package org.kin.transport.netty.socket.protocol;
 
+import io.netty.buffer.ByteBuf;
+
 /**
  * socket请求操作
  *
@@ -21,6 +23,13 @@ public interface SocketRequestOprs {
      */
     int getContentSize();
 
+    /**
+     * 获取底层的bytebuf, 用于直接批量读取
+     *
+     * @return 底层的bytebuf
+     */
+    ByteBuf getByteBuf();
+
     /**
      * 读byte
      *
@@ -119,4 +128,79 @@ public interface SocketRequestOprs {
      * @return 协议内容中的一个String(无符号short长度)
      */
     String readBigString();
+
+    /**
+     * 读varint编码的int, 适用于非负数
+     *
+     * @return 协议内容中的一个varint int
+     */
+    int readVarInt32();
+
+    /**
+     * 读zigzag + varint编码的int
+     *
+     * @return 协议内容中的一个zigzag int
+     */
+    int readSInt32();
+
+    /**
+     * 读varint编码的long, 适用于非负数
+     *
+     * @return 协议内容中的一个varint long
+     */
+    long readVarInt64();
+
+    /**
+     * 读zigzag + varint编码的long
+     *
+     * @return 协议内容中的一个zigzag long
+     */
+    long readSInt64();
+
+    /**
+     * 批量读short数组
+     *
+     * @param length 数组长度
+     * @return 协议内容中指定长度的short数组
+     */
+    short[] readShorts(int length);
+
+    /**
+     * 批量读int数组
+     *
+     * @param length 数组长度
+     * @return 协议内容中指定长度的int数组
+     */
+    int[] readInts(int length);
+
+    /**
+     * 批量读long数组
+     *
+     * @param length 数组长度
+     * @return 协议内容中指定长度的long数组
+     */
+    long[] readLongs(int length);
+
+    /**
+     * 批量读float数组
+     *
+     * @param length 数组长度
+     * @return 协议内容中指定长度的float数组
+     */
+    float[] readFloats(int length);
+
+    /**
+     * 批量读double数组
+     *
+     * @param length 数组长度
+     * @return 协议内容中指定长度的double数组
+     */
+    double[] readDoubles(int length);
+
+    /**
+     * 读bytebuf(varint长度), 返回协议帧的retained slice, 不拷贝
+     *
+     * @return 协议内容中的一个bytebuf
+     */
+    ByteBuf readByteBuf();
 }
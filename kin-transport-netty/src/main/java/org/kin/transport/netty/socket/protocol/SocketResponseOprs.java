@@ -142,6 +142,87 @@ public interface SocketResponseOprs {
      */
     SocketResponseOprs writeBigString(String value);
 
+    /**
+     * 写varint编码的int, 适用于非负数, 负数固定占5个字节
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeVarInt32(int value);
+
+    /**
+     * 写zigzag + varint编码的int, 绝对值较小的数占用字节少
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeSInt32(int value);
+
+    /**
+     * 写varint编码的long, 适用于非负数, 负数固定占10个字节
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeVarInt64(long value);
+
+    /**
+     * 写zigzag + varint编码的long, 绝对值较小的数占用字节少
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeSInt64(long value);
+
+    /**
+     * 批量写short数组, 不写长度
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeShorts(short[] value);
+
+    /**
+     * 批量写int数组, 不写长度
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeInts(int[] value);
+
+    /**
+     * 批量写long数组, 不写长度
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeLongs(long[] value);
+
+    /**
+     * 批量写float数组, 不写长度
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeFloats(float[] value);
+
+    /**
+     * 批量写double数组, 不写长度
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeDoubles(double[] value);
+
+    /**
+     * 写bytebuf(varint长度), 较大的bytebuf以composite component的方式写入, 不拷贝
+     * 会retain该bytebuf, 不会修改其readerIndex
+     *
+     * @param value 值
+     * @return 该response
+     */
+    SocketResponseOprs writeByteBuf(ByteBuf value);
+
     /**
      * 在字节数组中某index开始设置boolean
      *
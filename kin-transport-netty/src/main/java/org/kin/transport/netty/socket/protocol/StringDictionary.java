@@ -0,0 +1,113 @@
+package org.kin.transport.netty.socket.protocol;
+
+import com.google.common.base.Preconditions;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接级别的字符串字典, 绑定在channel上, 编码和解码各自一份
+ * <p>
+ * 字符串长度前缀(short)为:
+ * >=0, 普通字符串
+ * {@link #DEFINE_MARK}, 新增字典条目, 后面紧跟普通字符串, 对端按顺序分配下标
+ * 其余负数, 字典条目引用, 下标为 -length - 1
+ * <p>
+ * 编码格式是自描述的, 解码总是支持, 编码仅在握手协商了{@link org.kin.transport.netty.socket.handler.SocketFeature#STRING_DICTIONARY}才使用
+ * 字典需按协议帧顺序编解码, 故延迟解析协议不使用字典
+ *
+ * @author huangjianqin
+ * @date 2020/11/10
+ */
+public final class StringDictionary {
+    /** 绑定在channel上 */
+    public static final AttributeKey<StringDictionary> DICTIONARY_KEY = AttributeKey.valueOf("stringDictionary");
+    /** 新增字典条目标识 */
+    static final short DEFINE_MARK = Short.MIN_VALUE;
+    /** 字典最大条目数, 受编码格式限制 */
+    private static final int MAX_SIZE = Short.MAX_VALUE;
+    /** 默认编码字典容量 */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /** 可加入字典的字符串最大utf8字节数, 长字符串一般不会重复出现 */
+    public static final int MAX_ENTRY_BYTES = 64;
+
+    /** 编码字典容量 */
+    private final int capacity;
+    /** 编码字典, 字符串 -> 下标 */
+    private final Map<String, Integer> encodeIndexes = new HashMap<>();
+    /** 编码字典, 下标 -> 字符串, 用于回滚 */
+    private final List<String> encodeEntries = new ArrayList<>();
+    /** 解码字典, 下标 -> 字符串 */
+    private final List<String> decodeEntries = new ArrayList<>();
+
+    public StringDictionary() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public StringDictionary(int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= MAX_SIZE, "capacity must be in (0, %s]", MAX_SIZE);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return 编码字典中的下标, 没有则返回-1
+     */
+    int indexOf(String value) {
+        Integer index = encodeIndexes.get(value);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 新增编码字典条目
+     *
+     * @return 是否新增成功, 字典已满则失败
+     */
+    boolean define(String value) {
+        int size = encodeEntries.size();
+        if (size >= capacity) {
+            return false;
+        }
+        encodeIndexes.put(value, size);
+        encodeEntries.add(value);
+        return true;
+    }
+
+    /**
+     * @return 当前编码字典大小, 用于编码失败时回滚
+     */
+    public int mark() {
+        return encodeEntries.size();
+    }
+
+    /**
+     * 回滚编码字典至指定大小
+     */
+    public void reset(int mark) {
+        for (int i = encodeEntries.size() - 1; i >= mark; i--) {
+            encodeIndexes.remove(encodeEntries.remove(i));
+        }
+    }
+
+    /**
+     * 新增解码字典条目
+     */
+    void add(String value) {
+        if (decodeEntries.size() >= MAX_SIZE) {
+            throw new ProtocolException("string dictionary is full");
+        }
+        decodeEntries.add(value);
+    }
+
+    /**
+     * @return 解码字典条目, 返回同一字符串实例
+     */
+    String get(int index) {
+        if (index < 0 || index >= decodeEntries.size()) {
+            throw new ProtocolException("unknown string dictionary index '" + index + "'");
+        }
+        return decodeEntries.get(index);
+    }
+}
@@ -1,10 +1,10 @@
 package org.kin.transport.netty.socket.server;
 
 import io.netty.buffer.ByteBuf;
-import org.kin.transport.netty.AbstractTransportOption;
 import org.kin.transport.netty.ChannelHandlerInitializer;
 import org.kin.transport.netty.Server;
 import org.kin.transport.netty.TransportProtocolTransfer;
+import org.kin.transport.netty.socket.AbstractSocketTransportOption;
 import org.kin.transport.netty.socket.SocketHandlerInitializer;
 import org.kin.transport.netty.socket.SocketTransfer;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
@@ -18,7 +18,7 @@ import java.util.Objects;
  * @author huangjianqin
  * @date 2019-09-13
  */
-public class SocketServerTransportOption extends AbstractTransportOption<ByteBuf, SocketProtocol, ByteBuf, SocketServerTransportOption> {
+public class SocketServerTransportOption extends AbstractSocketTransportOption<SocketServerTransportOption> {
     /**
      * 构建tcp server实例
      */
@@ -44,7 +44,7 @@ public class SocketServerTransportOption extends AbstractTransportOption<ByteBuf
         return new SocketServerTransportOptionBuilder();
     }
 
-    public static class SocketServerTransportOptionBuilder extends TransportOptionBuilder<ByteBuf, SocketProtocol, ByteBuf, SocketServerTransportOption> {
+    public static class SocketServerTransportOptionBuilder extends SocketTransportOptionBuilder<SocketServerTransportOption> {
         public SocketServerTransportOptionBuilder() {
             super(new SocketServerTransportOption());
         }
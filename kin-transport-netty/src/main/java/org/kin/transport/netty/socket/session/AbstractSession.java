@@ -3,17 +3,35 @@ package org.kin.transport.netty.socket.session;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import org.kin.framework.utils.NetUtils;
+import org.kin.transport.netty.OutboundBudget;
+import org.kin.transport.netty.ProtocolSizeEstimator;
+import org.kin.transport.netty.handler.FlushConsolidationHandler;
+import org.kin.transport.netty.socket.protocol.DeltaSnapshots;
+import org.kin.transport.netty.socket.protocol.Protocol;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
 import org.kin.transport.netty.utils.ChannelUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Objects;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * session抽象
+ * <p>
+ * 合并发送协议({@link Protocol#conflate()})进入合并发送队列, 同一合并key只保留最新的未发送协议
+ * 队列在channel可写或者定时flush时发送, channel不可写则一直积压在队列, 内存占用受合并key数量限制
+ * session关闭, channel inactive或者切换channel时, 队列中未发送的协议直接丢弃(release其bytebuf成员域), 不会发送到新channel,
+ * 避免其在切换后发送的协议之后才发送, 新channel需业务层重新同步最新状态
+ * <p>
+ * channel配置了{@link FlushConsolidationHandler}, 则每次write都flush, 由其合并flush, 不再定时flush
+ * <p>
+ * 配置了出站字节预算({@link #outboundBudget(OutboundBudget)}), 则write前检查channel积压的字节数, 超出预算按策略处理
+ * 合并发送协议本身只在channel可写时发送, 不受预算限制
+ * <p>
+ * 发送的协议交给transport, 其bytebuf成员域由transport release, 见{@link ProtocolFactory#releasePayload(Object)}
  *
  * @author huangjianqin
  * @date 2019/5/30
@@ -24,6 +42,8 @@ public abstract class AbstractSession {
     private volatile Channel channel;
     /** 标识每次write, 是否马上flush */
     private boolean isFlush;
+    /** channel是否合并flush, 是则每次write都flush, 由{@link FlushConsolidationHandler}合并 */
+    private volatile boolean flushConsolidated;
 
     /** session ip */
     private volatile String ip;
@@ -35,16 +55,32 @@ public abstract class AbstractSession {
     private SessionCloseCause sessionCloseCause;
     /** 标识是否正调度flush */
     private AtomicBoolean flushChannelScheduleTag = new AtomicBoolean(false);
+    /** 合并发送队列, 按首次入队顺序发送 */
+    private final Map<ConflationSlot, SocketProtocol> conflations = new LinkedHashMap<>();
+    /** 标识是否正调度发送合并发送队列 */
+    private final AtomicBoolean drainScheduleTag = new AtomicBoolean(false);
+    /** 出站字节预算, null则表示不限制 */
+    private volatile OutboundBudget outboundBudget;
 
     public AbstractSession(Channel channel, boolean isFlush) {
         this.channel = channel;
         this.ip = ChannelUtils.getRemoteIp(channel);
         this.ipHashCode = NetUtils.ipHashCode(ip);
         this.isFlush = isFlush;
+        this.flushConsolidated = isFlushConsolidated(channel);
+    }
+
+    /**
+     * @return channel是否合并flush
+     */
+    private static boolean isFlushConsolidated(Channel channel) {
+        return Objects.nonNull(channel.pipeline().get(FlushConsolidationHandler.class));
     }
 
     /**
      * seesion 切换channel
+     * 新channel没有增量编码快照, 增量编码协议({@link org.kin.transport.netty.socket.protocol.Protocol#delta()})会自动全量发送
+     * 旧channel合并发送队列中未发送的协议丢弃, 不会发送到新channel
      */
     public final Channel change(Channel channel) {
         if (!isClosed) {
@@ -52,6 +88,11 @@ public abstract class AbstractSession {
             this.channel = channel;
             this.ip = ChannelUtils.getRemoteIp(channel);
             this.ipHashCode = NetUtils.ipHashCode(ip);
+            this.flushConsolidated = isFlushConsolidated(channel);
+            if (Objects.nonNull(outboundBudget)) {
+                channel.config().setMessageSizeEstimator(ProtocolSizeEstimator.INSTANCE);
+            }
+            discardConflations();
             return old;
         }
 
@@ -69,19 +110,163 @@ public abstract class AbstractSession {
 
     /**
      * write out
+     *
+     * @return 是否write, 超出出站字节预算则返回false
+     */
+    protected final boolean write(SocketProtocol protocol) {
+        if (protocol == null) {
+            return false;
+        }
+        //交给transport发送, bytebuf成员域由transport release
+        ProtocolFactory.handOffPayload(protocol);
+        if (!isActive()) {
+            ProtocolFactory.releaseOutboundPayload(protocol);
+            return false;
+        }
+        ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(protocol.getProtocolId());
+        if (protocolInfo != null && protocolInfo.isConflate()) {
+            conflate(protocolInfo, protocol);
+            return true;
+        }
+        OutboundBudget outboundBudget = this.outboundBudget;
+        if (outboundBudget != null &&
+                !outboundBudget.tryAcquire(channel, protocolInfo != null ? protocolInfo.getPriority() : 0)) {
+            ProtocolFactory.releaseOutboundPayload(protocol);
+            return false;
+        }
+        if (isFlush || flushConsolidated) {
+            channel.writeAndFlush(protocol);
+        } else {
+            channel.write(protocol);
+            if (flushChannelScheduleTag.compareAndSet(false, true)) {
+                scheduleFlush();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 出站字节预算, null则表示不限制
+     */
+    public OutboundBudget getOutboundBudget() {
+        return outboundBudget;
+    }
+
+    /**
+     * 设置出站字节预算, null则表示不限制
+     * 同时channel使用{@link ProtocolSizeEstimator}估算业务线程已提交但未编码的协议
+     */
+    public final void outboundBudget(OutboundBudget outboundBudget) {
+        this.outboundBudget = outboundBudget;
+        if (Objects.nonNull(outboundBudget)) {
+            channel.config().setMessageSizeEstimator(ProtocolSizeEstimator.INSTANCE);
+        }
+    }
+
+    /**
+     * channel可写状态变化, 即outbound buffer超过高水位或回落至低水位
+     * 在channel线程调用, 由{@link org.kin.transport.netty.socket.SessionBaseSocketProtocolHandler}调用
+     *
+     * @param writable channel是否可写
+     */
+    public void onWritabilityChanged(boolean writable) {
+    }
+
+    /**
+     * 进入合并发送队列, 替换未发送的同一合并key的旧协议, 并保持其在队列中的位置
+     */
+    private void conflate(ProtocolFactory.ProtocolInfo protocolInfo, SocketProtocol protocol) {
+        ConflationSlot slot = new ConflationSlot(protocolInfo.getId(), protocolInfo.getConflationKey(protocol));
+        SocketProtocol replaced;
+        synchronized (conflations) {
+            replaced = conflations.put(slot, protocol);
+        }
+        if (Objects.nonNull(replaced) && replaced != protocol) {
+            //被替换的协议不会再发送
+            ProtocolFactory.releaseOutboundPayload(replaced);
+        }
+        if (isFlush || flushConsolidated) {
+            scheduleDrain();
+        } else if (flushChannelScheduleTag.compareAndSet(false, true)) {
+            //随定时flush发送
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 调度发送合并发送队列, channel不可写则等待可写时再发送
      */
-    protected final void write(SocketProtocol protocol) {
-        if (isActive()) {
-            if (protocol != null) {
-                if (isFlush) {
-                    channel.writeAndFlush(protocol);
-                } else {
-                    channel.write(protocol);
-                    if (flushChannelScheduleTag.compareAndSet(false, true)) {
-                        scheduleFlush();
-                    }
+    private void scheduleDrain() {
+        Channel channel = this.channel;
+        if (channel.isWritable() && drainScheduleTag.compareAndSet(false, true)) {
+            channel.eventLoop().execute(() -> {
+                drainScheduleTag.set(false);
+                drainConflations();
+            });
+        }
+    }
+
+    /**
+     * 发送合并发送队列, 直至队列为空或channel不可写
+     * 在channel线程调用, channel重新可写时由{@link org.kin.transport.netty.socket.SessionBaseSocketProtocolHandler}调用
+     */
+    public final void drainConflations() {
+        Channel channel = this.channel;
+        if (!isActive()) {
+            discardConflations();
+            return;
+        }
+        boolean written = false;
+        while (channel.isWritable()) {
+            SocketProtocol protocol;
+            synchronized (conflations) {
+                Iterator<SocketProtocol> iterator = conflations.values().iterator();
+                if (!iterator.hasNext()) {
+                    break;
                 }
+                protocol = iterator.next();
+                iterator.remove();
             }
+            channel.write(protocol);
+            written = true;
+        }
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    /**
+     * 丢弃合并发送队列中未发送的协议, 并release其bytebuf成员域
+     * session关闭, channel inactive或者切换channel时调用
+     */
+    public final void discardConflations() {
+        List<SocketProtocol> discarded;
+        synchronized (conflations) {
+            if (conflations.isEmpty()) {
+                return;
+            }
+            discarded = new ArrayList<>(conflations.values());
+            conflations.clear();
+        }
+        for (SocketProtocol protocol : discarded) {
+            ProtocolFactory.releaseOutboundPayload(protocol);
+        }
+    }
+
+    /**
+     * 丢弃增量编码快照, 之后每个增量编码协议都全量发送一次, 并通知对端丢弃其快照
+     * 用于对端状态丢失或需要重新同步全部状态的场景
+     */
+    public final void resync() {
+        Channel channel = this.channel;
+        if (Objects.nonNull(channel)) {
+            //与write同在event loop中执行, 保证顺序
+            channel.eventLoop().execute(() -> {
+                DeltaSnapshots snapshots = channel.attr(DeltaSnapshots.DELTA_KEY).get();
+                if (Objects.nonNull(snapshots)) {
+                    snapshots.resync();
+                }
+            });
         }
     }
 
@@ -91,6 +276,7 @@ public abstract class AbstractSession {
     private void scheduleFlush() {
         channel.eventLoop().schedule(() -> {
             if (flushChannelScheduleTag.compareAndSet(true, false)) {
+                drainConflations();
                 channel.flush();
             }
         }, 50, TimeUnit.MILLISECONDS);
@@ -101,6 +287,7 @@ public abstract class AbstractSession {
      */
     public final void writeAndClose(SocketProtocol protocol, SessionCloseCause cause, String ip) {
         if (protocol != null) {
+            ProtocolFactory.handOffPayload(protocol);
             ChannelFuture writeFuture = channel.writeAndFlush(protocol);
             writeFuture.addListener((ChannelFuture channelFuture) -> close(cause, ip));
             channel.eventLoop().schedule(() -> {
@@ -117,6 +304,7 @@ public abstract class AbstractSession {
     public final ChannelFuture close(SessionCloseCause cause, String ip) {
         this.isClosed = true;
         this.sessionCloseCause = cause;
+        discardConflations();
         if (channel.isOpen()) {
             log.info("close session('{}') due to Cause: {}", ip, cause);
             return channel.close();
@@ -153,6 +341,38 @@ public abstract class AbstractSession {
         return sessionCloseCause;
     }
 
+    /**
+     * 合并发送队列的key, 协议id + 合并key
+     */
+    private static final class ConflationSlot {
+        /** 协议id */
+        private final int protocolId;
+        /** 合并key, 可能为null */
+        private final Object key;
+
+        private ConflationSlot(int protocolId, Object key) {
+            this.protocolId = protocolId;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ConflationSlot that = (ConflationSlot) o;
+            return protocolId == that.protocolId && Objects.equals(key, that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(protocolId, key);
+        }
+    }
+
     @Override
     public String toString() {
         return "Session{" +
@@ -0,0 +1,170 @@
+package org.kin.transport.netty.socket.session;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.kin.transport.netty.OutboundBudget;
+import org.kin.transport.netty.socket.SocketTransfer;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
+import org.kin.transport.netty.socket.protocol.SocketProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * session组, 广播协议时只编码一次
+ * <p>
+ * 协议编码成一个共享bytebuf, 每个成员channel写入其retainedDuplicate(), 不再逐个session跑一遍codec
+ * 同一event loop的成员在一个任务中write, 最后统一flush
+ * socket的压缩和协议帧头部仍按channel处理(压缩流是channel有状态的), 即只拷贝一次共享内容, 不再编码
+ * <p>
+ * 增量编码和合并发送协议依赖session或channel状态, 仍逐个session发送
+ * <p>
+ * 广播的协议交给transport, 其bytebuf成员域由transport release
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class SessionGroup<S extends AbstractSession> {
+    private static final Logger log = LoggerFactory.getLogger(SessionGroup.class);
+
+    /** 成员 */
+    private final Set<S> sessions = ConcurrentHashMap.newKeySet();
+    /** 共享bytebuf -> channel write的消息 */
+    private final Function<ByteBuf, Object> frameWrapper;
+
+    private SessionGroup(Function<ByteBuf, Object> frameWrapper) {
+        this.frameWrapper = frameWrapper;
+    }
+
+    /**
+     * @return socket session组
+     */
+    public static <S extends AbstractSession> SessionGroup<S> socket() {
+        return new SessionGroup<>(byteBuf -> byteBuf);
+    }
+
+    /**
+     * @return websocket(binary)session组
+     */
+    public static <S extends AbstractSession> SessionGroup<S> websocket() {
+        return new SessionGroup<>(BinaryWebSocketFrame::new);
+    }
+
+    /**
+     * 加入
+     */
+    public boolean add(S session) {
+        return sessions.add(session);
+    }
+
+    /**
+     * 移除
+     */
+    public boolean remove(S session) {
+        return sessions.remove(session);
+    }
+
+    /**
+     * @return 成员数
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 广播, 不可写的成员照常写入
+     */
+    public void broadcast(SocketProtocol protocol) {
+        broadcast(protocol, false);
+    }
+
+    /**
+     * 广播
+     *
+     * @param skipUnwritable 是否跳过channel不可写的成员
+     */
+    public void broadcast(SocketProtocol protocol, boolean skipUnwritable) {
+        //交给transport发送, bytebuf成员域由transport release
+        ProtocolFactory.handOffPayload(protocol);
+        ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(protocol.getProtocolId());
+        if (Objects.nonNull(protocolInfo) && (protocolInfo.isDelta() || protocolInfo.isConflate())) {
+            //依赖session或channel状态, 不能共享编码结果
+            List<S> members = new ArrayList<>(sessions);
+            if (members.isEmpty()) {
+                ProtocolFactory.releaseOutboundPayload(protocol);
+                return;
+            }
+            //每个session发送都会release一次
+            ProtocolFactory.retainPayload(protocol, members.size() - 1);
+            for (S session : members) {
+                session.sendProtocol(protocol);
+            }
+            return;
+        }
+
+        //按event loop分组
+        Map<EventLoop, List<S>> loopSessions = new HashMap<>();
+        for (S session : sessions) {
+            if (!session.isActive()) {
+                continue;
+            }
+            loopSessions.computeIfAbsent(session.getChannel().eventLoop(), k -> new ArrayList<>()).add(session);
+        }
+        if (loopSessions.isEmpty()) {
+            ProtocolFactory.releaseOutboundPayload(protocol);
+            return;
+        }
+
+        int priority = Objects.nonNull(protocolInfo) ? protocolInfo.getPriority() : 0;
+        ByteBuf shared = SocketTransfer.encodeShared(ByteBufAllocator.DEFAULT, protocol);
+        try {
+            for (Map.Entry<EventLoop, List<S>> entry : loopSessions.entrySet()) {
+                List<S> members = entry.getValue();
+                //在调用线程retain, 任务执行或被拒绝时release
+                ByteBuf loopShared = shared.retainedDuplicate();
+                try {
+                    entry.getKey().execute(() -> write(members, loopShared, priority, skipUnwritable));
+                } catch (RejectedExecutionException e) {
+                    ReferenceCountUtil.release(loopShared);
+                    log.warn("broadcast protocol '{}' rejected, event loop is shutdown", protocol.getProtocolId());
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(shared);
+        }
+    }
+
+    /**
+     * 在event loop中write同一event loop的成员, 最后统一flush
+     */
+    private void write(List<S> members, ByteBuf loopShared, int priority, boolean skipUnwritable) {
+        List<Channel> written = new ArrayList<>(members.size());
+        try {
+            for (S session : members) {
+                Channel channel = session.getChannel();
+                if (!channel.isActive() || (skipUnwritable && !channel.isWritable())) {
+                    continue;
+                }
+                OutboundBudget outboundBudget = session.getOutboundBudget();
+                if (Objects.nonNull(outboundBudget) && !outboundBudget.tryAcquire(channel, priority)) {
+                    continue;
+                }
+                channel.write(frameWrapper.apply(loopShared.retainedDuplicate()));
+                written.add(channel);
+            }
+        } finally {
+            ReferenceCountUtil.release(loopShared);
+        }
+        for (Channel channel : written) {
+            channel.flush();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.kin.transport.netty.udp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.ReferenceCountUtil;
+import org.kin.transport.netty.socket.SocketTransfer;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
+import org.kin.transport.netty.socket.protocol.SocketProtocol;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+
+/**
+ * udp广播, 协议只编码一次, 每个目标地址发送共享内容的retainedDuplicate()
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class UdpBroadcasts {
+    private UdpBroadcasts() {
+    }
+
+    /**
+     * 广播至目标地址列表, write完统一flush一次
+     *
+     * @param channel udp channel
+     * @param targets 目标地址
+     */
+    public static void broadcast(Channel channel, SocketProtocol protocol, Collection<InetSocketAddress> targets) {
+        //交给transport发送, bytebuf成员域由transport release
+        ProtocolFactory.handOffPayload(protocol);
+        if (targets.isEmpty() || !channel.isActive()) {
+            ProtocolFactory.releaseOutboundPayload(protocol);
+            return;
+        }
+        ByteBuf shared = SocketTransfer.encodeShared(channel.alloc(), protocol);
+        try {
+            for (InetSocketAddress target : targets) {
+                channel.write(new DatagramPacket(shared.retainedDuplicate(), target));
+            }
+        } finally {
+            ReferenceCountUtil.release(shared);
+        }
+        channel.flush();
+    }
+}
@@ -5,6 +5,8 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.DatagramPacket;
 import org.kin.transport.netty.TransportProtocolTransfer;
 import org.kin.transport.netty.socket.SocketTransfer;
+import org.kin.transport.netty.socket.protocol.ProtocolException;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
 
 import java.util.ArrayList;
@@ -15,6 +17,7 @@ import java.util.stream.Collectors;
 /**
  * udp协议转换
  * 基于{@link SocketTransfer}
+ * 不支持增量编码协议
  *
  * @author huangjianqin
  * @date 2020/9/1
@@ -28,6 +31,8 @@ public class UdpTransfer implements TransportProtocolTransfer<DatagramPacket, Ud
 
     @Override
     public Collection<UdpProtocolDetails> decode(ChannelHandlerContext ctx, DatagramPacket datagramPacket) {
+        ByteBuf content = datagramPacket.content();
+        checkNotDelta(content.getUnsignedShort(content.readerIndex()));
         Collection<SocketProtocol> protocols = transfer.decode(ctx, datagramPacket.content());
         return protocols.stream()
                 .map(sp -> UdpProtocolDetails.receiverWrapper(sp, datagramPacket.sender()))
@@ -36,6 +41,7 @@ public class UdpTransfer implements TransportProtocolTransfer<DatagramPacket, Ud
 
     @Override
     public Collection<DatagramPacket> encode(ChannelHandlerContext ctx, UdpProtocolDetails wrapper) {
+        checkNotDelta(wrapper.getProtocol().getProtocolId());
         List<ByteBuf> byteBufs = new ArrayList<>(transfer.encode(ctx, wrapper.getProtocol()));
         List<DatagramPacket> datagramPackets = new ArrayList<>(byteBufs.size());
         for (ByteBuf byteBuf : byteBufs) {
@@ -45,6 +51,16 @@ public class UdpTransfer implements TransportProtocolTransfer<DatagramPacket, Ud
         return datagramPackets;
     }
 
+    /**
+     * udp channel的所有对端共享channel状态, 且不保证到达和顺序, 故不支持增量编码协议
+     */
+    private void checkNotDelta(int protocolId) {
+        ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(protocolId);
+        if (protocolInfo != null && protocolInfo.isDelta()) {
+            throw new ProtocolException("delta protocol '" + protocolId + "' is not supported by udp");
+        }
+    }
+
     @Override
     public Class<DatagramPacket> getInClass() {
         return DatagramPacket.class;
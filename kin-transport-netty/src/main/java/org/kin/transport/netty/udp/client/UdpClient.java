@@ -3,8 +3,7 @@ package org.kin.transport.netty.udp.client;
 import com.google.common.base.Preconditions;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import org.kin.framework.utils.CollectionUtils;
@@ -12,8 +11,12 @@ import org.kin.transport.netty.AbstractTransportOption;
 import org.kin.transport.netty.ChannelHandlerInitializer;
 import org.kin.transport.netty.Client;
 import org.kin.transport.netty.ClientConnectTimeoutException;
+import org.kin.transport.netty.ClientEventLoopGroups;
+import org.kin.transport.netty.TransportType;
+import org.kin.transport.netty.socket.protocol.ProtocolFactory;
 import org.kin.transport.netty.socket.protocol.SocketProtocol;
 import org.kin.transport.netty.udp.UdpProtocolDetails;
+import org.kin.transport.netty.utils.ChannelUtils;
 
 import javax.net.ssl.SSLException;
 import java.net.InetSocketAddress;
@@ -44,11 +47,15 @@ public class UdpClient extends Client<SocketProtocol> {
         Preconditions.checkArgument(channelOptions != null);
         Preconditions.checkArgument(channelHandlerInitializer != null);
 
-        group = new NioEventLoopGroup();
+        TransportType transportType = transportOption.getTransportType().orFallback();
+        if (Objects.isNull(group)) {
+            //共享event loop group, close时release
+            group = ClientEventLoopGroups.acquire(transportType, transportOption.getClientThreads());
+        }
 
         CountDownLatch latch = new CountDownLatch(1);
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(group).channel(NioDatagramChannel.class);
+        bootstrap.group(group).channel(transportType.datagramChannelClass());
 
         for (Map.Entry<ChannelOption, Object> entry : channelOptions.entrySet()) {
             bootstrap.option(entry.getKey(), entry.getValue());
@@ -65,9 +72,10 @@ public class UdpClient extends Client<SocketProtocol> {
             sslCtx = null;
         }
 
-        bootstrap.handler(new ChannelInitializer<NioDatagramChannel>() {
+        bootstrap.handler(new ChannelInitializer<DatagramChannel>() {
             @Override
-            protected void initChannel(NioDatagramChannel datagramChannel) {
+            protected void initChannel(DatagramChannel datagramChannel) {
+                ChannelUtils.setWriteBufferWaterMark(datagramChannel, transportOption);
                 ChannelPipeline pipeline = datagramChannel.pipeline();
                 if (Objects.nonNull(sslCtx)) {
                     pipeline.addLast(sslCtx.newHandler(datagramChannel.alloc(), address.getHostString(), address.getPort()));
@@ -112,7 +120,16 @@ public class UdpClient extends Client<SocketProtocol> {
      */
     @Override
     public boolean request(SocketProtocol protocol, ChannelFutureListener... listeners) {
-        if (isActive() && Objects.nonNull(protocol)) {
+        if (Objects.isNull(protocol)) {
+            return false;
+        }
+        //交给transport发送, bytebuf成员域由transport release
+        ProtocolFactory.handOffPayload(protocol);
+        if (isActive()) {
+            if (!tryAcquireOutboundBudget(protocol)) {
+                ProtocolFactory.releaseOutboundPayload(protocol);
+                return false;
+            }
             ChannelFuture channelFuture =
                     channel.writeAndFlush(UdpProtocolDetails.senderWrapper(protocol, address));
             if (CollectionUtils.isNonEmpty(listeners)) {
@@ -121,6 +138,7 @@ public class UdpClient extends Client<SocketProtocol> {
             return true;
         }
 
+        ProtocolFactory.releaseOutboundPayload(protocol);
         return false;
     }
 
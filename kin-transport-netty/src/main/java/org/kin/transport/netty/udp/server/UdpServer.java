@@ -3,8 +3,7 @@ package org.kin.transport.netty.udp.server;
 import com.google.common.base.Preconditions;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.DatagramChannel;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import org.kin.framework.log.LoggerOprs;
@@ -12,6 +11,8 @@ import org.kin.transport.netty.AbstractTransportOption;
 import org.kin.transport.netty.ChannelHandlerInitializer;
 import org.kin.transport.netty.ServerBindTimeoutException;
 import org.kin.transport.netty.ServerConnection;
+import org.kin.transport.netty.TransportType;
+import org.kin.transport.netty.utils.ChannelUtils;
 
 import javax.net.ssl.SSLException;
 import java.net.InetSocketAddress;
@@ -28,7 +29,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class UdpServer extends ServerConnection implements LoggerOprs {
     /** worker线程池 */
-    private NioEventLoopGroup workerGroup;
+    private EventLoopGroup workerGroup;
     /** selector */
     private volatile Channel selector;
 
@@ -48,14 +49,15 @@ public class UdpServer extends ServerConnection implements LoggerOprs {
         Preconditions.checkArgument(channelOptions != null);
         Preconditions.checkArgument(channelHandlerInitializer != null);
 
+        TransportType transportType = transportOption.getTransportType().orFallback();
         //默认2倍cpu
-        this.workerGroup = new NioEventLoopGroup();
+        this.workerGroup = transportType.eventLoopGroup(0);
 
         CountDownLatch latch = new CountDownLatch(1);
 
         //配置bootstrap
         Bootstrap bootstrap = new Bootstrap();
-        bootstrap.group(this.workerGroup).channel(NioDatagramChannel.class);
+        bootstrap.group(this.workerGroup).channel(transportType.datagramChannelClass());
 
         for (Map.Entry<ChannelOption, Object> entry : serverOptions.entrySet()) {
             bootstrap.option(entry.getKey(), entry.getValue());
@@ -72,9 +74,10 @@ public class UdpServer extends ServerConnection implements LoggerOprs {
             sslCtx = null;
         }
 
-        bootstrap.handler(new ChannelInitializer<NioDatagramChannel>() {
+        bootstrap.handler(new ChannelInitializer<DatagramChannel>() {
             @Override
-            protected void initChannel(NioDatagramChannel datagramChannel) {
+            protected void initChannel(DatagramChannel datagramChannel) {
+                ChannelUtils.setWriteBufferWaterMark(datagramChannel, transportOption);
                 ChannelPipeline pipeline = datagramChannel.pipeline();
                 if (Objects.nonNull(sslCtx)) {
                     pipeline.addLast(sslCtx.newHandler(datagramChannel.alloc()));
@@ -2,9 +2,11 @@ package org.kin.transport.netty.utils;
 
 import com.google.common.util.concurrent.RateLimiter;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelConfig;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import org.kin.transport.netty.AbstractTransportOption;
 import org.kin.transport.netty.ProtocolHandler;
 import org.kin.transport.netty.userevent.GlobalRatelimitEvent;
 
@@ -22,6 +24,26 @@ public class ChannelUtils {
 
     }
 
+    /**
+     * 设置channel写缓冲水位, 没有配置则使用netty默认值
+     * 按新旧水位大小决定设置顺序, 避免设置过程中出现低水位大于高水位而抛异常
+     */
+    public static void setWriteBufferWaterMark(Channel channel, AbstractTransportOption<?, ?, ?, ?> transportOption) {
+        int low = transportOption.getWriteBufferLowWaterMark();
+        int high = transportOption.getWriteBufferHighWaterMark();
+        if (low <= 0 || high <= 0) {
+            return;
+        }
+        ChannelConfig config = channel.config();
+        if (high >= config.getWriteBufferLowWaterMark()) {
+            config.setWriteBufferHighWaterMark(high);
+            config.setWriteBufferLowWaterMark(low);
+        } else {
+            config.setWriteBufferLowWaterMark(low);
+            config.setWriteBufferHighWaterMark(high);
+        }
+    }
+
     /**
      * 获取该channel的远程地址
      */
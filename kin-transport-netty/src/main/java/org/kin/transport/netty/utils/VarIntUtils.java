@@ -0,0 +1,172 @@
+package org.kin.transport.netty.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * varint & zigzag 编解码工具类
+ * 每个字节低7位存储数据, 最高位标识后面是否还有字节
+ *
+ * @author huangjianqin
+ * @date 2020/11/3
+ */
+public class VarIntUtils {
+    /** 32位varint最大字节数 */
+    public static final int MAX_VAR_INT32_SIZE = 5;
+    /** 64位varint最大字节数 */
+    public static final int MAX_VAR_INT64_SIZE = 10;
+
+    private VarIntUtils() {
+    }
+
+    /**
+     * @return 32位varint编码后字节数
+     */
+    public static int computeRawVarInt32Size(int value) {
+        if ((value & (0xFFFFFFFF << 7)) == 0) {
+            return 1;
+        }
+        if ((value & (0xFFFFFFFF << 14)) == 0) {
+            return 2;
+        }
+        if ((value & (0xFFFFFFFF << 21)) == 0) {
+            return 3;
+        }
+        if ((value & (0xFFFFFFFF << 28)) == 0) {
+            return 4;
+        }
+        return 5;
+    }
+
+    /**
+     * @return 64位varint编码后字节数
+     */
+    public static int computeRawVarInt64Size(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+
+    /**
+     * 写32位varint
+     */
+    public static void writeRawVarInt32(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * 在指定index开始设置32位varint
+     *
+     * @return varint字节数
+     */
+    public static int setRawVarInt32(ByteBuf out, int index, int value) {
+        int i = index;
+        while ((value & ~0x7F) != 0) {
+            out.setByte(i++, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.setByte(i++, value);
+        return i - index;
+    }
+
+    /**
+     * 写64位varint
+     */
+    public static void writeRawVarInt64(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * 读32位varint
+     */
+    public static int readRawVarInt32(ByteBuf in) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.readByte();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint32");
+    }
+
+    /**
+     * 读64位varint
+     */
+    public static long readRawVarInt64(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint64");
+    }
+
+    /**
+     * 尝试从readerIndex开始读32位varint, 不移动readerIndex
+     *
+     * @param holder 长度为2的数组, [0]存储varint值, [1]存储varint字节数
+     * @return 数据是否完整
+     */
+    public static boolean peekRawVarInt32(ByteBuf in, int[] holder) {
+        int readerIndex = in.readerIndex();
+        int readableBytes = in.readableBytes();
+        int result = 0;
+        for (int i = 0; i < MAX_VAR_INT32_SIZE; i++) {
+            if (i >= readableBytes) {
+                return false;
+            }
+            byte b = in.getByte(readerIndex + i);
+            result |= (b & 0x7F) << (i * 7);
+            if (b >= 0) {
+                holder[0] = result;
+                holder[1] = i + 1;
+                return true;
+            }
+        }
+        throw new CorruptedFrameException("malformed varint32");
+    }
+
+    /**
+     * zigzag编码, 使绝对值小的负数编码后也是小的正数
+     */
+    public static int encodeZigZag32(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * zigzag解码
+     */
+    public static int decodeZigZag32(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * zigzag编码, 使绝对值小的负数编码后也是小的正数
+     */
+    public static long encodeZigZag64(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * zigzag解码
+     */
+    public static long decodeZigZag64(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -33,6 +33,16 @@ public class WsBinaryTransfer implements TransportProtocolTransfer<BinaryWebSock
         return transfer.encode(ctx, protocol).stream().map(BinaryWebSocketFrame::new).collect(Collectors.toList());
     }
 
+    @Override
+    public boolean isWriteFailureAware(SocketProtocol protocol) {
+        return transfer.isWriteFailureAware(protocol);
+    }
+
+    @Override
+    public void writeFailed(ChannelHandlerContext ctx, SocketProtocol protocol, Throwable cause) {
+        transfer.writeFailed(ctx, protocol, cause);
+    }
+
     @Override
     public Class<BinaryWebSocketFrame> getInClass() {
         return BinaryWebSocketFrame.class;
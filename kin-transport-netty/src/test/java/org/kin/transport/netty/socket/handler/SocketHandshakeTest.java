@@ -0,0 +1,174 @@
+package org.kin.transport.netty.socket.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 模拟连接两端握手, 校验协议帧切换时机, 协商结果和旧server的回退
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class SocketHandshakeTest {
+    public static void main(String[] args) throws InterruptedException {
+        handshake();
+        fallback();
+        lateAck();
+    }
+
+    /**
+     * 正常握手
+     */
+    private static void handshake() {
+        EmbeddedChannel server = new EmbeddedChannel(new SocketFrameCodec(1024, true, false,
+                new SocketHandshake(SocketHandshake.VERSION, 1024, SocketFeature.mask(SocketFeature.STRING_DICTIONARY))));
+        EmbeddedChannel client = new EmbeddedChannel(new SocketFrameCodec(4096, false, false,
+                new SocketHandshake(SocketHandshake.VERSION, 4096, 0)));
+
+        //channel active即发送握手帧
+        ByteBuf handshake = client.readOutbound();
+        check(startsWithMagic(handshake), "handshake frame must start with magic");
+
+        //收到握手响应前, client仍发送旧协议帧
+        client.writeOutbound(body("before ack"));
+        ByteBuf legacyFrame = client.readOutbound();
+        check(startsWithMagic(legacyFrame), "frame before ack must be legacy");
+
+        server.writeInbound(handshake);
+        ByteBuf ack = server.readOutbound();
+        check(startsWithMagic(ack), "handshake ack must start with magic");
+        //server已切换, 但仍可以解析client收到握手响应前的旧协议帧
+        server.writeInbound(legacyFrame);
+        checkBody(server.readInbound(), "before ack");
+
+        client.writeInbound(ack);
+        SocketHandshake negotiated = client.attr(SocketHandshake.HANDSHAKE_KEY).get();
+        System.out.println("client negotiated: " + negotiated);
+        check(negotiated.getMaxBodySize() == 1024, "maxBodySize must be min(local, remote)");
+        check(!negotiated.hasFeature(SocketFeature.STRING_DICTIONARY), "features must be intersection");
+        System.out.println("server negotiated: " + server.attr(SocketHandshake.HANDSHAKE_KEY).get());
+
+        //收到握手响应后, 双方都使用varint长度协议帧
+        client.writeOutbound(body("after ack"));
+        ByteBuf compactFrame = client.readOutbound();
+        check(!startsWithMagic(compactFrame), "frame after ack must be compact");
+        server.writeInbound(compactFrame);
+        checkBody(server.readInbound(), "after ack");
+
+        server.writeOutbound(body("from server"));
+        client.writeInbound(server.readOutbound());
+        checkBody(client.readInbound(), "from server");
+
+        client.finish();
+        server.finish();
+        System.out.println("handshake ok");
+    }
+
+    /**
+     * 旧server不响应握手, client超时后一直使用旧协议帧
+     */
+    private static void fallback() throws InterruptedException {
+        EmbeddedChannel client = new EmbeddedChannel(new SocketFrameCodec(4096, false, false,
+                new SocketHandshake(SocketHandshake.VERSION, 4096, 0)));
+        ((ByteBuf) client.readOutbound()).release();
+
+        Thread.sleep(SocketHandshake.ACK_TIMEOUT_MILLIS + 200);
+        client.runScheduledPendingTasks();
+
+        client.writeOutbound(body("legacy"));
+        ByteBuf legacyFrame = client.readOutbound();
+        check(startsWithMagic(legacyFrame), "frame must be legacy after ack timeout");
+        legacyFrame.release();
+
+        //旧server响应的协议帧, int长度
+        ByteBuf serverBody = body("legacy server");
+        ByteBuf serverFrame = Unpooled.buffer().writeInt(serverBody.readableBytes()).writeBytes(serverBody);
+        serverBody.release();
+        client.writeInbound(serverFrame);
+        checkBody(client.readInbound(), "legacy server");
+        check(client.attr(SocketHandshake.HANDSHAKE_KEY).get() == null, "handshake must not be done");
+
+        client.finish();
+        System.out.println("fallback ok");
+    }
+
+    /**
+     * server握手响应在client超时回退后才到达, client仍需识别并完成切换
+     */
+    private static void lateAck() throws InterruptedException {
+        EmbeddedChannel server = new EmbeddedChannel(new SocketFrameCodec(1024, true, false,
+                new SocketHandshake(SocketHandshake.VERSION, 1024, 0)));
+        EmbeddedChannel client = new EmbeddedChannel(new SocketFrameCodec(4096, false, false,
+                new SocketHandshake(SocketHandshake.VERSION, 4096, 0)));
+        ByteBuf handshake = client.readOutbound();
+
+        Thread.sleep(SocketHandshake.ACK_TIMEOUT_MILLIS + 200);
+        client.runScheduledPendingTasks();
+
+        //超时后仍发送旧协议帧
+        client.writeOutbound(body("after timeout"));
+        ByteBuf legacyFrame = client.readOutbound();
+        check(startsWithMagic(legacyFrame), "frame must be legacy after ack timeout");
+
+        server.writeInbound(handshake);
+        ByteBuf ack = server.readOutbound();
+        server.writeInbound(legacyFrame);
+        checkBody(server.readInbound(), "after timeout");
+
+        //迟到的握手响应
+        client.writeInbound(ack);
+        check(client.readInbound() == null, "late ack must not be decoded as frame");
+        SocketHandshake negotiated = client.attr(SocketHandshake.HANDSHAKE_KEY).get();
+        check(negotiated != null && negotiated.getMaxBodySize() == 1024, "late ack must finish handshake");
+
+        //双方都已切换成varint长度协议帧
+        server.writeOutbound(body("compact from server"));
+        client.writeInbound(server.readOutbound());
+        checkBody(client.readInbound(), "compact from server");
+
+        client.writeOutbound(body("compact from client"));
+        ByteBuf compactFrame = client.readOutbound();
+        check(!startsWithMagic(compactFrame), "frame after late ack must be compact");
+        server.writeInbound(compactFrame);
+        checkBody(server.readInbound(), "compact from client");
+
+        client.finish();
+        server.finish();
+        System.out.println("late ack ok");
+    }
+
+    /**
+     * @return 协议体, 压缩类型(不压缩) + 内容
+     */
+    private static ByteBuf body(String content) {
+        return Unpooled.buffer().writeByte(0).writeBytes(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean startsWithMagic(ByteBuf frame) {
+        for (int i = 0; i < SocketFrameCodec.FRAME_MAGIC.length; i++) {
+            if (frame.getByte(frame.readerIndex() + i) != SocketFrameCodec.FRAME_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkBody(ByteBuf body, String content) {
+        try {
+            String received = body.toString(body.readerIndex() + 1, body.readableBytes() - 1, StandardCharsets.UTF_8);
+            System.out.println("received: " + received);
+            check(content.equals(received), "expect '" + content + "', but '" + received + "'");
+        } finally {
+            body.release();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
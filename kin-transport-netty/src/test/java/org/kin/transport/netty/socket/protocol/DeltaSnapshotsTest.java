@@ -0,0 +1,57 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class DeltaSnapshotsTest {
+    public static void main(String[] args) {
+        ProtocolFactory.init("org.kin.transport");
+        ProtocolFactory.ProtocolInfo protocolInfo = ProtocolFactory.getProtocolInfo(8);
+
+        //模拟连接两端
+        DeltaSnapshots sender = new DeltaSnapshots();
+        DeltaSnapshots receiver = new DeltaSnapshots();
+
+        Map<Integer, VO1> members = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            members.put(i, VO1.of(i));
+        }
+        Protocol8 protocol8 = Protocol8.of(1L, 1, "room1", members);
+        //全量
+        transfer(protocolInfo, sender, receiver, protocol8);
+
+        //只有tick变化
+        protocol8.setTick(2);
+        transfer(protocolInfo, sender, receiver, protocol8);
+
+        //修改, 新增, 删除entry
+        members.put(0, VO1.of(1000));
+        members.put(100, VO1.of(100));
+        members.remove(1);
+        transfer(protocolInfo, sender, receiver, protocol8);
+
+        //其他room全量
+        transfer(protocolInfo, sender, receiver, Protocol8.of(2L, 1, "room2", new HashMap<>()));
+
+        //没有变化
+        transfer(protocolInfo, sender, receiver, protocol8);
+
+        //重新同步
+        sender.resync();
+        transfer(protocolInfo, sender, receiver, protocol8);
+    }
+
+    private static void transfer(ProtocolFactory.ProtocolInfo protocolInfo, DeltaSnapshots sender, DeltaSnapshots receiver, Protocol8 protocol8) {
+        SocketProtocolByteBuf response = new SocketProtocolByteBuf(protocolInfo.getId());
+        sender.write(protocolInfo, protocol8, response);
+        System.out.println("size=" + response.getSize());
+
+        SocketProtocolByteBuf request = new SocketProtocolByteBuf(response.getByteBuf());
+        System.out.println(receiver.read(protocolInfo, request));
+        request.release();
+    }
+}
@@ -0,0 +1,83 @@
+package org.kin.transport.netty.socket.protocol;
+
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * 基础类型数组批量读写, 基础类型key map
+ *
+ * @author huangjianqin
+ * @date 2020/11/8
+ */
+@Protocol(id = 6)
+public class Protocol6 extends SocketProtocol {
+    private long[] a;
+    private double[] b;
+    private ArrayList<Integer> c;
+    private IntObjectMap<VO1> d;
+    private LongObjectMap<String> e;
+
+    public static Protocol6 of(long[] a, double[] b, ArrayList<Integer> c, IntObjectMap<VO1> d, LongObjectMap<String> e) {
+        Protocol6 inst = new Protocol6();
+        inst.a = a;
+        inst.b = b;
+        inst.c = c;
+        inst.d = d;
+        inst.e = e;
+        return inst;
+    }
+
+    public long[] getA() {
+        return a;
+    }
+
+    public void setA(long[] a) {
+        this.a = a;
+    }
+
+    public double[] getB() {
+        return b;
+    }
+
+    public void setB(double[] b) {
+        this.b = b;
+    }
+
+    public ArrayList<Integer> getC() {
+        return c;
+    }
+
+    public void setC(ArrayList<Integer> c) {
+        this.c = c;
+    }
+
+    public IntObjectMap<VO1> getD() {
+        return d;
+    }
+
+    public void setD(IntObjectMap<VO1> d) {
+        this.d = d;
+    }
+
+    public LongObjectMap<String> getE() {
+        return e;
+    }
+
+    public void setE(LongObjectMap<String> e) {
+        this.e = e;
+    }
+
+    @Override
+    public String toString() {
+        return "Protocol6{" +
+                "a=" + Arrays.toString(a) +
+                ", b=" + Arrays.toString(b) +
+                ", c=" + c +
+                ", d=" + d +
+                ", e=" + e +
+                "} " + super.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.util.List;
+
+/**
+ * 稀疏编码, 默认值字段不写入
+ *
+ * @author huangjianqin
+ * @date 2020/11/10
+ */
+@Protocol(id = 7, sparse = true)
+public class Protocol7 extends SocketProtocol {
+    private int a;
+    private long b;
+    private String c;
+    private List<Integer> d;
+    private VO1 e;
+    private boolean f;
+
+    public static Protocol7 of(int a, long b, String c, List<Integer> d, VO1 e, boolean f) {
+        Protocol7 inst = new Protocol7();
+        inst.a = a;
+        inst.b = b;
+        inst.c = c;
+        inst.d = d;
+        inst.e = e;
+        inst.f = f;
+        return inst;
+    }
+
+    public int getA() {
+        return a;
+    }
+
+    public void setA(int a) {
+        this.a = a;
+    }
+
+    public long getB() {
+        return b;
+    }
+
+    public void setB(long b) {
+        this.b = b;
+    }
+
+    public String getC() {
+        return c;
+    }
+
+    public void setC(String c) {
+        this.c = c;
+    }
+
+    public List<Integer> getD() {
+        return d;
+    }
+
+    public void setD(List<Integer> d) {
+        this.d = d;
+    }
+
+    public VO1 getE() {
+        return e;
+    }
+
+    public void setE(VO1 e) {
+        this.e = e;
+    }
+
+    public boolean isF() {
+        return f;
+    }
+
+    public void setF(boolean f) {
+        this.f = f;
+    }
+
+    @Override
+    public String toString() {
+        return "Protocol7{" +
+                "a=" + a +
+                ", b=" + b +
+                ", c='" + c + '\'' +
+                ", d=" + d +
+                ", e=" + e +
+                ", f=" + f +
+                "} " + super.toString();
+    }
+}
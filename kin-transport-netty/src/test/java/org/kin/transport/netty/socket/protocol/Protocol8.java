@@ -0,0 +1,69 @@
+package org.kin.transport.netty.socket.protocol;
+
+import java.util.Map;
+
+/**
+ * 增量编码, 按roomId缓存快照
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+@Protocol(id = 8, delta = true)
+public class Protocol8 extends SocketProtocol {
+    @DeltaKey
+    private long roomId;
+    private int tick;
+    private String name;
+    private Map<Integer, VO1> members;
+
+    public static Protocol8 of(long roomId, int tick, String name, Map<Integer, VO1> members) {
+        Protocol8 inst = new Protocol8();
+        inst.roomId = roomId;
+        inst.tick = tick;
+        inst.name = name;
+        inst.members = members;
+        return inst;
+    }
+
+    public long getRoomId() {
+        return roomId;
+    }
+
+    public void setRoomId(long roomId) {
+        this.roomId = roomId;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    public void setTick(int tick) {
+        this.tick = tick;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Map<Integer, VO1> getMembers() {
+        return members;
+    }
+
+    public void setMembers(Map<Integer, VO1> members) {
+        this.members = members;
+    }
+
+    @Override
+    public String toString() {
+        return "Protocol8{" +
+                "roomId=" + roomId +
+                ", tick=" + tick +
+                ", name='" + name + '\'' +
+                ", members=" + members +
+                "} " + super.toString();
+    }
+}
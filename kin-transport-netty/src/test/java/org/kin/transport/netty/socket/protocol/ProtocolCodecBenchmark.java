@@ -0,0 +1,58 @@
+package org.kin.transport.netty.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * 对比逐个成员域读写和连续定长成员域直接读写bytebuf两种codec的性能
+ *
+ * @author huangjianqin
+ * @date 2020/11/6
+ */
+public class ProtocolCodecBenchmark {
+    private static final int WARMUP_TIMES = 1_000_000;
+    private static final int TIMES = 5_000_000;
+
+    public static void main(String[] args) {
+        ProtocolFactory.init("org.kin.transport");
+
+        Protocol3 protocol3 = Protocol3.of((byte) 1, (short) 2, 3, 4, 5L, 6, "7", true, VO1.of(8));
+        ProtocolCodec<Protocol3> fieldAccessCodec = ProtocolCodecs.makeCodec(Protocol3.class, false);
+        ProtocolCodec<Protocol3> blockAccessCodec = ProtocolCodecs.makeCodec(Protocol3.class, true);
+
+        //预热
+        benchmark(fieldAccessCodec, protocol3, WARMUP_TIMES);
+        benchmark(blockAccessCodec, protocol3, WARMUP_TIMES);
+
+        long fieldAccessCost = benchmark(fieldAccessCodec, protocol3, TIMES);
+        long blockAccessCost = benchmark(blockAccessCodec, protocol3, TIMES);
+        System.out.println(String.format("field access codec: %d ns/op", fieldAccessCost / TIMES));
+        System.out.println(String.format("block access codec: %d ns/op", blockAccessCost / TIMES));
+    }
+
+    /**
+     * @return 编码 + 解码 总耗时(ns)
+     */
+    private static long benchmark(ProtocolCodec<Protocol3> codec, Protocol3 protocol, int times) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.directBuffer(64);
+            try {
+                codec.write(protocol, new SocketProtocolByteBuf(byteBuf, protocol.getProtocolId()));
+
+                Protocol3 nProtocol = ProtocolFactory.createProtocol(protocol.getProtocolId());
+                codec.read(new SocketProtocolByteBuf(byteBuf), nProtocol);
+                checksum += nProtocol.getE();
+            } finally {
+                byteBuf.release();
+            }
+        }
+        long cost = System.nanoTime() - start;
+        //避免被jit优化掉
+        if (checksum == 0) {
+            System.out.println(checksum);
+        }
+        return cost;
+    }
+}
@@ -1,5 +1,9 @@
 package org.kin.transport.netty.socket.protocol;
 
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
 import javassist.NotFoundException;
 
 import java.util.*;
@@ -73,5 +77,46 @@ public class ProtocolCodecGenerateTest {
         SocketRequestOprs request5 = new SocketProtocolByteBuf(response5.getByteBuf());
         Protocol5Codec.read(request5, nProtocol5);
         System.out.println(nProtocol5);
+
+        long[] a6 = new long[]{1L, 2L, 3L};
+        double[] b6 = new double[]{4.0, 5.0};
+        ArrayList<Integer> c6 = new ArrayList<>(Arrays.asList(6, 7));
+        IntObjectMap<VO1> d6 = new IntObjectHashMap<>();
+        d6.put(8, VO1.of(9));
+        d6.put(10, VO1.of(11));
+        LongObjectMap<String> e6 = new LongObjectHashMap<>();
+        e6.put(12L, "13");
+        e6.put(14L, "15");
+
+        Protocol6 protocol6 = Protocol6.of(a6, b6, c6, d6, e6);
+        ProtocolCodec<Protocol6> Protocol6Codec = ProtocolCodecs.codec(Protocol6.class);
+        SocketResponseOprs response6 = Protocol6Codec.write(protocol6);
+        System.out.println(response6.getSize() + ", sizeOf=" + Protocol6Codec.sizeOf(protocol6));
+
+        SocketProtocol nProtocol6 = ProtocolFactory.createProtocol(6);
+        SocketRequestOprs request6 = new SocketProtocolByteBuf(response6.getByteBuf());
+        Protocol6Codec.read(request6, nProtocol6);
+        System.out.println(nProtocol6);
+
+        //只有a, c, f非默认值
+        Protocol7 protocol7 = Protocol7.of(1, 0L, "3", null, null, true);
+        ProtocolCodec<Protocol7> Protocol7Codec = ProtocolCodecs.codec(Protocol7.class);
+        SocketResponseOprs response7 = Protocol7Codec.write(protocol7);
+        System.out.println(response7.getSize() + ", sizeOf=" + Protocol7Codec.sizeOf(protocol7));
+
+        SocketProtocol nProtocol7 = ProtocolFactory.createProtocol(7);
+        SocketRequestOprs request7 = new SocketProtocolByteBuf(response7.getByteBuf());
+        Protocol7Codec.read(request7, nProtocol7);
+        System.out.println(nProtocol7);
+
+        //空字符串和空集合不是默认值, 解析后仍为空, 而不是null
+        Protocol7 emptyProtocol7 = Protocol7.of(0, 0L, "", new ArrayList<>(), null, false);
+        SocketResponseOprs emptyResponse7 = Protocol7Codec.write(emptyProtocol7);
+        Protocol7 nEmptyProtocol7 = ProtocolFactory.createProtocol(7);
+        Protocol7Codec.read(new SocketProtocolByteBuf(emptyResponse7.getByteBuf()), nEmptyProtocol7);
+        System.out.println(nEmptyProtocol7);
+        if (!"".equals(nEmptyProtocol7.getC()) || nEmptyProtocol7.getD() == null || !nEmptyProtocol7.getD().isEmpty()) {
+            throw new IllegalStateException("empty string and collection must be decoded as empty");
+        }
     }
 }
@@ -0,0 +1,73 @@
+package org.kin.transport.netty.socket.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 字符串utf8编码往返, 结果需与{@link String#getBytes(java.nio.charset.Charset)}一致, 非法代理字符编码为'?'
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class Utf8Test {
+    public static void main(String[] args) {
+        String[] values = {
+                "",
+                "ascii only",
+                "中文字符",
+                "mixed ascii, ü, 中文 and 😀",
+                //非法代理字符
+                "\uD800",
+                "\uDC00\uD800",
+                "lone \uD800 high",
+                "lone \uDC00 low",
+                "😀\uD800",
+        };
+        for (String value : values) {
+            roundTrip(Unpooled.buffer(), value);
+            roundTrip(Unpooled.directBuffer(), value);
+        }
+        System.out.println("utf8 ok");
+    }
+
+    private static void roundTrip(ByteBuf byteBuf, String value) {
+        try {
+            byte[] expectBytes = value.getBytes(StandardCharsets.UTF_8);
+            check(SocketProtocolByteBuf.utf8Length(value) == expectBytes.length, "utf8 length mismatch", value);
+
+            SocketProtocolByteBuf response = new SocketProtocolByteBuf(byteBuf, 1);
+            response.writeString(value);
+            response.writeBigString(value);
+
+            ByteBuf written = response.getByteBuf();
+            //协议id + 长度
+            byte[] actualBytes = new byte[expectBytes.length];
+            written.getBytes(written.readerIndex() + 4, actualBytes);
+            check(Arrays.equals(expectBytes, actualBytes), "utf8 bytes mismatch", value);
+
+            SocketProtocolByteBuf request = new SocketProtocolByteBuf(written);
+            String expect = new String(expectBytes, StandardCharsets.UTF_8);
+            check(expect.equals(request.readString()), "readString mismatch", value);
+            check(expect.equals(request.readBigString()), "readBigString mismatch", value);
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    private static void check(boolean condition, String message, String value) {
+        if (!condition) {
+            throw new IllegalStateException(message + ": " + escape(value));
+        }
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            sb.append(String.format("\\u%04X", (int) value.charAt(i)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,1154 @@
+package org.kin.transport.processor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import org.kin.transport.netty.socket.protocol.*;
+import org.kin.transport.netty.utils.VarIntUtils;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.*;
+
+/**
+ * 编译期生成协议和vo codec的java源码
+ * <p>
+ * 编码格式与{@link ProtocolCodecs}运行时javassist生成的codec完全一致, 包括成员域顺序, 紧凑编码, 基础类型数组批量读写和连续定长成员域直接读写bytebuf
+ * 遇到不支持的类型(延迟解析协议, 增量编码协议, 稀疏编码, 泛型类, char, 嵌套集合等)则抛出{@link UnsupportedTypeException}, 由运行时生成
+ *
+ * @author huangjianqin
+ * @date 2020/11/9
+ */
+class CodecSourceGenerator {
+    /** 生成的codec类名后缀 */
+    static final String CODEC_SUFFIX = "$$Codec";
+
+    private final Elements elements;
+    private final Types types;
+
+    CodecSourceGenerator(ProcessingEnvironment processingEnv) {
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    /**
+     * @return codec类全限定名(binary name), 与目标类同一package
+     */
+    String codecClassName(TypeElement target) {
+        return elements.getBinaryName(target).toString().concat(CODEC_SUFFIX);
+    }
+
+    /**
+     * 生成codec java源码
+     *
+     * @param isProtocol true = 协议, false = vo
+     */
+    String generate(TypeElement target, boolean isProtocol) throws UnsupportedTypeException {
+        checkTarget(target, isProtocol);
+        List<FieldInfo> fields = getValidFields(target, isProtocol);
+
+        String targetName = target.getQualifiedName().toString();
+        String packageName = elements.getPackageOf(target).getQualifiedName().toString();
+        String codecClassName = codecClassName(target);
+        String codecSimpleName = packageName.isEmpty() ? codecClassName : codecClassName.substring(packageName.length() + 1);
+        boolean hasNoArgsConstructor = hasConstructor(target, false, false);
+        if (!isProtocol && !hasNoArgsConstructor) {
+            throw new UnsupportedTypeException("vo doesn't have accessible no-args constructor");
+        }
+
+        SourceWriter writer = new SourceWriter();
+        if (!packageName.isEmpty()) {
+            writer.line("package ".concat(packageName).concat(";"));
+            writer.line("");
+        }
+        writer.line("/**");
+        writer.line(" * ".concat(targetName).concat(" codec, 由kin-transport-processor编译期生成, 请勿修改"));
+        writer.line(" */");
+        writer.open("public final class ".concat(codecSimpleName)
+                .concat(" implements ")
+                .concat(ProtocolCodec.class.getName())
+                .concat("<")
+                .concat(targetName)
+                .concat(">"));
+
+        addReadMethods(writer, targetName, fields, isProtocol);
+        addWriteMethods(writer, targetName, fields, isProtocol);
+        addSizeOfMethods(writer, targetName, fields, isProtocol);
+
+        writer.line("@Override");
+        writer.open("public ".concat(targetName).concat(" newInstance()"));
+        //没有可访问的无参构造器, 返回null, 由调用方反射创建
+        writer.line(hasNoArgsConstructor ? "return new ".concat(targetName).concat("();") : "return null;");
+        writer.close();
+
+        if (isProtocol) {
+            addReleasePayloadMethod(writer, targetName, fields);
+        }
+
+        writer.close();
+        return writer.toString();
+    }
+
+    /**
+     * 校验目标类是否支持编译期生成codec
+     */
+    private void checkTarget(TypeElement target, boolean isProtocol) throws UnsupportedTypeException {
+        if (!target.getTypeParameters().isEmpty()) {
+            throw new UnsupportedTypeException("generic class");
+        }
+        if (isProtocol) {
+            AnnotationMirror protocol = findAnnotation(target, Protocol.class);
+            if (protocol != null && booleanValue(protocol, "lazy")) {
+                //延迟解析协议需生成子类, 由运行时生成
+                throw new UnsupportedTypeException("lazy protocol");
+            }
+            if (protocol != null && booleanValue(protocol, "delta")) {
+                //增量编码需生成按成员域读写的方法, 由运行时生成
+                throw new UnsupportedTypeException("delta protocol");
+            }
+        }
+        AnnotationMirror annotation = findAnnotation(target, isProtocol ? Protocol.class : ProtocolVO.class);
+        if (annotation != null && booleanValue(annotation, "sparse")) {
+            //稀疏编码由运行时生成
+            throw new UnsupportedTypeException("sparse encoding");
+        }
+
+        Element element = target;
+        while (element instanceof TypeElement) {
+            TypeElement typeElement = (TypeElement) element;
+            if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new UnsupportedTypeException("private class");
+            }
+            NestingKind nestingKind = typeElement.getNestingKind();
+            if (nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS) {
+                throw new UnsupportedTypeException("local or anonymous class");
+            }
+            if (nestingKind == NestingKind.MEMBER && !typeElement.getModifiers().contains(Modifier.STATIC)) {
+                throw new UnsupportedTypeException("inner class");
+            }
+            element = typeElement.getEnclosingElement();
+        }
+    }
+
+    /**
+     * 有效成员域, 顺序与{@link ProtocolCodecs}一致, 即子类->父类, 同一个类按声明顺序
+     */
+    private List<FieldInfo> getValidFields(TypeElement target, boolean isProtocol) throws UnsupportedTypeException {
+        List<FieldInfo> fieldInfos = new ArrayList<>();
+        TypeElement type = target;
+        while (type != null) {
+            for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.FINAL) ||
+                        modifiers.contains(Modifier.PUBLIC) ||
+                        modifiers.contains(Modifier.STATIC) ||
+                        modifiers.contains(Modifier.TRANSIENT)) {
+                    //忽略final public static transient
+                    continue;
+                }
+                if (findAnnotation(field, Ignore.class) != null) {
+                    continue;
+                }
+
+                String fieldName = field.getSimpleName().toString();
+                String getter = findAccessor(target, fieldName, true);
+                String setter = findAccessor(target, fieldName, false);
+                if (getter == null || setter == null) {
+                    throw new UnsupportedTypeException(String.format("field '%s' doesn't have accessible getter or setter method", fieldName));
+                }
+                TypeMirror fieldType = field.asType();
+                if (!isProtocol && isByteBuf(fieldType)) {
+                    throw new UnsupportedTypeException(String.format("field '%s', bytebuf field is only supported in protocol", fieldName));
+                }
+
+                fieldInfos.add(new FieldInfo(fieldName, fieldType, getter, setter, isCompact(target, field)));
+            }
+            type = superclass(type);
+        }
+        return fieldInfos;
+    }
+
+    /**
+     * @return 父类, 父类为Object则返回null
+     */
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement superElement = (TypeElement) ((DeclaredType) superclass).asElement();
+        if (superElement.getQualifiedName().contentEquals(Object.class.getName())) {
+            return null;
+        }
+        return superElement;
+    }
+
+    /**
+     * @param getter true = getXXX | isXXX, false = setXXX
+     * @return 生成的codec(与目标类同一package)可访问的getter | setter方法名, 找不到则返回null
+     */
+    private String findAccessor(TypeElement target, String fieldName, boolean getter) {
+        String suffix = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        List<String> candidates = getter ? Arrays.asList("get".concat(suffix), "is".concat(suffix)) : Collections.singletonList("set".concat(suffix));
+        PackageElement targetPackage = elements.getPackageOf(target);
+        for (String candidate : candidates) {
+            for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(target))) {
+                if (!method.getSimpleName().contentEquals(candidate) ||
+                        method.getParameters().size() != (getter ? 0 : 1) ||
+                        method.getModifiers().contains(Modifier.STATIC) ||
+                        method.getModifiers().contains(Modifier.PRIVATE)) {
+                    continue;
+                }
+                if (!method.getModifiers().contains(Modifier.PUBLIC) &&
+                        !elements.getPackageOf(method).equals(targetPackage)) {
+                    //其他package的非public方法
+                    continue;
+                }
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 是否使用紧凑编码, 成员域带{@link Compact}或者协议, vo声明了compact
+     */
+    private boolean isCompact(TypeElement target, VariableElement field) {
+        if (findAnnotation(field, Compact.class) != null) {
+            return true;
+        }
+        AnnotationMirror protocol = findAnnotation(target, Protocol.class);
+        if (protocol != null) {
+            return booleanValue(protocol, "compact");
+        }
+        AnnotationMirror protocolVO = findAnnotation(target, ProtocolVO.class);
+        if (protocolVO != null) {
+            return booleanValue(protocolVO, "compact");
+        }
+        return false;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 生成read和readVO方法
+     */
+    private void addReadMethods(SourceWriter writer, String targetName, List<FieldInfo> fields, boolean isProtocol) throws UnsupportedTypeException {
+        writer.line("@Override");
+        writer.open("public void read(".concat(SocketRequestOprs.class.getName())
+                .concat(" request, ")
+                .concat(SocketProtocol.class.getName())
+                .concat(" object)"));
+        if (isProtocol) {
+            writer.line(targetName.concat(" protocol = (").concat(targetName).concat(") object;"));
+            addFieldsRead(writer, "protocol", fields);
+        } else {
+            writer.line("throw new UnsupportedOperationException();");
+        }
+        writer.close();
+        writer.line("");
+
+        writer.line("@Override");
+        writer.open("public ".concat(targetName).concat(" readVO(").concat(SocketRequestOprs.class.getName()).concat(" request)"));
+        if (!isProtocol) {
+            writer.line(targetName.concat(" msg = new ").concat(targetName).concat("();"));
+            addFieldsRead(writer, "msg", fields);
+            writer.line("return msg;");
+        } else {
+            writer.line("throw new UnsupportedOperationException();");
+        }
+        writer.close();
+        writer.line("");
+    }
+
+    /**
+     * 所有成员域解析代码, 连续的定长基础类型成员域只校验一次可读字节数, 然后根据绝对下标直接从bytebuf读取
+     */
+    private void addFieldsRead(SourceWriter writer, String sinkName, List<FieldInfo> fields) throws UnsupportedTypeException {
+        int blockNo = 0;
+        for (int i = 0; i < fields.size(); ) {
+            int end = blockEnd(fields, i);
+            if (end - i < 2) {
+                addFieldRead(writer, sinkName, fields.get(i));
+                i++;
+                continue;
+            }
+
+            String bufVar = "block".concat(Integer.toString(blockNo)).concat("Buf");
+            String indexVar = "block".concat(Integer.toString(blockNo)).concat("Index");
+            int blockSize = blockSize(fields, i, end);
+            writer.line(ByteBuf.class.getName().concat(" ").concat(bufVar).concat(" = request.getByteBuf();"));
+            writer.line("int ".concat(indexVar).concat(" = ").concat(bufVar).concat(".readerIndex();"));
+            //只校验一次
+            writer.open("if (".concat(bufVar).concat(".readableBytes() < ").concat(Integer.toString(blockSize)).concat(")"));
+            writer.line("throw new IndexOutOfBoundsException();");
+            writer.close();
+            int offset = 0;
+            for (int j = i; j < end; j++) {
+                FieldInfo field = fields.get(j);
+                writer.line(setStatement(sinkName, field,
+                        bufVar.concat(".get")
+                                .concat(primitiveName(field.type.getKind()))
+                                .concat("(")
+                                .concat(indexVar)
+                                .concat(" + ")
+                                .concat(Integer.toString(offset))
+                                .concat(")")));
+                offset += fixedSizeOf(field.type, false);
+            }
+            writer.line(bufVar.concat(".readerIndex(").concat(indexVar).concat(" + ").concat(Integer.toString(blockSize)).concat(");"));
+
+            blockNo++;
+            i = end;
+        }
+    }
+
+    /**
+     * 单个成员域解析代码
+     */
+    private void addFieldRead(SourceWriter writer, String sinkName, FieldInfo field) throws UnsupportedTypeException {
+        TypeMirror type = field.type;
+        boolean compact = field.compact;
+        String sizeVar = field.name.concat("Size");
+        String valueVar = field.name.concat("Value");
+        if (type.getKind() == TypeKind.ARRAY) {
+            //数组类型
+            TypeMirror itemType = arrayItemType(type);
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(readSize(compact)).concat(";"));
+            String bulkTypeName = bulkTypeName(itemType, compact);
+            if (bulkTypeName != null) {
+                //基础类型数组, 批量读取
+                writer.line(setStatement(sinkName, field, "request.read".concat(bulkTypeName).concat("(").concat(sizeVar).concat(")")));
+                return;
+            }
+            String itemTypeName = types.erasure(itemType).toString();
+            writer.line(itemTypeName.concat("[] ").concat(valueVar).concat(" = new ").concat(itemTypeName).concat("[").concat(sizeVar).concat("];"));
+            writer.open("for (int i = 0; i < ".concat(sizeVar).concat("; i++)"));
+            writer.line(valueVar.concat("[i] = ").concat(readExpression(itemType, compact)).concat(";"));
+            writer.close();
+            writer.line(setStatement(sinkName, field, valueVar));
+        } else if (isSubtype(type, Collection.class.getName())) {
+            //集合类型
+            TypeMirror itemType = typeArgument(type, 0);
+            String defaultType;
+            if (isSubtype(type, List.class.getName())) {
+                defaultType = ArrayList.class.getName();
+            } else if (isSubtype(type, Set.class.getName())) {
+                defaultType = HashSet.class.getName();
+            } else if (isSubtype(type, Queue.class.getName())) {
+                defaultType = ArrayDeque.class.getName();
+            } else {
+                defaultType = null;
+            }
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(readSize(compact)).concat(";"));
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(newContainer(type, defaultType, sizeVar)).concat(";"));
+            writer.open("for (int i = 0; i < ".concat(sizeVar).concat("; i++)"));
+            writer.line(valueVar.concat(".add(").concat(readExpression(itemType, compact)).concat(");"));
+            writer.close();
+            writer.line(setStatement(sinkName, field, valueVar));
+        } else if (primitiveKeyKind(type) != null) {
+            //基础类型key map, key不装箱
+            TypeKind keyKind = primitiveKeyKind(type);
+            TypeMirror valueType = typeArgument(type, 0);
+            String defaultType = keyKind == TypeKind.INT ? IntObjectHashMap.class.getName() : LongObjectHashMap.class.getName();
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(readSize(compact)).concat(";"));
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(newContainer(type, defaultType, sizeVar)).concat(";"));
+            writer.open("for (int i = 0; i < ".concat(sizeVar).concat("; i++)"));
+            writer.line(valueVar.concat(".put(request.read")
+                    .concat(typeName(keyKind, compact))
+                    .concat("(), ")
+                    .concat(readExpression(valueType, compact))
+                    .concat(");"));
+            writer.close();
+            writer.line(setStatement(sinkName, field, valueVar));
+        } else if (isSubtype(type, Map.class.getName())) {
+            //map类型
+            TypeMirror keyType = typeArgument(type, 0);
+            TypeMirror valueType = typeArgument(type, 1);
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(readSize(compact)).concat(";"));
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(newContainer(type, HashMap.class.getName(), sizeVar)).concat(";"));
+            writer.open("for (int i = 0; i < ".concat(sizeVar).concat("; i++)"));
+            writer.line(valueVar.concat(".put(")
+                    .concat(readExpression(keyType, compact))
+                    .concat(", ")
+                    .concat(readExpression(valueType, compact))
+                    .concat(");"));
+            writer.close();
+            writer.line(setStatement(sinkName, field, valueVar));
+        } else if (isByteBuf(type)) {
+            writer.line(setStatement(sinkName, field, "request.readByteBuf()"));
+        } else {
+            //其他类型
+            writer.line(setStatement(sinkName, field, readExpression(type, compact)));
+        }
+    }
+
+    /**
+     * 生成 sinkName.setXX(value); 代码
+     */
+    private String setStatement(String sinkName, FieldInfo field, String value) {
+        return sinkName.concat(".").concat(field.setter).concat("(").concat(value).concat(");");
+    }
+
+    /**
+     * 生成 request.readXX() | ProtocolCodecs.codec(XXX.class).readVO(request) 代码, 这里的类型不包括数组, 集合, map和bytebuf
+     */
+    private String readExpression(TypeMirror type, boolean compact) throws UnsupportedTypeException {
+        TypeKind kind = primitiveKind(type);
+        if (kind != null) {
+            return "request.read".concat(typeName(kind, compact)).concat("()");
+        } else if (isType(type, String.class.getName())) {
+            return "request.readString()";
+        } else if (isVO(type)) {
+            return codecExpression(type).concat(".readVO(request)");
+        }
+        throw new UnsupportedTypeException("unsupported type ".concat(type.toString()));
+    }
+
+    /**
+     * 生成 request.readShort() | request.readVarInt32() 代码
+     */
+    private String readSize(boolean compact) {
+        return "request.read".concat(compact ? "VarInt32" : "Short").concat("()");
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 生成write和writeVO方法
+     */
+    private void addWriteMethods(SourceWriter writer, String targetName, List<FieldInfo> fields, boolean isProtocol) throws UnsupportedTypeException {
+        String protocolClassName = SocketProtocol.class.getName();
+        String responseClassName = SocketResponseOprs.class.getName();
+
+        writer.line("@Override");
+        writer.open("public ".concat(responseClassName).concat(" write(").concat(protocolClassName).concat(" object)"));
+        if (isProtocol) {
+            writer.line(responseClassName.concat(" response = new ").concat(SocketProtocolByteBuf.class.getName()).concat("(object.getProtocolId());"));
+            writer.line("write(object, response);");
+            writer.line("return response;");
+        } else {
+            writer.line("throw new UnsupportedOperationException();");
+        }
+        writer.close();
+        writer.line("");
+
+        writer.line("@Override");
+        writer.open("public void write(".concat(protocolClassName).concat(" object, ").concat(responseClassName).concat(" response)"));
+        if (isProtocol) {
+            writer.line(targetName.concat(" protocol = (").concat(targetName).concat(") object;"));
+            addFieldsWrite(writer, "protocol", fields);
+        } else {
+            writer.line("throw new UnsupportedOperationException();");
+        }
+        writer.close();
+        writer.line("");
+
+        writer.line("@Override");
+        writer.open("public void writeVO(".concat(targetName).concat(" msg, ").concat(responseClassName).concat(" response)"));
+        if (!isProtocol) {
+            addFieldsWrite(writer, "msg", fields);
+        } else {
+            writer.line("throw new UnsupportedOperationException();");
+        }
+        writer.close();
+        writer.line("");
+    }
+
+    /**
+     * 所有成员域编码代码, 连续的定长基础类型成员域只扩容一次, 然后根据绝对下标直接写入bytebuf
+     */
+    private void addFieldsWrite(SourceWriter writer, String sourceName, List<FieldInfo> fields) throws UnsupportedTypeException {
+        int blockNo = 0;
+        for (int i = 0; i < fields.size(); ) {
+            int end = blockEnd(fields, i);
+            if (end - i < 2) {
+                addFieldWrite(writer, sourceName, fields.get(i));
+                i++;
+                continue;
+            }
+
+            String bufVar = "block".concat(Integer.toString(blockNo)).concat("Buf");
+            String indexVar = "block".concat(Integer.toString(blockNo)).concat("Index");
+            int blockSize = blockSize(fields, i, end);
+            //写bytebuf成员域后可能切换成composite bytebuf, 每次都要重新获取
+            writer.line(ByteBuf.class.getName().concat(" ").concat(bufVar).concat(" = response.getByteBuf();"));
+            //只扩容一次
+            writer.line(bufVar.concat(".ensureWritable(").concat(Integer.toString(blockSize)).concat(");"));
+            writer.line("int ".concat(indexVar).concat(" = ").concat(bufVar).concat(".writerIndex();"));
+            int offset = 0;
+            for (int j = i; j < end; j++) {
+                FieldInfo field = fields.get(j);
+                writer.line(bufVar.concat(".set")
+                        .concat(primitiveName(field.type.getKind()))
+                        .concat("(")
+                        .concat(indexVar)
+                        .concat(" + ")
+                        .concat(Integer.toString(offset))
+                        .concat(", ")
+                        .concat(getExpression(sourceName, field))
+                        .concat(");"));
+                offset += fixedSizeOf(field.type, false);
+            }
+            writer.line(bufVar.concat(".writerIndex(").concat(indexVar).concat(" + ").concat(Integer.toString(blockSize)).concat(");"));
+
+            blockNo++;
+            i = end;
+        }
+    }
+
+    /**
+     * 单个成员域编码代码
+     */
+    private void addFieldWrite(SourceWriter writer, String sourceName, FieldInfo field) throws UnsupportedTypeException {
+        TypeMirror type = field.type;
+        boolean compact = field.compact;
+        String valueVar = field.name.concat("Value");
+        String itemVar = field.name.concat("Item");
+        String entryVar = field.name.concat("Entry");
+        if (type.getKind() == TypeKind.ARRAY) {
+            //数组类型
+            TypeMirror itemType = arrayItemType(type);
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(getExpression(sourceName, field)).concat(";"));
+            writer.line(writeSize(compact, valueVar.concat(".length")));
+            String bulkTypeName = bulkTypeName(itemType, compact);
+            if (bulkTypeName != null) {
+                //基础类型数组, 批量写入
+                writer.line("response.write".concat(bulkTypeName).concat("(").concat(valueVar).concat(");"));
+                return;
+            }
+            writer.open("for (".concat(itemType.toString()).concat(" ").concat(itemVar).concat(" : ").concat(valueVar).concat(")"));
+            writer.line(writeStatement(itemType, itemVar, compact));
+            writer.close();
+        } else if (isSubtype(type, Collection.class.getName())) {
+            //集合类型
+            TypeMirror itemType = typeArgument(type, 0);
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(getExpression(sourceName, field)).concat(";"));
+            writer.line(writeSize(compact, valueVar.concat(".size()")));
+            writer.open("for (".concat(itemType.toString()).concat(" ").concat(itemVar).concat(" : ").concat(valueVar).concat(")"));
+            writer.line(writeStatement(itemType, itemVar, compact));
+            writer.close();
+        } else if (primitiveKeyKind(type) != null) {
+            //基础类型key map, 遍历primitive entry, key不拆箱
+            TypeKind keyKind = primitiveKeyKind(type);
+            TypeMirror valueType = typeArgument(type, 0);
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(getExpression(sourceName, field)).concat(";"));
+            writer.line(writeSize(compact, valueVar.concat(".size()")));
+            writer.open("for (".concat(primitiveEntryClassName(keyKind))
+                    .concat("<")
+                    .concat(valueType.toString())
+                    .concat("> ")
+                    .concat(entryVar)
+                    .concat(" : ")
+                    .concat(valueVar)
+                    .concat(".entries())"));
+            writer.line("response.write".concat(typeName(keyKind, compact)).concat("(").concat(entryVar).concat(".key());"));
+            writer.line(writeStatement(valueType, entryVar.concat(".value()"), compact));
+            writer.close();
+        } else if (isSubtype(type, Map.class.getName())) {
+            //map类型
+            TypeMirror keyType = typeArgument(type, 0);
+            TypeMirror valueType = typeArgument(type, 1);
+            writer.line(type.toString().concat(" ").concat(valueVar).concat(" = ").concat(getExpression(sourceName, field)).concat(";"));
+            writer.line(writeSize(compact, valueVar.concat(".size()")));
+            writer.open("for (".concat(Map.Entry.class.getCanonicalName())
+                    .concat("<")
+                    .concat(keyType.toString())
+                    .concat(", ")
+                    .concat(valueType.toString())
+                    .concat("> ")
+                    .concat(entryVar)
+                    .concat(" : ")
+                    .concat(valueVar)
+                    .concat(".entrySet())"));
+            writer.line(writeStatement(keyType, entryVar.concat(".getKey()"), compact));
+            writer.line(writeStatement(valueType, entryVar.concat(".getValue()"), compact));
+            writer.close();
+        } else if (isByteBuf(type)) {
+            writer.line("response.writeByteBuf(".concat(getExpression(sourceName, field)).concat(");"));
+        } else {
+            //其他类型
+            writer.line(writeStatement(type, getExpression(sourceName, field), compact));
+        }
+    }
+
+    /**
+     * 生成 sourceName.getXX() 代码
+     */
+    private String getExpression(String sourceName, FieldInfo field) {
+        return sourceName.concat(".").concat(field.getter).concat("()");
+    }
+
+    /**
+     * 生成 response.writeXX(value); | ProtocolCodecs.codec(XXX.class).writeVO(value, response); 代码, 这里的类型不包括数组, 集合, map和bytebuf
+     */
+    private String writeStatement(TypeMirror type, String value, boolean compact) throws UnsupportedTypeException {
+        TypeKind kind = primitiveKind(type);
+        if (kind != null) {
+            return "response.write".concat(typeName(kind, compact)).concat("(").concat(value).concat(");");
+        } else if (isType(type, String.class.getName())) {
+            return "response.writeString(".concat(value).concat(");");
+        } else if (isVO(type)) {
+            return codecExpression(type).concat(".writeVO(").concat(value).concat(", response);");
+        }
+        throw new UnsupportedTypeException("unsupported type ".concat(type.toString()));
+    }
+
+    /**
+     * 生成 response.writeShort(size); | response.writeVarInt32(size); 代码
+     */
+    private String writeSize(boolean compact, String size) {
+        return "response.write".concat(compact ? "VarInt32" : "Short").concat("(").concat(size).concat(");");
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 生成sizeOf和sizeOfVO方法
+     */
+    private void addSizeOfMethods(SourceWriter writer, String targetName, List<FieldInfo> fields, boolean isProtocol) throws UnsupportedTypeException {
+        writer.line("@Override");
+        writer.open("public int sizeOf(".concat(SocketProtocol.class.getName()).concat(" object)"));
+        if (isProtocol) {
+            writer.line(targetName.concat(" protocol = (").concat(targetName).concat(") object;"));
+            //协议id, short
+            writer.line("int size = 2;");
+            for (FieldInfo field : fields) {
+                addFieldSize(writer, "protocol", field);
+            }
+            writer.line("return size;");
+        } else {
+            writer.line("return -1;");
+        }
+        writer.close();
+        writer.line("");
+
+        writer.line("@Override");
+        writer.open("public int sizeOfVO(".concat(targetName).concat(" msg)"));
+        if (!isProtocol) {
+            writer.line("int size = 0;");
+            for (FieldInfo field : fields) {
+                addFieldSize(writer, "msg", field);
+            }
+            writer.line("return size;");
+        } else {
+            writer.line("return -1;");
+        }
+        writer.close();
+        writer.line("");
+    }
+
+    /**
+     * 单个成员域编码后字节数的累加代码
+     */
+    private void addFieldSize(SourceWriter writer, String sourceName, FieldInfo field) throws UnsupportedTypeException {
+        TypeMirror type = field.type;
+        boolean compact = field.compact;
+        String source = getExpression(sourceName, field);
+        String sizeVar = field.name.concat("Size");
+        String itemVar = field.name.concat("Item");
+        String entryVar = field.name.concat("Entry");
+        //大小为short, 紧凑编码则为varint
+        if (type.getKind() == TypeKind.ARRAY) {
+            //数组类型
+            TypeMirror itemType = arrayItemType(type);
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(source).concat(".length;"));
+            int itemFixedSize = fixedSizeOf(itemType, compact);
+            if (itemFixedSize > 0) {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(itemFixedSize)).concat(";"));
+            } else {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                writer.open("for (".concat(itemType.toString()).concat(" ").concat(itemVar).concat(" : ").concat(source).concat(")"));
+                addItemSize(writer, itemVar, itemVar, itemType, compact);
+                writer.close();
+            }
+        } else if (isSubtype(type, Collection.class.getName())) {
+            //集合类型
+            TypeMirror itemType = typeArgument(type, 0);
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(source).concat(".size();"));
+            int itemFixedSize = fixedSizeOf(itemType, compact);
+            if (itemFixedSize > 0) {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(itemFixedSize)).concat(";"));
+            } else {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                writer.open("for (".concat(itemType.toString()).concat(" ").concat(itemVar).concat(" : ").concat(source).concat(")"));
+                addItemSize(writer, itemVar, itemVar, itemType, compact);
+                writer.close();
+            }
+        } else if (primitiveKeyKind(type) != null) {
+            //基础类型key map
+            TypeKind keyKind = primitiveKeyKind(type);
+            TypeMirror valueType = typeArgument(type, 0);
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(source).concat(".size();"));
+            int keyFixedSize = fixedSizeOf(keyKind, compact);
+            int valueFixedSize = fixedSizeOf(valueType, compact);
+            if (keyFixedSize > 0 && valueFixedSize > 0) {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(keyFixedSize + valueFixedSize)).concat(";"));
+            } else {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                writer.open("for (".concat(primitiveEntryClassName(keyKind))
+                        .concat("<")
+                        .concat(valueType.toString())
+                        .concat("> ")
+                        .concat(entryVar)
+                        .concat(" : ")
+                        .concat(source)
+                        .concat(".entries())"));
+                addItemSize(writer, field.name.concat("Key"), entryVar.concat(".key()"), types.getPrimitiveType(keyKind), compact);
+                addItemSize(writer, field.name.concat("Value"), entryVar.concat(".value()"), valueType, compact);
+                writer.close();
+            }
+        } else if (isSubtype(type, Map.class.getName())) {
+            //map类型
+            TypeMirror keyType = typeArgument(type, 0);
+            TypeMirror valueType = typeArgument(type, 1);
+            writer.line("int ".concat(sizeVar).concat(" = ").concat(source).concat(".size();"));
+            int keyFixedSize = fixedSizeOf(keyType, compact);
+            int valueFixedSize = fixedSizeOf(valueType, compact);
+            if (keyFixedSize > 0 && valueFixedSize > 0) {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(" + ").concat(sizeVar).concat(" * ").concat(Integer.toString(keyFixedSize + valueFixedSize)).concat(";"));
+            } else {
+                writer.line("size += ".concat(sizeOfSize(sizeVar, compact)).concat(";"));
+                writer.open("for (".concat(Map.Entry.class.getCanonicalName())
+                        .concat("<")
+                        .concat(keyType.toString())
+                        .concat(", ")
+                        .concat(valueType.toString())
+                        .concat("> ")
+                        .concat(entryVar)
+                        .concat(" : ")
+                        .concat(source)
+                        .concat(".entrySet())"));
+                addItemSize(writer, field.name.concat("Key"), entryVar.concat(".getKey()"), keyType, compact);
+                addItemSize(writer, field.name.concat("Value"), entryVar.concat(".getValue()"), valueType, compact);
+                writer.close();
+            }
+        } else if (isByteBuf(type)) {
+            writer.line("size += ".concat(SocketProtocolByteBuf.class.getName()).concat(".byteBufSizeOf(").concat(source).concat(");"));
+        } else {
+            //其他类型
+            addItemSize(writer, field.name, source, type, compact);
+        }
+    }
+
+    /**
+     * 成员域, 数组, 集合和map的item编码后字节数的累加代码, 这里的类型不包括数组, 集合, map和bytebuf
+     */
+    private void addItemSize(SourceWriter writer, String varPrefix, String value, TypeMirror type, boolean compact) throws UnsupportedTypeException {
+        TypeKind kind = primitiveKind(type);
+        int fixedSize = fixedSizeOf(type, compact);
+        if (fixedSize > 0) {
+            writer.line("size += ".concat(Integer.toString(fixedSize)).concat(";"));
+        } else if (kind == TypeKind.INT || kind == TypeKind.LONG) {
+            //紧凑编码
+            String bits = kind == TypeKind.INT ? "32" : "64";
+            writer.line("size += ".concat(VarIntUtils.class.getName())
+                    .concat(".computeRawVarInt")
+                    .concat(bits)
+                    .concat("Size(")
+                    .concat(VarIntUtils.class.getName())
+                    .concat(".encodeZigZag")
+                    .concat(bits)
+                    .concat("(")
+                    .concat(value)
+                    .concat("));"));
+        } else if (isType(type, String.class.getName())) {
+            writer.line("size += 2 + ".concat(SocketProtocolByteBuf.class.getName()).concat(".utf8Length(").concat(value).concat(");"));
+        } else if (isVO(type)) {
+            String voSizeVar = varPrefix.concat("VOSize");
+            writer.line("int ".concat(voSizeVar).concat(" = ").concat(codecExpression(type)).concat(".sizeOfVO(").concat(value).concat(");"));
+            writer.open("if (".concat(voSizeVar).concat(" < 0)"));
+            writer.line("return -1;");
+            writer.close();
+            writer.line("size += ".concat(voSizeVar).concat(";"));
+        } else {
+            throw new UnsupportedTypeException("unsupported type ".concat(type.toString()));
+        }
+    }
+
+    /**
+     * 生成 2 | VarIntUtils.computeRawVarInt32Size(sizeVar) 代码
+     */
+    private String sizeOfSize(String sizeVar, boolean compact) {
+        if (compact) {
+            return VarIntUtils.class.getName().concat(".computeRawVarInt32Size(").concat(sizeVar).concat(")");
+        }
+        return "2";
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 生成releasePayload方法, 仅协议有bytebuf成员域才生成
+     */
+    private void addReleasePayloadMethod(SourceWriter writer, String targetName, List<FieldInfo> fields) {
+        List<FieldInfo> payloadFields = new ArrayList<>();
+        for (FieldInfo field : fields) {
+            if (isByteBuf(field.type)) {
+                payloadFields.add(field);
+            }
+        }
+        if (payloadFields.isEmpty()) {
+            return;
+        }
+
+        writer.line("");
+        writer.line("@Override");
+        writer.open("public void releasePayload(".concat(SocketProtocol.class.getName()).concat(" object)"));
+        writer.line(targetName.concat(" protocol = (").concat(targetName).concat(") object;"));
+        for (FieldInfo field : payloadFields) {
+            writer.line(ReferenceCountUtil.class.getName().concat(".release(").concat(getExpression("protocol", field)).concat(");"));
+        }
+        writer.close();
+    }
+
+    /**
+     * 生成集合或map实例化代码, 按编码的大小预设容量, 与{@link ProtocolCodecs}一致
+     * 成员域类型为接口或抽象类时, 实例化defaultType
+     */
+    private String newContainer(TypeMirror type, String defaultType, String sizeVar) throws UnsupportedTypeException {
+        TypeElement instanceType = (TypeElement) types.asElement(type);
+        if (instanceType.getKind().isInterface() || instanceType.getModifiers().contains(Modifier.ABSTRACT)) {
+            if (defaultType == null) {
+                throw new UnsupportedTypeException("unsupported container type ".concat(type.toString()));
+            }
+            instanceType = elements.getTypeElement(defaultType);
+        }
+
+        boolean hasIntConstructor = hasConstructor(instanceType, true, true);
+        if (!hasIntConstructor && !hasConstructor(instanceType, false, true)) {
+            throw new UnsupportedTypeException("container type doesn't have public constructor ".concat(type.toString()));
+        }
+        String args = "";
+        if (hasIntConstructor) {
+            if (isSubtype(instanceType.asType(), IntObjectHashMap.class.getName()) ||
+                    isSubtype(instanceType.asType(), LongObjectHashMap.class.getName())) {
+                //默认负载因子0.5, 且初始容量必须大于0
+                args = sizeVar.concat(" * 2 + 1");
+            } else if (isSubtype(instanceType.asType(), HashMap.class.getName()) || isSubtype(instanceType.asType(), HashSet.class.getName())) {
+                //默认负载因子0.75
+                args = sizeVar.concat(" * 4 / 3 + 1");
+            } else {
+                args = sizeVar;
+            }
+        }
+        return "new "
+                .concat(instanceType.getQualifiedName().toString())
+                .concat(instanceType.getTypeParameters().isEmpty() ? "" : "<>")
+                .concat("(")
+                .concat(args)
+                .concat(")");
+    }
+
+    /**
+     * @param intArg     true = (int initialCapacity)构造器, false = 无参构造器
+     * @param publicOnly true = 仅public, false = 非private即可(生成的codec与目标类同一package)
+     */
+    private boolean hasConstructor(TypeElement type, boolean intArg, boolean publicOnly) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = constructor.getModifiers();
+            if (publicOnly ? !modifiers.contains(Modifier.PUBLIC) : modifiers.contains(Modifier.PRIVATE)) {
+                continue;
+            }
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (intArg) {
+                if (parameters.size() == 1 && parameters.get(0).asType().getKind() == TypeKind.INT) {
+                    return true;
+                }
+            } else if (parameters.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成 ProtocolCodecs.codec(XXX.class) 代码
+     */
+    private String codecExpression(TypeMirror type) {
+        return ProtocolCodecs.class.getName().concat(".codec(").concat(types.erasure(type).toString()).concat(".class)");
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return 连续的定长基础类型成员域的结束下标(不包含)
+     */
+    private int blockEnd(List<FieldInfo> fields, int start) {
+        int end = start;
+        while (end < fields.size() && isBlockField(fields.get(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return 是否是定长基础类型成员域, 不需要拆装箱
+     */
+    private boolean isBlockField(FieldInfo field) {
+        return field.type.getKind().isPrimitive() && fixedSizeOf(field.type, field.compact) > 0;
+    }
+
+    /**
+     * @return [start, end)成员域编码后总字节数
+     */
+    private int blockSize(List<FieldInfo> fields, int start, int end) {
+        int size = 0;
+        for (int i = start; i < end; i++) {
+            size += fixedSizeOf(fields.get(i).type, false);
+        }
+        return size;
+    }
+
+    /**
+     * @return 支持批量读写的基础类型数组, SocketRequestOprs readXXXs 和 SocketResponseOprs writeXXXs 方法中的XXXs, 不支持则返回null
+     */
+    private String bulkTypeName(TypeMirror itemType, boolean compact) {
+        switch (itemType.getKind()) {
+            case BYTE:
+                return "Bytes";
+            case SHORT:
+                return "Shorts";
+            case FLOAT:
+                return "Floats";
+            case DOUBLE:
+                return "Doubles";
+            case INT:
+                return compact ? null : "Ints";
+            case LONG:
+                return compact ? null : "Longs";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return SocketRequestOprs readXXX 和 SocketResponseOprs writeXXX 方法中的XXX
+     */
+    private String typeName(TypeKind kind, boolean compact) {
+        if (compact && kind == TypeKind.INT) {
+            return "SInt32";
+        } else if (compact && kind == TypeKind.LONG) {
+            return "SInt64";
+        }
+        return primitiveName(kind);
+    }
+
+    /**
+     * @return 首字母大写的基础类型名, 即ByteBuf getXXX | setXXX方法中的XXX
+     */
+    private String primitiveName(TypeKind kind) {
+        String name = kind.name().toLowerCase();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * @return 定长类型编码后的字节数, 非定长类型返回-1, 紧凑编码下int, long为非定长
+     */
+    private int fixedSizeOf(TypeMirror type, boolean compact) {
+        TypeKind kind = primitiveKind(type);
+        return kind == null ? -1 : fixedSizeOf(kind, compact);
+    }
+
+    private int fixedSizeOf(TypeKind kind, boolean compact) {
+        switch (kind) {
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+            case SHORT:
+                return 2;
+            case FLOAT:
+                return 4;
+            case DOUBLE:
+                return 8;
+            case INT:
+                return compact ? -1 : 4;
+            case LONG:
+                return compact ? -1 : 8;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return 基础类型或其包装类对应的基础类型, 不支持char, 其余返回null
+     */
+    private TypeKind primitiveKind(TypeMirror type) {
+        TypeKind kind = type.getKind();
+        if (type.getKind() == TypeKind.DECLARED) {
+            try {
+                kind = types.unboxedType(type).getKind();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (kind.isPrimitive() && kind != TypeKind.CHAR) {
+            return kind;
+        }
+        return null;
+    }
+
+    /**
+     * @return 基础类型key map(netty {@link IntObjectMap}, {@link LongObjectMap})的key类型, 非基础类型key map则返回null
+     */
+    private TypeKind primitiveKeyKind(TypeMirror type) {
+        if (isSubtype(type, IntObjectMap.class.getName())) {
+            return TypeKind.INT;
+        } else if (isSubtype(type, LongObjectMap.class.getName())) {
+            return TypeKind.LONG;
+        }
+        return null;
+    }
+
+    /**
+     * @return 基础类型key map的primitive entry类名
+     */
+    private String primitiveEntryClassName(TypeKind keyKind) {
+        return keyKind == TypeKind.INT ? IntObjectMap.PrimitiveEntry.class.getCanonicalName() : LongObjectMap.PrimitiveEntry.class.getCanonicalName();
+    }
+
+    /**
+     * @return 数组item类型, 不支持嵌套数组和泛型item
+     */
+    private TypeMirror arrayItemType(TypeMirror type) throws UnsupportedTypeException {
+        TypeMirror itemType = ((ArrayType) type).getComponentType();
+        if (itemType.getKind() == TypeKind.ARRAY ||
+                (itemType.getKind() == TypeKind.DECLARED && !((DeclaredType) itemType).getTypeArguments().isEmpty())) {
+            throw new UnsupportedTypeException("unsupported array type ".concat(type.toString()));
+        }
+        return itemType;
+    }
+
+    /**
+     * @return 集合, map的泛型参数, 必须是具体类型
+     */
+    private TypeMirror typeArgument(TypeMirror type, int index) throws UnsupportedTypeException {
+        if (type.getKind() == TypeKind.DECLARED) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            if (index < typeArguments.size() && typeArguments.get(index).getKind() == TypeKind.DECLARED) {
+                return typeArguments.get(index);
+            }
+        }
+        throw new UnsupportedTypeException("must declare type arguments ".concat(type.toString()));
+    }
+
+    private boolean isByteBuf(TypeMirror type) {
+        return isType(type, ByteBuf.class.getName());
+    }
+
+    private boolean isVO(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && findAnnotation(types.asElement(type), ProtocolVO.class) != null;
+    }
+
+    /**
+     * @return 是否是指定类型(不包括子类)
+     */
+    private boolean isType(TypeMirror type, String className) {
+        return type.getKind() == TypeKind.DECLARED &&
+                ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(className);
+    }
+
+    /**
+     * @return 是否是指定类型或其子类
+     */
+    private boolean isSubtype(TypeMirror type, String className) {
+        TypeElement typeElement = elements.getTypeElement(className);
+        return typeElement != null && type.getKind() == TypeKind.DECLARED &&
+                types.isSubtype(types.erasure(type), types.erasure(typeElement.asType()));
+    }
+
+    /**
+     * @return 注解, 包括继承的, 找不到则返回null
+     */
+    private AnnotationMirror findAnnotation(Element element, Class<?> annotationClass) {
+        for (AnnotationMirror annotationMirror : elements.getAllAnnotationMirrors(element)) {
+            TypeElement annotationElement = (TypeElement) annotationMirror.getAnnotationType().asElement();
+            if (annotationElement.getQualifiedName().contentEquals(annotationClass.getName())) {
+                return annotationMirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return boolean类型的注解属性值, 包括默认值
+     */
+    private boolean booleanValue(AnnotationMirror annotationMirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                elements.getElementValuesWithDefaults(annotationMirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return (Boolean) entry.getValue().getValue();
+            }
+        }
+        return false;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    /**
+     * 有效成员域信息
+     */
+    private static final class FieldInfo {
+        /** 成员域名 */
+        private final String name;
+        /** 成员域类型 */
+        private final TypeMirror type;
+        /** getter方法名 */
+        private final String getter;
+        /** setter方法名 */
+        private final String setter;
+        /** 是否使用紧凑编码 */
+        private final boolean compact;
+
+        FieldInfo(String name, TypeMirror type, String getter, String setter, boolean compact) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+            this.compact = compact;
+        }
+    }
+
+    /**
+     * 带缩进的源码拼接
+     */
+    private static final class SourceWriter {
+        private final StringBuilder sb = new StringBuilder();
+        /** 缩进层级 */
+        private int indent;
+
+        void line(String content) {
+            if (!content.isEmpty()) {
+                for (int i = 0; i < indent; i++) {
+                    sb.append("    ");
+                }
+            }
+            sb.append(content).append(System.lineSeparator());
+        }
+
+        void open(String head) {
+            line(head.concat(" {"));
+            indent++;
+        }
+
+        void close() {
+            indent--;
+            line("}");
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
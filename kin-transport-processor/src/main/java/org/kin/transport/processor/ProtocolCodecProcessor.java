@@ -0,0 +1,209 @@
+package org.kin.transport.processor;
+
+import org.kin.transport.netty.socket.protocol.Protocol;
+import org.kin.transport.netty.socket.protocol.ProtocolCodec;
+import org.kin.transport.netty.socket.protocol.ProtocolIndex;
+import org.kin.transport.netty.socket.protocol.ProtocolVO;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 编译期生成协议和vo的codec, 以及协议索引文件{@link ProtocolIndex#LOCATION}
+ * <p>
+ * 运行时存在索引文件则不需要扫描classpath, 也不需要javassist生成codec
+ * 编译期不支持生成codec的类(比如延迟解析协议)仍会写入索引, 由运行时javassist生成
+ *
+ * @author huangjianqin
+ * @date 2020/11/9
+ */
+@SupportedAnnotationTypes("*")
+public class ProtocolCodecProcessor extends AbstractProcessor {
+    private CodecSourceGenerator generator;
+    /** 索引行, 类型 + 目标类 -> 索引行 */
+    private final Map<String, String> indexLines = new TreeMap<>();
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        generator = new CodecSourceGenerator(processingEnv);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        //手写的codec优先
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+            processImplementedCodec(type);
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(Protocol.class)) {
+            processTarget(element, true);
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(ProtocolVO.class)) {
+            processTarget(element, false);
+        }
+
+        //不占用注解, 其他processor仍可处理
+        return false;
+    }
+
+    /**
+     * 手写的codec, 与运行时扫描逻辑一致, 即父类带泛型参数, 第一个泛型参数为目标类
+     */
+    private void processImplementedCodec(TypeElement type) {
+        for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+            processImplementedCodec(nested);
+        }
+
+        if (type.getKind() != ElementKind.CLASS ||
+                type.getModifiers().contains(Modifier.ABSTRACT) ||
+                !isAssignable(type.asType(), ProtocolCodec.class.getName())) {
+            return;
+        }
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+        DeclaredType declaredSuperclass = (DeclaredType) superclass;
+        if (declaredSuperclass.getTypeArguments().isEmpty()) {
+            return;
+        }
+        TypeMirror targetType = declaredSuperclass.getTypeArguments().get(0);
+        if (targetType.getKind() != TypeKind.DECLARED) {
+            return;
+        }
+        TypeElement target = (TypeElement) ((DeclaredType) targetType).asElement();
+        addIndexLine(ProtocolIndex.CODEC, binaryName(target), binaryName(type));
+    }
+
+    /**
+     * 生成协议或vo的codec
+     *
+     * @param isProtocol true = 协议, false = vo
+     */
+    private void processTarget(Element element, boolean isProtocol) {
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return;
+        }
+        TypeElement target = (TypeElement) element;
+        String kind = isProtocol ? ProtocolIndex.PROTOCOL : ProtocolIndex.VO;
+        String targetName = binaryName(target);
+        if (indexLines.containsKey(indexKey(ProtocolIndex.CODEC, targetName))) {
+            //已有手写的codec
+            addIndexLine(kind, targetName, ProtocolIndex.NONE);
+            return;
+        }
+
+        String source;
+        try {
+            source = generator.generate(target, isProtocol);
+        } catch (UnsupportedTypeException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    String.format("skip generating codec for '%s' at compile time, %s", targetName, e.getMessage()), target);
+            addIndexLine(kind, targetName, ProtocolIndex.NONE);
+            return;
+        }
+
+        String codecClassName = generator.codecClassName(target);
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(codecClassName, target);
+            try (Writer writer = sourceFile.openWriter()) {
+                writer.write(source);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("write codec source '%s' error, %s", codecClassName, e.getMessage()), target);
+            return;
+        }
+        addIndexLine(kind, targetName, codecClassName);
+    }
+
+    /**
+     * 写索引文件, 增量编译时合并已存在的索引
+     */
+    private void writeIndex() {
+        Filer filer = processingEnv.getFiler();
+        //增量编译, 合并上次编译的索引, 忽略已不存在的类
+        try {
+            FileObject existed = filer.getResource(StandardLocation.CLASS_OUTPUT, "", ProtocolIndex.LOCATION);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existed.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] items = line.trim().split("\\s+");
+                    if (items.length != 3 || indexLines.containsKey(indexKey(items[0], items[1]))) {
+                        continue;
+                    }
+                    if (processingEnv.getElementUtils().getTypeElement(items[1].replace('$', '.')) != null) {
+                        addIndexLine(items[0], items[1], items[2]);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            //没有旧索引
+        }
+
+        if (indexLines.isEmpty()) {
+            return;
+        }
+        try {
+            FileObject index = filer.createResource(StandardLocation.CLASS_OUTPUT, "", ProtocolIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String line : indexLines.values()) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "write protocol index error, ".concat(e.getMessage()));
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------------------------
+
+    private void addIndexLine(String kind, String targetName, String codecClassName) {
+        indexLines.put(indexKey(kind, targetName), kind.concat(" ").concat(targetName).concat(" ").concat(codecClassName));
+    }
+
+    private String indexKey(String kind, String targetName) {
+        return kind.concat(" ").concat(targetName);
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private boolean isAssignable(TypeMirror type, String className) {
+        TypeElement typeElement = processingEnv.getElementUtils().getTypeElement(className);
+        return typeElement != null &&
+                processingEnv.getTypeUtils().isAssignable(
+                        processingEnv.getTypeUtils().erasure(type),
+                        processingEnv.getTypeUtils().erasure(typeElement.asType()));
+    }
+}
@@ -0,0 +1,15 @@
+package org.kin.transport.processor;
+
+/**
+ * 编译期不支持生成codec, 由运行时javassist生成
+ *
+ * @author huangjianqin
+ * @date 2020/11/9
+ */
+class UnsupportedTypeException extends Exception {
+    private static final long serialVersionUID = 6434839474718476405L;
+
+    UnsupportedTypeException(String message) {
+        super(message);
+    }
+}
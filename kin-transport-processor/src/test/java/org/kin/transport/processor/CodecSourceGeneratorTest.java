@@ -0,0 +1,194 @@
+package org.kin.transport.processor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.collection.LongObjectMap;
+import org.kin.transport.netty.socket.protocol.*;
+
+import javax.tools.*;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * 使用processor编译kin-transport-netty的测试协议类, 对比编译期生成的codec与运行时javassist生成的codec编码结果是否一致,
+ * 并交叉解析, 保证使用协议索引与运行时生成codec的两端可以互通
+ * <p>
+ * 需在jdk下运行, 以java.class.path作为编译classpath
+ *
+ * @author huangjianqin
+ * @date 2020/11/11
+ */
+public class CodecSourceGeneratorTest {
+    /** 测试协议类所在package */
+    private static final String FIXTURE_PACKAGE = "org.kin.transport.netty.socket.protocol";
+    /** 测试协议类, 包括手写的codec */
+    private static final String[] FIXTURES = {"Protocol1", "Protocol2", "Protocol3", "Protocol4", "Protocol5", "Protocol6",
+            "Protocol7", "Protocol8", "VO1", "VO1Codec", "VO2"};
+
+    public static void main(String[] args) throws Exception {
+        //运行时生成codec
+        ProtocolFactory.init("org.kin.transport");
+
+        //编译期生成codec
+        File output = Files.createTempDirectory("kin-transport-processor").toFile();
+        compile(output);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()}, CodecSourceGeneratorTest.class.getClassLoader())) {
+            compare(classLoader, Protocol1.of(1));
+            compare(classLoader, Protocol2.of("2", (byte) 3));
+            compare(classLoader, Protocol3.of((byte) 1, (short) 2, 3, 4, 5L, 6, "7", true, VO1.of(8)));
+
+            Set<Integer> d4 = new HashSet<>();
+            d4.add(7);
+            d4.add(8);
+            Map<Integer, Integer> e4 = new HashMap<>();
+            e4.put(9, 10);
+            e4.put(11, 12);
+            compare(classLoader, Protocol4.of(new int[]{1, 2}, new Integer[]{3, 4}, Arrays.asList(5, 6), d4, e4));
+
+            Map<VO1, Long> c5 = new HashMap<>();
+            c5.put(VO1.of(8), 9L);
+            c5.put(VO1.of(10), 11L);
+            Map<Integer, VO1> d5 = new HashMap<>();
+            d5.put(14, VO1.of(15));
+            d5.put(16, VO1.of(17));
+            List<VO2> e5 = new ArrayList<>();
+            e5.add(VO2.of(Arrays.asList(VO1.of(20), VO1.of(21))));
+            Map<Integer, VO2> f5 = new HashMap<>();
+            f5.put(26, VO2.of(Arrays.asList(VO1.of(27), VO1.of(28))));
+            compare(classLoader, Protocol5.of(new VO1[]{VO1.of(1), VO1.of(2)}, Arrays.asList(VO1.of(4), VO1.of(5)), c5, d5, e5, f5));
+
+            IntObjectMap<VO1> d6 = new IntObjectHashMap<>();
+            d6.put(8, VO1.of(9));
+            d6.put(10, VO1.of(11));
+            LongObjectMap<String> e6 = new LongObjectHashMap<>();
+            e6.put(12L, "13");
+            e6.put(14L, "15");
+            compare(classLoader, Protocol6.of(new long[]{1L, 2L, 3L}, new double[]{4.0, 5.0}, new ArrayList<>(Arrays.asList(6, 7)), d6, e6));
+
+            //稀疏编码和增量编码协议由运行时生成codec
+            compare(classLoader, Protocol7.of(1, 0L, "3", null, null, true));
+            compare(classLoader, Protocol8.of(1L, 1, "room1", new HashMap<>()));
+
+            compareVO(classLoader, VO2.of(Arrays.asList(VO1.of(1), VO1.of(2))));
+        }
+        System.out.println("codec source generator ok");
+    }
+
+    /**
+     * 以测试协议类的class文件作为annotation processing输入, 编译生成的codec源码
+     */
+    private static void compile(File output) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        check(Objects.nonNull(compiler), "must run on jdk");
+
+        List<String> options = Arrays.asList(
+                "-d", output.getPath(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-processor", ProtocolCodecProcessor.class.getName());
+        List<String> classes = new ArrayList<>(FIXTURES.length);
+        for (String fixture : FIXTURES) {
+            classes.add(FIXTURE_PACKAGE.concat(".").concat(fixture));
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        boolean success = compiler.getTask(null, fileManager, diagnostics, options, classes, Collections.emptyList()).call();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            System.out.println(diagnostic);
+        }
+        check(success, "compile generated codec fail");
+    }
+
+    /**
+     * 对比协议编码结果, 并交叉解析
+     */
+    private static void compare(ClassLoader classLoader, SocketProtocol protocol) {
+        Class<? extends SocketProtocol> target = protocol.getClass();
+        ProtocolCodec<SocketProtocol> generatedCodec = generatedCodec(classLoader, target);
+        if (Objects.isNull(generatedCodec)) {
+            System.out.println(target.getSimpleName() + " has no generated codec, runtime only");
+            return;
+        }
+        ProtocolCodec<SocketProtocol> runtimeCodec = (ProtocolCodec<SocketProtocol>) ProtocolCodecs.codec(target);
+
+        byte[] runtimeBytes = bytes(runtimeCodec.write(protocol));
+        byte[] generatedBytes = bytes(generatedCodec.write(protocol));
+        check(Arrays.equals(runtimeBytes, generatedBytes), target.getSimpleName() + " encoded bytes mismatch");
+        check(runtimeCodec.sizeOf(protocol) == generatedCodec.sizeOf(protocol), target.getSimpleName() + " sizeOf mismatch");
+
+        //交叉解析, 集合和map的遍历顺序可能不同, 故只比较编码长度
+        crossRead(target, generatedCodec, runtimeCodec, runtimeBytes);
+        crossRead(target, runtimeCodec, generatedCodec, generatedBytes);
+        System.out.println(target.getSimpleName() + " ok, " + runtimeBytes.length + " bytes");
+    }
+
+    /**
+     * 使用readCodec解析另一codec编码的内容, 必须恰好读完, 且再次编码的长度一致
+     */
+    private static void crossRead(Class<? extends SocketProtocol> target, ProtocolCodec<SocketProtocol> readCodec,
+                                  ProtocolCodec<SocketProtocol> writeCodec, byte[] bytes) {
+        ByteBuf byteBuf = Unpooled.wrappedBuffer(bytes);
+        SocketProtocolByteBuf request = new SocketProtocolByteBuf(byteBuf);
+        SocketProtocol decoded = ProtocolFactory.createProtocol(request.getProtocolId());
+        readCodec.read(request, decoded);
+        check(!byteBuf.isReadable(), target.getSimpleName() + " cross read doesn't consume all bytes");
+        check(bytes(writeCodec.write(decoded)).length == bytes.length, target.getSimpleName() + " cross read content mismatch");
+    }
+
+    /**
+     * 对比vo编码结果
+     */
+    private static <V> void compareVO(ClassLoader classLoader, V vo) {
+        Class<V> target = (Class<V>) vo.getClass();
+        ProtocolCodec<V> generatedCodec = generatedCodec(classLoader, target);
+        check(Objects.nonNull(generatedCodec), target.getSimpleName() + " must have generated codec");
+        ProtocolCodec<V> runtimeCodec = ProtocolCodecs.codec(target);
+
+        SocketProtocolByteBuf runtimeResponse = new SocketProtocolByteBuf(0);
+        runtimeCodec.writeVO(vo, runtimeResponse);
+        SocketProtocolByteBuf generatedResponse = new SocketProtocolByteBuf(0);
+        generatedCodec.writeVO(vo, generatedResponse);
+        check(Arrays.equals(bytes(runtimeResponse), bytes(generatedResponse)), target.getSimpleName() + " encoded bytes mismatch");
+        System.out.println(target.getSimpleName() + " ok");
+    }
+
+    /**
+     * @return 编译期生成的codec, null则表示processor没有生成
+     */
+    private static <P> ProtocolCodec<P> generatedCodec(ClassLoader classLoader, Class<P> target) {
+        try {
+            Class<?> codecClass = classLoader.loadClass(target.getName().concat(CodecSourceGenerator.CODEC_SUFFIX));
+            return (ProtocolCodec<P>) codecClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return 编码内容, 并release bytebuf
+     */
+    private static byte[] bytes(SocketResponseOprs response) {
+        ByteBuf byteBuf = response.getByteBuf();
+        try {
+            byte[] bytes = new byte[byteBuf.readableBytes()];
+            byteBuf.getBytes(byteBuf.readerIndex(), bytes);
+            return bytes;
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}